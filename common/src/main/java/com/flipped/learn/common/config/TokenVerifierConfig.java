@@ -0,0 +1,41 @@
+package com.flipped.learn.common.config;
+
+import com.flipped.learn.common.util.TokenVerifier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * <h1>Token 校验器配置, 缓存命中情况通过 Actuator 暴露</h1>
+ * 网关和各个微服务通过 @Import 引入; 不加 @Configuration, 避免被扫描进不需要校验 Token 的服务
+ */
+public class TokenVerifierConfig {
+
+    @Bean
+    public TokenVerifier tokenVerifier(
+            @Value("${ecommerce.token.cache.enabled:true}") boolean enabled,
+            @Value("${ecommerce.token.cache.capacity:" + TokenVerifier.DEFAULT_CAPACITY + "}") int capacity,
+            @Value("${ecommerce.token.cache.ttl-millis:" + TokenVerifier.DEFAULT_TTL_MILLIS + "}") long ttlMillis) {
+        return new TokenVerifier(enabled, capacity, ttlMillis);
+    }
+
+    /**
+     * <h2>Token 缓存命中、未命中次数以及缓存大小</h2>
+     */
+    @Bean
+    public MeterBinder tokenVerifierMetrics(TokenVerifier tokenVerifier) {
+        return registry -> {
+            FunctionCounter.builder("ecommerce.token.cache.hits", tokenVerifier, TokenVerifier::getHitCount)
+                    .description("token verify cache hits")
+                    .register(registry);
+            FunctionCounter.builder("ecommerce.token.cache.misses", tokenVerifier, TokenVerifier::getMissCount)
+                    .description("token verify cache misses")
+                    .register(registry);
+            Gauge.builder("ecommerce.token.cache.size", tokenVerifier, TokenVerifier::getCacheSize)
+                    .description("token verify cache size")
+                    .register(registry);
+        };
+    }
+}
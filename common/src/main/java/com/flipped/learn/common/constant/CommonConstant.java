@@ -22,4 +22,24 @@ public interface CommonConstant {
      * 授权中心的 service-id
      */
     String AUTHORITY_CENTER_SERVICE_ID = "authority-center";
+
+    /**
+     * 只允许微服务之间调用的接口前缀, 网关不转发, 由服务签名校验调用方
+     */
+    String INTERNAL_URI_PREFIX = "/internal/";
+
+    /**
+     * 服务间调用时, 调用方服务名的 Header
+     */
+    String SERVICE_NAME_KEY = "e-commerce-service-name";
+
+    /**
+     * 服务间调用时, 签名时间戳 (毫秒) 的 Header
+     */
+    String SERVICE_TIMESTAMP_KEY = "e-commerce-service-timestamp";
+
+    /**
+     * 服务间调用时, 签名的 Header
+     */
+    String SERVICE_SIGNATURE_KEY = "e-commerce-service-signature";
 }
\ No newline at end of file
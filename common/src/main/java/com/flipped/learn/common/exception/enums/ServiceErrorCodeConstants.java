@@ -13,4 +13,6 @@ public interface ServiceErrorCodeConstants {
     ErrorCode GOODS_NOT_EXITS = new ErrorCode(4001, "商品不存在");
     ErrorCode GOODS_INVENTORY_NOT_ENOUGH = new ErrorCode(4002, "商品库存不足");
     ErrorCode GOODS_INVENTORY_NOT_MATCH = new ErrorCode(4003, "商品库存数量不匹配");
+    ErrorCode ORDER_TRANSACTION_CANCELED = new ErrorCode(5000, "订单已经取消");
+    ErrorCode ORDER_TRANSACTION_NOT_COMPENSATING = new ErrorCode(5001, "订单没有在取消中, 不能退回");
 }
\ No newline at end of file
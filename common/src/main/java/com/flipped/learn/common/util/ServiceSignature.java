@@ -0,0 +1,119 @@
+package com.flipped.learn.common.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>微服务之间调用的签名</h1>
+ * 调用方用共享密钥对 服务名、时间戳、请求方法、请求路径、查询参数、请求体摘要 做 HmacSHA256, 服务提供方校验签名和时间戳;
+ * 没有配置密钥时拒绝所有校验 (fail closed), 内部接口不会因为漏配密钥而对外开放
+ */
+public class ServiceSignature {
+
+    /**
+     * 默认允许的时间偏差, 单位: 毫秒
+     */
+    public static final long DEFAULT_MAX_SKEW_MILLIS = 60 * 1000L;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * 共享密钥, 为空时不能签名和校验
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * 签名时间和当前时间允许的最大偏差, 单位: 毫秒
+     */
+    private final long maxSkewMillis;
+
+    public ServiceSignature(String secret, long maxSkewMillis) {
+        if (maxSkewMillis <= 0) {
+            throw new IllegalArgumentException("service signature max skew must be positive");
+        }
+        this.key = null == secret || secret.isEmpty()
+                ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.maxSkewMillis = maxSkewMillis;
+    }
+
+    /**
+     * <h2>是否配置了共享密钥</h2>
+     */
+    public boolean isConfigured() {
+        return null != key;
+    }
+
+    /**
+     * <h2>计算签名</h2>
+     * @param path 请求路径, 包含 context-path, 不包含查询参数
+     * @param query 编码后的查询字符串, 可以带开头的 '?', 没有时为 null
+     * @param body 请求体, 没有时为 null
+     */
+    public String sign(String serviceName, long timestamp, String method, String path, String query, byte[] body) {
+        if (null == key) {
+            throw new IllegalStateException("service signature secret is not configured");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(String.join("\n", serviceName, String.valueOf(timestamp),
+                    method.toUpperCase(), path, canonicalQuery(query), bodyDigest(body))
+                    .getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("service signature error: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * <h2>校验签名, 任意一项缺失、时间戳超出允许的偏差或者签名不一致都返回 false</h2>
+     */
+    public boolean verify(String serviceName, String timestamp, String method, String path, String query,
+                          byte[] body, String signature) {
+        if (null == key || null == serviceName || null == timestamp || null == method
+                || null == path || null == signature) {
+            return false;
+        }
+        long signedAt;
+        try {
+            signedAt = Long.parseLong(timestamp);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() - signedAt) > maxSkewMillis) {
+            return false;
+        }
+        // 常量时间比较, 不通过响应时间泄露签名
+        return MessageDigest.isEqual(
+                sign(serviceName, signedAt, method, path, query, body).getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * <h2>规范化查询字符串: 参数按编码后的原样排序, 不做解码</h2>
+     */
+    private static String canonicalQuery(String query) {
+        if (null == query) {
+            return "";
+        }
+        String raw = query.startsWith("?") ? query.substring(1) : query;
+        return Arrays.stream(raw.split("&"))
+                .filter(param -> !param.isEmpty())
+                .sorted()
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * <h2>请求体的 SHA-256 摘要, 没有请求体和空请求体相同</h2>
+     */
+    private static String bodyDigest(byte[] body) throws GeneralSecurityException {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        return Base64.getEncoder().encodeToString(sha256.digest(null == body ? new byte[0] : body));
+    }
+}
@@ -0,0 +1,134 @@
+package com.flipped.learn.common.util;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.vo.LoginUserInfo;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * <h1>可复用的 JWT Token 校验器</h1>
+ * 1. RSA 公钥在类加载时只构建一次
+ * 2. 校验通过的 Token 缓存其 LoginUserInfo, 容量有上限, 过期时间不会超过 Token 本身的过期时间
+ */
+public class TokenVerifier {
+
+    /**
+     * 默认缓存容量
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * 默认缓存时间, 单位: 毫秒
+     */
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * RSA 公钥, 类加载时构建
+     */
+    private static final PublicKey PUBLIC_KEY = buildPublicKey();
+
+    /**
+     * 是否开启缓存
+     */
+    private final boolean cacheEnabled;
+
+    /**
+     * 缓存时间上限, 单位: 毫秒
+     */
+    private final long ttlMillis;
+
+    /**
+     * token -> LoginUserInfo
+     */
+    private final LRUCache<String, LoginUserInfo> cache;
+
+    public TokenVerifier() {
+        this(true, DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    public TokenVerifier(boolean cacheEnabled, int capacity, long ttlMillis) {
+        if (capacity <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("token cache capacity and ttl must be positive");
+        }
+        this.cacheEnabled = cacheEnabled;
+        this.ttlMillis = ttlMillis;
+        this.cache = CacheUtil.newLRUCache(capacity, ttlMillis);
+    }
+
+    /**
+     * <h2>校验 Token 并解析出 LoginUserInfo, Token 过期返回 null</h2>
+     */
+    public LoginUserInfo verify(String token) {
+        if (null == token) {
+            return null;
+        }
+        if (cacheEnabled) {
+            // 不刷新最后访问时间, 保证缓存项不会活得比 put 时计算的过期时间更久
+            LoginUserInfo cached = cache.get(token, false);
+            if (null != cached) {
+                return cached;
+            }
+        }
+
+        Claims body = Jwts.parser().setSigningKey(PUBLIC_KEY).parseClaimsJws(token).getBody();
+        Date expiration = body.getExpiration();
+        long now = System.currentTimeMillis();
+        // 没有过期时间或者已经过期了, 返回 null
+        if (null == expiration || expiration.getTime() <= now) {
+            return null;
+        }
+        LoginUserInfo loginUserInfo =
+                JSON.parseObject(body.get(CommonConstant.JWT_USER_INFO_KEY).toString(), LoginUserInfo.class);
+
+        if (cacheEnabled) {
+            cache.put(token, loginUserInfo, Math.min(ttlMillis, expiration.getTime() - now));
+        }
+        return loginUserInfo;
+    }
+
+    /**
+     * <h2>缓存命中次数</h2>
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * <h2>缓存未命中次数 (即真正做了验签的次数)</h2>
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * <h2>当前缓存的 Token 个数</h2>
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * <h2>根据本地存储的公钥获取到 PublicKey 对象</h2>
+     */
+    private static PublicKey buildPublicKey() {
+        try {
+            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(Base64.getDecoder().decode(CommonConstant.PUBLIC_KEY));
+            return KeyFactory.getInstance("RSA").generatePublic(keySpec);
+        } catch (Exception ex) {
+            throw new IllegalStateException("init rsa public key error", ex);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.flipped.learn.accountservice.controller;
+
+import com.flipped.learn.accountservice.service.IBalanceService;
+import com.flipped.learn.servicesdk.account.BalanceInfo;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * <h1>saga 下单的余额内部接口, 只允许订单服务调用</h1>
+ */
+@Api(tags = "用户余额 saga 内部接口")
+@Slf4j
+@RestController
+@RequestMapping("/internal/balance/saga")
+public class BalanceSagaController {
+
+    private final IBalanceService balanceService;
+
+    public BalanceSagaController(IBalanceService balanceService) {
+        this.balanceService = balanceService;
+    }
+
+    @ApiOperation(value = "saga 扣减", notes = "扣减 balanceInfo.userId 的余额, 同一个 txId 只扣减一次", httpMethod = "PUT")
+    @PutMapping("/deduct-balance")
+    public BalanceInfo sagaDeductBalance(@RequestParam String txId, @RequestBody BalanceInfo balanceInfo) {
+        return balanceService.sagaDeductBalance(txId, balanceInfo);
+    }
+
+    @ApiOperation(value = "saga 退回", notes = "订单服务标记补偿之后, 退回 txId 扣减的余额, 可以重复调用", httpMethod = "PUT")
+    @PutMapping("/compensate-balance")
+    public Boolean sagaCompensateBalance(@RequestParam String txId, @RequestParam Long userId) {
+        return balanceService.sagaCompensateBalance(txId, userId);
+    }
+}
@@ -0,0 +1,27 @@
+package com.flipped.learn.accountservice.converter;
+
+import com.flipped.learn.accountservice.enums.BalanceSagaStatus;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * <h1>saga 余额扣减记录状态枚举属性转换器</h1>
+ */
+public class BalanceSagaStatusConverter implements AttributeConverter<BalanceSagaStatus, Integer> {
+
+    /**
+     * <h2>转换成可以存入数据表的基本类型</h2>
+     */
+    @Override
+    public Integer convertToDatabaseColumn(BalanceSagaStatus status) {
+        return status.getStatus();
+    }
+
+    /**
+     * <h2>还原数据表中的字段值到 Java 数据类型</h2>
+     */
+    @Override
+    public BalanceSagaStatus convertToEntityAttribute(Integer status) {
+        return BalanceSagaStatus.of(status);
+    }
+}
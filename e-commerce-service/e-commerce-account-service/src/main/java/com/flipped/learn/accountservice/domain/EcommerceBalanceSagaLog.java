@@ -0,0 +1,81 @@
+package com.flipped.learn.accountservice.domain;
+
+import com.flipped.learn.accountservice.converter.BalanceSagaStatusConverter;
+import com.flipped.learn.accountservice.enums.BalanceSagaStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * <h1>saga 余额扣减记录表实体类定义</h1>
+ * 同一个 saga 事务 id 只会扣减一次、补偿一次; 补偿先于扣减到达时记录为已补偿, 之后的扣减被拒绝
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_balance_saga_log")
+public class EcommerceBalanceSagaLog {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * saga 事务 id
+     */
+    @Column(name = "tx_id", nullable = false)
+    private String txId;
+
+    /**
+     * 用户 id
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * 扣减金额
+     */
+    @Column(name = "amount", nullable = false)
+    private Long amount;
+
+    /**
+     * 状态
+     */
+    @Column(name = "status", nullable = false)
+    @Convert(converter = BalanceSagaStatusConverter.class)
+    private BalanceSagaStatus status;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    public EcommerceBalanceSagaLog(String txId, Long userId, Long amount, BalanceSagaStatus status) {
+
+        this.txId = txId;
+        this.userId = userId;
+        this.amount = amount;
+        this.status = status;
+    }
+}
@@ -0,0 +1,40 @@
+package com.flipped.learn.accountservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * <h1>saga 余额扣减记录状态枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum BalanceSagaStatus {
+
+    DEDUCTED(0, "已经扣减余额"),
+    COMPENSATED(1, "已经补偿 (退回余额或者补偿先于扣减到达)"),
+    ;
+
+    /**
+     * 状态码
+     */
+    private final Integer status;
+
+    /**
+     * 状态描述
+     */
+    private final String description;
+
+    /**
+     * <h2>根据 code 获取到 BalanceSagaStatus</h2>
+     */
+    public static BalanceSagaStatus of(Integer status) {
+        Objects.requireNonNull(status);
+        return Stream.of(values())
+                .filter(bean -> bean.status.equals(status))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(status + " not exists"));
+    }
+}
@@ -2,6 +2,9 @@ package com.flipped.learn.accountservice.repository;
 
 import com.flipped.learn.accountservice.domain.EcommerceBalance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * <h1>EcommerceBalance Dao 接口定义</h1>
@@ -10,4 +13,20 @@ public interface EcommerceBalanceRepository extends JpaRepository<EcommerceBalan
 
     /** 根据 userId 查询 EcommerceBalance 对象 */
     EcommerceBalance findByUserId(Long userId);
+
+    /**
+     * 余额足够时扣减, 检查和扣减在同一条语句中, 并发扣减不会透支:
+     * update t_ecommerce_balance set balance = balance - ? where user_id = ? and balance >= ?
+     * 返回影响行数, 0 表示没有余额记录或者余额不足
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update EcommerceBalance b set b.balance = b.balance - :amount, b.updateTime = CURRENT_TIMESTAMP "
+            + "where b.userId = :userId and b.balance >= :amount")
+    int deductBalance(@Param("userId") Long userId, @Param("amount") Long amount);
+
+    /** 退回余额: update t_ecommerce_balance set balance = balance + ? where user_id = ? */
+    @Modifying(clearAutomatically = true)
+    @Query("update EcommerceBalance b set b.balance = b.balance + :amount, b.updateTime = CURRENT_TIMESTAMP "
+            + "where b.userId = :userId")
+    int returnBalance(@Param("userId") Long userId, @Param("amount") Long amount);
 }
@@ -0,0 +1,17 @@
+package com.flipped.learn.accountservice.repository;
+
+import com.flipped.learn.accountservice.domain.EcommerceBalanceSagaLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import javax.persistence.LockModeType;
+
+/**
+ * <h1>EcommerceBalanceSagaLog Dao 接口定义</h1>
+ * */
+public interface EcommerceBalanceSagaLogRepository extends JpaRepository<EcommerceBalanceSagaLog, Long> {
+
+    /** 根据 saga 事务 id 加锁查询扣减记录: select ... where tx_id = ? for update */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    EcommerceBalanceSagaLog findByTxId(String txId);
+}
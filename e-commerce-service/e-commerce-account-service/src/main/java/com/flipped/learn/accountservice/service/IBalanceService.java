@@ -18,4 +18,14 @@ public interface IBalanceService {
      * @param balanceInfo 代表想要扣减的余额
      */
     BalanceInfo deductBalance(BalanceInfo balanceInfo);
+
+    /**
+     * <h2>saga 下单: 扣减 balanceInfo.userId 的余额, 同一个 txId 只扣减一次</h2>
+     */
+    BalanceInfo sagaDeductBalance(String txId, BalanceInfo balanceInfo);
+
+    /**
+     * <h2>saga 下单: 订单服务标记补偿之后, 退回 txId 扣减的余额, 可以重复调用</h2>
+     */
+    Boolean sagaCompensateBalance(String txId, Long userId);
 }
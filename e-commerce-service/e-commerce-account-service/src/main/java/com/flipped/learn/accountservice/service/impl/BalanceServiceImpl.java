@@ -1,10 +1,16 @@
 package com.flipped.learn.accountservice.service.impl;
 
 import com.flipped.learn.accountservice.domain.EcommerceBalance;
+import com.flipped.learn.accountservice.domain.EcommerceBalanceSagaLog;
+import com.flipped.learn.accountservice.enums.BalanceSagaStatus;
+import com.flipped.learn.accountservice.feign.OrderSagaClient;
 import com.flipped.learn.accountservice.repository.EcommerceBalanceRepository;
+import com.flipped.learn.accountservice.repository.EcommerceBalanceSagaLogRepository;
 import com.flipped.learn.accountservice.service.IBalanceService;
 import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
 import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.common.vo.CommonResponse;
 import com.flipped.learn.common.vo.LoginUserInfo;
 import com.flipped.learn.serviceconfig.context.UserContextHolder;
 import com.flipped.learn.servicesdk.account.BalanceInfo;
@@ -25,6 +31,12 @@ public class BalanceServiceImpl implements IBalanceService {
     @Resource
     private EcommerceBalanceRepository balanceRepository;
 
+    @Resource
+    private EcommerceBalanceSagaLogRepository sagaLogRepository;
+
+    @Resource
+    private OrderSagaClient orderSagaClient;
+
     @Override
     public BalanceInfo getCurrentUserBalanceInfo() {
 
@@ -49,19 +61,89 @@ public class BalanceServiceImpl implements IBalanceService {
     public BalanceInfo deductBalance(BalanceInfo balanceInfo) {
 
         LoginUserInfo loginUserInfo = UserContextHolder.getLoginUserInfo();
+        return deductBalance(loginUserInfo.getId(), balanceInfo);
+    }
 
-        // 扣减用户余额的一个基本原则: 扣减额 <= 当前用户余额
-        EcommerceBalance ecommerceBalance = balanceRepository.findByUserId(loginUserInfo.getId());
-        if (null == ecommerceBalance || ecommerceBalance.getBalance() - balanceInfo.getBalance() < 0) {
+    /**
+     * <h2>扣减指定用户的余额</h2>
+     */
+    private BalanceInfo deductBalance(Long userId, BalanceInfo balanceInfo) {
+
+        // 扣减用户余额的一个基本原则: 扣减额 <= 当前用户余额, 检查和扣减在同一条 UPDATE 中完成
+        if (0 == balanceRepository.deductBalance(userId, balanceInfo.getBalance())) {
             throw new BusinessException(ServiceErrorCodeConstants.BALANCE_NOT_ENOUGH);
         }
 
-        Long sourceBalance = ecommerceBalance.getBalance();
-        ecommerceBalance.setBalance(ecommerceBalance.getBalance() - balanceInfo.getBalance());
+        EcommerceBalance ecommerceBalance = balanceRepository.findByUserId(userId);
         log.info("deduct balance: [{}], [{}], [{}]",
-                balanceRepository.save(ecommerceBalance).getId(), sourceBalance,
-                balanceInfo.getBalance());
+                ecommerceBalance.getId(), ecommerceBalance.getBalance(), balanceInfo.getBalance());
 
         return new BalanceInfo(ecommerceBalance.getUserId(), ecommerceBalance.getBalance());
     }
+
+    @Override
+    public BalanceInfo sagaDeductBalance(String txId, BalanceInfo balanceInfo) {
+
+        // 重复的扣减请求直接返回当前余额; 已经补偿过说明订单已经取消, 不能再扣减
+        EcommerceBalanceSagaLog sagaLog = sagaLogRepository.findByTxId(txId);
+        if (null != sagaLog) {
+            if (BalanceSagaStatus.COMPENSATED == sagaLog.getStatus()) {
+                log.warn("saga already compensated, reject deduct: [{}]", txId);
+                throw new BusinessException(ServiceErrorCodeConstants.ORDER_TRANSACTION_CANCELED);
+            }
+            log.info("saga already deducted: [{}]", txId);
+            EcommerceBalance ecommerceBalance = balanceRepository.findByUserId(sagaLog.getUserId());
+            return new BalanceInfo(ecommerceBalance.getUserId(), ecommerceBalance.getBalance());
+        }
+
+        // 内部接口没有登录用户, 扣减订单服务指定的用户; 并发的重复请求会因为 tx_id 唯一索引冲突而整体回滚
+        BalanceInfo result = deductBalance(balanceInfo.getUserId(), balanceInfo);
+        sagaLogRepository.save(new EcommerceBalanceSagaLog(
+                txId, result.getUserId(), balanceInfo.getBalance(), BalanceSagaStatus.DEDUCTED));
+        return result;
+    }
+
+    @Override
+    public Boolean sagaCompensateBalance(String txId, Long userId) {
+
+        EcommerceBalanceSagaLog sagaLog = sagaLogRepository.findByTxId(txId);
+        if (null != sagaLog && BalanceSagaStatus.COMPENSATED == sagaLog.getStatus()) {
+            return true;
+        }
+        if (null != sagaLog && !sagaLog.getUserId().equals(userId)) {
+            log.error("saga compensate user not match: [{}], [{}], [{}]", txId, sagaLog.getUserId(), userId);
+            throw new BusinessException(GlobalErrorCodeConstants.BAD_REQUEST);
+        }
+        // 只有订单服务已经标记为补偿中的 saga 才能补偿, 不能提前取消还没有创建的订单
+        checkCompensating(txId);
+
+        // 补偿先于扣减到达 (扣减请求超时但还没有执行), 记录下来拒绝之后的扣减
+        if (null == sagaLog) {
+            sagaLogRepository.save(new EcommerceBalanceSagaLog(txId, userId, 0L, BalanceSagaStatus.COMPENSATED));
+            log.info("saga compensate before deduct: [{}]", txId);
+            return true;
+        }
+
+        // 和并发的扣减修改同一行, 直接在 UPDATE 中累加
+        balanceRepository.returnBalance(sagaLog.getUserId(), sagaLog.getAmount());
+        sagaLog.setStatus(BalanceSagaStatus.COMPENSATED);
+        sagaLogRepository.save(sagaLog);
+        log.info("saga compensate balance: [{}], [{}], [{}]", txId, sagaLog.getUserId(), sagaLog.getAmount());
+        return true;
+    }
+
+    /**
+     * <h2>向订单服务确认 saga 正在补偿, 否则拒绝补偿</h2>
+     */
+    private void checkCompensating(String txId) {
+
+        CommonResponse<Boolean> response = orderSagaClient.isCompensating(txId);
+        if (null == response || !GlobalErrorCodeConstants.SUCCESS.getCode().equals(response.getCode())) {
+            throw new RuntimeException("check order saga compensating failure: " + txId);
+        }
+        if (!Boolean.TRUE.equals(response.getData())) {
+            log.warn("order saga is not compensating, reject compensate: [{}]", txId);
+            throw new BusinessException(ServiceErrorCodeConstants.ORDER_TRANSACTION_NOT_COMPENSATING);
+        }
+    }
 }
@@ -0,0 +1,12 @@
+-- 创建 t_ecommerce_balance_saga_log 数据表, saga 模式下单时的余额扣减记录, 保证扣减和补偿的幂等
+CREATE TABLE IF NOT EXISTS `e_commerce_account`.`t_ecommerce_balance_saga_log` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `tx_id` varchar(64) NOT NULL DEFAULT '' COMMENT 'saga 事务 id',
+  `user_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '用户 id',
+  `amount` bigint(20) NOT NULL DEFAULT 0 COMMENT '扣减金额',
+  `status` int(11) NOT NULL DEFAULT 0 COMMENT '状态',
+  `create_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `tx_id` (`tx_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='saga 余额扣减记录表';
@@ -0,0 +1,130 @@
+package com.flipped.learn.accountservice.repository;
+
+import com.flipped.learn.accountservice.domain.EcommerceBalance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>余额条件 UPDATE 的并发测试: 每个线程在自己的事务中扣减或者退回</h1>
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:balance;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = EcommerceBalanceRepositoryTest.JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EcommerceBalanceRepositoryTest {
+
+    private static final long USER_ID = 10L;
+
+    @Autowired
+    private EcommerceBalanceRepository balanceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        balanceRepository.deleteAll();
+        EcommerceBalance balance = new EcommerceBalance();
+        balance.setUserId(USER_ID);
+        balance.setBalance(100L);
+        balanceRepository.save(balance);
+    }
+
+    @Test
+    void concurrentDeductsNeverOverdraw() throws Exception {
+        List<Integer> results = runConcurrently(20, i -> balanceRepository.deductBalance(USER_ID, 10L));
+
+        assertEquals(10, results.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(0L, balanceRepository.findByUserId(USER_ID).getBalance());
+    }
+
+    @Test
+    void concurrentDeductsAndReturnsAreNotLost() throws Exception {
+        // 偶数线程扣减 30, 奇数线程退回 5
+        List<Integer> results = runConcurrently(20, i -> 0 == i % 2
+                ? balanceRepository.deductBalance(USER_ID, 30L)
+                : -balanceRepository.returnBalance(USER_ID, 5L));
+
+        long deducted = results.stream().filter(r -> r > 0).count();
+        assertEquals(10, results.stream().filter(r -> r < 0).count());
+        long balance = balanceRepository.findByUserId(USER_ID).getBalance();
+        assertEquals(100L + 10 * 5L - deducted * 30L, balance);
+        assertTrue(balance >= 0);
+    }
+
+    @Test
+    void missingUserIsNotDeducted() {
+        assertEquals(0, (int) new TransactionTemplate(transactionManager)
+                .execute(status -> balanceRepository.deductBalance(USER_ID + 1, 1L)));
+    }
+
+    private interface BalanceUpdate {
+
+        int apply(int index);
+    }
+
+    /**
+     * <h2>多个线程同时开始, 每个更新在独立的事务中提交</h2>
+     */
+    private List<Integer> runConcurrently(int threads, BalanceUpdate update) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                int index = i;
+                Callable<Integer> task = () -> {
+                    start.await();
+                    return transactionTemplate.execute(status -> update.apply(index));
+                };
+                futures.add(pool.submit(task));
+            }
+            start.countDown();
+            List<Integer> results = new ArrayList<>(threads);
+            for (Future<Integer> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Configuration
+    @EnableJpaAuditing
+    @EnableJpaRepositories(basePackageClasses = EcommerceBalanceRepository.class)
+    @EntityScan(basePackageClasses = EcommerceBalance.class)
+    static class JpaConfig {
+    }
+}
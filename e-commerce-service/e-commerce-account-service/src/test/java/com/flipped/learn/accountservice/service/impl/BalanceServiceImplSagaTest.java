@@ -0,0 +1,147 @@
+package com.flipped.learn.accountservice.service.impl;
+
+import com.flipped.learn.accountservice.domain.EcommerceBalance;
+import com.flipped.learn.accountservice.domain.EcommerceBalanceSagaLog;
+import com.flipped.learn.accountservice.enums.BalanceSagaStatus;
+import com.flipped.learn.accountservice.feign.OrderSagaClient;
+import com.flipped.learn.accountservice.repository.EcommerceBalanceRepository;
+import com.flipped.learn.accountservice.repository.EcommerceBalanceSagaLogRepository;
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.servicesdk.account.BalanceInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>saga 余额扣减和退回测试: 内部接口没有登录用户, 用户由订单服务指定</h1>
+ */
+class BalanceServiceImplSagaTest {
+
+    private static final String TX_ID = "order-1";
+
+    private static final long USER_ID = 10L;
+
+    private final EcommerceBalanceRepository balanceRepository = mock(EcommerceBalanceRepository.class);
+
+    private final EcommerceBalanceSagaLogRepository sagaLogRepository = mock(EcommerceBalanceSagaLogRepository.class);
+
+    private final OrderSagaClient orderSagaClient = mock(OrderSagaClient.class);
+
+    private final BalanceServiceImpl balanceService = new BalanceServiceImpl();
+
+    private final EcommerceBalance balance = new EcommerceBalance();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(balanceService, "balanceRepository", balanceRepository);
+        ReflectionTestUtils.setField(balanceService, "sagaLogRepository", sagaLogRepository);
+        ReflectionTestUtils.setField(balanceService, "orderSagaClient", orderSagaClient);
+        balance.setUserId(USER_ID);
+        balance.setBalance(100L);
+        when(balanceRepository.findByUserId(USER_ID)).thenReturn(balance);
+        // 模拟条件 UPDATE: 余额不足时不扣减, 影响行数为 0
+        when(balanceRepository.deductBalance(eq(USER_ID), anyLong())).thenAnswer(invocation -> {
+            long amount = invocation.getArgument(1);
+            if (balance.getBalance() < amount) {
+                return 0;
+            }
+            balance.setBalance(balance.getBalance() - amount);
+            return 1;
+        });
+        when(balanceRepository.returnBalance(eq(USER_ID), anyLong())).thenAnswer(invocation -> {
+            balance.setBalance(balance.getBalance() + (long) invocation.getArgument(1));
+            return 1;
+        });
+    }
+
+    @Test
+    void deductUsesUserFromRequest() {
+        BalanceInfo result = balanceService.sagaDeductBalance(TX_ID, new BalanceInfo(USER_ID, 30L));
+
+        assertEquals(70L, result.getBalance());
+        ArgumentCaptor<EcommerceBalanceSagaLog> sagaLog = ArgumentCaptor.forClass(EcommerceBalanceSagaLog.class);
+        verify(sagaLogRepository).save(sagaLog.capture());
+        assertEquals(USER_ID, sagaLog.getValue().getUserId());
+    }
+
+    @Test
+    void deductIsRejectedWhenBalanceIsNotEnough() {
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> balanceService.sagaDeductBalance(TX_ID, new BalanceInfo(USER_ID, 101L)));
+
+        assertEquals(ServiceErrorCodeConstants.BALANCE_NOT_ENOUGH.getCode(), ex.getCode());
+        assertEquals(100L, balance.getBalance());
+        verify(sagaLogRepository, never()).save(any());
+    }
+
+    @Test
+    void compensateRefundsOnlyWhenOrderIsCompensating() {
+        when(sagaLogRepository.findByTxId(TX_ID))
+                .thenReturn(new EcommerceBalanceSagaLog(TX_ID, USER_ID, 30L, BalanceSagaStatus.DEDUCTED));
+        when(orderSagaClient.isCompensating(TX_ID)).thenReturn(CommonResponse.success(true));
+
+        assertTrue(balanceService.sagaCompensateBalance(TX_ID, USER_ID));
+
+        assertEquals(130L, balance.getBalance());
+    }
+
+    @Test
+    void compensateIsRejectedWhenOrderIsNotCompensating() {
+        when(sagaLogRepository.findByTxId(TX_ID))
+                .thenReturn(new EcommerceBalanceSagaLog(TX_ID, USER_ID, 30L, BalanceSagaStatus.DEDUCTED));
+        when(orderSagaClient.isCompensating(TX_ID)).thenReturn(CommonResponse.success(false));
+
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> balanceService.sagaCompensateBalance(TX_ID, USER_ID));
+
+        assertEquals(ServiceErrorCodeConstants.ORDER_TRANSACTION_NOT_COMPENSATING.getCode(), ex.getCode());
+        assertEquals(100L, balance.getBalance());
+    }
+
+    @Test
+    void tombstoneForFutureOrderIsRejected() {
+        // 还没有创建的订单, 订单服务中没有 saga
+        when(orderSagaClient.isCompensating(TX_ID)).thenReturn(CommonResponse.success(false));
+
+        assertThrows(BusinessException.class, () -> balanceService.sagaCompensateBalance(TX_ID, USER_ID));
+
+        verify(sagaLogRepository, never()).save(any());
+    }
+
+    @Test
+    void tombstoneKeepsUserFromOrderService() {
+        when(orderSagaClient.isCompensating(TX_ID)).thenReturn(CommonResponse.success(true));
+
+        assertTrue(balanceService.sagaCompensateBalance(TX_ID, USER_ID));
+
+        ArgumentCaptor<EcommerceBalanceSagaLog> sagaLog = ArgumentCaptor.forClass(EcommerceBalanceSagaLog.class);
+        verify(sagaLogRepository).save(sagaLog.capture());
+        assertEquals(USER_ID, sagaLog.getValue().getUserId());
+        assertEquals(BalanceSagaStatus.COMPENSATED, sagaLog.getValue().getStatus());
+    }
+
+    @Test
+    void alreadyCompensatedReturnsWithoutAskingOrderService() {
+        when(sagaLogRepository.findByTxId(TX_ID))
+                .thenReturn(new EcommerceBalanceSagaLog(TX_ID, USER_ID, 30L, BalanceSagaStatus.COMPENSATED));
+
+        assertTrue(balanceService.sagaCompensateBalance(TX_ID, USER_ID));
+
+        verifyNoInteractions(orderSagaClient);
+    }
+}
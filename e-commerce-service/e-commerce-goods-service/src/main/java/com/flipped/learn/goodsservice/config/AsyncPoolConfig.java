@@ -3,15 +3,20 @@ package com.flipped.learn.goodsservice.config;
 import com.alibaba.fastjson.JSON;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import javax.annotation.Resource;
 import java.lang.reflect.Method;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Properties;
 
 /**
  * <h1>自定义异步任务线程池, 异步任务异常捕获处理器</h1>
@@ -21,30 +26,67 @@ import java.util.concurrent.ThreadPoolExecutor;
 @Configuration
 public class AsyncPoolConfig implements AsyncConfigurer {
 
+    @Resource
+    private Environment environment;
+
+    private GoodsAsyncExecutor executor;
+
+    /**
+     * Nacos 中推送的线程池配置, 优先级高于本地配置
+     */
+    private volatile Properties nacosProperties = new Properties();
+
     /**
      * <h2>将自定义的线程池注入到 Spring 容器中</h2>
+     * 配置见 ecommerce.goods.async-pool, 监控指标见 ecommerce.goods.async.*
      */
     @Bean
     @Override
-    public Executor getAsyncExecutor() {
+    public GoodsAsyncExecutor getAsyncExecutor() {
+        if (null == executor) {
+            executor = new GoodsAsyncExecutor(bindProperties());
+        }
+        return executor;
+    }
 
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    /**
+     * <h2>本地配置发生变化 (/actuator/refresh) 时调整线程池</h2>
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        reconfigure();
+    }
 
-        executor.setCorePoolSize(10);
-        executor.setMaxPoolSize(20);
-        executor.setQueueCapacity(20);
-        executor.setKeepAliveSeconds(60);
-        executor.setThreadNamePrefix("Goods-Service-Async-");   // 这个非常重要
+    /**
+     * <h2>收到 Nacos 推送的线程池配置时调整线程池, 见 {@link AsyncPoolNacosListener}</h2>
+     */
+    public void onNacosConfigChange(Properties properties) {
+        nacosProperties = properties;
+        reconfigure();
+    }
 
-        // 等待所有任务结果候再关闭线程池
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(60);
-        // 定义拒绝策略
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        // 初始化线程池, 初始化 core 线程
-        executor.initialize();
+    private void reconfigure() {
+        try {
+            getAsyncExecutor().reconfigure(bindProperties());
+        } catch (RuntimeException ex) {
+            // 配置不合法或者无法绑定时保留当前的线程池配置
+            log.error("ignore invalid async pool properties: [{}]", ex.getMessage());
+        }
+    }
 
-        return executor;
+    /**
+     * <h2>先绑定本地配置, 再用 Nacos 中的配置覆盖</h2>
+     */
+    private AsyncPoolProperties bindProperties() {
+        AsyncPoolProperties properties = Binder.get(environment)
+                .bind(AsyncPoolProperties.PREFIX, AsyncPoolProperties.class)
+                .orElseGet(AsyncPoolProperties::new);
+        Properties overrides = nacosProperties;
+        if (!overrides.isEmpty()) {
+            new Binder(new MapConfigurationPropertySource(overrides))
+                    .bind(AsyncPoolProperties.PREFIX, Bindable.ofInstance(properties));
+        }
+        return properties;
     }
 
     /**
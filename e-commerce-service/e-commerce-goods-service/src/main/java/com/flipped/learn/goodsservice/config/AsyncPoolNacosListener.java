@@ -0,0 +1,139 @@
+package com.flipped.learn.goodsservice.config;
+
+import com.alibaba.nacos.api.NacosFactory;
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.Listener;
+import com.alibaba.nacos.api.exception.NacosException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * <h1>监听 Nacos 中的异步任务线程池配置, 配置变化时调整线程池</h1>
+ * 配置内容与 application.yml 中的 ecommerce.goods.async-pool 相同, 支持 yaml 和 properties 格式,
+ * 只需要写需要覆盖的配置项; 配置被删除时恢复本地配置
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "ecommerce.goods.async-pool-nacos", name = "enabled", havingValue = "true")
+public class AsyncPoolNacosListener {
+
+    /**
+     * 读取配置的超时时间
+     */
+    private static final long DEFAULT_TIMEOUT = 30000;
+
+    @Value("${spring.cloud.nacos.discovery.server-addr}")
+    private String serverAddr;
+
+    @Value("${spring.cloud.nacos.discovery.namespace}")
+    private String namespace;
+
+    @Value("${ecommerce.goods.async-pool-nacos.data-id:goods-service-async-pool.yaml}")
+    private String dataId;
+
+    @Value("${ecommerce.goods.async-pool-nacos.group:DEFAULT_GROUP}")
+    private String group;
+
+    @Resource
+    private AsyncPoolConfig asyncPoolConfig;
+
+    /**
+     * <h2>在后台线程中连接 Nacos, 启动过程不依赖 Nacos 的响应</h2>
+     */
+    @PostConstruct
+    public void init() {
+        Thread thread = new Thread(() -> {
+            ConfigService configService = initConfigService();
+            if (null == configService) {
+                log.error("init async pool config service fail");
+                return;
+            }
+            start(configService);
+        }, "Goods-Async-Pool-Config");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * <h2>加载当前配置并设置监听器</h2>
+     * 与 Nacos 客户端的创建分开, 便于使用内存中的 ConfigService 实现做测试
+     */
+    void start(ConfigService configService) {
+        try {
+            String configInfo = configService.getConfig(dataId, group, DEFAULT_TIMEOUT);
+            log.info("get current async pool config: [{}]", configInfo);
+            apply(configInfo);
+        } catch (Exception ex) {
+            log.error("load async pool config error: [{}]", ex.getMessage(), ex);
+        }
+
+        try {
+            configService.addListener(dataId, group, new Listener() {
+                /**
+                 * <h2>调整线程池很快, 在 Nacos 通知线程中执行即可</h2>
+                 * */
+                @Override
+                public Executor getExecutor() {
+                    return null;
+                }
+
+                @Override
+                public void receiveConfigInfo(String configInfo) {
+                    log.info("receive async pool config: [{}]", configInfo);
+                    apply(configInfo);
+                }
+            });
+        } catch (NacosException ex) {
+            log.error("listen async pool config error: [{}]", ex.getMessage(), ex);
+        }
+    }
+
+    private void apply(String configInfo) {
+        try {
+            asyncPoolConfig.onNacosConfigChange(parse(configInfo));
+        } catch (Exception ex) {
+            // 格式错误时保留当前的线程池配置
+            log.error("parse async pool config error: [{}]", ex.getMessage(), ex);
+        }
+    }
+
+    private Properties parse(String configInfo) throws IOException {
+        Properties properties = new Properties();
+        if (StringUtils.isBlank(configInfo)) {
+            return properties;
+        }
+        if (dataId.endsWith(".properties")) {
+            properties.load(new StringReader(configInfo));
+            return properties;
+        }
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ByteArrayResource(configInfo.getBytes(StandardCharsets.UTF_8)));
+        Properties parsed = yaml.getObject();
+        return null == parsed ? properties : parsed;
+    }
+
+    private ConfigService initConfigService() {
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("serverAddr", serverAddr);
+            properties.setProperty("namespace", namespace);
+            return NacosFactory.createConfigService(properties);
+        } catch (Exception ex) {
+            log.error("init async pool nacos config error: [{}]", ex.getMessage(), ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.flipped.learn.goodsservice.config;
+
+import com.flipped.learn.goodsservice.enums.AsyncQueueType;
+import com.flipped.learn.goodsservice.enums.AsyncRejectPolicy;
+import lombok.Data;
+
+/**
+ * <h1>异步任务线程池配置, 前缀 ecommerce.goods.async-pool</h1>
+ */
+@Data
+public class AsyncPoolProperties {
+
+    public static final String PREFIX = "ecommerce.goods.async-pool";
+
+    private int corePoolSize = 10;
+
+    private int maxPoolSize = 20;
+
+    /**
+     * 队列容量, 只对 LINKED 队列生效
+     */
+    private int queueCapacity = 20;
+
+    private AsyncQueueType queueType = AsyncQueueType.LINKED;
+
+    private int keepAliveSeconds = 60;
+
+    private AsyncRejectPolicy rejectPolicy = AsyncRejectPolicy.CALLER_RUNS;
+
+    /**
+     * <h2>校验配置, 不合法时抛出异常</h2>
+     */
+    public void validate() {
+        if (corePoolSize < 1 || maxPoolSize < corePoolSize || queueCapacity < 0 || keepAliveSeconds < 0) {
+            throw new IllegalArgumentException("invalid async pool properties: " + this);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.flipped.learn.goodsservice.config;
+
+import com.flipped.learn.goodsservice.enums.AsyncQueueType;
+import com.flipped.learn.goodsservice.enums.AsyncRejectPolicy;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>商品服务异步任务线程池</h1>
+ * 线程数、队列容量、拒绝策略可以在运行时调整; 修改队列类型时创建新的线程池, 旧线程池执行完已经提交的任务后关闭
+ */
+@Slf4j
+public class GoodsAsyncExecutor implements AsyncTaskExecutor, MeterBinder, DisposableBean {
+
+    private static final String THREAD_NAME_PREFIX = "Goods-Service-Async-";
+
+    /**
+     * 等待所有任务执行完再关闭线程池的最长时间
+     */
+    private static final long AWAIT_TERMINATION_SECONDS = 60;
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    private volatile AsyncPoolProperties properties;
+
+    private volatile ThreadPoolExecutor pool;
+
+    /**
+     * 被拒绝 (没有执行) 的任务数
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 在提交任务的线程中执行的任务数
+     */
+    private final LongAdder callerRuns = new LongAdder();
+
+    /**
+     * 绑定 MeterRegistry 之后才有值
+     */
+    private volatile Timer waitTimer;
+    private volatile Timer executionTimer;
+
+    public GoodsAsyncExecutor(AsyncPoolProperties properties) {
+        properties.validate();
+        this.properties = properties;
+        this.pool = newPool(properties);
+    }
+
+    /**
+     * <h2>调整线程池配置</h2>
+     * 线程数、队列容量、拒绝策略直接修改当前线程池; 队列类型变化时替换线程池
+     */
+    public synchronized void reconfigure(AsyncPoolProperties newProperties) {
+        newProperties.validate();
+        AsyncPoolProperties oldProperties = this.properties;
+        if (oldProperties.equals(newProperties)) {
+            return;
+        }
+
+        if (oldProperties.getQueueType() != newProperties.getQueueType()) {
+            ThreadPoolExecutor oldPool = this.pool;
+            this.properties = newProperties;
+            this.pool = newPool(newProperties);
+            oldPool.shutdown();
+        } else {
+            ThreadPoolExecutor current = this.pool;
+            // 核心线程数不能大于最大线程数, 调整顺序取决于调大还是调小
+            if (newProperties.getCorePoolSize() > current.getMaximumPoolSize()) {
+                current.setMaximumPoolSize(newProperties.getMaxPoolSize());
+                current.setCorePoolSize(newProperties.getCorePoolSize());
+            } else {
+                current.setCorePoolSize(newProperties.getCorePoolSize());
+                current.setMaximumPoolSize(newProperties.getMaxPoolSize());
+            }
+            current.setKeepAliveTime(newProperties.getKeepAliveSeconds(), TimeUnit.SECONDS);
+            if (current.getQueue() instanceof ResizableLinkedBlockingQueue) {
+                ((ResizableLinkedBlockingQueue) current.getQueue()).setCapacity(newProperties.getQueueCapacity());
+            }
+            this.properties = newProperties;
+        }
+        log.info("goods async executor reconfigured: [{}] -> [{}]", oldProperties, newProperties);
+    }
+
+    public AsyncPoolProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * <h2>当前提交的任务是否会被拒绝</h2>
+     * 只有拒绝策略是 REJECT 并且线程和队列都已经用满时返回 true; 只是提交前的快速检查, 提交时仍然可能被拒绝
+     */
+    public boolean wouldReject() {
+        if (AsyncRejectPolicy.REJECT != properties.getRejectPolicy()) {
+            return false;
+        }
+        ThreadPoolExecutor current = this.pool;
+        return current.getActiveCount() >= current.getMaximumPoolSize()
+                && current.getQueue().remainingCapacity() <= 0;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitNanos = System.nanoTime();
+        pool.execute(() -> {
+            long startNanos = System.nanoTime();
+            record(waitTimer, startNanos - submitNanos);
+            try {
+                task.run();
+            } finally {
+                record(executionTimer, System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        execute(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        FutureTask<Object> future = new FutureTask<>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ecommerce.goods.async.pool.active", this, e -> e.pool.getActiveCount())
+                .description("threads actively executing goods async tasks").register(registry);
+        Gauge.builder("ecommerce.goods.async.pool.size", this, e -> e.pool.getPoolSize())
+                .description("current threads of goods async pool").register(registry);
+        Gauge.builder("ecommerce.goods.async.pool.max", this, e -> e.pool.getMaximumPoolSize())
+                .description("max threads of goods async pool").register(registry);
+        Gauge.builder("ecommerce.goods.async.queue.size", this, e -> e.pool.getQueue().size())
+                .description("goods async tasks waiting in queue").register(registry);
+        Gauge.builder("ecommerce.goods.async.queue.remaining", this, e -> e.pool.getQueue().remainingCapacity())
+                .description("remaining capacity of goods async queue").register(registry);
+        FunctionCounter.builder("ecommerce.goods.async.rejected", rejected, LongAdder::sum)
+                .description("goods async tasks rejected without running").register(registry);
+        FunctionCounter.builder("ecommerce.goods.async.caller.runs", callerRuns, LongAdder::sum)
+                .description("goods async tasks run on the submitting thread").register(registry);
+        waitTimer = Timer.builder("ecommerce.goods.async.task.wait")
+                .description("time goods async tasks wait in queue")
+                .publishPercentileHistogram().register(registry);
+        executionTimer = Timer.builder("ecommerce.goods.async.task.execution")
+                .description("time goods async tasks take to run")
+                .publishPercentileHistogram().register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        ThreadPoolExecutor current = this.pool;
+        current.shutdown();
+        if (!current.awaitTermination(AWAIT_TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("goods async executor not terminated in [{}s]", AWAIT_TERMINATION_SECONDS);
+        }
+    }
+
+    private ThreadPoolExecutor newPool(AsyncPoolProperties p) {
+        BlockingQueue<Runnable> queue = AsyncQueueType.SYNCHRONOUS == p.getQueueType()
+                ? new SynchronousQueue<>()
+                : new ResizableLinkedBlockingQueue(p.getQueueCapacity());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                p.getCorePoolSize(), p.getMaxPoolSize(), p.getKeepAliveSeconds(), TimeUnit.SECONDS, queue,
+                r -> new Thread(r, THREAD_NAME_PREFIX + threadIndex.incrementAndGet()),
+                this::rejectedExecution
+        );
+        // 初始化线程池, 初始化 core 线程
+        executor.prestartAllCoreThreads();
+        return executor;
+    }
+
+    /**
+     * <h2>线程池和队列都满时的处理</h2>
+     */
+    private void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        ThreadPoolExecutor current = this.pool;
+        // 提交任务时线程池刚好被替换, 交给新的线程池
+        if (executor != current) {
+            current.execute(task);
+            return;
+        }
+        if (AsyncRejectPolicy.CALLER_RUNS == properties.getRejectPolicy() && !executor.isShutdown()) {
+            callerRuns.increment();
+            log.warn("goods async executor is busy, run task in caller thread: [{}]",
+                    Thread.currentThread().getName());
+            task.run();
+            return;
+        }
+        rejected.increment();
+        throw new RejectedExecutionException(String.format(
+                "goods async executor is busy, active: %d, queued: %d",
+                executor.getActiveCount(), executor.getQueue().size()));
+    }
+
+    private static void record(Timer timer, long nanos) {
+        if (null != timer) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.flipped.learn.goodsservice.config;
+
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.goodsservice.service.cache.ShardedGoodsDict;
+import com.flipped.learn.goodsservice.service.cache.SimpleGoodsInfoCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <h1>商品多级缓存配置: 失效通知订阅与缓存指标</h1>
+ */
+@Configuration
+public class GoodsCacheConfig {
+
+    /**
+     * <h2>订阅商品缓存失效通知, 清除本地 L1 缓存</h2>
+     */
+    @Bean
+    public RedisMessageListenerContainer goodsCacheInvalidateListenerContainer(
+            RedisConnectionFactory connectionFactory, SimpleGoodsInfoCache simpleGoodsInfoCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> simpleGoodsInfoCache.onInvalidate(
+                        new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(GoodsConstant.ECOMMERCE_GOODS_INVALIDATE_CHANNEL)
+        );
+        return container;
+    }
+
+    /**
+     * <h2>启动后在后台把旧的单 key 商品字典迁移到分片 key 中</h2>
+     */
+    @Bean
+    @ConditionalOnProperty(name = "ecommerce.goods.cache.dict.migrate-on-startup", havingValue = "true")
+    public ApplicationRunner goodsDictMigrationRunner(ShardedGoodsDict shardedGoodsDict) {
+        return args -> {
+            Thread thread = new Thread(shardedGoodsDict::migrateLegacy, "Goods-Dict-Migrator");
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    /**
+     * <h2>L1、L2 命中次数与命中率, 数据表加载次数</h2>
+     */
+    @Bean
+    public MeterBinder simpleGoodsInfoCacheMetrics(SimpleGoodsInfoCache cache) {
+        return registry -> {
+            FunctionCounter.builder("ecommerce.goods.cache.hits", cache, SimpleGoodsInfoCache::getLocalHits)
+                    .tag("level", "l1").register(registry);
+            FunctionCounter.builder("ecommerce.goods.cache.misses", cache, SimpleGoodsInfoCache::getLocalMisses)
+                    .tag("level", "l1").register(registry);
+            FunctionCounter.builder("ecommerce.goods.cache.hits", cache, SimpleGoodsInfoCache::getRedisHits)
+                    .tag("level", "l2").register(registry);
+            FunctionCounter.builder("ecommerce.goods.cache.misses", cache, SimpleGoodsInfoCache::getRedisMisses)
+                    .tag("level", "l2").register(registry);
+            Gauge.builder("ecommerce.goods.cache.hit.ratio", cache, SimpleGoodsInfoCache::getLocalHitRatio)
+                    .tag("level", "l1").register(registry);
+            Gauge.builder("ecommerce.goods.cache.hit.ratio", cache, SimpleGoodsInfoCache::getRedisHitRatio)
+                    .tag("level", "l2").register(registry);
+            FunctionCounter.builder("ecommerce.goods.cache.loads", cache, SimpleGoodsInfoCache::getDbLoads)
+                    .description("goods ids loaded from db").register(registry);
+            FunctionCounter.builder("ecommerce.goods.cache.loads.coalesced", cache,
+                    SimpleGoodsInfoCache::getCoalescedLoads)
+                    .description("goods ids served by another thread's db load").register(registry);
+            Gauge.builder("ecommerce.goods.cache.size", cache, SimpleGoodsInfoCache::getLocalSize)
+                    .tag("level", "l1").register(registry);
+        };
+    }
+}
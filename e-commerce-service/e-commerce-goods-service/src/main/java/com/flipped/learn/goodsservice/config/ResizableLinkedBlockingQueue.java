@@ -0,0 +1,30 @@
+package com.flipped.learn.goodsservice.config;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <h1>容量可以动态调整的有界队列</h1>
+ * 线程池只通过 offer 入队, 这里只限制 offer; 调小容量时已经在队列中的任务不受影响
+ */
+class ResizableLinkedBlockingQueue extends LinkedBlockingQueue<Runnable> {
+
+    private volatile int capacity;
+
+    ResizableLinkedBlockingQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized boolean offer(Runnable runnable) {
+        return size() < capacity && super.offer(runnable);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+}
@@ -9,4 +9,40 @@ public interface GoodsConstant {
      * redis key
      */
     String ECOMMERCE_GOODS_DICT_KEY = "ecommerce:goods:dict:20230501";
+
+    /**
+     * 分片后的商品 redis key 前缀, 完整的 key 是前缀加分片编号
+     */
+    String ECOMMERCE_GOODS_DICT_SHARD_KEY_PREFIX = "ecommerce:goods:dict:20230501:";
+
+    /**
+     * 数据表中不存在的商品的空值标记 key 前缀, 完整的 key 是前缀加商品 id, 依靠 Redis 过期时间自动删除
+     */
+    String ECOMMERCE_GOODS_MISSING_KEY_PREFIX = "ecommerce:goods:dict:missing:";
+
+    /**
+     * 旧的单 key 迁移到分片 key 时使用的分布式锁
+     */
+    String ECOMMERCE_GOODS_DICT_MIGRATE_LOCK_KEY = "ecommerce:goods:dict:migrate:lock";
+
+    /**
+     * 商品本地缓存失效通知的 redis channel, 消息内容是逗号分隔的商品 id
+     */
+    String ECOMMERCE_GOODS_INVALIDATE_CHANNEL = "ecommerce:goods:dict:invalidate";
+
+    /**
+     * Redis 库存 key 前缀, 完整的 key 是前缀加商品 id; key 存在表示该商品的库存由 Redis 预扣
+     * 所有库存相关的 key 使用相同的 hash tag, 在集群模式下落在同一个 slot, 可以在一个 Lua 脚本中操作
+     */
+    String ECOMMERCE_GOODS_INVENTORY_STOCK_KEY_PREFIX = "{ecommerce:goods:inventory}:stock:";
+
+    /**
+     * Redis 库存预扣记录 hash: 预扣单号 -> 预扣时间|goodsId=count,...
+     */
+    String ECOMMERCE_GOODS_INVENTORY_PENDING_KEY = "{ecommerce:goods:inventory}:pending";
+
+    /**
+     * 异步任务执行信息 redis key 前缀, 完整的 key 是前缀加任务 id
+     */
+    String ECOMMERCE_GOODS_ASYNC_TASK_KEY_PREFIX = "ecommerce:goods:async:task:";
 }
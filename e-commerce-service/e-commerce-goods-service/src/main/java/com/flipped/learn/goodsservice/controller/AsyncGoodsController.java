@@ -1,15 +1,23 @@
 package com.flipped.learn.goodsservice.controller;
 
+import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.goodsservice.enums.GoodsImportFormat;
 import com.flipped.learn.goodsservice.service.async.AsyncTaskManager;
 import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <h1>异步任务服务对外提供的 API</h1>
@@ -30,9 +38,30 @@ public class AsyncGoodsController {
         return asyncTaskManager.submit(goodsInfos);
     }
 
+    @ApiOperation(value = "流式导入商品", notes = "请求体是 NDJSON 或者 CSV 文件, 分批导入商品表",
+            httpMethod = "POST")
+    @PostMapping(value = "/import-goods-stream", consumes = {"application/x-ndjson", "text/csv"})
+    public AsyncTaskInfo importGoodsStream(HttpServletRequest request) throws IOException {
+        GoodsImportFormat format = GoodsImportFormat.of(request.getContentType());
+        try (InputStream body = request.getInputStream()) {
+            return asyncTaskManager.submit(body, format);
+        }
+    }
+
     @ApiOperation(value = "查询状态", notes = "查询异步任务的执行状态", httpMethod = "GET")
     @GetMapping("/task-info")
     public AsyncTaskInfo getTaskInfo(@RequestParam String taskId) {
         return asyncTaskManager.getTaskInfo(taskId);
     }
+
+    /**
+     * <h2>异步任务线程池拒绝了任务 (拒绝策略是 REJECT), 返回 429 让调用方稍后重试</h2>
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public CommonResponse<?> handleRejected(RejectedExecutionException ex) {
+        log.warn("async goods task is rejected: [{}]", ex.getMessage());
+        return new CommonResponse<>(GlobalErrorCodeConstants.TOO_MANY_REQUESTS.getCode(),
+                GlobalErrorCodeConstants.TOO_MANY_REQUESTS.getMessage());
+    }
 }
@@ -4,6 +4,7 @@ import com.flipped.learn.goodsservice.service.IGoodsService;
 import com.flipped.learn.goodsservice.vo.PageSimpleGoodsInfo;
 import com.flipped.learn.servicesdk.common.TableId;
 import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
 import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
 import io.swagger.annotations.Api;
@@ -40,6 +41,15 @@ public class GoodsController {
         return goodsService.getSimpleGoodsInfoByPage(page);
     }
 
+    @ApiOperation(value = "简单商品信息", notes = "游标分页获取简单商品信息, lastId 是上一页返回的 lastId",
+            httpMethod = "GET")
+    @GetMapping("/cursor-simple-goods-info")
+    public PageSimpleGoodsInfo getSimpleGoodsInfoByCursor(
+            @RequestParam(required = false) Long lastId,
+            @RequestParam(required = false, defaultValue = "10") int limit) {
+        return goodsService.getSimpleGoodsInfoByCursor(lastId, limit);
+    }
+
     @ApiOperation(value = "简单商品信息", notes = "根据 TableId 查询简单商品信息",
             httpMethod = "POST")
     @PostMapping("/simple-goods-info")
@@ -53,4 +63,25 @@ public class GoodsController {
             @RequestBody List<DeductGoodsInventory> deductGoodsInventories) {
         return goodsService.deductGoodsInventory(deductGoodsInventories);
     }
+
+    @ApiOperation(value = "扣减商品库存并返回价格", notes = "扣减商品库存, 返回扣减时的商品价格, 用于下单计算总价",
+            httpMethod = "PUT")
+    @PutMapping("/deduct-goods-inventory-with-price")
+    public List<DeductedGoodsInfo> deductGoodsInventoryWithPrice(
+            @RequestBody List<DeductGoodsInventory> deductGoodsInventories) {
+        return goodsService.deductGoodsInventoryWithPrice(deductGoodsInventories);
+    }
+
+    @ApiOperation(value = "开启 Redis 库存", notes = "把商品库存加载到 Redis, 之后在 Redis 中预扣",
+            httpMethod = "PUT")
+    @PutMapping("/redis-inventory")
+    public Long enableRedisInventory(@RequestParam Long goodsId) {
+        return goodsService.enableRedisInventory(goodsId);
+    }
+
+    @ApiOperation(value = "关闭 Redis 库存", notes = "之后直接扣减商品表的库存", httpMethod = "DELETE")
+    @DeleteMapping("/redis-inventory")
+    public Boolean disableRedisInventory(@RequestParam Long goodsId) {
+        return goodsService.disableRedisInventory(goodsId);
+    }
 }
@@ -0,0 +1,45 @@
+package com.flipped.learn.goodsservice.controller;
+
+import com.flipped.learn.goodsservice.service.IGoodsService;
+import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * <h1>saga 下单的库存内部接口, 只允许订单服务调用</h1>
+ */
+@Api(tags = "商品库存 saga 内部接口")
+@Slf4j
+@RestController
+@RequestMapping("/internal/goods/saga")
+public class GoodsSagaController {
+
+    @Resource
+    private IGoodsService goodsService;
+
+    @ApiOperation(value = "saga 扣减商品库存", notes = "saga 下单时扣减商品库存并返回价格, 同一个 txId 只扣减一次",
+            httpMethod = "PUT")
+    @PutMapping("/deduct-goods-inventory")
+    public List<DeductedGoodsInfo> sagaDeductGoodsInventory(
+            @RequestParam String txId,
+            @RequestBody List<DeductGoodsInventory> deductGoodsInventories) {
+        return goodsService.sagaDeductGoodsInventory(txId, deductGoodsInventories);
+    }
+
+    @ApiOperation(value = "saga 归还商品库存", notes = "订单服务标记补偿之后, 归还 txId 扣减的库存, 可以重复调用",
+            httpMethod = "PUT")
+    @PutMapping("/compensate-goods-inventory")
+    public Boolean sagaCompensateGoodsInventory(@RequestParam String txId) {
+        return goodsService.sagaCompensateGoodsInventory(txId);
+    }
+}
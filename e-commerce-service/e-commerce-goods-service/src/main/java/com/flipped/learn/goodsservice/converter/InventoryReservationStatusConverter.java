@@ -0,0 +1,27 @@
+package com.flipped.learn.goodsservice.converter;
+
+import com.flipped.learn.goodsservice.enums.InventoryReservationStatus;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * <h1>库存预扣记录状态枚举属性转换器</h1>
+ */
+public class InventoryReservationStatusConverter implements AttributeConverter<InventoryReservationStatus, Integer> {
+
+    /**
+     * <h2>转换成可以存入数据表的基本类型</h2>
+     */
+    @Override
+    public Integer convertToDatabaseColumn(InventoryReservationStatus status) {
+        return status.getStatus();
+    }
+
+    /**
+     * <h2>还原数据表中的字段值到 Java 数据类型</h2>
+     */
+    @Override
+    public InventoryReservationStatus convertToEntityAttribute(Integer status) {
+        return InventoryReservationStatus.of(status);
+    }
+}
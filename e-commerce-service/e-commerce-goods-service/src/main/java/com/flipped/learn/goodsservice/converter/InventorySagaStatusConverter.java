@@ -0,0 +1,27 @@
+package com.flipped.learn.goodsservice.converter;
+
+import com.flipped.learn.goodsservice.enums.InventorySagaStatus;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * <h1>saga 库存扣减记录状态枚举属性转换器</h1>
+ */
+public class InventorySagaStatusConverter implements AttributeConverter<InventorySagaStatus, Integer> {
+
+    /**
+     * <h2>转换成可以存入数据表的基本类型</h2>
+     */
+    @Override
+    public Integer convertToDatabaseColumn(InventorySagaStatus status) {
+        return status.getStatus();
+    }
+
+    /**
+     * <h2>还原数据表中的字段值到 Java 数据类型</h2>
+     */
+    @Override
+    public InventorySagaStatus convertToEntityAttribute(Integer status) {
+        return InventorySagaStatus.of(status);
+    }
+}
@@ -139,6 +139,13 @@ public class EcommerceGoods {
         return ecommerceGoods;
     }
 
+    /**
+     * <h2>商品类别、品牌、名称组合在一起, 与唯一索引 goods_category_brand_name 对应</h2>
+     */
+    public String jointInfo() {
+        return String.format("%s,%s,%s", goodsCategory.getCode(), brandCategory.getCode(), goodsName);
+    }
+
     /**
      * <h2>将实体对象转成 GoodsInfo 对象</h2>
      */
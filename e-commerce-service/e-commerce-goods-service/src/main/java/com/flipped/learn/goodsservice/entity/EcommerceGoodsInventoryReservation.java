@@ -0,0 +1,88 @@
+package com.flipped.learn.goodsservice.entity;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.flipped.learn.goodsservice.converter.InventoryReservationStatusConverter;
+import com.flipped.learn.goodsservice.enums.InventoryReservationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * <h1>Redis 库存预扣记录表实体类定义</h1>
+ * 与订单的分支事务一起提交, 全局事务回滚时由 Seata 删除
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_goods_inventory_reservation")
+public class EcommerceGoodsInventoryReservation {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * Redis 预扣单号
+     */
+    @Column(name = "reservation_id", nullable = false)
+    private String reservationId;
+
+    /**
+     * 预扣明细, json 字符串存储: goodsId -> 扣减数量
+     */
+    @Column(name = "deduct_detail", nullable = false)
+    private String deductDetail;
+
+    /**
+     * 状态
+     */
+    @Column(name = "status", nullable = false)
+    @Convert(converter = InventoryReservationStatusConverter.class)
+    private InventoryReservationStatus status;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    /**
+     * <h2>创建一条新的预扣记录</h2>
+     */
+    public static EcommerceGoodsInventoryReservation reserved(String reservationId, Map<Long, Integer> goodsId2Count) {
+        EcommerceGoodsInventoryReservation reservation = new EcommerceGoodsInventoryReservation();
+        reservation.setReservationId(reservationId);
+        reservation.setDeductDetail(JSON.toJSONString(goodsId2Count));
+        reservation.setStatus(InventoryReservationStatus.RESERVED);
+        return reservation;
+    }
+
+    /**
+     * <h2>解析预扣明细</h2>
+     */
+    public Map<Long, Integer> toGoodsId2Count() {
+        return JSON.parseObject(deductDetail, new TypeReference<Map<Long, Integer>>() {});
+    }
+}
@@ -0,0 +1,120 @@
+package com.flipped.learn.goodsservice.entity;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.flipped.learn.goodsservice.converter.InventorySagaStatusConverter;
+import com.flipped.learn.goodsservice.enums.InventorySagaStatus;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>saga 库存扣减记录表实体类定义</h1>
+ * 同一个 saga 事务 id 只会扣减一次、补偿一次; 补偿先于扣减到达时记录为已补偿, 之后的扣减被拒绝
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_goods_inventory_saga_log")
+public class EcommerceGoodsInventorySagaLog {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * saga 事务 id
+     */
+    @Column(name = "tx_id", nullable = false)
+    private String txId;
+
+    /**
+     * 扣减明细, json 字符串存储
+     */
+    @Column(name = "deduct_detail", nullable = false)
+    private String deductDetail;
+
+    /**
+     * 进程内预留扣减的部分, json 字符串存储: goodsId -> 数量
+     */
+    @Column(name = "local_detail", nullable = false)
+    private String localDetail;
+
+    /**
+     * 状态
+     */
+    @Column(name = "status", nullable = false)
+    @Convert(converter = InventorySagaStatusConverter.class)
+    private InventorySagaStatus status;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    /**
+     * <h2>创建一条已经扣减的记录</h2>
+     */
+    public static EcommerceGoodsInventorySagaLog deducted(String txId, List<DeductedGoodsInfo> deductedGoods,
+                                                          Map<Long, Integer> localGoodsId2Count) {
+        EcommerceGoodsInventorySagaLog sagaLog = new EcommerceGoodsInventorySagaLog();
+        sagaLog.setTxId(txId);
+        sagaLog.setDeductDetail(JSON.toJSONString(deductedGoods));
+        sagaLog.setLocalDetail(JSON.toJSONString(localGoodsId2Count));
+        sagaLog.setStatus(InventorySagaStatus.DEDUCTED);
+        return sagaLog;
+    }
+
+    /**
+     * <h2>补偿先于扣减到达, 创建一条已经补偿的空记录</h2>
+     */
+    public static EcommerceGoodsInventorySagaLog compensated(String txId) {
+        EcommerceGoodsInventorySagaLog sagaLog = deducted(txId, Collections.emptyList(), Collections.emptyMap());
+        sagaLog.setStatus(InventorySagaStatus.COMPENSATED);
+        return sagaLog;
+    }
+
+    /**
+     * <h2>解析扣减明细</h2>
+     */
+    public List<DeductedGoodsInfo> toDeductedGoods() {
+        return JSON.parseArray(deductDetail, DeductedGoodsInfo.class);
+    }
+
+    /**
+     * <h2>解析进程内预留扣减的部分</h2>
+     */
+    public Map<Long, Integer> toLocalGoodsId2Count() {
+        if (StringUtils.isBlank(localDetail)) {
+            return new HashMap<>();
+        }
+        return JSON.parseObject(localDetail, new TypeReference<Map<Long, Integer>>() {});
+    }
+}
@@ -0,0 +1,21 @@
+package com.flipped.learn.goodsservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * <h1>异步任务线程池队列类型枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum AsyncQueueType {
+
+    LINKED("有界链表队列, 容量可以动态调整"),
+    SYNCHRONOUS("不排队, 没有空闲线程时直接创建线程或者触发拒绝策略"),
+    ;
+
+    /**
+     * 队列类型描述
+     */
+    private final String description;
+}
@@ -0,0 +1,21 @@
+package com.flipped.learn.goodsservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * <h1>异步任务线程池拒绝策略枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum AsyncRejectPolicy {
+
+    CALLER_RUNS("线程池和队列都满时在提交任务的线程 (请求线程) 中执行"),
+    REJECT("线程池和队列都满时拒绝任务, 接口返回 429"),
+    ;
+
+    /**
+     * 拒绝策略描述
+     */
+    private final String description;
+}
@@ -0,0 +1,39 @@
+package com.flipped.learn.goodsservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.stream.Stream;
+
+/**
+ * <h1>流式导入商品的文件格式枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum GoodsImportFormat {
+
+    NDJSON("application/x-ndjson", "每行一个 GoodsInfo json 对象"),
+    CSV("text/csv", "第一行是列名, 列名与 GoodsInfo 字段名相同, 商品属性直接使用 size、color、material、pattern"),
+    ;
+
+    /**
+     * 请求的 Content-Type
+     */
+    private final String contentType;
+
+    /**
+     * 格式描述
+     */
+    private final String description;
+
+    /**
+     * <h2>根据 Content-Type 获取到 GoodsImportFormat</h2>
+     */
+    public static GoodsImportFormat of(String contentType) {
+        return Stream.of(values())
+                .filter(bean -> StringUtils.startsWithIgnoreCase(contentType, bean.contentType))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(contentType + " not exists"));
+    }
+}
@@ -0,0 +1,22 @@
+package com.flipped.learn.goodsservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * <h1>库存扣减方式枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum InventoryDeductMode {
+
+    ENTITY("查询实体, 检查后整体写回"),
+    CONDITIONAL_UPDATE("单条条件 UPDATE 原子扣减"),
+    LOCAL_RESERVATION("从商品表批量预留库存到进程内, 在进程内分段扣减"),
+    ;
+
+    /**
+     * 扣减方式描述
+     */
+    private final String description;
+}
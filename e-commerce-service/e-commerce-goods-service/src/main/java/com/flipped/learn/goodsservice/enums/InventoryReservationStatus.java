@@ -0,0 +1,42 @@
+package com.flipped.learn.goodsservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * <h1>Redis 库存预扣记录状态枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum InventoryReservationStatus {
+
+    RESERVED(0, "已在 Redis 中预扣, 未同步到商品表"),
+    FLUSHED(1, "已同步到商品表"),
+    RECONCILE(2, "商品表库存不足, 没有同步, 需要人工对账后改回 RESERVED"),
+    CANCELED(3, "订单取消, 不再同步到商品表, Redis 中的库存已经归还"),
+    ;
+
+    /**
+     * 状态码
+     */
+    private final Integer status;
+
+    /**
+     * 状态描述
+     */
+    private final String description;
+
+    /**
+     * <h2>根据 code 获取到 InventoryReservationStatus</h2>
+     */
+    public static InventoryReservationStatus of(Integer status) {
+        Objects.requireNonNull(status);
+        return Stream.of(values())
+                .filter(bean -> bean.status.equals(status))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(status + " not exists"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.flipped.learn.goodsservice.feign;
+
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.serviceconfig.config.InternalFeignConfig;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * <h1>订单服务 saga 内部接口 Feign 接口</h1>
+ */
+@FeignClient(contextId = "OrderSagaClient", value = "e-commerce-order-service",
+        configuration = InternalFeignConfig.class)
+public interface OrderSagaClient {
+
+    /**
+     * <h2>txId 对应的下单 saga 是否已经标记为 COMPENSATING</h2>
+     */
+    @RequestMapping(
+            value = "/ecommerce-order-service/internal/order/saga/compensating",
+            method = RequestMethod.GET
+    )
+    CommonResponse<Boolean> isCompensating(@RequestParam("txId") String txId);
+}
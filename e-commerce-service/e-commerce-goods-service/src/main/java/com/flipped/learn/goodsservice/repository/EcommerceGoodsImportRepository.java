@@ -0,0 +1,27 @@
+package com.flipped.learn.goodsservice.repository;
+
+import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>商品批量导入, 作为 {@link EcommerceGoodsRepository} 的扩展</h1>
+ */
+public interface EcommerceGoodsImportRepository {
+
+    /**
+     * <h2>分批查询商品表中已经存在的商品</h2>
+     * select goods_category, brand_category, goods_name from t_ecommerce_goods
+     * where (goods_category, brand_category, goods_name) in ((?, ?, ?), ...);
+     * @return 已经存在的商品, 格式与 {@link EcommerceGoods#jointInfo()} 相同
+     */
+    Set<String> findExistingJointInfos(List<EcommerceGoods> goods, int batchSize);
+
+    /**
+     * <h2>以 JDBC batch 的方式分批插入商品, 已经存在的商品 (唯一索引冲突) 会被忽略</h2>
+     * 需要在 REPEATABLE READ 事务中调用, 依靠一致性读区分本次插入的商品和并发导入插入的商品
+     * @return 本次插入成功的商品, 已经填充了主键
+     */
+    List<EcommerceGoods> batchInsertIgnore(List<EcommerceGoods> goods, int batchSize);
+}
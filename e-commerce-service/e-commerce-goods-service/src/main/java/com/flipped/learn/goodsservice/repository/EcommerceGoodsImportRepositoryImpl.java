@@ -0,0 +1,140 @@
+package com.flipped.learn.goodsservice.repository;
+
+import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+import org.apache.commons.collections4.ListUtils;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <h1>商品批量导入实现</h1>
+ * 商品表使用自增主键, Hibernate 无法批量插入, 这里直接使用 JDBC batch;
+ * 需要在连接参数中开启 rewriteBatchedStatements, 驱动才会把一批 INSERT 合并成一条多值 INSERT
+ */
+public class EcommerceGoodsImportRepositoryImpl implements EcommerceGoodsImportRepository {
+
+    /**
+     * 只忽略唯一索引冲突; INSERT IGNORE 还会把数据截断、类型错误等降级成警告, 写入错误的数据
+     */
+    private static final String INSERT_IGNORE_SQL = "INSERT INTO t_ecommerce_goods "
+            + "(goods_category, brand_category, goods_name, goods_pic, goods_description, goods_status, "
+            + "price, supply, inventory, goods_property, create_time, update_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Set<String> findExistingJointInfos(List<EcommerceGoods> goods, int batchSize) {
+        Set<String> existing = new HashSet<>();
+        for (List<EcommerceGoods> chunk : ListUtils.partition(goods, batchSize)) {
+            jdbcTemplate.query(selectByJointInfoSql("goods_category, brand_category, goods_name", chunk.size()),
+                    rs -> {
+                        existing.add(jointInfo(rs));
+                    }, jointInfoArgs(chunk));
+        }
+        return existing;
+    }
+
+    @Override
+    public List<EcommerceGoods> batchInsertIgnore(List<EcommerceGoods> goods, int batchSize) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("batch insert goods requires a transaction");
+        }
+        List<EcommerceGoods> inserted = new ArrayList<>(goods.size());
+        for (List<EcommerceGoods> chunk : ListUtils.partition(goods, batchSize)) {
+            inserted.addAll(insertChunk(chunk));
+        }
+        return inserted;
+    }
+
+    /**
+     * <h2>插入一批商品, 再按唯一索引查询主键</h2>
+     * 多值 INSERT 中有行被忽略或者并发插入时, 驱动返回的自增主键不一定与插入顺序对应, 开启 rewriteBatchedStatements
+     * 之后也拿不到每一行的影响行数, 所以都不使用; 插入前后在同一个事务中各做一次一致性读 (REPEATABLE READ),
+     * 并发导入在快照之后提交的商品两次都看不到, 插入后新出现的只有本事务插入的商品
+     */
+    private List<EcommerceGoods> insertChunk(List<EcommerceGoods> chunk) {
+        Set<String> before = new HashSet<>(chunk.size());
+        jdbcTemplate.query(selectByJointInfoSql("goods_category, brand_category, goods_name", chunk.size()),
+                rs -> {
+                    before.add(jointInfo(rs));
+                }, jointInfoArgs(chunk));
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_IGNORE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                EcommerceGoods g = chunk.get(i);
+                ps.setString(1, g.getGoodsCategory().getCode());
+                ps.setString(2, g.getBrandCategory().getCode());
+                ps.setString(3, g.getGoodsName());
+                ps.setString(4, g.getGoodsPic());
+                ps.setString(5, g.getGoodsDescription());
+                ps.setInt(6, g.getGoodsStatus().getStatus());
+                ps.setInt(7, g.getPrice());
+                ps.setLong(8, g.getSupply());
+                ps.setLong(9, g.getInventory());
+                ps.setString(10, g.getGoodsProperty());
+                ps.setTimestamp(11, now);
+                ps.setTimestamp(12, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+
+        Map<String, EcommerceGoods> jointInfo2Goods = new HashMap<>(chunk.size());
+        chunk.forEach(g -> jointInfo2Goods.put(g.jointInfo(), g));
+        List<EcommerceGoods> inserted = new ArrayList<>(chunk.size());
+        jdbcTemplate.query(
+                selectByJointInfoSql("id, goods_category, brand_category, goods_name", chunk.size()),
+                rs -> {
+                    String jointInfo = jointInfo(rs);
+                    EcommerceGoods g = jointInfo2Goods.get(jointInfo);
+                    if (null != g && !before.contains(jointInfo)) {
+                        g.setId(rs.getLong("id"));
+                        inserted.add(g);
+                    }
+                }, jointInfoArgs(chunk));
+        return inserted;
+    }
+
+    private static String selectByJointInfoSql(String columns, int size) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                .append(" FROM t_ecommerce_goods WHERE (goods_category, brand_category, goods_name) IN (");
+        for (int i = 0; i < size; i++) {
+            sql.append(0 == i ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        return sql.append(")").toString();
+    }
+
+    private static Object[] jointInfoArgs(List<EcommerceGoods> chunk) {
+        List<Object> args = new ArrayList<>(chunk.size() * 3);
+        chunk.forEach(g -> {
+            args.add(g.getGoodsCategory().getCode());
+            args.add(g.getBrandCategory().getCode());
+            args.add(g.getGoodsName());
+        });
+        return args.toArray();
+    }
+
+    private static String jointInfo(ResultSet rs) throws SQLException {
+        return String.format("%s,%s,%s", rs.getString("goods_category"),
+                rs.getString("brand_category"), rs.getString("goods_name"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.flipped.learn.goodsservice.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>商品库存的原子操作, 作为 {@link EcommerceGoodsRepository} 的扩展</h1>
+ */
+public interface EcommerceGoodsInventoryRepository {
+
+    /**
+     * <h2>批量条件扣减库存</h2>
+     * update t_ecommerce_goods set inventory = inventory - ? where id = ? and inventory >= ?
+     * 不在全局事务中时所有商品一个 JDBC batch; 全局事务 (或者 GlobalLock) 中逐条执行, 由 Seata 记录 undo log
+     * @param goodsId2Count goodsId -> 扣减数量
+     * @return 库存不足或者不存在、没有扣减成功的商品 id
+     */
+    List<Long> deductInventory(Map<Long, Integer> goodsId2Count);
+
+    /**
+     * <h2>从商品表中预留一批库存, 库存不足时预留剩下的全部</h2>
+     * 需要在事务中调用
+     * @return 实际预留的数量, 商品不存在时返回 -1
+     */
+    long leaseInventory(Long goodsId, long max);
+
+    /**
+     * <h2>归还预留但没有用完的库存</h2>
+     */
+    void returnInventory(Long goodsId, long count);
+}
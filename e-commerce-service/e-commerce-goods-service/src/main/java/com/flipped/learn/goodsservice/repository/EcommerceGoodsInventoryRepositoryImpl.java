@@ -0,0 +1,79 @@
+package com.flipped.learn.goodsservice.repository;
+
+import io.seata.core.context.RootContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <h1>商品库存原子操作实现</h1>
+ * 单条 UPDATE 中完成检查和扣减, 不需要先查询整个实体再写回, 也不会出现并发扣减时的超卖
+ * Seata AT 的代理不处理 JDBC batch (executeBatch 直接交给原始 statement, 不写 undo log 也不检查全局锁),
+ * 在全局事务或者 GlobalLock 中必须逐条执行
+ */
+public class EcommerceGoodsInventoryRepositoryImpl implements EcommerceGoodsInventoryRepository {
+
+    private static final String DEDUCT_INVENTORY_SQL = "UPDATE t_ecommerce_goods "
+            + "SET inventory = inventory - ?, update_time = NOW() WHERE id = ? AND inventory >= ?";
+
+    private static final String LOCK_INVENTORY_SQL = "SELECT inventory FROM t_ecommerce_goods WHERE id = ? FOR UPDATE";
+
+    private static final String LEASE_INVENTORY_SQL = "UPDATE t_ecommerce_goods "
+            + "SET inventory = inventory - ?, update_time = NOW() WHERE id = ?";
+
+    private static final String RETURN_INVENTORY_SQL = "UPDATE t_ecommerce_goods "
+            + "SET inventory = inventory + ?, update_time = NOW() WHERE id = ?";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> deductInventory(Map<Long, Integer> goodsId2Count) {
+        // 按 id 顺序加行锁, 多个订单同时扣减相同的几个商品时不会互相死锁
+        List<Object[]> args = new ArrayList<>(goodsId2Count.size());
+        new TreeMap<>(goodsId2Count).forEach((goodsId, count) -> args.add(new Object[]{count, goodsId, count}));
+
+        int[] updated;
+        if (RootContext.inGlobalTransaction() || RootContext.requireGlobalLock()) {
+            // 逐条执行, 经过 Seata 代理记录 undo log 并检查全局锁, 全局事务回滚时可以归还库存
+            updated = new int[args.size()];
+            for (int i = 0; i < args.size(); i++) {
+                updated[i] = jdbcTemplate.update(DEDUCT_INVENTORY_SQL, args.get(i));
+            }
+        } else {
+            // 所有商品在一个 JDBC batch 中发送
+            updated = jdbcTemplate.batchUpdate(DEDUCT_INVENTORY_SQL, args);
+        }
+
+        List<Long> failedIds = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (1 != updated[i]) {
+                failedIds.add((Long) args.get(i)[1]);
+            }
+        }
+        return failedIds;
+    }
+
+    @Override
+    public long leaseInventory(Long goodsId, long max) {
+        List<Long> inventory = jdbcTemplate.queryForList(LOCK_INVENTORY_SQL, Long.class, goodsId);
+        if (inventory.isEmpty()) {
+            return -1;
+        }
+        if (inventory.get(0) <= 0) {
+            return 0;
+        }
+        long leased = Math.min(inventory.get(0), max);
+        jdbcTemplate.update(LEASE_INVENTORY_SQL, leased, goodsId);
+        return leased;
+    }
+
+    @Override
+    public void returnInventory(Long goodsId, long count) {
+        jdbcTemplate.update(RETURN_INVENTORY_SQL, count, goodsId);
+    }
+}
@@ -0,0 +1,40 @@
+package com.flipped.learn.goodsservice.repository;
+
+import com.flipped.learn.goodsservice.entity.EcommerceGoodsInventoryReservation;
+import com.flipped.learn.goodsservice.enums.InventoryReservationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+import javax.persistence.LockModeType;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <h1>EcommerceGoodsInventoryReservation Dao 接口定义</h1>
+ */
+public interface EcommerceGoodsInventoryReservationRepository
+        extends PagingAndSortingRepository<EcommerceGoodsInventoryReservation, Long> {
+
+    /**
+     * <h2>按状态加锁查询创建时间早于指定时间的预扣记录</h2>
+     * select * from t_ecommerce_goods_inventory_reservation
+     * where status = ? and create_time < ? order by id limit ? for update;
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<EcommerceGoodsInventoryReservation> findByStatusAndCreateTimeBeforeOrderById(
+            InventoryReservationStatus status, Date createTime, Pageable pageable);
+
+    /**
+     * <h2>根据预扣单号查询预扣记录</h2>
+     */
+    Optional<EcommerceGoodsInventoryReservation> findByReservationId(String reservationId);
+
+    /**
+     * <h2>根据预扣单号加锁查询预扣记录, 和同步任务互斥</h2>
+     * select * from t_ecommerce_goods_inventory_reservation where reservation_id = ? for update;
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<EcommerceGoodsInventoryReservation> findForUpdateByReservationId(String reservationId);
+}
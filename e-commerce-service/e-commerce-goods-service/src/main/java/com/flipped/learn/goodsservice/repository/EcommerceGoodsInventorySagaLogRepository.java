@@ -0,0 +1,22 @@
+package com.flipped.learn.goodsservice.repository;
+
+import com.flipped.learn.goodsservice.entity.EcommerceGoodsInventorySagaLog;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+/**
+ * <h1>EcommerceGoodsInventorySagaLog Dao 接口定义</h1>
+ */
+public interface EcommerceGoodsInventorySagaLogRepository
+        extends PagingAndSortingRepository<EcommerceGoodsInventorySagaLog, Long> {
+
+    /**
+     * <h2>根据 saga 事务 id 加锁查询扣减记录</h2>
+     * select * from t_ecommerce_goods_inventory_saga_log where tx_id = ? for update;
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<EcommerceGoodsInventorySagaLog> findByTxId(String txId);
+}
@@ -3,14 +3,17 @@ package com.flipped.learn.goodsservice.repository;
 import com.flipped.learn.goodsservice.entity.EcommerceGoods;
 import com.flipped.learn.goodsservice.enums.BrandCategory;
 import com.flipped.learn.goodsservice.enums.GoodsCategory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
  * <h1>EcommerceGoods Dao 接口定义</h1>
  */
-public interface EcommerceGoodsRepository extends PagingAndSortingRepository<EcommerceGoods, Long> {
+public interface EcommerceGoodsRepository extends PagingAndSortingRepository<EcommerceGoods, Long>,
+        EcommerceGoodsInventoryRepository, EcommerceGoodsImportRepository {
 
     /**
      * <h2>根据查询条件查询商品表, 并限制返回结果</h2>
@@ -21,4 +24,10 @@ public interface EcommerceGoodsRepository extends PagingAndSortingRepository<Eco
             GoodsCategory goodsCategory, BrandCategory brandCategory,
             String goodsName
     );
-}
\ No newline at end of file
+
+    /**
+     * <h2>游标分页: 查询 id 小于游标的商品, 不需要 count 查询</h2>
+     * select * from t_ecommerce_goods where id < ? order by id desc limit ?;
+     */
+    List<EcommerceGoods> findByIdLessThan(Long id, Pageable pageable);
+}
@@ -3,6 +3,7 @@ package com.flipped.learn.goodsservice.service;
 import com.flipped.learn.goodsservice.vo.PageSimpleGoodsInfo;
 import com.flipped.learn.servicesdk.common.TableId;
 import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
 import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
 
@@ -23,6 +24,11 @@ public interface IGoodsService {
      * */
     PageSimpleGoodsInfo getSimpleGoodsInfoByPage(int page);
 
+    /**
+     * <h2>游标分页查询简单商品信息, 按照 id 倒序, lastId 为空时查询第一页</h2>
+     */
+    PageSimpleGoodsInfo getSimpleGoodsInfoByCursor(Long lastId, int limit);
+
     /**
      * <h2>根据 TableId 查询简单商品信息</h2>
      * */
@@ -32,4 +38,29 @@ public interface IGoodsService {
      * <h2>扣减商品库存</h2>
      * */
     Boolean deductGoodsInventory(List<DeductGoodsInventory> deductGoodsInventories);
+
+    /**
+     * <h2>扣减商品库存, 并返回扣减时的商品价格</h2>
+     * */
+    List<DeductedGoodsInfo> deductGoodsInventoryWithPrice(List<DeductGoodsInventory> deductGoodsInventories);
+
+    /**
+     * <h2>saga 下单: 扣减商品库存并返回价格, 同一个 txId 只扣减一次</h2>
+     * */
+    List<DeductedGoodsInfo> sagaDeductGoodsInventory(String txId, List<DeductGoodsInventory> deductGoodsInventories);
+
+    /**
+     * <h2>saga 下单: 订单服务标记补偿之后, 归还 txId 扣减的库存 (包括 Redis 和进程内预扣的部分), 可以重复调用</h2>
+     * */
+    Boolean sagaCompensateGoodsInventory(String txId);
+
+    /**
+     * <h2>开启商品的 Redis 库存预扣</h2>
+     * */
+    Long enableRedisInventory(Long goodsId);
+
+    /**
+     * <h2>关闭商品的 Redis 库存预扣</h2>
+     * */
+    Boolean disableRedisInventory(Long goodsId);
 }
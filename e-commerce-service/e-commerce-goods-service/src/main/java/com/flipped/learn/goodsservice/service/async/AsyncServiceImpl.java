@@ -1,21 +1,31 @@
 package com.flipped.learn.goodsservice.service.async;
 
 import com.alibaba.fastjson.JSON;
-import com.flipped.learn.goodsservice.constant.GoodsConstant;
 import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+import com.flipped.learn.goodsservice.enums.GoodsImportFormat;
 import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import com.flipped.learn.goodsservice.service.cache.SimpleGoodsInfoCache;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
+import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
 import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.IterableUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -32,7 +42,23 @@ public class AsyncServiceImpl implements IAsyncService {
     private EcommerceGoodsRepository goodsRepository;
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private SimpleGoodsInfoCache simpleGoodsInfoCache;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 用于更新流式导入的进度; AsyncTaskManager 依赖当前类, 需要延迟注入
+     */
+    @Lazy
+    @Resource
+    private AsyncTaskManager asyncTaskManager;
+
+    /**
+     * 导入时每一批查询、插入的商品数量
+     */
+    @Value("${ecommerce.goods.import.batch-size:500}")
+    private int importBatchSize;
 
 
     /**
@@ -85,31 +111,141 @@ public class AsyncServiceImpl implements IAsyncService {
         List<EcommerceGoods> ecommerceGoods = filteredGoodsInfo.stream()
                 .map(EcommerceGoods::to)
                 .collect(Collectors.toList());
-        List<EcommerceGoods> targetGoods = new ArrayList<>(ecommerceGoods.size());
-
-        // 2. 保存 goodsInfo 之前先判断下是否存在重复商品
-        ecommerceGoods.forEach(g -> {
-            // limit 1
-            if (null != goodsRepository
-                    .findFirst1ByGoodsCategoryAndBrandCategoryAndGoodsName(
-                            g.getGoodsCategory(), g.getBrandCategory(),
-                            g.getGoodsName()
-                    ).orElse(null)) {
-                return;
-            }
 
-            targetGoods.add(g);
-        });
+        // 2. 保存 goodsInfo 之前先判断下是否存在重复商品, 按唯一索引分批查询
+        Set<String> existingJointInfos = goodsRepository.findExistingJointInfos(ecommerceGoods, importBatchSize);
+        List<EcommerceGoods> targetGoods = ecommerceGoods.stream()
+                .filter(g -> !existingJointInfos.contains(g.jointInfo()))
+                .collect(Collectors.toList());
 
-        // 商品信息入库
-        List<EcommerceGoods> savedGoods = IterableUtils.toList(goodsRepository.saveAll(targetGoods));
+        // 商品信息以 JDBC batch 的方式入库, 并发导入时已经存在的商品被唯一索引忽略
+        List<EcommerceGoods> savedGoods = goodsRepository.batchInsertIgnore(targetGoods, importBatchSize);
         // 将入库商品信息同步到 Redis 中
         saveNewGoodsInfoToRedis(savedGoods);
 
         log.info("save goods info to db and redis: [{}]", savedGoods.size());
 
         watch.stop();
-        log.info("check and import goods success: [{}ms]", watch.getTime(TimeUnit.MILLISECONDS));
+        log.info("check and import goods success: [{}ms], [{}] rows/s", watch.getTime(TimeUnit.MILLISECONDS),
+                savedGoods.size() * 1000L / Math.max(1, watch.getTime(TimeUnit.MILLISECONDS)));
+    }
+
+    /**
+     * <h2>流式导入: 逐行解析, 每一批商品单独提交事务, 每一批完成后更新任务进度</h2>
+     * 内存中最多只有一批商品, 与文件大小无关; 文件内以及与商品表重复的商品会被跳过, 不会导致整个导入失败
+     */
+    @Async("getAsyncExecutor")
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void asyncImportGoodsStream(Path file, String taskId, GoodsImportFormat format) {
+        log.info("async stream import task running taskId: [{}], [{}]", taskId, format);
+        StopWatch watch = StopWatch.createStarted();
+        AsyncTaskInfo taskInfo = asyncTaskManager.getTaskInfo(taskId);
+        long rowsRead = 0;
+        long inserted = 0;
+        long skipped = 0;
+        long failed = 0;
+
+        try (GoodsImportReader reader = new GoodsImportReader(
+                Files.newBufferedReader(file, StandardCharsets.UTF_8), format)) {
+            // 当前批次: jointInfo -> 商品, 同一批次中重复的商品只保留第一个
+            Map<String, EcommerceGoods> chunk = new LinkedHashMap<>(importBatchSize * 2);
+            boolean end = false;
+            while (!end) {
+                GoodsInfo goodsInfo;
+                try {
+                    goodsInfo = reader.next();
+                } catch (IllegalArgumentException ex) {
+                    rowsRead++;
+                    failed++;
+                    log.warn("skip invalid goods line: [{}]", ex.getMessage());
+                    continue;
+                }
+
+                if (null == goodsInfo) {
+                    end = true;
+                } else {
+                    rowsRead++;
+                    EcommerceGoods goods = toValidGoods(goodsInfo);
+                    if (null == goods) {
+                        failed++;
+                    } else if (null != chunk.putIfAbsent(goods.jointInfo(), goods)) {
+                        skipped++;
+                    }
+                }
+
+                if (chunk.size() >= importBatchSize || (end && !chunk.isEmpty())) {
+                    int saved = importChunk(new ArrayList<>(chunk.values()));
+                    inserted += saved;
+                    skipped += chunk.size() - saved;
+                    chunk.clear();
+                    updateProgress(taskInfo, rowsRead, inserted, skipped, failed);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            updateProgress(taskInfo, rowsRead, inserted, skipped, failed);
+            deleteQuietly(file);
+        }
+
+        watch.stop();
+        log.info("stream import goods done: [{}ms], read: [{}], inserted: [{}], skipped: [{}], failed: [{}]",
+                watch.getTime(TimeUnit.MILLISECONDS), rowsRead, inserted, skipped, failed);
+    }
+
+    /**
+     * <h2>导入一批商品, 一批一个事务</h2>
+     * @return 插入成功的数量
+     */
+    private int importChunk(List<EcommerceGoods> chunk) {
+        List<EcommerceGoods> savedGoods = transactionTemplate.execute(status -> {
+            Set<String> existingJointInfos = goodsRepository.findExistingJointInfos(chunk, importBatchSize);
+            List<EcommerceGoods> targetGoods = chunk.stream()
+                    .filter(g -> !existingJointInfos.contains(g.jointInfo()))
+                    .collect(Collectors.toList());
+            return goodsRepository.batchInsertIgnore(targetGoods, importBatchSize);
+        });
+        if (null == savedGoods) {
+            return 0;
+        }
+        saveNewGoodsInfoToRedis(savedGoods);
+        return savedGoods.size();
+    }
+
+    /**
+     * <h2>校验并转换商品信息, 不合法时返回 null</h2>
+     */
+    private EcommerceGoods toValidGoods(GoodsInfo goods) {
+        if (null == goods.getPrice() || null == goods.getSupply()
+                || goods.getPrice() <= 0 || goods.getSupply() <= 0
+                || StringUtils.isBlank(goods.getGoodsName())) {
+            log.info("goods info is invalid: [{}]", JSON.toJSONString(goods));
+            return null;
+        }
+        try {
+            return EcommerceGoods.to(goods);
+        } catch (IllegalArgumentException ex) {
+            // 商品类别或者品牌不存在
+            log.info("goods info is invalid: [{}], [{}]", JSON.toJSONString(goods), ex.getMessage());
+            return null;
+        }
+    }
+
+    private void updateProgress(AsyncTaskInfo taskInfo, long rowsRead, long inserted, long skipped, long failed) {
+        taskInfo.setRowsRead(rowsRead);
+        taskInfo.setInserted(inserted);
+        taskInfo.setSkipped(skipped);
+        taskInfo.setFailed(failed);
+        asyncTaskManager.setTaskInfo(taskInfo);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("delete goods import file error: [{}], [{}]", file, ex.getMessage());
+        }
     }
 
     /**
@@ -123,13 +259,10 @@ public class AsyncServiceImpl implements IAsyncService {
                 .map(EcommerceGoods::toSimple)
                 .collect(Collectors.toList());
 
-        Map<String, String> id2JsonObject = new HashMap<>(simpleGoodsInfos.size());
-        simpleGoodsInfos.forEach(g -> id2JsonObject.put(g.getId().toString(), JSON.toJSONString(g)));
-
-        // 保存到 Redis 中
-        stringRedisTemplate.opsForHash().putAll(
-                GoodsConstant.ECOMMERCE_GOODS_DICT_KEY,
-                id2JsonObject
-        );
+        // 保存到 Redis 中, 并通知各个实例清除本地缓存
+        simpleGoodsInfoCache.putAll(simpleGoodsInfos);
+        simpleGoodsInfoCache.invalidate(simpleGoodsInfos.stream()
+                .map(SimpleGoodsInfo::getId)
+                .collect(Collectors.toList()));
     }
 }
@@ -1,13 +1,21 @@
 package com.flipped.learn.goodsservice.service.async;
 
+import com.flipped.learn.goodsservice.config.GoodsAsyncExecutor;
 import com.flipped.learn.goodsservice.enums.AsyncTaskStatusEnum;
+import com.flipped.learn.goodsservice.enums.GoodsImportFormat;
 import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <h1>异步任务执行管理器</h1>
@@ -18,13 +26,17 @@ import java.util.*;
 public class AsyncTaskManager {
 
     /**
-     * 异步任务执行信息容器
+     * 异步任务执行信息存储, 本地或者 Redis
      */
-    private final Map<String, AsyncTaskInfo> taskContainer = new HashMap<>(16);
+    @Resource
+    private AsyncTaskStore asyncTaskStore;
 
     @Resource
     private IAsyncService asyncService;
 
+    @Resource
+    private GoodsAsyncExecutor goodsAsyncExecutor;
+
 
     /**
      * <h2>初始化异步任务</h2>
@@ -36,7 +48,7 @@ public class AsyncTaskManager {
         taskInfo.setStatus(AsyncTaskStatusEnum.STARTED);
         taskInfo.setStartTime(new Date());
         // 初始化的时候就要把异步任务执行信息放入到存储容器中
-        taskContainer.put(taskInfo.getTaskId(), taskInfo);
+        asyncTaskStore.put(taskInfo);
         return taskInfo;
     }
 
@@ -47,21 +59,71 @@ public class AsyncTaskManager {
 
         // 初始化一个异步任务的监控信息
         AsyncTaskInfo taskInfo = initTask();
-        asyncService.asyncImportGoods(goodsInfos, taskInfo.getTaskId());
+        try {
+            asyncService.asyncImportGoods(goodsInfos, taskInfo.getTaskId());
+        } catch (RejectedExecutionException ex) {
+            rejectTask(taskInfo);
+            throw ex;
+        }
+        return taskInfo;
+    }
+
+    /**
+     * <h2>提交流式导入任务</h2>
+     * 请求体先写入临时文件, 请求结束之后异步任务再从文件中逐行读取;
+     * 线程池已经满了 (拒绝策略是 REJECT) 时直接拒绝, 不再把整个请求体写入磁盘之后才发现任务提交不了
+     */
+    public AsyncTaskInfo submit(InputStream body, GoodsImportFormat format) throws IOException {
+        if (goodsAsyncExecutor.wouldReject()) {
+            log.warn("goods async executor is busy, reject stream import before spooling");
+            throw new RejectedExecutionException("goods async executor is busy");
+        }
+        Path file = Files.createTempFile("goods-import-", "." + format.name().toLowerCase());
+        try {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+
+        AsyncTaskInfo taskInfo = initTask();
+        taskInfo.setRowsRead(0L);
+        taskInfo.setInserted(0L);
+        taskInfo.setSkipped(0L);
+        taskInfo.setFailed(0L);
+        setTaskInfo(taskInfo);
+        try {
+            asyncService.asyncImportGoodsStream(file, taskInfo.getTaskId(), format);
+        } catch (RejectedExecutionException ex) {
+            Files.deleteIfExists(file);
+            rejectTask(taskInfo);
+            throw ex;
+        }
         return taskInfo;
     }
 
+    /**
+     * <h2>线程池拒绝了任务, 任务直接结束</h2>
+     */
+    private void rejectTask(AsyncTaskInfo taskInfo) {
+        log.warn("async task is rejected: [{}]", taskInfo.getTaskId());
+        taskInfo.setEndTime(new Date());
+        taskInfo.setStatus(AsyncTaskStatusEnum.FAILED);
+        taskInfo.setTotalTime(String.valueOf(taskInfo.getEndTime().getTime() - taskInfo.getStartTime().getTime()));
+        setTaskInfo(taskInfo);
+    }
+
     /**
      * <h2>设置异步任务执行状态信息</h2>
      */
     public void setTaskInfo(AsyncTaskInfo taskInfo) {
-        taskContainer.put(taskInfo.getTaskId(), taskInfo);
+        asyncTaskStore.put(taskInfo);
     }
 
     /**
      * <h2>获取异步任务执行状态信息</h2>
      */
     public AsyncTaskInfo getTaskInfo(String taskId) {
-        return taskContainer.get(taskId);
+        return asyncTaskStore.get(taskId);
     }
 }
\ No newline at end of file
@@ -55,6 +55,12 @@ public class AsyncTaskMonitor {
             log.error("AsyncTaskMonitor: async task [{}] is failed, Error Info: [{}]", taskId, ex.getMessage(), ex);
         }
 
+        // 任务执行过程中可能更新了进度, 重新获取一次, 避免覆盖; 使用 Redis 存储时这里拿到的是新的对象
+        AsyncTaskInfo latestTaskInfo = asyncTaskManager.getTaskInfo(taskId);
+        if (null != latestTaskInfo) {
+            taskInfo = latestTaskInfo;
+        }
+
         // 设置异步任务其他的信息, 再次重新放入到容器中
         taskInfo.setEndTime(new Date());
         taskInfo.setStatus(status);
@@ -0,0 +1,29 @@
+package com.flipped.learn.goodsservice.service.async;
+
+import com.flipped.learn.goodsservice.enums.AsyncTaskStatusEnum;
+import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
+
+/**
+ * <h1>异步任务执行信息存储</h1>
+ * 已经结束的任务只保留一段时间; 本地存储只能查询到当前实例提交的任务, Redis 存储可以在任意实例上查询
+ */
+public interface AsyncTaskStore {
+
+    /**
+     * <h2>保存 (覆盖) 异步任务执行信息</h2>
+     */
+    void put(AsyncTaskInfo taskInfo);
+
+    /**
+     * <h2>获取异步任务执行信息, 不存在或者已经过期时返回 null</h2>
+     */
+    AsyncTaskInfo get(String taskId);
+
+    /**
+     * <h2>任务是否已经结束 (成功或者失败)</h2>
+     */
+    static boolean isCompleted(AsyncTaskInfo taskInfo) {
+        return AsyncTaskStatusEnum.SUCCESS == taskInfo.getStatus()
+                || AsyncTaskStatusEnum.FAILED == taskInfo.getStatus();
+    }
+}
@@ -0,0 +1,123 @@
+package com.flipped.learn.goodsservice.service.async;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.goodsservice.enums.GoodsImportFormat;
+import com.flipped.learn.servicesdk.goods.GoodsInfo;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>逐行读取导入文件中的商品信息</h1>
+ * 每次只解析一行, 不会把整个文件读入内存
+ */
+class GoodsImportReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    private final GoodsImportFormat format;
+
+    /**
+     * CSV 列名 -> 列下标
+     */
+    private final Map<String, Integer> csvColumns = new HashMap<>();
+
+    GoodsImportReader(BufferedReader reader, GoodsImportFormat format) throws IOException {
+        this.reader = reader;
+        this.format = format;
+        if (GoodsImportFormat.CSV == format) {
+            String header = reader.readLine();
+            if (null == header) {
+                return;
+            }
+            List<String> columns = splitCsvLine(StringUtils.removeStart(header, "\uFEFF"));
+            for (int i = 0; i < columns.size(); i++) {
+                csvColumns.put(columns.get(i).trim(), i);
+            }
+        }
+    }
+
+    /**
+     * <h2>读取下一个商品, 跳过空行; 文件结束时返回 null</h2>
+     * @throws IllegalArgumentException 当前行无法解析, 可以继续读取下一行
+     */
+    GoodsInfo next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (null == line) {
+                return null;
+            }
+        } while (StringUtils.isBlank(line));
+
+        try {
+            return GoodsImportFormat.NDJSON == format ? JSON.parseObject(line, GoodsInfo.class) : parseCsv(line);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("invalid goods line: " + StringUtils.abbreviate(line, 200), ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private GoodsInfo parseCsv(String line) {
+        List<String> values = splitCsvLine(line);
+        GoodsInfo goodsInfo = new GoodsInfo();
+        goodsInfo.setGoodsCategory(csvValue(values, "goodsCategory"));
+        goodsInfo.setBrandCategory(csvValue(values, "brandCategory"));
+        goodsInfo.setGoodsName(csvValue(values, "goodsName"));
+        goodsInfo.setGoodsPic(StringUtils.defaultString(csvValue(values, "goodsPic")));
+        goodsInfo.setGoodsDescription(StringUtils.defaultString(csvValue(values, "goodsDescription")));
+        goodsInfo.setPrice(Integer.valueOf(csvValue(values, "price")));
+        goodsInfo.setSupply(Long.valueOf(csvValue(values, "supply")));
+        goodsInfo.setGoodsProperty(new GoodsInfo.GoodsProperty(
+                csvValue(values, "size"), csvValue(values, "color"),
+                csvValue(values, "material"), csvValue(values, "pattern")
+        ));
+        return goodsInfo;
+    }
+
+    private String csvValue(List<String> values, String column) {
+        Integer index = csvColumns.get(column);
+        return null == index || index >= values.size() ? null : values.get(index);
+    }
+
+    /**
+     * <h2>拆分一行 CSV, 支持双引号包裹的字段以及字段中的 "" 转义</h2>
+     */
+    private static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if ('"' == c && i + 1 < line.length() && '"' == line.charAt(i + 1)) {
+                    value.append('"');
+                    i++;
+                } else if ('"' == c) {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if ('"' == c) {
+                quoted = true;
+            } else if (',' == c) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
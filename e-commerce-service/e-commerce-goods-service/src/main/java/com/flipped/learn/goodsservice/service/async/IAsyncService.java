@@ -1,7 +1,9 @@
 package com.flipped.learn.goodsservice.service.async;
 
+import com.flipped.learn.goodsservice.enums.GoodsImportFormat;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
 
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -13,4 +15,9 @@ public interface IAsyncService {
      * <h2>异步将商品信息保存下来</h2>
      */
     void asyncImportGoods(List<GoodsInfo> goodsInfos, String taskId);
+
+    /**
+     * <h2>异步流式导入文件中的商品信息, 分批提交, 导入完成后删除文件</h2>
+     */
+    void asyncImportGoodsStream(Path file, String taskId, GoodsImportFormat format);
 }
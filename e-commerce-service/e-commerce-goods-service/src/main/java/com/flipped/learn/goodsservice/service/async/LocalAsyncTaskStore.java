@@ -0,0 +1,107 @@
+package com.flipped.learn.goodsservice.service.async;
+
+import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>进程内的异步任务执行信息存储</h1>
+ * 已经结束的任务超过 ttl 之后清除; 数量超过上限时优先清除最早结束的任务, 未结束的任务不会被清除
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ecommerce.goods.async-task.store", havingValue = "local", matchIfMissing = true)
+public class LocalAsyncTaskStore implements AsyncTaskStore {
+
+    /**
+     * 任务 id -> 异步任务执行信息
+     */
+    private final Map<String, AsyncTaskInfo> taskContainer = new ConcurrentHashMap<>(16);
+
+    /**
+     * 同一时间只有一个线程执行清理
+     */
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    /**
+     * 已经结束的任务保留的时间
+     */
+    private final long ttlMillis;
+
+    /**
+     * 最多保留的任务数量
+     */
+    private final int maxSize;
+
+    public LocalAsyncTaskStore(@Value("${ecommerce.goods.async-task.ttl-millis:3600000}") long ttlMillis,
+                               @Value("${ecommerce.goods.async-task.max-size:10000}") int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void put(AsyncTaskInfo taskInfo) {
+        taskContainer.put(taskInfo.getTaskId(), taskInfo);
+        if (taskContainer.size() > maxSize) {
+            evict();
+        }
+    }
+
+    @Override
+    public AsyncTaskInfo get(String taskId) {
+        AsyncTaskInfo taskInfo = taskContainer.get(taskId);
+        if (null != taskInfo && isExpired(taskInfo, System.currentTimeMillis())) {
+            taskContainer.remove(taskId, taskInfo);
+            return null;
+        }
+        return taskInfo;
+    }
+
+    /**
+     * <h2>定时清除过期的任务</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.goods.async-task.cleanup-interval-millis:60000}")
+    public void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            int before = taskContainer.size();
+            taskContainer.values().removeIf(t -> isExpired(t, now));
+
+            // 仍然超过上限, 按照结束时间清除最早结束的任务
+            int overflow = taskContainer.size() - maxSize;
+            if (overflow > 0) {
+                List<AsyncTaskInfo> oldest = taskContainer.values().stream()
+                        .filter(AsyncTaskStore::isCompleted)
+                        .sorted(Comparator.comparing(AsyncTaskInfo::getEndTime))
+                        .limit(overflow)
+                        .collect(Collectors.toList());
+                oldest.forEach(t -> taskContainer.remove(t.getTaskId(), t));
+            }
+
+            int evicted = before - taskContainer.size();
+            if (evicted > 0) {
+                log.info("evict async task info: [{}], remain: [{}]", evicted, taskContainer.size());
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private boolean isExpired(AsyncTaskInfo taskInfo, long now) {
+        return AsyncTaskStore.isCompleted(taskInfo) && null != taskInfo.getEndTime()
+                && now - taskInfo.getEndTime().getTime() > ttlMillis;
+    }
+}
@@ -0,0 +1,63 @@
+package com.flipped.learn.goodsservice.service.async;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Redis 中的异步任务执行信息存储, 多个实例共享</h1>
+ * 未结束的任务使用较长的过期时间, 防止实例宕机后任务信息永远保留; 任务结束后改为 ttl
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ecommerce.goods.async-task.store", havingValue = "redis")
+public class RedisAsyncTaskStore implements AsyncTaskStore {
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 已经结束的任务保留的时间
+     */
+    private final long ttlMillis;
+
+    /**
+     * 未结束的任务保留的时间
+     */
+    private final long runningTtlMillis;
+
+    public RedisAsyncTaskStore(StringRedisTemplate redisTemplate,
+                               @Value("${ecommerce.goods.async-task.ttl-millis:3600000}") long ttlMillis,
+                               @Value("${ecommerce.goods.async-task.running-ttl-millis:86400000}")
+                                       long runningTtlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.ttlMillis = ttlMillis;
+        this.runningTtlMillis = runningTtlMillis;
+    }
+
+    @Override
+    public void put(AsyncTaskInfo taskInfo) {
+        long expireMillis = AsyncTaskStore.isCompleted(taskInfo) ? ttlMillis : runningTtlMillis;
+        redisTemplate.opsForValue().set(
+                GoodsConstant.ECOMMERCE_GOODS_ASYNC_TASK_KEY_PREFIX + taskInfo.getTaskId(),
+                JSON.toJSONString(taskInfo),
+                expireMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public AsyncTaskInfo get(String taskId) {
+        String value = redisTemplate.opsForValue().get(GoodsConstant.ECOMMERCE_GOODS_ASYNC_TASK_KEY_PREFIX + taskId);
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        return JSON.parseObject(value, AsyncTaskInfo.class);
+    }
+}
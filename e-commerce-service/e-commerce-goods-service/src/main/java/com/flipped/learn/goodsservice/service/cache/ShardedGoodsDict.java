@@ -0,0 +1,290 @@
+package com.flipped.learn.goodsservice.service.cache;
+
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>分片存储的商品字典 (Redis hash)</h1>
+ * 按商品 id 把数据分散到 N 个 hash key 中, 避免单个大 key 的 rehash、删除阻塞以及集群模式下的单 slot 热点;
+ * 批量读写按分片分组后通过 pipeline 一次发送
+ * 迁移: 开启 legacy-read-through 时, 分片中未命中的 id 会再去旧的单 key 中查询并回写到分片,
+ * 发现旧 key 已经不存在 (迁移完成) 后自动关闭回源, 不再为每次未命中多付一次 HMGET;
+ * 也可以通过 {@link #migrateLegacy()} 一次性把旧 key 中的数据搬到分片中
+ */
+@Slf4j
+@Component
+public class ShardedGoodsDict {
+
+    private static final byte[] LEGACY_KEY = GoodsConstant.ECOMMERCE_GOODS_DICT_KEY.getBytes(StandardCharsets.UTF_8);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 分片数量, 为 1 时继续使用旧的单 key
+     */
+    private final int shards;
+
+    /**
+     * 各个分片的 key
+     */
+    private final byte[][] shardKeys;
+
+    /**
+     * 分片中查不到时是否再查询旧的单 key, 旧 key 迁移完成之后自动关闭
+     */
+    private volatile boolean legacyReadThrough;
+
+    /**
+     * 迁移时每批扫描的数量
+     */
+    private final int migrateBatchSize;
+
+    /**
+     * 只有持有者才能释放迁移锁: 迁移超过锁的过期时间后, 不会删除其他实例加的锁
+     */
+    private final DefaultRedisScript<Long> lockReleaseScript = new DefaultRedisScript<>();
+
+    public ShardedGoodsDict(
+            @Value("${ecommerce.goods.cache.dict.shards:16}") int shards,
+            @Value("${ecommerce.goods.cache.dict.legacy-read-through:false}") boolean legacyReadThrough,
+            @Value("${ecommerce.goods.cache.dict.migrate-batch-size:500}") int migrateBatchSize) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("ecommerce.goods.cache.dict.shards must be positive");
+        }
+        this.shards = shards;
+        this.legacyReadThrough = legacyReadThrough && shards > 1;
+        this.migrateBatchSize = migrateBatchSize;
+        this.shardKeys = new byte[shards][];
+        for (int i = 0; i < shards; i++) {
+            this.shardKeys[i] = 1 == shards ? LEGACY_KEY
+                    : (GoodsConstant.ECOMMERCE_GOODS_DICT_SHARD_KEY_PREFIX + i).getBytes(StandardCharsets.UTF_8);
+        }
+        lockReleaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/lock_release.lua")));
+        lockReleaseScript.setResultType(Long.class);
+    }
+
+    /**
+     * <h2>批量查询, 返回查到的部分: goodsId -> 编码后的商品信息</h2>
+     */
+    public Map<Long, byte[]> multiGet(List<Long> ids) {
+        Map<Long, byte[]> result = new HashMap<>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+        Map<Integer, List<Long>> shard2Ids = groupByShard(ids);
+        List<Integer> shardOrder = new ArrayList<>(shard2Ids.keySet());
+
+        // 每个分片一条 HMGET, pipeline 一次发送
+        List<Object> replies = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Integer shard : shardOrder) {
+                connection.hMGet(shardKeys[shard], toFields(shard2Ids.get(shard)));
+            }
+            return null;
+        }, null);
+        List<Long> missIds = new ArrayList<>();
+        for (int i = 0; i < shardOrder.size(); i++) {
+            collect(shard2Ids.get(shardOrder.get(i)), replies.get(i), result, missIds);
+        }
+
+        if (legacyReadThrough && !missIds.isEmpty()) {
+            readThroughLegacy(missIds, result);
+        }
+        return result;
+    }
+
+    /**
+     * <h2>批量写入: goodsId -> 编码后的商品信息</h2>
+     */
+    public void putAll(Map<Long, byte[]> id2Value) {
+        if (id2Value.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<byte[], byte[]>> shard2Values = new LinkedHashMap<>();
+        id2Value.forEach((id, value) -> shard2Values
+                .computeIfAbsent(shardOf(id), k -> new HashMap<>())
+                .put(toField(id), value));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            shard2Values.forEach((shard, values) -> connection.hMSet(shardKeys[shard], values));
+            return null;
+        }, null);
+    }
+
+    /**
+     * <h2>批量删除</h2>
+     */
+    public void removeAll(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Long>> shard2Ids = groupByShard(ids);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            shard2Ids.forEach((shard, shardIds) -> connection.hDel(shardKeys[shard], toFields(shardIds)));
+            return null;
+        }, null);
+    }
+
+    /**
+     * <h2>把旧的单 key 中的数据迁移到分片中, 迁移完成后删除旧 key</h2>
+     * 使用 HSCAN 分批读取, HSETNX 写入, 不会覆盖分片中已经存在的数据; 多个实例同时启动时只有一个会执行迁移
+     * @return 迁移的商品数量, 没有执行迁移时返回 -1
+     */
+    public long migrateLegacy() {
+        if (1 == shards) {
+            return -1;
+        }
+        String lockToken = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(
+                GoodsConstant.ECOMMERCE_GOODS_DICT_MIGRATE_LOCK_KEY, lockToken, 10, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("goods dict migration is running on another instance, skip");
+            return -1;
+        }
+        try {
+            long migrated = stringRedisTemplate.execute((RedisCallback<Long>) this::doMigrate);
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(GoodsConstant.ECOMMERCE_GOODS_DICT_KEY))) {
+                disableLegacyReadThrough();
+            }
+            log.info("migrate legacy goods dict to [{}] shards done: [{}]", shards, migrated);
+            return migrated;
+        } finally {
+            Long released = stringRedisTemplate.execute(lockReleaseScript,
+                    Collections.singletonList(GoodsConstant.ECOMMERCE_GOODS_DICT_MIGRATE_LOCK_KEY), lockToken);
+            if (!Long.valueOf(1L).equals(released)) {
+                log.warn("goods dict migration lock expired before migration finished");
+            }
+        }
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    private long doMigrate(RedisConnection connection) {
+        long migrated = 0;
+        Map<byte[], byte[]> batch = new HashMap<>(migrateBatchSize);
+        try (Cursor<Map.Entry<byte[], byte[]>> cursor = connection.hScan(
+                LEGACY_KEY, ScanOptions.scanOptions().count(migrateBatchSize).build())) {
+            while (cursor.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = cursor.next();
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() >= migrateBatchSize) {
+                    migrated += flushMigrateBatch(batch);
+                }
+            }
+        } catch (Exception ex) {
+            // 迁移失败时保留旧 key, 读取时依然可以回源到旧 key
+            log.error("migrate legacy goods dict error: [{}]", ex.getMessage(), ex);
+            return migrated;
+        }
+        migrated += flushMigrateBatch(batch);
+        // UNLINK 在后台线程释放内存, 不会像 DEL 大 key 一样阻塞 Redis
+        connection.keyCommands().unlink(LEGACY_KEY);
+        return migrated;
+    }
+
+    private long flushMigrateBatch(Map<byte[], byte[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<byte[], byte[]> values = new HashMap<>(batch);
+        batch.clear();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((field, value) -> connection.hSetNX(
+                    shardKeys[shardOf(Long.valueOf(new String(field, StandardCharsets.UTF_8)))], field, value));
+            return null;
+        }, null);
+        return values.size();
+    }
+
+    /**
+     * <h2>在旧的单 key 中查询分片中没有的 id, 查到的回写到分片</h2>
+     */
+    private void readThroughLegacy(List<Long> missIds, Map<Long, byte[]> result) {
+        List<byte[]> values = stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hMGet(LEGACY_KEY, toFields(missIds)));
+        if (null == values || values.stream().allMatch(v -> null == v)) {
+            // 全部未命中时确认一下旧 key 是否还在, 已经迁移完成 (被删除) 就关闭回源
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(GoodsConstant.ECOMMERCE_GOODS_DICT_KEY))) {
+                disableLegacyReadThrough();
+            }
+            return;
+        }
+        Map<Long, byte[]> found = new HashMap<>();
+        for (int i = 0; i < missIds.size(); i++) {
+            if (null != values.get(i)) {
+                found.put(missIds.get(i), values.get(i));
+            }
+        }
+        if (!found.isEmpty()) {
+            putAll(found);
+            result.putAll(found);
+        }
+    }
+
+    private void disableLegacyReadThrough() {
+        if (legacyReadThrough) {
+            legacyReadThrough = false;
+            log.info("legacy goods dict key not exists, disable legacy read-through");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collect(List<Long> ids, Object reply, Map<Long, byte[]> result, List<Long> missIds) {
+        List<byte[]> values = (List<byte[]>) reply;
+        for (int i = 0; i < ids.size(); i++) {
+            byte[] value = null == values ? null : values.get(i);
+            if (null == value) {
+                missIds.add(ids.get(i));
+            } else {
+                result.put(ids.get(i), value);
+            }
+        }
+    }
+
+    private Map<Integer, List<Long>> groupByShard(List<Long> ids) {
+        Map<Integer, List<Long>> shard2Ids = new LinkedHashMap<>();
+        ids.forEach(id -> shard2Ids.computeIfAbsent(shardOf(id), k -> new ArrayList<>()).add(id));
+        return shard2Ids;
+    }
+
+    /**
+     * <h2>计算商品 id 所在的分片, 自增 id 连续, 先打散再取模</h2>
+     */
+    private int shardOf(Long id) {
+        if (1 == shards) {
+            return 0;
+        }
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shards);
+    }
+
+    private static byte[] toField(Long id) {
+        return String.valueOf(id).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] toFields(List<Long> ids) {
+        return ids.stream().map(ShardedGoodsDict::toField).toArray(byte[][]::new);
+    }
+}
@@ -0,0 +1,457 @@
+package com.flipped.learn.goodsservice.service.cache;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.goodsservice.service.cache.codec.SimpleGoodsInfoCodec;
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>简单商品信息多级缓存</h1>
+ * L1: 进程内 LRU 缓存, 有容量和过期时间限制
+ * L2: 按商品 id 分片的 Redis hash {@link ShardedGoodsDict}
+ * 商品信息变化时通过 Redis pub/sub 通知所有实例清除 L1
+ * Redis 中的 value 由 {@link SimpleGoodsInfoCodec} 编码, 读取时自动识别 JSON 和二进制两种格式
+ * 缓存都未命中时, 同一个商品 id 在当前实例中同时只会有一个线程查询数据表 (single-flight);
+ * 数据表中不存在的商品会缓存一个短期的空值标记, 避免每次都穿透到数据表; 空值标记是带过期时间的独立 key,
+ * 不写入商品字典的 hash, 不会让字典随着被查询的不存在的 id 无限增长
+ */
+@Slf4j
+@Component
+public class SimpleGoodsInfoCache {
+
+    /**
+     * 旧版本写在字典 hash 中的空值标记的首字节, 后面跟 8 字节的过期时间戳; 读到时从 hash 中删除
+     */
+    private static final byte LEGACY_NEGATIVE_MARKER = 0;
+
+    private static final byte[] NEGATIVE_MARKER_VALUE = "1".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * L1 中的空值标记, 只按引用比较
+     */
+    private static final SimpleGoodsInfo MISSING = new SimpleGoodsInfo(-1L);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ShardedGoodsDict shardedGoodsDict;
+
+    /**
+     * 是否开启 L1 缓存
+     */
+    private final boolean localEnabled;
+
+    /**
+     * L1 缓存: goodsId -> SimpleGoodsInfo
+     */
+    private final LRUCache<Long, SimpleGoodsInfo> localCache;
+
+    /**
+     * L1 缓存过期时间
+     */
+    private final long localTtlMillis;
+
+    /**
+     * 写入 Redis 时使用的编码
+     */
+    private final SimpleGoodsInfoCodec codec;
+
+    /**
+     * 是否缓存数据表中不存在的商品
+     */
+    private final boolean negativeEnabled;
+
+    /**
+     * 空值标记的过期时间
+     */
+    private final long negativeTtlMillis;
+
+    /**
+     * 过期时间随机浮动的比例, 避免同一批写入的缓存同时过期
+     */
+    private final double ttlJitterRatio;
+
+    /**
+     * 等待其他线程查询数据表的最长时间, 超时后自己查询
+     */
+    private final long loadWaitMillis;
+
+    /**
+     * 正在查询数据表的商品: goodsId -> 查询结果 (不存在时为 null)
+     */
+    private final ConcurrentHashMap<Long, CompletableFuture<SimpleGoodsInfo>> inFlightLoads =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localMisses = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder dbLoads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    public SimpleGoodsInfoCache(
+            @Value("${ecommerce.goods.cache.local.enabled:true}") boolean localEnabled,
+            @Value("${ecommerce.goods.cache.local.capacity:10000}") int localCapacity,
+            @Value("${ecommerce.goods.cache.local.ttl-millis:60000}") long localTtlMillis,
+            @Value("${ecommerce.goods.cache.codec:json}") String codec,
+            @Value("${ecommerce.goods.cache.negative.enabled:true}") boolean negativeEnabled,
+            @Value("${ecommerce.goods.cache.negative.ttl-millis:30000}") long negativeTtlMillis,
+            @Value("${ecommerce.goods.cache.ttl-jitter-ratio:0.1}") double ttlJitterRatio,
+            @Value("${ecommerce.goods.cache.load-wait-millis:3000}") long loadWaitMillis) {
+        this.localEnabled = localEnabled;
+        this.localTtlMillis = localTtlMillis;
+        this.localCache = CacheUtil.newLRUCache(localCapacity, localTtlMillis);
+        this.codec = SimpleGoodsInfoCodec.of(codec);
+        this.negativeEnabled = negativeEnabled;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.ttlJitterRatio = ttlJitterRatio;
+        this.loadWaitMillis = loadWaitMillis;
+    }
+
+    /**
+     * <h2>批量获取简单商品信息</h2>
+     * 先查 L1 再查 Redis, 都没有的通过 loader 从数据表中加载并写入缓存; 不存在的商品不会出现在结果中
+     * @param loader 根据商品 id 查询数据表
+     */
+    public Map<Long, SimpleGoodsInfo> getAll(Collection<Long> ids,
+                                             Function<List<Long>, List<SimpleGoodsInfo>> loader) {
+        Map<Long, SimpleGoodsInfo> result = new LinkedHashMap<>(ids.size());
+        List<Long> localMissIds = new ArrayList<>(ids.size());
+
+        // 1. 查询 L1
+        for (Long id : ids) {
+            SimpleGoodsInfo goodsInfo = localEnabled ? localCache.get(id, false) : null;
+            if (null == goodsInfo) {
+                localMissIds.add(id);
+            } else if (MISSING != goodsInfo) {
+                result.put(id, goodsInfo);
+            }
+        }
+        if (localEnabled) {
+            localHits.add(ids.size() - localMissIds.size());
+            localMisses.add(localMissIds.size());
+        }
+        if (localMissIds.isEmpty()) {
+            return result;
+        }
+
+        // 2. L1 中没有的再去 Redis 中查询
+        Map<Long, byte[]> cached = shardedGoodsDict.multiGet(localMissIds);
+        List<Long> dictMissIds = new ArrayList<>();
+        List<Long> legacyMarkerIds = new ArrayList<>();
+        for (Long id : localMissIds) {
+            byte[] value = cached.get(id);
+            if (null != value && isLegacyNegative(value)) {
+                legacyMarkerIds.add(id);
+                value = null;
+            }
+            if (null == value) {
+                dictMissIds.add(id);
+                continue;
+            }
+            redisHits.increment();
+            SimpleGoodsInfo goodsInfo = SimpleGoodsInfoCodec.decodeAny(value);
+            result.put(id, goodsInfo);
+            putLocal(goodsInfo);
+        }
+        if (!legacyMarkerIds.isEmpty()) {
+            shardedGoodsDict.removeAll(legacyMarkerIds);
+        }
+        List<Long> redisMissIds = filterMissing(dictMissIds);
+        redisHits.add(dictMissIds.size() - redisMissIds.size());
+        redisMisses.add(redisMissIds.size());
+        if (redisMissIds.isEmpty()) {
+            return result;
+        }
+
+        // 3. 缓存中都没有的, 查询数据表
+        result.putAll(load(redisMissIds, loader));
+        return result;
+    }
+
+    /**
+     * <h2>从数据表中加载的商品信息写入缓存</h2>
+     * 数据来自数据表, 是最新的, 只需要写入当前实例的 L1 和 Redis
+     */
+    public void putAll(Collection<SimpleGoodsInfo> goodsInfos) {
+        if (goodsInfos.isEmpty()) {
+            return;
+        }
+        Map<Long, byte[]> id2Encoded = new HashMap<>(goodsInfos.size());
+        goodsInfos.forEach(g -> id2Encoded.put(g.getId(), codec.encode(g)));
+        // 保存到 Redis 中
+        shardedGoodsDict.putAll(id2Encoded);
+        goodsInfos.forEach(this::putLocal);
+    }
+
+    /**
+     * <h2>商品信息发生了变化, 通知所有实例清除 L1 缓存</h2>
+     * 如果当前处于事务中, 等事务提交之后再通知, 避免其他实例在提交前重新加载到旧数据
+     */
+    public void invalidate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String message = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishInvalidate(message);
+                }
+            });
+        } else {
+            publishInvalidate(message);
+        }
+    }
+
+    /**
+     * <h2>收到失效通知, 清除 L1 缓存</h2>
+     */
+    public void onInvalidate(String message) {
+        if (StringUtils.isBlank(message)) {
+            return;
+        }
+        for (String id : StringUtils.split(message, ',')) {
+            localCache.remove(Long.valueOf(id.trim()));
+        }
+        log.debug("invalidate local goods cache: [{}]", message);
+    }
+
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    public long getLocalMisses() {
+        return localMisses.sum();
+    }
+
+    public long getRedisHits() {
+        return redisHits.sum();
+    }
+
+    public long getRedisMisses() {
+        return redisMisses.sum();
+    }
+
+    /**
+     * <h2>从数据表中加载的商品数量</h2>
+     */
+    public long getDbLoads() {
+        return dbLoads.sum();
+    }
+
+    /**
+     * <h2>等待其他线程加载结果、没有自己查询数据表的商品数量</h2>
+     */
+    public long getCoalescedLoads() {
+        return coalescedLoads.sum();
+    }
+
+    public int getLocalSize() {
+        return localCache.size();
+    }
+
+    /**
+     * <h2>L1 命中率</h2>
+     */
+    public double getLocalHitRatio() {
+        return ratio(localHits.sum(), localMisses.sum());
+    }
+
+    /**
+     * <h2>L2 (Redis) 命中率, 只统计 L1 未命中的请求</h2>
+     */
+    public double getRedisHitRatio() {
+        return ratio(redisHits.sum(), redisMisses.sum());
+    }
+
+    /**
+     * <h2>single-flight 加载</h2>
+     * 没有其他线程在加载的 id 由当前线程一次批量查询; 已经在加载中的 id 等待对方的结果
+     */
+    private Map<Long, SimpleGoodsInfo> load(List<Long> ids, Function<List<Long>, List<SimpleGoodsInfo>> loader) {
+        Map<Long, CompletableFuture<SimpleGoodsInfo>> owned = new LinkedHashMap<>();
+        Map<Long, CompletableFuture<SimpleGoodsInfo>> waiting = new LinkedHashMap<>();
+        for (Long id : ids) {
+            CompletableFuture<SimpleGoodsInfo> future = new CompletableFuture<>();
+            CompletableFuture<SimpleGoodsInfo> existing = inFlightLoads.putIfAbsent(id, future);
+            if (null == existing) {
+                owned.put(id, future);
+            } else {
+                waiting.put(id, existing);
+            }
+        }
+
+        Map<Long, SimpleGoodsInfo> result = new HashMap<>(ids.size());
+        if (!owned.isEmpty()) {
+            try {
+                Map<Long, SimpleGoodsInfo> loaded = loadFromDb(new ArrayList<>(owned.keySet()), loader);
+                result.putAll(loaded);
+                owned.forEach((id, future) -> future.complete(loaded.get(id)));
+            } catch (RuntimeException ex) {
+                owned.values().forEach(future -> future.completeExceptionally(ex));
+                throw ex;
+            } finally {
+                owned.forEach(inFlightLoads::remove);
+            }
+        }
+
+        // 等待其他线程的加载结果, 超时或者对方失败时自己查询
+        List<Long> fallbackIds = new ArrayList<>();
+        waiting.forEach((id, future) -> {
+            try {
+                SimpleGoodsInfo goodsInfo = future.get(loadWaitMillis, TimeUnit.MILLISECONDS);
+                coalescedLoads.increment();
+                if (null != goodsInfo) {
+                    result.put(id, goodsInfo);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                fallbackIds.add(id);
+            } catch (Exception ex) {
+                log.warn("wait goods loading error, load by self: [{}], [{}]", id, ex.getMessage());
+                fallbackIds.add(id);
+            }
+        });
+        if (!fallbackIds.isEmpty()) {
+            result.putAll(loadFromDb(fallbackIds, loader));
+        }
+        return result;
+    }
+
+    /**
+     * <h2>查询数据表并写入缓存, 不存在的商品写入空值标记</h2>
+     */
+    private Map<Long, SimpleGoodsInfo> loadFromDb(List<Long> ids,
+                                                  Function<List<Long>, List<SimpleGoodsInfo>> loader) {
+        dbLoads.add(ids.size());
+        List<SimpleGoodsInfo> goodsInfos = loader.apply(ids);
+        Map<Long, SimpleGoodsInfo> loaded = new HashMap<>(goodsInfos.size());
+        goodsInfos.forEach(g -> loaded.put(g.getId(), g));
+        putAll(goodsInfos);
+
+        if (negativeEnabled) {
+            List<Long> missingIds = ids.stream().filter(id -> !loaded.containsKey(id)).collect(Collectors.toList());
+            if (!missingIds.isEmpty()) {
+                log.info("cache missing goods: [{}]", missingIds);
+                putMissing(missingIds);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * <h2>写入空值标记, 每个标记是一个独立的 key, 由 Redis 的过期时间负责清理</h2>
+     */
+    private void putMissing(List<Long> ids) {
+        ids.forEach(this::putLocalMissing);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : ids) {
+                connection.stringCommands().set(missingKey(id), NEGATIVE_MARKER_VALUE,
+                        Expiration.milliseconds(jitter(negativeTtlMillis)), RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        }, null);
+    }
+
+    /**
+     * <h2>过滤掉有空值标记的 id, 返回需要查询数据表的部分</h2>
+     */
+    private List<Long> filterMissing(List<Long> ids) {
+        if (!negativeEnabled || ids.isEmpty()) {
+            return ids;
+        }
+        List<String> markers = stringRedisTemplate.opsForValue().multiGet(
+                ids.stream().map(SimpleGoodsInfoCache::missingKeyOf).collect(Collectors.toList()));
+        if (null == markers) {
+            return ids;
+        }
+        List<Long> missIds = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (null == markers.get(i)) {
+                missIds.add(ids.get(i));
+            } else {
+                putLocalMissing(ids.get(i));
+            }
+        }
+        return missIds;
+    }
+
+    private static String missingKeyOf(Long id) {
+        return GoodsConstant.ECOMMERCE_GOODS_MISSING_KEY_PREFIX + id;
+    }
+
+    private static byte[] missingKey(Long id) {
+        return missingKeyOf(id).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isLegacyNegative(byte[] value) {
+        return value.length == 9 && value[0] == LEGACY_NEGATIVE_MARKER;
+    }
+
+    private void putLocal(SimpleGoodsInfo goodsInfo) {
+        if (localEnabled) {
+            localCache.put(goodsInfo.getId(), goodsInfo, jitter(localTtlMillis));
+        }
+    }
+
+    private void putLocalMissing(Long id) {
+        if (localEnabled) {
+            localCache.put(id, MISSING, jitter(Math.min(negativeTtlMillis, localTtlMillis)));
+        }
+    }
+
+    /**
+     * <h2>过期时间在 [ttl * (1 - ratio), ttl * (1 + ratio)] 之间随机</h2>
+     */
+    private long jitter(long ttlMillis) {
+        long delta = (long) (ttlMillis * ttlJitterRatio);
+        if (delta <= 0) {
+            return ttlMillis;
+        }
+        return ttlMillis + ThreadLocalRandom.current().nextLong(-delta, delta + 1);
+    }
+
+    private void publishInvalidate(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(GoodsConstant.ECOMMERCE_GOODS_INVALIDATE_CHANNEL, message);
+        } catch (Exception ex) {
+            // 通知失败时, 其他实例的 L1 依靠过期时间兜底
+            log.error("publish goods cache invalidate message error: [{}]", ex.getMessage(), ex);
+        }
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return 0 == total ? 0D : (double) hits / total;
+    }
+}
@@ -0,0 +1,157 @@
+package com.flipped.learn.goodsservice.service.cache.codec;
+
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <h1>紧凑的二进制编解码</h1>
+ * 格式: [版本号 1 byte][空值标记 1 byte][id varlong][price zigzag varint, 最多 5 byte][goodsName][goodsPic]
+ * 字符串为 [长度 varint][UTF-8 字节], 为 null 的字段只在标记位中体现, 不占用后续字节
+ */
+public class BinarySimpleGoodsInfoCodec implements SimpleGoodsInfoCodec {
+
+    public static final BinarySimpleGoodsInfoCodec INSTANCE = new BinarySimpleGoodsInfoCodec();
+
+    /**
+     * 格式版本号, 不能与 JSON 的首字节 '{' 冲突; 格式变化时递增
+     */
+    public static final byte VERSION = 1;
+
+    private static final int FLAG_ID = 1;
+    private static final int FLAG_PRICE = 1 << 1;
+    private static final int FLAG_NAME = 1 << 2;
+    private static final int FLAG_PIC = 1 << 3;
+
+    @Override
+    public byte[] encode(SimpleGoodsInfo goodsInfo) {
+        byte[] name = null == goodsInfo.getGoodsName()
+                ? null : goodsInfo.getGoodsName().getBytes(StandardCharsets.UTF_8);
+        byte[] pic = null == goodsInfo.getGoodsPic()
+                ? null : goodsInfo.getGoodsPic().getBytes(StandardCharsets.UTF_8);
+
+        int flags = 0;
+        if (null != goodsInfo.getId()) {
+            flags |= FLAG_ID;
+        }
+        if (null != goodsInfo.getPrice()) {
+            flags |= FLAG_PRICE;
+        }
+        if (null != name) {
+            flags |= FLAG_NAME;
+        }
+        if (null != pic) {
+            flags |= FLAG_PIC;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                16 + (null == name ? 0 : name.length) + (null == pic ? 0 : pic.length));
+        out.write(VERSION);
+        out.write(flags);
+        if (null != goodsInfo.getId()) {
+            writeVarLong(out, goodsInfo.getId());
+        }
+        if (null != goodsInfo.getPrice()) {
+            int price = goodsInfo.getPrice();
+            writeVarInt(out, (price << 1) ^ (price >> 31));
+        }
+        if (null != name) {
+            writeBytes(out, name);
+        }
+        if (null != pic) {
+            writeBytes(out, pic);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public SimpleGoodsInfo decode(byte[] bytes) {
+        if (bytes.length < 2 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("unsupported simple goods info binary version");
+        }
+        Reader reader = new Reader(bytes, 2);
+        int flags = bytes[1];
+
+        SimpleGoodsInfo goodsInfo = new SimpleGoodsInfo();
+        if ((flags & FLAG_ID) != 0) {
+            goodsInfo.setId(reader.readVarLong());
+        }
+        if ((flags & FLAG_PRICE) != 0) {
+            // 按 long 读取再截断, 兼容旧版本把 zigzag 结果符号扩展成 10 byte 写入的数据
+            int zigzag = (int) reader.readVarLong();
+            goodsInfo.setPrice((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            goodsInfo.setGoodsName(reader.readString());
+        }
+        if ((flags & FLAG_PIC) != 0) {
+            goodsInfo.setGoodsPic(reader.readString());
+        }
+        return goodsInfo;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * <h2>按无符号 int 写入 varint</h2>
+     * 不能先扩展成 long 再写: 最高位为 1 的 int 会被符号扩展, 占用 10 个字节
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * <h2>顺序读取字节数组</h2>
+     */
+    private static class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("truncated simple goods info");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint in simple goods info");
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("malformed string length in simple goods info");
+            }
+            String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.flipped.learn.goodsservice.service.cache.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <h1>JSON 编解码, 与之前直接存储 fastjson 字符串的格式完全一致</h1>
+ */
+public class JsonSimpleGoodsInfoCodec implements SimpleGoodsInfoCodec {
+
+    public static final JsonSimpleGoodsInfoCodec INSTANCE = new JsonSimpleGoodsInfoCodec();
+
+    @Override
+    public byte[] encode(SimpleGoodsInfo goodsInfo) {
+        return JSON.toJSONString(goodsInfo).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public SimpleGoodsInfo decode(byte[] bytes) {
+        return JSON.parseObject(new String(bytes, StandardCharsets.UTF_8), SimpleGoodsInfo.class);
+    }
+}
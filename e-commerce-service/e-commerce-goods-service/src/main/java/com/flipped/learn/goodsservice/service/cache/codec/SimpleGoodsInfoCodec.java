@@ -0,0 +1,43 @@
+package com.flipped.learn.goodsservice.service.cache.codec;
+
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+
+/**
+ * <h1>Redis 中缓存的简单商品信息编解码接口</h1>
+ */
+public interface SimpleGoodsInfoCodec {
+
+    /**
+     * <h2>编码成写入 Redis 的字节</h2>
+     */
+    byte[] encode(SimpleGoodsInfo goodsInfo);
+
+    /**
+     * <h2>从 Redis 中读出的字节解码</h2>
+     */
+    SimpleGoodsInfo decode(byte[] bytes);
+
+    /**
+     * <h2>根据首字节判断数据格式并解码, 滚动升级期间新旧两种格式会同时存在</h2>
+     * 二进制格式以版本号开头, JSON 格式以 '{' 开头
+     */
+    static SimpleGoodsInfo decodeAny(byte[] bytes) {
+        if (bytes.length > 0 && bytes[0] == BinarySimpleGoodsInfoCodec.VERSION) {
+            return BinarySimpleGoodsInfoCodec.INSTANCE.decode(bytes);
+        }
+        return JsonSimpleGoodsInfoCodec.INSTANCE.decode(bytes);
+    }
+
+    /**
+     * <h2>根据配置的名称获取编码器</h2>
+     */
+    static SimpleGoodsInfoCodec of(String name) {
+        if ("binary".equalsIgnoreCase(name)) {
+            return BinarySimpleGoodsInfoCodec.INSTANCE;
+        }
+        if ("json".equalsIgnoreCase(name)) {
+            return JsonSimpleGoodsInfoCodec.INSTANCE;
+        }
+        throw new IllegalArgumentException(name + " codec not exists");
+    }
+}
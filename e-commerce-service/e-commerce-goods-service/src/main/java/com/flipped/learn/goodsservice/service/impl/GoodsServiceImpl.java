@@ -4,29 +4,38 @@ import com.alibaba.fastjson.JSON;
 import com.flipped.learn.common.exception.BusinessException;
 import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
 import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
-import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.common.vo.CommonResponse;
 import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+import com.flipped.learn.goodsservice.entity.EcommerceGoodsInventorySagaLog;
+import com.flipped.learn.goodsservice.enums.InventoryDeductMode;
+import com.flipped.learn.goodsservice.enums.InventorySagaStatus;
+import com.flipped.learn.goodsservice.feign.OrderSagaClient;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsInventorySagaLogRepository;
 import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
 import com.flipped.learn.goodsservice.service.IGoodsService;
+import com.flipped.learn.goodsservice.service.cache.SimpleGoodsInfoCache;
+import com.flipped.learn.goodsservice.service.inventory.LocalInventoryReservation;
+import com.flipped.learn.goodsservice.service.inventory.RedisInventoryService;
 import com.flipped.learn.goodsservice.vo.PageSimpleGoodsInfo;
 import com.flipped.learn.servicesdk.common.TableId;
 import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
 import com.flipped.learn.servicesdk.goods.GoodsInfo;
 import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import io.seata.core.context.RootContext;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.IterableUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -37,12 +46,41 @@ import java.util.stream.Collectors;
 @Transactional(rollbackFor = Exception.class)
 public class GoodsServiceImpl implements IGoodsService {
 
+    /**
+     * 游标分页每页最多的商品数量
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private SimpleGoodsInfoCache simpleGoodsInfoCache;
 
     @Resource
     private EcommerceGoodsRepository goodsRepository;
 
+    @Resource
+    private EcommerceGoodsInventorySagaLogRepository sagaLogRepository;
+
+    @Resource
+    private RedisInventoryService redisInventoryService;
+
+    @Resource
+    private LocalInventoryReservation localInventoryReservation;
+
+    @Resource
+    private OrderSagaClient orderSagaClient;
+
+    /**
+     * 是否开启 Redis 库存预扣
+     */
+    @Value("${ecommerce.goods.inventory.redis.enabled:false}")
+    private boolean redisInventoryEnabled;
+
+    /**
+     * 库存扣减方式
+     */
+    @Value("${ecommerce.goods.inventory.deduct-mode:conditional_update}")
+    private InventoryDeductMode inventoryDeductMode;
+
     @Override
     public List<GoodsInfo> getGoodsInfoByTableId(TableId tableId) {
         // 详细的商品信息, 不能从 redis cache 中去拿
@@ -82,90 +120,71 @@ public class GoodsServiceImpl implements IGoodsService {
     }
 
     @Override
-    public List<SimpleGoodsInfo> getSimpleGoodsInfoByTableId(TableId tableId) {
-
-        // 获取商品的简单信息, 可以从 redis cache 中去拿, 拿不到需要从 DB 中获取并保存到 Redis 里面
-        // Redis 中的 KV 都是字符串类型
-        List<Object> goodIds = tableId.getIds().stream()
-                .map(i -> i.getId().toString())
-                .collect(Collectors.toList());
-
-        List<Object> cachedSimpleGoodsInfos = stringRedisTemplate.opsForHash()
-                .multiGet(GoodsConstant.ECOMMERCE_GOODS_DICT_KEY, goodIds)
-                .stream()
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    public PageSimpleGoodsInfo getSimpleGoodsInfoByCursor(Long lastId, int limit) {
 
-        // 如果从 Redis 中查到了商品信息, 分两种情况去操作
-        if (CollectionUtils.isNotEmpty(cachedSimpleGoodsInfos)) {
-            // 1. 如果从缓存中查询出所有需要的 SimpleGoodsInfo
-            if (cachedSimpleGoodsInfos.size() == goodIds.size()) {
-                log.info("get simple goods info by ids (from cache): [{}]", JSON.toJSONString(goodIds));
-                return parseCachedGoodsInfo(cachedSimpleGoodsInfos);
-            } else {
-                // 2. 一半从数据表中获取 (right), 一半从 redis cache 中获取 (left)
-                List<SimpleGoodsInfo> left = parseCachedGoodsInfo(cachedSimpleGoodsInfos);
-                // 取差集: 传递进来的参数 - 缓存中查到的 = 缓存中没有的
-                Collection<Long> subtractIds = CollectionUtils.subtract(
-                        goodIds.stream()
-                                .map(g -> Long.valueOf(g.toString())).collect(Collectors.toList()),
-                        left.stream()
-                                .map(SimpleGoodsInfo::getId).collect(Collectors.toList())
-                );
-                // 缓存中没有的, 查询数据表并缓存
-                List<SimpleGoodsInfo> right = queryGoodsFromDBAndCacheToRedis(
-                        new TableId(subtractIds.stream().map(TableId.Id::new).collect(Collectors.toList())
-                        ));
-                // 合并 left 和 right 并返回
-                log.info("get simple goods info by ids (from db and cache): [{}]",
-                        JSON.toJSONString(subtractIds));
-                return new ArrayList<>(CollectionUtils.union(left, right));
-            }
-        } else {
-            // 从 redis 里面什么都没有查到
-            return queryGoodsFromDBAndCacheToRedis(tableId);
+        // 每页数量限制在 [1, 100]
+        limit = Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE));
+        // 多查一条判断是否还有更多页, 不需要 count 查询; 按照主键定位, 和页码深度无关
+        List<EcommerceGoods> goods = goodsRepository.findByIdLessThan(
+                null == lastId ? Long.MAX_VALUE : lastId,
+                PageRequest.of(0, limit + 1, Sort.by("id").descending())
+        );
+        boolean hasMore = goods.size() > limit;
+        if (hasMore) {
+            goods = goods.subList(0, limit);
         }
+
+        return new PageSimpleGoodsInfo(
+                goods.stream()
+                        .map(EcommerceGoods::toSimple)
+                        .collect(Collectors.toList()),
+                hasMore,
+                goods.isEmpty() ? null : goods.get(goods.size() - 1).getId()
+        );
     }
 
-    /**
-     * <h2>将缓存中的数据反序列化成 Java Pojo 对象</h2>
-     */
-    private List<SimpleGoodsInfo> parseCachedGoodsInfo(List<Object> cachedSimpleGoodsInfo) {
+    @Override
+    public List<SimpleGoodsInfo> getSimpleGoodsInfoByTableId(TableId tableId) {
 
-        return cachedSimpleGoodsInfo.stream()
-                .map(s -> JSON.parseObject(s.toString(), SimpleGoodsInfo.class))
+        // 获取商品的简单信息, 可以从缓存 (本地 L1 + Redis) 中去拿, 拿不到需要从 DB 中获取并保存到缓存里面
+        List<Long> goodIds = tableId.getIds().stream()
+                .map(TableId.Id::getId)
                 .collect(Collectors.toList());
+
+        // 缓存中没有的, 同一个商品 id 只会有一个线程查询数据表; 数据表中不存在的商品也会短暂缓存
+        Map<Long, SimpleGoodsInfo> simpleGoodsInfos =
+                simpleGoodsInfoCache.getAll(goodIds, this::queryGoodsFromDB);
+        log.info("get simple goods info by ids: [{}], found: [{}]",
+                JSON.toJSONString(goodIds), simpleGoodsInfos.size());
+        return new ArrayList<>(simpleGoodsInfos.values());
     }
 
     /**
-     * <h2>从数据表中查询数据, 并缓存到 Redis 中</h2>
+     * <h2>从数据表中查询数据, 由缓存负责写入</h2>
      */
-    private List<SimpleGoodsInfo> queryGoodsFromDBAndCacheToRedis(TableId tableId) {
+    private List<SimpleGoodsInfo> queryGoodsFromDB(List<Long> ids) {
 
         // 从数据表中查询数据并做转换
-        List<Long> ids = tableId.getIds().stream()
-                .map(TableId.Id::getId).collect(Collectors.toList());
         log.info("get simple goods info by ids (from db): [{}]",
                 JSON.toJSONString(ids));
         List<EcommerceGoods> ecommerceGoods = IterableUtils.toList(goodsRepository.findAllById(ids));
-        List<SimpleGoodsInfo> result = ecommerceGoods.stream()
+        return ecommerceGoods.stream()
                 .map(EcommerceGoods::toSimple)
                 .collect(Collectors.toList());
-        // 将结果缓存, 下一次可以直接从 redis cache 中查询
-        log.info("cache goods info: [{}]", JSON.toJSONString(ids));
-
-        Map<String, String> id2JsonObject = new HashMap<>(result.size());
-        result.forEach(g -> id2JsonObject.put(
-                g.getId().toString(), JSON.toJSONString(g)
-        ));
-        // 保存到 Redis 中
-        stringRedisTemplate.opsForHash().putAll(
-                GoodsConstant.ECOMMERCE_GOODS_DICT_KEY, id2JsonObject);
-        return result;
     }
 
     @Override
     public Boolean deductGoodsInventory(List<DeductGoodsInventory> deductGoodsInventories) {
+        deduct(deductGoodsInventories, UUID.randomUUID().toString());
+        return true;
+    }
+
+    /**
+     * <h2>扣减库存: 开启了 Redis 库存的商品先在 Redis 中预扣, 剩下的再按照扣减方式扣减</h2>
+     * @param reservationId Redis 预扣单号, 之后可以按预扣单号取消
+     * @return 进程内预留扣减的部分, 没有时为空
+     */
+    private Map<Long, Integer> deduct(List<DeductGoodsInventory> deductGoodsInventories, String reservationId) {
         // 检验下参数是否合法
         deductGoodsInventories.forEach(d -> {
             if (d.getCount() <= 0) {
@@ -173,28 +192,199 @@ public class GoodsServiceImpl implements IGoodsService {
             }
         });
 
+        // goodsId -> 扣减数量, 同一个商品出现多次属于非法参数
+        Map<Long, Integer> goodsId2Count = new HashMap<>(deductGoodsInventories.size());
+        deductGoodsInventories.forEach(d -> {
+            if (null != goodsId2Count.put(d.getGoodsId(), d.getCount())) {
+                throw new BusinessException(GlobalErrorCodeConstants.BAD_REQUEST);
+            }
+        });
+
+        // 开启了 Redis 库存的商品先在 Redis 中预扣, 剩下的再扣减商品表
+        Map<Long, Integer> tableGoodsId2Count = redisInventoryEnabled
+                ? redisInventoryService.reserve(reservationId, goodsId2Count) : goodsId2Count;
+        if (tableGoodsId2Count.isEmpty()) {
+            log.info("deduct goods inventory done (redis)");
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> localGoodsId2Count = Collections.emptyMap();
+        if (InventoryDeductMode.CONDITIONAL_UPDATE == inventoryDeductMode) {
+            deductByConditionalUpdate(tableGoodsId2Count);
+        } else if (InventoryDeductMode.LOCAL_RESERVATION == inventoryDeductMode) {
+            // 全局事务回滚时无法归还进程内扣减的库存, 全局事务中改为逐条条件 UPDATE 扣减商品表, 由 Seata 负责回滚
+            if (RootContext.inGlobalTransaction()) {
+                deductByConditionalUpdate(tableGoodsId2Count);
+            } else {
+                localInventoryReservation.reserve(tableGoodsId2Count);
+                localGoodsId2Count = tableGoodsId2Count;
+            }
+        } else {
+            deductByEntity(tableGoodsId2Count);
+        }
+
+        // 商品记录发生了变化, 事务提交后通知各个实例清除本地缓存
+        simpleGoodsInfoCache.invalidate(tableGoodsId2Count.keySet());
+        log.info("deduct goods inventory done");
+
+        return localGoodsId2Count;
+    }
+
+    @Override
+    public List<DeductedGoodsInfo> deductGoodsInventoryWithPrice(List<DeductGoodsInventory> deductGoodsInventories) {
+
+        deductGoodsInventory(deductGoodsInventories);
+        return withPrice(deductGoodsInventories);
+    }
+
+    /**
+     * <h2>读取扣减商品的价格</h2>
+     */
+    private List<DeductedGoodsInfo> withPrice(List<DeductGoodsInventory> deductGoodsInventories) {
+
+        // 与扣减在同一个事务中读取价格, 下单的价格就是扣减库存时的价格
+        Map<Long, Integer> goodsId2Price = new HashMap<>(deductGoodsInventories.size());
+        goodsRepository.findAllById(deductGoodsInventories.stream()
+                .map(DeductGoodsInventory::getGoodsId)
+                .collect(Collectors.toList())
+        ).forEach(g -> goodsId2Price.put(g.getId(), g.getPrice()));
+        if (goodsId2Price.size() != deductGoodsInventories.size()) {
+            throw new BusinessException(ServiceErrorCodeConstants.GOODS_NOT_EXITS);
+        }
+
+        return deductGoodsInventories.stream()
+                .map(d -> new DeductedGoodsInfo(d.getGoodsId(), d.getCount(), goodsId2Price.get(d.getGoodsId())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<DeductedGoodsInfo> sagaDeductGoodsInventory(String txId,
+                                                            List<DeductGoodsInventory> deductGoodsInventories) {
+
+        // 重复的扣减请求直接返回上次的结果; 已经补偿过说明订单已经取消, 不能再扣减
+        Optional<EcommerceGoodsInventorySagaLog> sagaLog = sagaLogRepository.findByTxId(txId);
+        if (sagaLog.isPresent()) {
+            if (InventorySagaStatus.COMPENSATED == sagaLog.get().getStatus()) {
+                log.warn("saga already compensated, reject deduct: [{}]", txId);
+                throw new BusinessException(ServiceErrorCodeConstants.ORDER_TRANSACTION_CANCELED);
+            }
+            log.info("saga already deducted: [{}]", txId);
+            return sagaLog.get().toDeductedGoods();
+        }
+
+        // Redis 预扣使用 txId 作为预扣单号, 补偿时按照 txId 取消; 并发的重复请求会因为 tx_id 唯一索引冲突而整体回滚
+        Map<Long, Integer> localGoodsId2Count = deduct(deductGoodsInventories, txId);
+        List<DeductedGoodsInfo> deductedGoods = withPrice(deductGoodsInventories);
+        sagaLogRepository.save(EcommerceGoodsInventorySagaLog.deducted(txId, deductedGoods, localGoodsId2Count));
+        log.info("saga deduct goods inventory: [{}], [{}]", txId, JSON.toJSONString(deductedGoods));
+        return deductedGoods;
+    }
+
+    @Override
+    public Boolean sagaCompensateGoodsInventory(String txId) {
+
+        Optional<EcommerceGoodsInventorySagaLog> sagaLog = sagaLogRepository.findByTxId(txId);
+        if (sagaLog.isPresent() && InventorySagaStatus.COMPENSATED == sagaLog.get().getStatus()) {
+            return true;
+        }
+        // 只有订单服务已经标记为补偿中的 saga 才能补偿, 不能提前取消还没有创建的订单
+        checkCompensating(txId);
+
+        // 补偿先于扣减到达 (扣减请求超时但还没有执行), 记录下来拒绝之后的扣减
+        if (!sagaLog.isPresent()) {
+            sagaLogRepository.save(EcommerceGoodsInventorySagaLog.compensated(txId));
+            log.info("saga compensate before deduct: [{}]", txId);
+            return true;
+        }
+
+        // Redis 预扣的部分按照 txId 取消预扣, 进程内预留的部分归还进程内, 其余的归还商品表
+        // 关闭 Redis 库存之前预扣的部分也需要取消, 这里不检查开关
+        List<DeductedGoodsInfo> deductedGoods = sagaLog.get().toDeductedGoods();
+        Map<Long, Integer> redisGoodsId2Count = redisInventoryService.cancel(txId);
+        Map<Long, Integer> localGoodsId2Count = sagaLog.get().toLocalGoodsId2Count();
+        deductedGoods.stream()
+                .filter(d -> !redisGoodsId2Count.containsKey(d.getGoodsId())
+                        && !localGoodsId2Count.containsKey(d.getGoodsId()))
+                .forEach(d -> goodsRepository.returnInventory(d.getGoodsId(), d.getCount()));
+        localInventoryReservation.release(localGoodsId2Count);
+        sagaLog.get().setStatus(InventorySagaStatus.COMPENSATED);
+        sagaLogRepository.save(sagaLog.get());
+
+        simpleGoodsInfoCache.invalidate(deductedGoods.stream()
+                .map(DeductedGoodsInfo::getGoodsId)
+                .collect(Collectors.toSet()));
+        log.info("saga compensate goods inventory: [{}], [{}]", txId, JSON.toJSONString(deductedGoods));
+        return true;
+    }
+
+    /**
+     * <h2>向订单服务确认 saga 正在补偿, 否则拒绝补偿</h2>
+     */
+    private void checkCompensating(String txId) {
+
+        CommonResponse<Boolean> response = orderSagaClient.isCompensating(txId);
+        if (null == response || !GlobalErrorCodeConstants.SUCCESS.getCode().equals(response.getCode())) {
+            throw new RuntimeException("check order saga compensating failure: " + txId);
+        }
+        if (!Boolean.TRUE.equals(response.getData())) {
+            log.warn("order saga is not compensating, reject compensate: [{}]", txId);
+            throw new BusinessException(ServiceErrorCodeConstants.ORDER_TRANSACTION_NOT_COMPENSATING);
+        }
+    }
+
+    @Override
+    public Long enableRedisInventory(Long goodsId) {
+        if (!redisInventoryEnabled) {
+            log.warn("redis inventory is not enabled, goods still deduct from table: [{}]", goodsId);
+        }
+        return redisInventoryService.enable(goodsId);
+    }
+
+    @Override
+    public Boolean disableRedisInventory(Long goodsId) {
+        redisInventoryService.disable(goodsId);
+        return true;
+    }
+
+    /**
+     * <h2>条件 UPDATE 扣减库存: 检查和扣减在同一条语句中完成</h2>
+     * 不在全局事务中时所有商品一个 JDBC batch; 全局事务中逐条执行, 由 Seata 记录 undo log 负责回滚
+     * 任意一个商品扣减失败都抛出异常, 事务回滚已经扣减的部分
+     */
+    private void deductByConditionalUpdate(Map<Long, Integer> goodsId2Count) {
+        List<Long> failedIds = goodsRepository.deductInventory(goodsId2Count);
+        if (failedIds.isEmpty()) {
+            log.info("deduct goods inventory: [{}]", JSON.toJSONString(goodsId2Count));
+            return;
+        }
+        // 区分商品不存在和库存不足
+        if (IterableUtils.size(goodsRepository.findAllById(failedIds)) != failedIds.size()) {
+            log.error("goods not exists: [{}]", failedIds);
+            throw new BusinessException(ServiceErrorCodeConstants.GOODS_NOT_EXITS);
+        }
+        log.error("goods inventory is not enough: [{}]", failedIds);
+        throw new BusinessException(ServiceErrorCodeConstants.GOODS_INVENTORY_NOT_ENOUGH);
+    }
+
+    /**
+     * <h2>查询实体, 在内存中检查并扣减后写回</h2>
+     */
+    private void deductByEntity(Map<Long, Integer> goodsId2Count) {
         List<EcommerceGoods> ecommerceGoods = IterableUtils.toList(
-                goodsRepository.findAllById(deductGoodsInventories.stream()
-                        .map(DeductGoodsInventory::getGoodsId)
-                        .collect(Collectors.toList())
-                )
+                goodsRepository.findAllById(goodsId2Count.keySet())
         );
         // 根据传递的 goodsIds 查询不到商品对象, 抛异常
         if (CollectionUtils.isEmpty(ecommerceGoods)) {
             throw new BusinessException(ServiceErrorCodeConstants.GOODS_NOT_EXITS);
         }
         // 查询出来的商品数量与传递的不一致, 抛异常
-        if (ecommerceGoods.size() != deductGoodsInventories.size()) {
+        if (ecommerceGoods.size() != goodsId2Count.size()) {
             throw new BusinessException(GlobalErrorCodeConstants.BAD_REQUEST);
         }
-        // goodsId -> DeductGoodsInventory
-        Map<Long, DeductGoodsInventory> goodsId2Inventory = deductGoodsInventories.stream()
-                .collect(Collectors.toMap(DeductGoodsInventory::getGoodsId, Function.identity()));
 
         // 检查是不是可以扣减库存, 再去扣减库存
         ecommerceGoods.forEach(g -> {
             Long currentInventory = g.getInventory();
-            Integer needDeductInventory = goodsId2Inventory.get(g.getId()).getCount();
+            Integer needDeductInventory = goodsId2Count.get(g.getId());
             if (currentInventory < needDeductInventory) {
                 log.error("goods inventory is not enough: [{}], [{}]", currentInventory, needDeductInventory);
                 throw new BusinessException(ServiceErrorCodeConstants.GOODS_INVENTORY_NOT_ENOUGH);
@@ -205,8 +395,5 @@ public class GoodsServiceImpl implements IGoodsService {
         });
 
         goodsRepository.saveAll(ecommerceGoods);
-        log.info("deduct goods inventory done");
-
-        return true;
     }
-}
\ No newline at end of file
+}
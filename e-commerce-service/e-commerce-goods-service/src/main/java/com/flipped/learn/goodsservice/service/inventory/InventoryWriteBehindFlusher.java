@@ -0,0 +1,94 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * <h1>Redis 库存预扣的后台任务: 同步到商品表以及补偿</h1>
+ */
+@Slf4j
+@Component
+public class InventoryWriteBehindFlusher {
+
+    private final RedisInventoryService redisInventoryService;
+
+    /**
+     * 是否开启 Redis 库存
+     */
+    @Value("${ecommerce.goods.inventory.redis.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每次同步的预扣记录数量
+     */
+    @Value("${ecommerce.goods.inventory.redis.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    /**
+     * 预扣记录创建超过这个时间才同步, 需要大于全局事务的超时时间, 保证记录所属的全局事务已经结束
+     */
+    @Value("${ecommerce.goods.inventory.redis.flush-after-millis:70000}")
+    private long flushAfterMillis;
+
+    /**
+     * 预扣超过这个时间还没有同步时检查是否需要补偿, 需要大于全局事务的超时时间
+     */
+    @Value("${ecommerce.goods.inventory.redis.compensate-after-millis:120000}")
+    private long compensateAfterMillis;
+
+    private final Counter flushedCounter;
+
+    private final Counter releasedCounter;
+
+    public InventoryWriteBehindFlusher(RedisInventoryService redisInventoryService, MeterRegistry meterRegistry) {
+        this.redisInventoryService = redisInventoryService;
+        this.flushedCounter = Counter.builder("ecommerce.goods.inventory.redis.flushed")
+                .description("redis inventory reservations flushed to goods table")
+                .register(meterRegistry);
+        this.releasedCounter = Counter.builder("ecommerce.goods.inventory.redis.released")
+                .description("redis inventory reservations released by compensation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * <h2>把预扣记录同步到商品表, 一次同步到没有积压为止</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.goods.inventory.redis.flush-interval-millis:1000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<String> flushed;
+            do {
+                flushed = redisInventoryService.flushReservations(flushBatchSize, flushAfterMillis);
+                redisInventoryService.confirm(flushed);
+                flushedCounter.increment(flushed.size());
+            } while (flushed.size() >= flushBatchSize);
+        } catch (Exception ex) {
+            // 全局锁冲突等情况, 等下一次再同步
+            log.warn("flush goods redis inventory error: [{}]", ex.getMessage());
+        }
+    }
+
+    /**
+     * <h2>补偿全局事务回滚的预扣</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.goods.inventory.redis.compensate-interval-millis:30000}")
+    public void compensate() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            releasedCounter.increment(redisInventoryService.compensate(compensateAfterMillis));
+        } catch (Exception ex) {
+            log.error("compensate goods redis inventory error: [{}]", ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.seata.core.context.RootContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>进程内库存预留</h1>
+ * 每个商品从商品表中一次预留一批库存 (一条 UPDATE), 之后的订单在进程内分段扣减, 用完了再预留下一批;
+ * 商品表中的库存始终是 "还没有被任何实例预留的部分", 多个实例同时运行也不会超卖
+ * 失败时拒绝 (fail closed): 预留库存失败或者超时, 扣减直接失败, 不会在没有库存的情况下放行
+ * 重启后从商品表重新预留; 空闲的商品和停机时会把没有用完的库存归还商品表, 进程崩溃时没有归还的部分会少卖
+ * 不能在 Seata 全局事务中使用: 进程内的扣减不是数据表的写操作, 分支提交之后全局事务再回滚时无法归还
+ */
+@Slf4j
+@Component
+public class LocalInventoryReservation {
+
+    /**
+     * goodsId -> 进程内的库存
+     */
+    private final ConcurrentHashMap<Long, StripedInventoryCounter> counters = new ConcurrentHashMap<>();
+
+    private final EcommerceGoodsRepository goodsRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 预留库存专用线程: 不携带 Seata 全局事务上下文, 预留的库存不会跟随订单的全局事务回滚
+     */
+    private final ExecutorService leaseExecutor;
+
+    /**
+     * 每个商品的分段数量
+     */
+    private final int stripes;
+
+    /**
+     * 每次从商品表预留的库存数量
+     */
+    private final long leaseSize;
+
+    /**
+     * 预留库存的超时时间
+     */
+    private final long leaseTimeoutMillis;
+
+    /**
+     * 商品超过这个时间没有扣减时, 把剩余的库存归还商品表
+     */
+    private final long idleReturnMillis;
+
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder leases = new LongAdder();
+
+    public LocalInventoryReservation(
+            EcommerceGoodsRepository goodsRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${ecommerce.goods.inventory.local.stripes:0}") int stripes,
+            @Value("${ecommerce.goods.inventory.local.lease-size:100}") long leaseSize,
+            @Value("${ecommerce.goods.inventory.local.lease-timeout-millis:3000}") long leaseTimeoutMillis,
+            @Value("${ecommerce.goods.inventory.local.idle-return-millis:60000}") long idleReturnMillis) {
+        this.goodsRepository = goodsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.leaseSize = leaseSize;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.idleReturnMillis = idleReturnMillis;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.leaseExecutor = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "Goods-Inventory-Lease-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        FunctionCounter.builder("ecommerce.goods.inventory.local.reservations", reservations, LongAdder::sum)
+                .description("orders deducted from in-process inventory").register(meterRegistry);
+        FunctionCounter.builder("ecommerce.goods.inventory.local.leases", leases, LongAdder::sum)
+                .description("inventory leases taken from goods table").register(meterRegistry);
+        Gauge.builder("ecommerce.goods.inventory.local.goods", counters, Map::size)
+                .description("goods holding in-process inventory").register(meterRegistry);
+    }
+
+    /**
+     * <h2>扣减进程内的库存, 所有商品都扣减成功或者都不扣减</h2>
+     * 当前事务回滚时归还进程内的库存; 在全局事务中调用时直接拒绝, 调用方需要改为扣减商品表
+     */
+    public void reserve(Map<Long, Integer> goodsId2Count) {
+        if (RootContext.inGlobalTransaction()) {
+            throw new IllegalStateException("local inventory reservation can not join global transaction: "
+                    + RootContext.getXID());
+        }
+        Map<Long, Integer> taken = new LinkedHashMap<>(goodsId2Count.size());
+        try {
+            goodsId2Count.forEach((goodsId, count) -> {
+                take(goodsId, count);
+                taken.put(goodsId, count);
+            });
+        } catch (RuntimeException ex) {
+            taken.forEach(this::giveBack);
+            throw ex;
+        }
+        reservations.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (STATUS_COMMITTED != status) {
+                        taken.forEach(LocalInventoryReservation.this::giveBack);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * <h2>归还已经提交的扣减 (saga 补偿), 在事务中调用</h2>
+     * 进程内还持有库存的商品在事务提交后放回进程内; 其它商品 (已经归还商品表或者在其它实例上扣减的) 在当前事务中归还商品表
+     */
+    public void release(Map<Long, Integer> goodsId2Count) {
+        Map<Long, Integer> inProcess = new LinkedHashMap<>(goodsId2Count.size());
+        goodsId2Count.forEach((goodsId, count) -> {
+            if (counters.containsKey(goodsId)) {
+                inProcess.put(goodsId, count);
+            } else {
+                goodsRepository.returnInventory(goodsId, count);
+            }
+        });
+        if (inProcess.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    inProcess.forEach(LocalInventoryReservation.this::giveBack);
+                }
+            });
+        } else {
+            inProcess.forEach(this::giveBack);
+        }
+        log.info("release goods inventory to process: [{}]", inProcess);
+    }
+
+    /**
+     * <h2>把空闲商品剩余的库存归还商品表</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.goods.inventory.local.idle-check-millis:10000}")
+    public void returnIdle() {
+        long deadline = System.currentTimeMillis() - idleReturnMillis;
+        List<Long> idleIds = new ArrayList<>();
+        counters.forEach((goodsId, counter) -> {
+            if (counter.getLastAccessMillis() < deadline) {
+                idleIds.add(goodsId);
+            }
+        });
+        idleIds.forEach(this::returnToTable);
+    }
+
+    /**
+     * <h2>停机时归还所有剩余的库存</h2>
+     */
+    @PreDestroy
+    public void shutdown() {
+        new ArrayList<>(counters.keySet()).forEach(this::returnToTable);
+        leaseExecutor.shutdown();
+    }
+
+    private void take(Long goodsId, int count) {
+        while (true) {
+            StripedInventoryCounter counter = counters.computeIfAbsent(goodsId,
+                    k -> new StripedInventoryCounter(stripes));
+            if (counter.tryTake(count)) {
+                return;
+            }
+            // 进程内的库存不够, 同一个商品同时只有一个线程去商品表预留
+            synchronized (counter) {
+                if (counters.get(goodsId) != counter) {
+                    // 已经被归还商品表, 换成新的计数器; 旧计数器中如果还有库存 (兜底, 跨段扣减和 drain 持有同一把锁) 一起转移
+                    giveBack(goodsId, counter.drain());
+                    continue;
+                }
+                if (counter.tryTake(count)) {
+                    return;
+                }
+                long leased = lease(goodsId, Math.max(leaseSize, count));
+                if (leased < 0) {
+                    counters.remove(goodsId, counter);
+                    log.error("goods not exists: [{}]", goodsId);
+                    throw new BusinessException(ServiceErrorCodeConstants.GOODS_NOT_EXITS);
+                }
+                counter.add(leased);
+                if (counter.tryTake(count)) {
+                    return;
+                }
+            }
+            log.error("goods inventory is not enough: [{}], [{}]", goodsId, count);
+            throw new BusinessException(ServiceErrorCodeConstants.GOODS_INVENTORY_NOT_ENOUGH);
+        }
+    }
+
+    /**
+     * <h2>从商品表预留库存, 失败或者超时都拒绝本次扣减</h2>
+     * @return 预留的数量, 商品不存在时返回 -1
+     */
+    private long lease(Long goodsId, long amount) {
+        CompletableFuture<Long> future = CompletableFuture.supplyAsync(
+                () -> transactionTemplate.execute(status -> goodsRepository.leaseInventory(goodsId, amount)),
+                leaseExecutor);
+        try {
+            Long leased = future.get(leaseTimeoutMillis, TimeUnit.MILLISECONDS);
+            leases.increment();
+            log.info("lease goods inventory: [{}], [{}], [{}]", goodsId, amount, leased);
+            return null == leased ? 0 : leased;
+        } catch (TimeoutException ex) {
+            // 超时之后预留成功的库存仍然放回进程内, 不会丢失
+            future.thenAccept(leased -> giveBack(goodsId, leased));
+            log.error("lease goods inventory timeout: [{}], [{}]", goodsId, amount);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.thenAccept(leased -> giveBack(goodsId, leased));
+        } catch (Exception ex) {
+            log.error("lease goods inventory error: [{}], [{}]", goodsId, ex.getMessage(), ex);
+        }
+        throw new BusinessException(GlobalErrorCodeConstants.LOCKED);
+    }
+
+    /**
+     * <h2>归还进程内的库存</h2>
+     * 持有计数器的锁再写入, 不会写到正在被归还商品表的计数器中
+     */
+    private void giveBack(Long goodsId, long count) {
+        if (count <= 0) {
+            return;
+        }
+        while (true) {
+            StripedInventoryCounter counter = counters.computeIfAbsent(goodsId,
+                    k -> new StripedInventoryCounter(stripes));
+            synchronized (counter) {
+                if (counters.get(goodsId) == counter) {
+                    counter.add(count);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * <h2>把商品剩余的库存归还商品表, 归还失败时留在进程内</h2>
+     * 快速路径的 tryTake 不持有锁, 只会整体扣减单个段; 跨段扣减和 drain 持有计数器的锁, 不会在 drain 之后放回旧计数器
+     */
+    private void returnToTable(Long goodsId) {
+        StripedInventoryCounter counter = counters.get(goodsId);
+        if (null == counter) {
+            return;
+        }
+        long remaining;
+        synchronized (counter) {
+            counters.remove(goodsId, counter);
+            remaining = counter.drain();
+        }
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                goodsRepository.returnInventory(goodsId, remaining);
+                return null;
+            });
+            log.info("return goods inventory to table: [{}], [{}]", goodsId, remaining);
+        } catch (Exception ex) {
+            log.error("return goods inventory error: [{}], [{}]", goodsId, ex.getMessage(), ex);
+            giveBack(goodsId, remaining);
+        }
+    }
+}
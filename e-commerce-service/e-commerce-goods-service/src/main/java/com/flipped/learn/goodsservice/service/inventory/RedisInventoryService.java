@@ -0,0 +1,377 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+import com.flipped.learn.goodsservice.entity.EcommerceGoodsInventoryReservation;
+import com.flipped.learn.goodsservice.enums.InventoryReservationStatus;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsInventoryReservationRepository;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import io.seata.spring.annotation.GlobalLock;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>Redis 库存预扣</h1>
+ * 开启了 Redis 库存的商品 (热点商品), 下单时在 Redis 中用 Lua 脚本原子预扣, 不再竞争商品表的行锁;
+ * 预扣的同时在分支事务中写入一条预扣记录, 由后台任务合并后批量同步到商品表 (write-behind)
+ * 补偿: 本地事务回滚时立即归还 Redis 库存; 全局事务回滚时 Seata 会删除预扣记录, 由补偿任务发现后归还;
+ * saga 下单取消时按预扣单号 (saga 事务 id) 取消预扣, 见 {@link #cancel(String)}
+ * 开启和关闭 Redis 库存都需要在该商品没有下单流量的时候进行 (例如秒杀开始之前、结束之后)
+ */
+@Slf4j
+@Service
+public class RedisInventoryService {
+
+    private static final String PENDING_KEY = GoodsConstant.ECOMMERCE_GOODS_INVENTORY_PENDING_KEY;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private EcommerceGoodsRepository goodsRepository;
+
+    @Resource
+    private EcommerceGoodsInventoryReservationRepository reservationRepository;
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> reserveScript = new DefaultRedisScript<>();
+
+    private final DefaultRedisScript<Long> releaseScript = new DefaultRedisScript<>();
+
+    private final DefaultRedisScript<Long> restockScript = new DefaultRedisScript<>();
+
+    public RedisInventoryService() {
+        reserveScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/inventory_reserve.lua")));
+        reserveScript.setResultType(List.class);
+        releaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/inventory_release.lua")));
+        releaseScript.setResultType(Long.class);
+        restockScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/inventory_restock.lua")));
+        restockScript.setResultType(Long.class);
+    }
+
+    /**
+     * <h2>预扣 Redis 管理的商品库存, 必须在事务中调用</h2>
+     * @param goodsId2Count goodsId -> 扣减数量
+     * @return 没有开启 Redis 库存、需要继续扣减商品表的部分
+     */
+    public Map<Long, Integer> reserve(Map<Long, Integer> goodsId2Count) {
+        return reserve(UUID.randomUUID().toString(), goodsId2Count);
+    }
+
+    /**
+     * <h2>使用指定的预扣单号预扣, 之后可以按预扣单号取消</h2>
+     * @param reservationId 预扣单号, 不能重复
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, Integer> reserve(String reservationId, Map<Long, Integer> goodsId2Count) {
+        List<Long> goodsIds = new ArrayList<>(goodsId2Count.keySet());
+
+        List<String> keys = new ArrayList<>(goodsIds.size() + 1);
+        keys.add(PENDING_KEY);
+        goodsIds.forEach(id -> keys.add(stockKey(id)));
+        List<String> args = new ArrayList<>(goodsIds.size() * 2 + 2);
+        args.add(reservationId);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        goodsIds.forEach(id -> args.add(String.valueOf(goodsId2Count.get(id))));
+        goodsIds.forEach(id -> args.add(String.valueOf(id)));
+
+        List<Long> reply = stringRedisTemplate.execute(reserveScript, keys, args.toArray());
+        if (null == reply || reply.isEmpty()) {
+            throw new IllegalStateException("redis inventory reserve script returns nothing");
+        }
+        if (0 == reply.get(0)) {
+            Long goodsId = goodsIds.get(reply.get(1).intValue() - 1);
+            log.error("goods redis inventory is not enough: [{}], [{}]", goodsId, goodsId2Count.get(goodsId));
+            throw new BusinessException(ServiceErrorCodeConstants.GOODS_INVENTORY_NOT_ENOUGH);
+        }
+
+        Map<Long, Integer> unmanaged = new HashMap<>();
+        reply.subList(1, reply.size()).forEach(index -> {
+            Long goodsId = goodsIds.get(index.intValue() - 1);
+            unmanaged.put(goodsId, goodsId2Count.get(goodsId));
+        });
+        if (unmanaged.size() == goodsIds.size()) {
+            return unmanaged;
+        }
+        Map<Long, Integer> reserved = new LinkedHashMap<>(goodsId2Count);
+        unmanaged.keySet().forEach(reserved::remove);
+
+        // 本地事务回滚时立即归还
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (STATUS_COMMITTED != status) {
+                    release(reservationId, reserved);
+                }
+            }
+        });
+        // 预扣记录属于当前分支事务, 全局事务回滚时会被删除
+        reservationRepository.save(EcommerceGoodsInventoryReservation.reserved(reservationId, reserved));
+        log.info("reserve goods redis inventory: [{}], [{}]", reservationId, reserved);
+        return unmanaged;
+    }
+
+    /**
+     * <h2>把一批预扣记录合并后同步到商品表</h2>
+     * 只同步创建时间超过 flushAfterMillis (大于全局事务超时时间) 的记录, 它们所属的全局事务已经结束,
+     * 不会因为某一条记录还在全局事务中而让整批记录等待全局锁; GlobalLock + select for update 作为兜底,
+     * 保证不会同步之后又被全局事务回滚
+     * 商品表库存不足的商品: 包含它的预扣记录整体不同步 (已经扣减的其他商品归还), 标记为 RECONCILE 等待人工对账
+     * @return 已经同步的预扣单号
+     */
+    @GlobalLock
+    @Transactional(rollbackFor = Exception.class)
+    public List<String> flushReservations(int batchSize, long flushAfterMillis) {
+        List<EcommerceGoodsInventoryReservation> reservations =
+                reservationRepository.findByStatusAndCreateTimeBeforeOrderById(InventoryReservationStatus.RESERVED,
+                        new Date(System.currentTimeMillis() - flushAfterMillis), PageRequest.of(0, batchSize));
+        if (reservations.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 同一个商品的多次预扣合并成一次扣减
+        Map<Long, Integer> goodsId2Count = new HashMap<>();
+        reservations.forEach(r -> r.toGoodsId2Count().forEach((id, count) -> goodsId2Count.merge(id, count, Integer::sum)));
+        Set<Long> failedIds = new HashSet<>(goodsRepository.deductInventory(goodsId2Count));
+
+        List<EcommerceGoodsInventoryReservation> flushed = new ArrayList<>(reservations.size());
+        Map<Long, Integer> returned = new HashMap<>();
+        for (EcommerceGoodsInventoryReservation reservation : reservations) {
+            Map<Long, Integer> detail = reservation.toGoodsId2Count();
+            if (detail.keySet().stream().noneMatch(failedIds::contains)) {
+                reservation.setStatus(InventoryReservationStatus.FLUSHED);
+                flushed.add(reservation);
+                continue;
+            }
+            reservation.setStatus(InventoryReservationStatus.RECONCILE);
+            detail.forEach((id, count) -> {
+                if (!failedIds.contains(id)) {
+                    returned.merge(id, count, Integer::sum);
+                }
+            });
+        }
+        if (!failedIds.isEmpty()) {
+            // 库存已经在 Redis 中卖出, 这里只可能是商品表被直接修改过, 需要人工对账
+            new TreeMap<>(returned).forEach(goodsRepository::returnInventory);
+            log.error("goods table inventory is less than redis reserved, need reconcile: [{}], reservations: [{}]",
+                    failedIds.stream().collect(Collectors.toMap(id -> id, goodsId2Count::get)),
+                    reservations.stream()
+                            .filter(r -> InventoryReservationStatus.RECONCILE == r.getStatus())
+                            .map(EcommerceGoodsInventoryReservation::getReservationId)
+                            .collect(Collectors.toList()));
+        }
+
+        reservationRepository.saveAll(reservations);
+        log.info("flush goods redis inventory: [{}] of [{}] reservations, [{}]",
+                flushed.size(), reservations.size(), goodsId2Count);
+        return flushed.stream()
+                .map(EcommerceGoodsInventoryReservation::getReservationId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * <h2>取消预扣单号对应的预扣 (saga 补偿), 必须在事务中调用</h2>
+     * 加锁读取预扣记录, 和同步任务互斥:
+     * 1. 还没有同步 (RESERVED / RECONCILE): 标记为 CANCELED 不再同步, 事务提交后归还 Redis 库存
+     * 2. 已经同步 (FLUSHED): 在当前事务中归还商品表, 事务提交后把数量加回 Redis 库存
+     * @return 这次预扣中由 Redis 管理的商品和数量, 不需要再归还商品表; 没有预扣记录时返回空
+     */
+    public Map<Long, Integer> cancel(String reservationId) {
+        Optional<EcommerceGoodsInventoryReservation> found =
+                reservationRepository.findForUpdateByReservationId(reservationId);
+        if (!found.isPresent()) {
+            return new HashMap<>();
+        }
+        EcommerceGoodsInventoryReservation reservation = found.get();
+        Map<Long, Integer> goodsId2Count = reservation.toGoodsId2Count();
+        InventoryReservationStatus status = reservation.getStatus();
+        if (InventoryReservationStatus.CANCELED == status) {
+            return goodsId2Count;
+        }
+
+        TransactionSynchronization afterCommit;
+        if (InventoryReservationStatus.FLUSHED == status) {
+            new TreeMap<>(goodsId2Count).forEach(goodsRepository::returnInventory);
+            afterCommit = new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    restock(reservationId, goodsId2Count);
+                }
+            };
+        } else {
+            reservation.setStatus(InventoryReservationStatus.CANCELED);
+            reservationRepository.save(reservation);
+            // 归还失败时 Redis 中的预扣记录还在, 补偿任务发现 CANCELED 之后再次归还
+            afterCommit = new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(reservationId, goodsId2Count);
+                }
+            };
+        }
+        TransactionSynchronizationManager.registerSynchronization(afterCommit);
+        log.info("cancel goods redis inventory reservation: [{}], [{}], [{}]", reservationId, status, goodsId2Count);
+        return goodsId2Count;
+    }
+
+    /**
+     * <h2>同步到商品表之后, 删除 Redis 中的预扣记录</h2>
+     */
+    public void confirm(List<String> reservationIds) {
+        if (!reservationIds.isEmpty()) {
+            stringRedisTemplate.opsForHash().delete(PENDING_KEY, reservationIds.toArray());
+        }
+    }
+
+    /**
+     * <h2>补偿: 检查超过一定时间还没有同步的预扣</h2>
+     * 没有预扣记录 (全局事务回滚或者写入之前进程退出) 和已经取消的归还库存; 已经同步的删除 Redis 中的预扣记录
+     * @return 归还的预扣数量
+     */
+    public int compensate(long olderThanMillis) {
+        long deadline = System.currentTimeMillis() - olderThanMillis;
+        Map<String, String> stale = new HashMap<>();
+        try (Cursor<Map.Entry<Object, Object>> cursor = stringRedisTemplate.opsForHash()
+                .scan(PENDING_KEY, ScanOptions.scanOptions().count(500).build())) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                String value = entry.getValue().toString();
+                if (Long.parseLong(StringUtils.substringBefore(value, "|")) < deadline) {
+                    stale.put(entry.getKey().toString(), value);
+                }
+            }
+        } catch (Exception ex) {
+            log.error("scan goods redis inventory pending error: [{}]", ex.getMessage(), ex);
+            return 0;
+        }
+
+        int released = 0;
+        for (Map.Entry<String, String> entry : stale.entrySet()) {
+            Optional<EcommerceGoodsInventoryReservation> reservation =
+                    reservationRepository.findByReservationId(entry.getKey());
+            if (!reservation.isPresent()) {
+                log.warn("goods redis inventory reservation is rolled back: [{}], [{}]",
+                        entry.getKey(), entry.getValue());
+                if (release(entry.getKey(), parseDetail(entry.getValue()))) {
+                    released++;
+                }
+            } else if (InventoryReservationStatus.CANCELED == reservation.get().getStatus()) {
+                if (release(entry.getKey(), parseDetail(entry.getValue()))) {
+                    released++;
+                }
+            } else if (InventoryReservationStatus.FLUSHED == reservation.get().getStatus()) {
+                stringRedisTemplate.opsForHash().delete(PENDING_KEY, entry.getKey());
+            }
+        }
+        return released;
+    }
+
+    /**
+     * <h2>开启商品的 Redis 库存: 把商品表中的库存加载到 Redis</h2>
+     * @return Redis 中的库存
+     */
+    public Long enable(Long goodsId) {
+        EcommerceGoods goods = goodsRepository.findById(goodsId)
+                .orElseThrow(() -> new BusinessException(ServiceErrorCodeConstants.GOODS_NOT_EXITS));
+        Boolean loaded = stringRedisTemplate.opsForValue()
+                .setIfAbsent(stockKey(goodsId), String.valueOf(goods.getInventory()));
+        String stock = stringRedisTemplate.opsForValue().get(stockKey(goodsId));
+        log.info("enable goods redis inventory: [{}], loaded: [{}], stock: [{}]", goodsId, loaded, stock);
+        return null == stock ? null : Long.valueOf(stock);
+    }
+
+    /**
+     * <h2>关闭商品的 Redis 库存, 之后的扣减直接走商品表</h2>
+     * 已经预扣的部分仍然由后台任务同步到商品表
+     */
+    public void disable(Long goodsId) {
+        String stock = stringRedisTemplate.opsForValue().get(stockKey(goodsId));
+        stringRedisTemplate.delete(stockKey(goodsId));
+        log.info("disable goods redis inventory: [{}], stock: [{}]", goodsId, stock);
+    }
+
+    /**
+     * <h2>归还预扣的库存, 同一个预扣单号只会归还一次</h2>
+     */
+    private boolean release(String reservationId, Map<Long, Integer> goodsId2Count) {
+        List<String> keys = new ArrayList<>(goodsId2Count.size() + 1);
+        List<String> args = new ArrayList<>(goodsId2Count.size() + 1);
+        keys.add(PENDING_KEY);
+        args.add(reservationId);
+        goodsId2Count.forEach((id, count) -> {
+            keys.add(stockKey(id));
+            args.add(String.valueOf(count));
+        });
+        try {
+            Long released = stringRedisTemplate.execute(releaseScript, keys, args.toArray());
+            log.info("release goods redis inventory: [{}], [{}], [{}]", reservationId, goodsId2Count, released);
+            return null != released && 1 == released;
+        } catch (Exception ex) {
+            // 归还失败时 Redis 中的预扣记录还在, 补偿任务会再次归还
+            log.error("release goods redis inventory error: [{}], [{}]", reservationId, ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * <h2>把数量加回 Redis 库存, 商品表已经归还, 失败时只会少卖</h2>
+     */
+    private void restock(String reservationId, Map<Long, Integer> goodsId2Count) {
+        List<String> keys = new ArrayList<>(goodsId2Count.size());
+        List<String> args = new ArrayList<>(goodsId2Count.size());
+        goodsId2Count.forEach((id, count) -> {
+            keys.add(stockKey(id));
+            args.add(String.valueOf(count));
+        });
+        try {
+            stringRedisTemplate.execute(restockScript, keys, args.toArray());
+            log.info("restock goods redis inventory: [{}], [{}]", reservationId, goodsId2Count);
+        } catch (Exception ex) {
+            log.error("restock goods redis inventory error, need reconcile: [{}], [{}], [{}]",
+                    reservationId, goodsId2Count, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * <h2>解析 Redis 中的预扣记录: 预扣时间|goodsId=count,...</h2>
+     */
+    private static Map<Long, Integer> parseDetail(String value) {
+        Map<Long, Integer> goodsId2Count = new HashMap<>();
+        for (String item : StringUtils.split(StringUtils.substringAfter(value, "|"), ',')) {
+            goodsId2Count.put(Long.valueOf(StringUtils.substringBefore(item, "=")),
+                    Integer.valueOf(StringUtils.substringAfter(item, "=")));
+        }
+        return goodsId2Count;
+    }
+
+    private static String stockKey(Long goodsId) {
+        return GoodsConstant.ECOMMERCE_GOODS_INVENTORY_STOCK_KEY_PREFIX + goodsId;
+    }
+}
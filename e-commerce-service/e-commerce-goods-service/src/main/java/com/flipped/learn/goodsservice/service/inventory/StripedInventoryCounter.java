@@ -0,0 +1,113 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <h1>分段的库存计数器</h1>
+ * 库存分散在多个段中, 每个线程从随机的段开始 CAS 扣减, 避免所有线程竞争同一个变量;
+ * 快速路径只从单个段中整体扣减, 不会出现部分扣减再放回; 没有一个段够扣时进入慢路径,
+ * 持有锁取出所有段再判断总数, 并发的跨段扣减不会因为互相占用了一部分库存而同时失败
+ */
+class StripedInventoryCounter {
+
+    /**
+     * 每个段占用 8 个 long (64 字节), 不同的段不在同一个缓存行上
+     */
+    private static final int PADDING = 8;
+
+    private final int stripes;
+
+    private final AtomicLongArray values;
+
+    /**
+     * 最近一次扣减或者补充的时间
+     */
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    StripedInventoryCounter(int stripes) {
+        this.stripes = stripes;
+        this.values = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * <h2>扣减库存, 库存不足时不做任何扣减</h2>
+     */
+    boolean tryTake(long count) {
+        lastAccessMillis = System.currentTimeMillis();
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int i = 0; i < stripes; i++) {
+            int index = ((start + i) % stripes) * PADDING;
+            long current = values.get(index);
+            while (current >= count) {
+                if (values.compareAndSet(index, current, current - count)) {
+                    return true;
+                }
+                current = values.get(index);
+            }
+        }
+        return takeAcrossStripes(count);
+    }
+
+    /**
+     * <h2>慢路径: 持有锁取出所有段中的库存, 总数够时扣减, 剩下的放回</h2>
+     * 取出期间快速路径看到的段为 0, 会进入慢路径等待锁, 不会误判为库存不足
+     */
+    private synchronized boolean takeAcrossStripes(long count) {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += values.getAndSet(i * PADDING, 0);
+        }
+        if (total < count) {
+            add(total);
+            return false;
+        }
+        add(total - count);
+        return true;
+    }
+
+    /**
+     * <h2>增加库存, 平均分到各个段中</h2>
+     */
+    void add(long count) {
+        if (count <= 0) {
+            return;
+        }
+        lastAccessMillis = System.currentTimeMillis();
+        long each = count / stripes;
+        long rest = count % stripes;
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int i = 0; i < stripes; i++) {
+            long value = each + (i < rest ? 1 : 0);
+            if (value > 0) {
+                values.addAndGet(((start + i) % stripes) * PADDING, value);
+            }
+        }
+    }
+
+    /**
+     * <h2>取出所有段中的库存</h2>
+     */
+    synchronized long drain() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += values.getAndSet(i * PADDING, 0);
+        }
+        return sum;
+    }
+
+    /**
+     * <h2>当前库存, 并发扣减时只是一个近似值</h2>
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += values.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+}
@@ -39,4 +39,24 @@ public class AsyncTaskInfo {
      * 异步任务总耗时
      */
     private String totalTime;
+
+    /**
+     * 流式导入: 已经读取的行数
+     */
+    private Long rowsRead;
+
+    /**
+     * 流式导入: 插入成功的商品数量
+     */
+    private Long inserted;
+
+    /**
+     * 流式导入: 已经存在而跳过的商品数量
+     */
+    private Long skipped;
+
+    /**
+     * 流式导入: 无法解析或者不合法的行数
+     */
+    private Long failed;
 }
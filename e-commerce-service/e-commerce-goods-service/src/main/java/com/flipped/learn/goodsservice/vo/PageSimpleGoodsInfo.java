@@ -23,4 +23,12 @@ public class PageSimpleGoodsInfo {
 
     @ApiModelProperty(value = "是否有更多的商品(分页)")
     private Boolean hasMore;
+
+    @ApiModelProperty(value = "当前页最后一个商品的 id, 游标分页时作为下一页的 lastId")
+    private Long lastId;
+
+    public PageSimpleGoodsInfo(List<SimpleGoodsInfo> simpleGoodsInfos, Boolean hasMore) {
+        this.simpleGoodsInfos = simpleGoodsInfos;
+        this.hasMore = hasMore;
+    }
 }
\ No newline at end of file
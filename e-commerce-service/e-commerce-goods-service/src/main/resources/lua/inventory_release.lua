@@ -0,0 +1,13 @@
+-- 归还 Redis 中预扣的库存, 预扣记录只能被归还一次
+-- KEYS[1]: 预扣记录 hash, KEYS[2..n+1]: 商品库存 key
+-- ARGV[1]: 预扣单号, ARGV[2..n+1]: 归还数量
+if redis.call('HDEL', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+for i = 2, #KEYS do
+    -- 商品已经关闭 Redis 库存时不再归还
+    if redis.call('EXISTS', KEYS[i]) == 1 then
+        redis.call('INCRBY', KEYS[i], ARGV[i])
+    end
+end
+return 1
@@ -0,0 +1,27 @@
+-- Redis 库存预扣: 检查和扣减在一个脚本中原子执行
+-- KEYS[1]: 预扣记录 hash, KEYS[2..n+1]: 商品库存 key
+-- ARGV[1]: 预扣单号, ARGV[2]: 当前时间戳, ARGV[3..n+2]: 扣减数量, ARGV[n+3..2n+2]: 商品 id
+-- 返回 {1, 未由 Redis 管理的商品下标...} 表示成功; {0, 下标} 表示该商品库存不足, 此时没有任何扣减
+local n = #KEYS - 1
+local managed = {}
+local unmanaged = {1}
+for i = 1, n do
+    local stock = redis.call('GET', KEYS[i + 1])
+    if not stock then
+        table.insert(unmanaged, i)
+    elseif tonumber(stock) < tonumber(ARGV[i + 2]) then
+        return {0, i}
+    else
+        table.insert(managed, i)
+    end
+end
+if #managed == 0 then
+    return unmanaged
+end
+local detail = {}
+for _, i in ipairs(managed) do
+    redis.call('DECRBY', KEYS[i + 1], ARGV[i + 2])
+    table.insert(detail, ARGV[n + i + 2] .. '=' .. ARGV[i + 2])
+end
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2] .. '|' .. table.concat(detail, ','))
+return unmanaged
@@ -0,0 +1,9 @@
+-- 把已经同步到商品表、之后又被取消的预扣数量加回 Redis 库存
+-- KEYS[1..n]: 商品库存 key, ARGV[1..n]: 归还数量
+for i = 1, #KEYS do
+    -- 商品已经关闭 Redis 库存时不再归还, 商品表中的库存已经归还
+    if redis.call('EXISTS', KEYS[i]) == 1 then
+        redis.call('INCRBY', KEYS[i], ARGV[i])
+    end
+end
+return 1
@@ -0,0 +1,6 @@
+-- 释放分布式锁, 只有持有者 (值等于加锁时的 token) 才能删除
+-- KEYS[1]: 锁 key, ARGV[1]: 加锁时写入的 token
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
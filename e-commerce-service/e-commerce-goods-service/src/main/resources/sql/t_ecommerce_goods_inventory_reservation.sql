@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS `e_commerce_goods`.`t_ecommerce_goods_inventory_reservation` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `reservation_id` varchar(64) NOT NULL DEFAULT '' COMMENT 'Redis 预扣单号',
+  `deduct_detail` varchar(1024) NOT NULL DEFAULT '' COMMENT '预扣明细, json 字符串: goodsId -> 扣减数量',
+  `status` int(11) NOT NULL DEFAULT 0 COMMENT '状态',
+  `create_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `reservation_id` (`reservation_id`),
+  KEY `status_id` (`status`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Redis 库存预扣记录表';
@@ -0,0 +1,103 @@
+package com.flipped.learn.goodsservice.config;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.Listener;
+import com.flipped.learn.goodsservice.enums.AsyncRejectPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>Nacos 推送线程池配置测试, 使用内存中的 ConfigService 替身</h1>
+ */
+class AsyncPoolNacosListenerTest {
+
+    private static final String DATA_ID = "goods-service-async-pool.yaml";
+
+    private static final String GROUP = "DEFAULT_GROUP";
+
+    private final AsyncPoolConfig asyncPoolConfig = new AsyncPoolConfig();
+
+    private final AsyncPoolNacosListener nacosListener = new AsyncPoolNacosListener();
+
+    private final AtomicReference<Listener> listener = new AtomicReference<>();
+
+    private ConfigService configService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ecommerce.goods.async-pool.core-pool-size", "2")
+                .withProperty("ecommerce.goods.async-pool.max-pool-size", "4");
+        ReflectionTestUtils.setField(asyncPoolConfig, "environment", environment);
+        ReflectionTestUtils.setField(nacosListener, "asyncPoolConfig", asyncPoolConfig);
+        ReflectionTestUtils.setField(nacosListener, "dataId", DATA_ID);
+        ReflectionTestUtils.setField(nacosListener, "group", GROUP);
+
+        configService = mock(ConfigService.class);
+        doAnswer(invocation -> {
+            listener.set(invocation.getArgument(2));
+            return null;
+        }).when(configService).addListener(eq(DATA_ID), eq(GROUP), any());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncPoolConfig.getAsyncExecutor().destroy();
+    }
+
+    @Test
+    void pushedConfigOverridesLocalConfig() throws Exception {
+        when(configService.getConfig(eq(DATA_ID), eq(GROUP), anyLong()))
+                .thenReturn("ecommerce:\n  goods:\n    async-pool:\n      max-pool-size: 8\n");
+        nacosListener.start(configService);
+
+        AsyncPoolProperties properties = asyncPoolConfig.getAsyncExecutor().getProperties();
+        assertEquals(2, properties.getCorePoolSize());
+        assertEquals(8, properties.getMaxPoolSize());
+
+        assertNotNull(listener.get());
+        listener.get().receiveConfigInfo("ecommerce:\n  goods:\n    async-pool:\n"
+                + "      core-pool-size: 6\n      max-pool-size: 12\n      reject-policy: reject\n");
+        properties = asyncPoolConfig.getAsyncExecutor().getProperties();
+        assertEquals(6, properties.getCorePoolSize());
+        assertEquals(12, properties.getMaxPoolSize());
+        assertEquals(AsyncRejectPolicy.REJECT, properties.getRejectPolicy());
+    }
+
+    @Test
+    void invalidOrDeletedConfig() throws Exception {
+        when(configService.getConfig(eq(DATA_ID), eq(GROUP), anyLong())).thenReturn(null);
+        nacosListener.start(configService);
+        assertEquals(4, asyncPoolConfig.getAsyncExecutor().getProperties().getMaxPoolSize());
+
+        listener.get().receiveConfigInfo("ecommerce.goods.async-pool.max-pool-size: 10");
+        assertEquals(10, asyncPoolConfig.getAsyncExecutor().getProperties().getMaxPoolSize());
+
+        // 核心线程数大于最大线程数, 保留当前配置
+        listener.get().receiveConfigInfo("ecommerce.goods.async-pool.core-pool-size: 20");
+        assertEquals(10, asyncPoolConfig.getAsyncExecutor().getProperties().getMaxPoolSize());
+        assertEquals(2, asyncPoolConfig.getAsyncExecutor().getProperties().getCorePoolSize());
+
+        // 格式错误, 保留当前配置
+        listener.get().receiveConfigInfo("ecommerce: [");
+        assertEquals(10, asyncPoolConfig.getAsyncExecutor().getProperties().getMaxPoolSize());
+
+        // 配置被删除, 恢复本地配置
+        listener.get().receiveConfigInfo("");
+        assertEquals(4, asyncPoolConfig.getAsyncExecutor().getProperties().getMaxPoolSize());
+    }
+}
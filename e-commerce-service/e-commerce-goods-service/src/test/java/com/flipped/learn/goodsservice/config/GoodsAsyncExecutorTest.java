@@ -0,0 +1,148 @@
+package com.flipped.learn.goodsservice.config;
+
+import com.flipped.learn.goodsservice.enums.AsyncQueueType;
+import com.flipped.learn.goodsservice.enums.AsyncRejectPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>商品服务异步任务线程池测试: 运行时调整和拒绝策略</h1>
+ */
+class GoodsAsyncExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private GoodsAsyncExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (null != executor) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void rejectPolicyThrowsWhenPoolAndQueueAreFull() throws Exception {
+        executor = new GoodsAsyncExecutor(properties(1, 1, 1, AsyncRejectPolicy.REJECT));
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(executor.wouldReject());
+
+        // 第二个任务进入队列, 之后线程和队列都满了
+        executor.execute(() -> { });
+        assertTrue(executor.wouldReject());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+    }
+
+    @Test
+    void callerRunsPolicyNeverRejects() throws Exception {
+        executor = new GoodsAsyncExecutor(properties(1, 1, 1, AsyncRejectPolicy.CALLER_RUNS));
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+
+        assertFalse(executor.wouldReject());
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        executor.execute(() -> runner.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), runner.get());
+    }
+
+    @Test
+    void reconfigureResizesPoolAndQueue() throws Exception {
+        executor = new GoodsAsyncExecutor(properties(1, 1, 1, AsyncRejectPolicy.REJECT));
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+        assertTrue(executor.wouldReject());
+
+        // 调大队列之后可以继续排队
+        executor.reconfigure(properties(1, 1, 3, AsyncRejectPolicy.REJECT));
+        assertFalse(executor.wouldReject());
+        executor.execute(() -> { });
+        executor.execute(() -> { });
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+
+        // 核心线程数大于原来的最大线程数时, 先调大最大线程数
+        executor.reconfigure(properties(4, 8, 3, AsyncRejectPolicy.REJECT));
+        assertEquals(4, executor.getProperties().getCorePoolSize());
+        assertEquals(8, executor.getProperties().getMaxPoolSize());
+        executor.reconfigure(properties(2, 3, 3, AsyncRejectPolicy.REJECT));
+        assertEquals(3, executor.getProperties().getMaxPoolSize());
+    }
+
+    @Test
+    void invalidPropertiesKeepCurrentConfig() {
+        AsyncPoolProperties initial = properties(2, 4, 10, AsyncRejectPolicy.REJECT);
+        executor = new GoodsAsyncExecutor(initial);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> executor.reconfigure(properties(5, 4, 10, AsyncRejectPolicy.REJECT)));
+        assertEquals(initial, executor.getProperties());
+    }
+
+    @Test
+    void changingQueueTypeReplacesPoolAndFinishesQueuedTasks() throws Exception {
+        executor = new GoodsAsyncExecutor(properties(1, 1, 5, AsyncRejectPolicy.REJECT));
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> queued = executor.submit(() -> { });
+
+        AsyncPoolProperties synchronous = properties(1, 2, 0, AsyncRejectPolicy.REJECT);
+        synchronous.setQueueType(AsyncQueueType.SYNCHRONOUS);
+        executor.reconfigure(synchronous);
+
+        // 新的线程池可以立即执行任务, 旧线程池中排队的任务在旧线程池关闭前执行完
+        Future<?> next = executor.submit(() -> { });
+        next.get(5, TimeUnit.SECONDS);
+        assertFalse(queued.isDone());
+        release.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+        assertTrue(queued.isDone());
+    }
+
+    static AsyncPoolProperties properties(int core, int max, int queueCapacity, AsyncRejectPolicy policy) {
+        AsyncPoolProperties properties = new AsyncPoolProperties();
+        properties.setCorePoolSize(core);
+        properties.setMaxPoolSize(max);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setRejectPolicy(policy);
+        return properties;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
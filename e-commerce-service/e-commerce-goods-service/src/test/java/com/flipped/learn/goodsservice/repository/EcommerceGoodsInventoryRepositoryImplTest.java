@@ -0,0 +1,85 @@
+package com.flipped.learn.goodsservice.repository;
+
+import io.seata.core.context.RootContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>条件扣减库存测试: Seata 全局事务中不能使用 JDBC batch</h1>
+ */
+class EcommerceGoodsInventoryRepositoryImplTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final EcommerceGoodsInventoryRepositoryImpl repository = new EcommerceGoodsInventoryRepositoryImpl();
+
+    private final Map<Long, Integer> goodsId2Count = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        goodsId2Count.put(3L, 1);
+        goodsId2Count.put(1L, 2);
+        goodsId2Count.put(2L, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RootContext.unbind();
+        RootContext.unbindGlobalLockFlag();
+    }
+
+    @Test
+    void globalTransactionUpdatesOneByOneInIdOrder() {
+        RootContext.bind("127.0.0.1:8091:1");
+        when(jdbcTemplate.update(anyString(), (Object[]) any())).thenReturn(1, 0, 1);
+
+        List<Long> failedIds = repository.deductInventory(goodsId2Count);
+
+        // batch 不经过 Seata 代理, 不会记录 undo log, 全局事务回滚时库存无法归还
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).update(anyString(), eq(2), eq(1L), eq(2));
+        order.verify(jdbcTemplate).update(anyString(), eq(3), eq(2L), eq(3));
+        order.verify(jdbcTemplate).update(anyString(), eq(1), eq(3L), eq(1));
+        assertEquals(Collections.singletonList(2L), failedIds);
+    }
+
+    @Test
+    void globalLockUpdatesOneByOne() {
+        RootContext.bindGlobalLockFlag();
+        when(jdbcTemplate.update(anyString(), (Object[]) any())).thenReturn(1);
+
+        assertEquals(Collections.emptyList(), repository.deductInventory(goodsId2Count));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void localTransactionUsesOneBatch() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1, 0});
+
+        assertEquals(Collections.singletonList(3L), repository.deductInventory(goodsId2Count));
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate, never()).update(anyString(), (Object[]) any());
+    }
+}
@@ -0,0 +1,94 @@
+package com.flipped.learn.goodsservice.service.async;
+
+import com.flipped.learn.goodsservice.enums.AsyncTaskStatusEnum;
+import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * <h1>进程内异步任务执行信息存储测试: 过期、数量上限以及未结束的任务不被清除</h1>
+ */
+class LocalAsyncTaskStoreTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    @Test
+    void completedTaskExpiresAfterTtl() {
+        LocalAsyncTaskStore store = new LocalAsyncTaskStore(TTL_MILLIS, 100);
+        store.put(task("expired", AsyncTaskStatusEnum.SUCCESS, TTL_MILLIS + 1000));
+        store.put(task("fresh", AsyncTaskStatusEnum.FAILED, 1000));
+
+        assertNull(store.get("expired"));
+        assertNotNull(store.get("fresh"));
+        assertEquals(1, size(store));
+    }
+
+    @Test
+    void scheduledEvictRemovesExpiredTasks() {
+        LocalAsyncTaskStore store = new LocalAsyncTaskStore(TTL_MILLIS, 100);
+        store.put(task("expired-1", AsyncTaskStatusEnum.SUCCESS, TTL_MILLIS + 1000));
+        store.put(task("expired-2", AsyncTaskStatusEnum.FAILED, TTL_MILLIS + 2000));
+        store.put(task("fresh", AsyncTaskStatusEnum.SUCCESS, 1000));
+
+        store.evict();
+
+        assertEquals(1, size(store));
+        assertNotNull(store.get("fresh"));
+    }
+
+    @Test
+    void overflowEvictsEarliestCompletedTasks() {
+        LocalAsyncTaskStore store = new LocalAsyncTaskStore(TTL_MILLIS, 2);
+        store.put(task("first", AsyncTaskStatusEnum.SUCCESS, 3000));
+        store.put(task("second", AsyncTaskStatusEnum.FAILED, 2000));
+        store.put(task("third", AsyncTaskStatusEnum.SUCCESS, 1000));
+
+        assertEquals(2, size(store));
+        assertNull(store.get("first"));
+        assertNotNull(store.get("second"));
+        assertNotNull(store.get("third"));
+    }
+
+    @Test
+    void runningTasksAreNeverEvicted() {
+        LocalAsyncTaskStore store = new LocalAsyncTaskStore(TTL_MILLIS, 1);
+        store.put(task("started", AsyncTaskStatusEnum.STARTED, 0));
+        store.put(task("running", AsyncTaskStatusEnum.RUNNING, 0));
+        // 超过上限时只有已经结束的任务可以清除, 即使它刚刚结束
+        store.put(task("done", AsyncTaskStatusEnum.SUCCESS, 0));
+        store.evict();
+
+        assertEquals(2, size(store));
+        assertNotNull(store.get("started"));
+        assertNotNull(store.get("running"));
+        assertNull(store.get("done"));
+    }
+
+    /**
+     * <h2>构造异步任务, 已经结束的任务在 endedMillisAgo 之前结束</h2>
+     */
+    private static AsyncTaskInfo task(String taskId, AsyncTaskStatusEnum status, long endedMillisAgo) {
+        long now = System.currentTimeMillis();
+        AsyncTaskInfo taskInfo = new AsyncTaskInfo();
+        taskInfo.setTaskId(taskId);
+        taskInfo.setStatus(status);
+        // 未结束的任务开始时间很早, 也不会因为时间被清除
+        taskInfo.setStartTime(new Date(now - 10 * TTL_MILLIS));
+        if (AsyncTaskStore.isCompleted(taskInfo)) {
+            taskInfo.setEndTime(new Date(now - endedMillisAgo));
+        }
+        return taskInfo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int size(LocalAsyncTaskStore store) {
+        return ((Map<String, AsyncTaskInfo>) ReflectionTestUtils.getField(store, "taskContainer")).size();
+    }
+}
@@ -0,0 +1,52 @@
+package com.flipped.learn.goodsservice.service.async;
+
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.goodsservice.enums.AsyncTaskStatusEnum;
+import com.flipped.learn.goodsservice.vo.AsyncTaskInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>Redis 异步任务执行信息存储测试: 未结束和已经结束的任务使用不同的过期时间</h1>
+ */
+class RedisAsyncTaskStoreTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+
+    private final RedisAsyncTaskStore store = new RedisAsyncTaskStore(redisTemplate, 1000, 5000);
+
+    @Test
+    void runningTaskUsesRunningTtl() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        store.put(new AsyncTaskInfo("t1", AsyncTaskStatusEnum.RUNNING, new Date(), null, null,
+                null, null, null, null));
+
+        verify(valueOperations).set(eq(GoodsConstant.ECOMMERCE_GOODS_ASYNC_TASK_KEY_PREFIX + "t1"), anyString(),
+                eq(5000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void completedTaskUsesTtl() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        store.put(new AsyncTaskInfo("t1", AsyncTaskStatusEnum.FAILED, new Date(), new Date(), "1ms",
+                null, null, null, null));
+
+        verify(valueOperations).set(eq(GoodsConstant.ECOMMERCE_GOODS_ASYNC_TASK_KEY_PREFIX + "t1"), anyString(),
+                eq(1000L), eq(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,73 @@
+package com.flipped.learn.goodsservice.service.cache;
+
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>商品字典迁移锁测试: 只释放自己加的锁</h1>
+ */
+class ShardedGoodsDictTest {
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+
+    private final ShardedGoodsDict dict = new ShardedGoodsDict(4, false, 100);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dict, "stringRedisTemplate", stringRedisTemplate);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.execute(any(RedisCallback.class))).thenReturn(0L);
+        when(stringRedisTemplate.hasKey(GoodsConstant.ECOMMERCE_GOODS_DICT_KEY)).thenReturn(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrationReleasesLockWithItsOwnToken() {
+        when(valueOperations.setIfAbsent(eq(GoodsConstant.ECOMMERCE_GOODS_DICT_MIGRATE_LOCK_KEY), anyString(),
+                eq(10L), eq(TimeUnit.MINUTES))).thenReturn(true);
+        // 锁已经过期并被其他实例重新获取, 比较 token 失败
+        when(stringRedisTemplate.execute(any(RedisScript.class), any(), any())).thenReturn(0L);
+
+        assertEquals(0L, dict.migrateLegacy());
+
+        ArgumentCaptor<String> lockToken = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).setIfAbsent(eq(GoodsConstant.ECOMMERCE_GOODS_DICT_MIGRATE_LOCK_KEY),
+                lockToken.capture(), eq(10L), eq(TimeUnit.MINUTES));
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(Collections.singletonList(GoodsConstant.ECOMMERCE_GOODS_DICT_MIGRATE_LOCK_KEY)),
+                eq(lockToken.getValue()));
+        verify(stringRedisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void lockHeldByAnotherInstanceSkipsMigration() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), eq(10L), eq(TimeUnit.MINUTES))).thenReturn(false);
+
+        assertEquals(-1L, dict.migrateLegacy());
+
+        verify(stringRedisTemplate, never()).execute(any(RedisCallback.class));
+        verify(stringRedisTemplate, never()).delete(anyString());
+    }
+}
@@ -0,0 +1,136 @@
+package com.flipped.learn.goodsservice.service.cache;
+
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>简单商品信息缓存测试: single-flight 加载和空值标记</h1>
+ */
+class SimpleGoodsInfoCacheTest {
+
+    private static final int CONCURRENCY = 1000;
+
+    private final ShardedGoodsDict shardedGoodsDict = mock(ShardedGoodsDict.class);
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+
+    private SimpleGoodsInfoCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // 关闭 L1, 每个请求都会走到 Redis 和加载流程
+        cache = new SimpleGoodsInfoCache(false, 100, 60000, "json",
+                true, 30000, 0.1, 10000);
+        ReflectionTestUtils.setField(cache, "shardedGoodsDict", shardedGoodsDict);
+        ReflectionTestUtils.setField(cache, "stringRedisTemplate", stringRedisTemplate);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(anyList())).thenAnswer(
+                invocation -> Arrays.asList(new String[((List<?>) invocation.getArgument(0)).size()]));
+    }
+
+    @Test
+    void concurrentMissesLoadFromDbOnce() throws Exception {
+        CountDownLatch allMissed = new CountDownLatch(CONCURRENCY);
+        when(shardedGoodsDict.multiGet(anyList())).thenAnswer(invocation -> {
+            allMissed.countDown();
+            return Collections.emptyMap();
+        });
+        AtomicInteger loaderCalls = new AtomicInteger();
+        Function<List<Long>, List<SimpleGoodsInfo>> loader = ids -> {
+            loaderCalls.incrementAndGet();
+            try {
+                // 等所有请求都在 Redis 中未命中, 再给它们一点时间排到 in-flight 的等待中
+                assertTrue(allMissed.await(10, TimeUnit.SECONDS));
+                Thread.sleep(300);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList(new SimpleGoodsInfo(1L, "goods", "pic", 100));
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Map<Long, SimpleGoodsInfo>>> futures = new ArrayList<>(CONCURRENCY);
+        try {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    return cache.getAll(Collections.singletonList(1L), loader);
+                }));
+            }
+            startGate.countDown();
+            for (Future<Map<Long, SimpleGoodsInfo>> future : futures) {
+                assertEquals("goods", future.get(30, TimeUnit.SECONDS).get(1L).getGoodsName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, cache.getDbLoads());
+        assertEquals(CONCURRENCY - 1, cache.getCoalescedLoads());
+    }
+
+    @Test
+    void negativeMarkerKeySkipsLoader() {
+        when(shardedGoodsDict.multiGet(anyList())).thenReturn(Collections.emptyMap());
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList("1"));
+        AtomicInteger loaderCalls = new AtomicInteger();
+
+        Map<Long, SimpleGoodsInfo> result = cache.getAll(Collections.singletonList(2L), ids -> {
+            loaderCalls.incrementAndGet();
+            return Collections.emptyList();
+        });
+
+        assertTrue(result.isEmpty());
+        assertEquals(0, loaderCalls.get());
+        assertEquals(1, cache.getRedisHits());
+        verify(valueOperations).multiGet(Collections.singletonList("ecommerce:goods:dict:missing:2"));
+    }
+
+    @Test
+    void missingGoodsAreNotWrittenToDictAndLegacyMarkersAreRemoved() {
+        byte[] legacyMarker = ByteBuffer.allocate(9).put((byte) 0)
+                .putLong(System.currentTimeMillis() + 60000).array();
+        when(shardedGoodsDict.multiGet(anyList())).thenReturn(Collections.singletonMap(3L, legacyMarker));
+
+        Map<Long, SimpleGoodsInfo> result = cache.getAll(Collections.singletonList(3L),
+                ids -> Collections.emptyList());
+
+        assertTrue(result.isEmpty());
+        assertEquals(1, cache.getDbLoads());
+        verify(shardedGoodsDict).removeAll(Collections.singletonList(3L));
+        // 空值标记写到独立的 key, 不进入字典 hash
+        verify(shardedGoodsDict, never()).putAll(any());
+    }
+}
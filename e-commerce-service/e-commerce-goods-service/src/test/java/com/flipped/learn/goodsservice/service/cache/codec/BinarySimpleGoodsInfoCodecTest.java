@@ -0,0 +1,92 @@
+package com.flipped.learn.goodsservice.service.cache.codec;
+
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>二进制商品信息编解码测试</h1>
+ */
+class BinarySimpleGoodsInfoCodecTest {
+
+    private final BinarySimpleGoodsInfoCodec codec = BinarySimpleGoodsInfoCodec.INSTANCE;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, -1, 63, -64, 64, 1 << 30, -(1 << 30) - 1, Integer.MAX_VALUE, Integer.MIN_VALUE})
+    void priceEdgeValuesRoundTrip(int price) {
+        SimpleGoodsInfo goodsInfo = new SimpleGoodsInfo(10L, "goods", "pic", price);
+        byte[] bytes = codec.encode(goodsInfo);
+
+        assertEquals(goodsInfo, codec.decode(bytes));
+        // 版本号 + 标记 + id 1 byte + price 最多 5 byte + 两个字符串
+        assertTrue(bytes.length <= 3 + 5 + 6 + 4, "encoded size " + bytes.length);
+    }
+
+    @Test
+    void nullFieldsRoundTrip() {
+        SimpleGoodsInfo empty = new SimpleGoodsInfo();
+        byte[] bytes = codec.encode(empty);
+        assertEquals(2, bytes.length);
+        assertEquals(empty, codec.decode(bytes));
+
+        SimpleGoodsInfo onlyId = new SimpleGoodsInfo(Long.MAX_VALUE);
+        assertEquals(onlyId, codec.decode(codec.encode(onlyId)));
+
+        SimpleGoodsInfo noName = new SimpleGoodsInfo(1L, null, "pic", 100);
+        assertEquals(noName, codec.decode(codec.encode(noName)));
+    }
+
+    @Test
+    void nonAsciiAndEmptyStringsRoundTrip() {
+        SimpleGoodsInfo goodsInfo = new SimpleGoodsInfo(
+                123456789L, "华为 Mate 40 Pro 📱", "", 599900);
+        SimpleGoodsInfo decoded = codec.decode(codec.encode(goodsInfo));
+
+        assertEquals(goodsInfo, decoded);
+        assertEquals("", decoded.getGoodsPic());
+    }
+
+    @Test
+    void decodesPriceWrittenAsSignExtendedLong() {
+        // 旧版本把 zigzag 后最高位为 1 的 int 扩展成 long 写入, 占用 10 个字节
+        int price = Integer.MAX_VALUE;
+        int zigzag = (price << 1) ^ (price >> 31);
+        byte[] legacy = new byte[2 + 10];
+        legacy[0] = BinarySimpleGoodsInfoCodec.VERSION;
+        legacy[1] = 1 << 1;
+        long value = zigzag;
+        for (int i = 2; i < legacy.length; i++) {
+            legacy[i] = (byte) ((value & 0x7F) | (i < legacy.length - 1 ? 0x80 : 0));
+            value >>>= 7;
+        }
+
+        assertEquals(price, codec.decode(legacy).getPrice());
+    }
+
+    @Test
+    void decodeAnyHandlesBothFormats() {
+        SimpleGoodsInfo goodsInfo = new SimpleGoodsInfo(7L, "商品", "pic", 9900);
+
+        assertEquals(goodsInfo, SimpleGoodsInfoCodec.decodeAny(codec.encode(goodsInfo)));
+        assertEquals(goodsInfo, SimpleGoodsInfoCodec.decodeAny(
+                JsonSimpleGoodsInfoCodec.INSTANCE.encode(goodsInfo)));
+    }
+
+    @Test
+    void truncatedBytesAreRejected() {
+        byte[] bytes = codec.encode(new SimpleGoodsInfo(1L, "goods", "pic", 100));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decode("{}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,135 @@
+package com.flipped.learn.goodsservice.service.impl;
+
+import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import com.flipped.learn.goodsservice.vo.PageSimpleGoodsInfo;
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>商品游标分页测试, 商品表用内存中的列表代替</h1>
+ * 只验证 hasMore 和 lastId 的计算; 游标分页和 OFFSET 分页的耗时对比需要真实的 MySQL 数据, 不在单元测试中做
+ */
+class GoodsServiceImplCursorTest {
+
+    private final EcommerceGoodsRepository goodsRepository = mock(EcommerceGoodsRepository.class);
+
+    private final GoodsServiceImpl goodsService = new GoodsServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(goodsService, "goodsRepository", goodsRepository);
+    }
+
+    @Test
+    void walksAllPagesWithoutGapsOrDuplicates() {
+        stubTable(25);
+
+        List<Long> seen = new ArrayList<>();
+        List<Boolean> hasMore = new ArrayList<>();
+        Long lastId = null;
+        do {
+            PageSimpleGoodsInfo page = goodsService.getSimpleGoodsInfoByCursor(lastId, 10);
+            page.getSimpleGoodsInfos().stream().map(SimpleGoodsInfo::getId).forEach(seen::add);
+            hasMore.add(page.getHasMore());
+            lastId = page.getLastId();
+        } while (hasMore.get(hasMore.size() - 1));
+
+        assertEquals(Arrays.asList(true, true, false), hasMore);
+        assertEquals(LongStream.rangeClosed(1, 25).boxed()
+                .sorted((a, b) -> Long.compare(b, a))
+                .collect(Collectors.toList()), seen);
+        assertEquals(1L, lastId);
+    }
+
+    @Test
+    void exactlyFullLastPageHasNoMore() {
+        stubTable(10);
+
+        PageSimpleGoodsInfo page = goodsService.getSimpleGoodsInfoByCursor(null, 10);
+
+        // 多查的一条不存在, 这一页就是最后一页
+        assertEquals(10, page.getSimpleGoodsInfos().size());
+        assertFalse(page.getHasMore());
+        assertEquals(1L, page.getLastId());
+        verify(goodsRepository).findByIdLessThan(eq(Long.MAX_VALUE),
+                eq(PageRequest.of(0, 11, Sort.by("id").descending())));
+    }
+
+    @Test
+    void oneMoreRowThanLimitHasMore() {
+        stubTable(11);
+
+        PageSimpleGoodsInfo page = goodsService.getSimpleGoodsInfoByCursor(null, 10);
+
+        assertEquals(10, page.getSimpleGoodsInfos().size());
+        assertTrue(page.getHasMore());
+        assertEquals(2L, page.getLastId());
+    }
+
+    @Test
+    void emptyPageHasNoLastId() {
+        stubTable(3);
+
+        PageSimpleGoodsInfo page = goodsService.getSimpleGoodsInfoByCursor(1L, 10);
+
+        assertTrue(page.getSimpleGoodsInfos().isEmpty());
+        assertFalse(page.getHasMore());
+        assertNull(page.getLastId());
+    }
+
+    @Test
+    void limitIsClamped() {
+        stubTable(300);
+
+        assertEquals(100, goodsService.getSimpleGoodsInfoByCursor(null, 1000).getSimpleGoodsInfos().size());
+        assertEquals(1, goodsService.getSimpleGoodsInfoByCursor(null, 0).getSimpleGoodsInfos().size());
+    }
+
+    /**
+     * <h2>id 为 1..count 的商品, 按照 id < lastId 倒序返回 Pageable 指定的条数</h2>
+     */
+    private void stubTable(long count) {
+        when(goodsRepository.findByIdLessThan(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long lastId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return LongStream.rangeClosed(1, count)
+                    .filter(id -> id < lastId)
+                    .boxed()
+                    .sorted((a, b) -> Long.compare(b, a))
+                    .limit(pageable.getPageSize())
+                    .map(GoodsServiceImplCursorTest::goods)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    private static EcommerceGoods goods(long id) {
+        EcommerceGoods goods = new EcommerceGoods();
+        goods.setId(id);
+        goods.setGoodsName("goods-" + id);
+        goods.setPrice(100);
+        return goods;
+    }
+}
@@ -0,0 +1,66 @@
+package com.flipped.learn.goodsservice.service.impl;
+
+import com.flipped.learn.goodsservice.enums.InventoryDeductMode;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import com.flipped.learn.goodsservice.service.cache.SimpleGoodsInfoCache;
+import com.flipped.learn.goodsservice.service.inventory.LocalInventoryReservation;
+import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import io.seata.core.context.RootContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>进程内预留模式的库存扣减测试</h1>
+ */
+class GoodsServiceImplDeductTest {
+
+    private final EcommerceGoodsRepository goodsRepository = mock(EcommerceGoodsRepository.class);
+
+    private final LocalInventoryReservation localInventoryReservation = mock(LocalInventoryReservation.class);
+
+    private final GoodsServiceImpl goodsService = new GoodsServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(goodsService, "goodsRepository", goodsRepository);
+        ReflectionTestUtils.setField(goodsService, "localInventoryReservation", localInventoryReservation);
+        ReflectionTestUtils.setField(goodsService, "simpleGoodsInfoCache", mock(SimpleGoodsInfoCache.class));
+        ReflectionTestUtils.setField(goodsService, "inventoryDeductMode", InventoryDeductMode.LOCAL_RESERVATION);
+        when(goodsRepository.deductInventory(anyMap())).thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        RootContext.unbind();
+    }
+
+    @Test
+    void globalTransactionDeductsFromTable() {
+        RootContext.bind("127.0.0.1:8091:1");
+
+        assertTrue(goodsService.deductGoodsInventory(Collections.singletonList(new DeductGoodsInventory(1L, 2))));
+
+        // 条件 UPDATE 在全局事务中逐条执行 (见 EcommerceGoodsInventoryRepositoryImplTest), 由 Seata 负责回滚
+        verify(goodsRepository).deductInventory(Collections.singletonMap(1L, 2));
+        verify(localInventoryReservation, never()).reserve(anyMap());
+    }
+
+    @Test
+    void localTransactionDeductsInProcess() {
+        assertTrue(goodsService.deductGoodsInventory(Collections.singletonList(new DeductGoodsInventory(1L, 2))));
+
+        verify(localInventoryReservation).reserve(Collections.singletonMap(1L, 2));
+        verify(goodsRepository, never()).deductInventory(anyMap());
+    }
+}
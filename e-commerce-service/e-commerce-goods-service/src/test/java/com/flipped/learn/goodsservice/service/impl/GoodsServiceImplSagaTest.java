@@ -0,0 +1,109 @@
+package com.flipped.learn.goodsservice.service.impl;
+
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.goodsservice.entity.EcommerceGoodsInventorySagaLog;
+import com.flipped.learn.goodsservice.enums.InventorySagaStatus;
+import com.flipped.learn.goodsservice.feign.OrderSagaClient;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsInventorySagaLogRepository;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import com.flipped.learn.goodsservice.service.cache.SimpleGoodsInfoCache;
+import com.flipped.learn.goodsservice.service.inventory.LocalInventoryReservation;
+import com.flipped.learn.goodsservice.service.inventory.RedisInventoryService;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>saga 下单的库存补偿测试</h1>
+ */
+class GoodsServiceImplSagaTest {
+
+    private static final String TX_ID = "order-1";
+
+    private final EcommerceGoodsRepository goodsRepository = mock(EcommerceGoodsRepository.class);
+
+    private final EcommerceGoodsInventorySagaLogRepository sagaLogRepository =
+            mock(EcommerceGoodsInventorySagaLogRepository.class);
+
+    private final RedisInventoryService redisInventoryService = mock(RedisInventoryService.class);
+
+    private final LocalInventoryReservation localInventoryReservation = mock(LocalInventoryReservation.class);
+
+    private final OrderSagaClient orderSagaClient = mock(OrderSagaClient.class);
+
+    private final GoodsServiceImpl goodsService = new GoodsServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(goodsService, "goodsRepository", goodsRepository);
+        ReflectionTestUtils.setField(goodsService, "sagaLogRepository", sagaLogRepository);
+        ReflectionTestUtils.setField(goodsService, "redisInventoryService", redisInventoryService);
+        ReflectionTestUtils.setField(goodsService, "localInventoryReservation", localInventoryReservation);
+        ReflectionTestUtils.setField(goodsService, "orderSagaClient", orderSagaClient);
+        ReflectionTestUtils.setField(goodsService, "simpleGoodsInfoCache", mock(SimpleGoodsInfoCache.class));
+    }
+
+    @Test
+    void notCompensatingSagaIsRejectedWithoutTombstone() {
+        when(sagaLogRepository.findByTxId(TX_ID)).thenReturn(Optional.empty());
+        when(orderSagaClient.isCompensating(TX_ID)).thenReturn(CommonResponse.success(false));
+
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> goodsService.sagaCompensateGoodsInventory(TX_ID));
+
+        // 没有记录补偿, 订单服务之后的扣减不会被拒绝
+        assertEquals(ServiceErrorCodeConstants.ORDER_TRANSACTION_NOT_COMPENSATING.getCode(), ex.getCode());
+        verify(sagaLogRepository, never()).save(any());
+    }
+
+    @Test
+    void compensateReturnsRedisLocalAndTablePartsSeparately() {
+        EcommerceGoodsInventorySagaLog sagaLog = EcommerceGoodsInventorySagaLog.deducted(TX_ID, Arrays.asList(
+                new DeductedGoodsInfo(1L, 1, 100),
+                new DeductedGoodsInfo(2L, 2, 100),
+                new DeductedGoodsInfo(3L, 3, 100)
+        ), Collections.singletonMap(2L, 2));
+        when(sagaLogRepository.findByTxId(TX_ID)).thenReturn(Optional.of(sagaLog));
+        when(orderSagaClient.isCompensating(TX_ID)).thenReturn(CommonResponse.success(true));
+        when(redisInventoryService.cancel(TX_ID)).thenReturn(Collections.singletonMap(1L, 1));
+
+        assertTrue(goodsService.sagaCompensateGoodsInventory(TX_ID));
+
+        // Redis 和进程内的部分各自归还, 只有剩下的商品归还商品表
+        verify(goodsRepository).returnInventory(3L, 3);
+        verify(goodsRepository, never()).returnInventory(eq(1L), anyLong());
+        verify(goodsRepository, never()).returnInventory(eq(2L), anyLong());
+        verify(localInventoryReservation).release(Collections.singletonMap(2L, 2));
+        assertEquals(InventorySagaStatus.COMPENSATED, sagaLog.getStatus());
+        verify(sagaLogRepository).save(sagaLog);
+    }
+
+    @Test
+    void alreadyCompensatedReturnsWithoutCheckingOrder() {
+        when(sagaLogRepository.findByTxId(TX_ID))
+                .thenReturn(Optional.of(EcommerceGoodsInventorySagaLog.compensated(TX_ID)));
+
+        assertTrue(goodsService.sagaCompensateGoodsInventory(TX_ID));
+
+        verifyNoInteractions(orderSagaClient, redisInventoryService, localInventoryReservation, goodsRepository);
+    }
+}
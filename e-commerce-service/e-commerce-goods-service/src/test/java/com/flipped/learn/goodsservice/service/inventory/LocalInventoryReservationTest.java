@@ -0,0 +1,186 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.seata.core.context.RootContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>进程内库存预留测试, 商品表用内存中的计数代替</h1>
+ */
+class LocalInventoryReservationTest {
+
+    private static final long GOODS_ID = 1L;
+
+    private final EcommerceGoodsRepository goodsRepository = mock(EcommerceGoodsRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * 商品表中还没有被预留的库存
+     */
+    private final AtomicLong table = new AtomicLong();
+
+    private LocalInventoryReservation reservation;
+
+    @AfterEach
+    void tearDown() {
+        RootContext.unbind();
+        if (null != reservation) {
+            reservation.shutdown();
+        }
+    }
+
+    @Test
+    void unknownGoodsReportsNotExists() {
+        when(goodsRepository.leaseInventory(eq(2L), anyLong())).thenReturn(-1L);
+        reservation = create(60000);
+
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> reservation.reserve(Collections.singletonMap(2L, 1)));
+
+        assertEquals(ServiceErrorCodeConstants.GOODS_NOT_EXITS.getCode(), ex.getCode());
+        assertEquals(0.0, meterRegistry.get("ecommerce.goods.inventory.local.goods").gauge().value());
+    }
+
+    @Test
+    void notEnoughInventoryReportsNotEnough() {
+        stubTable(3);
+        reservation = create(60000);
+
+        reservation.reserve(Collections.singletonMap(GOODS_ID, 2));
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> reservation.reserve(Collections.singletonMap(GOODS_ID, 2)));
+
+        assertEquals(ServiceErrorCodeConstants.GOODS_INVENTORY_NOT_ENOUGH.getCode(), ex.getCode());
+        reservation.shutdown();
+        assertEquals(1, table.get());
+    }
+
+    @Test
+    void refusedInsideGlobalTransaction() {
+        stubTable(10);
+        reservation = create(60000);
+        RootContext.bind("127.0.0.1:8091:1");
+
+        assertThrows(IllegalStateException.class,
+                () -> reservation.reserve(Collections.singletonMap(GOODS_ID, 1)));
+        assertEquals(10, table.get());
+    }
+
+    @Test
+    void releaseGoesBackToProcessOrTable() {
+        stubTable(10);
+        reservation = create(60000);
+        reservation.reserve(Collections.singletonMap(GOODS_ID, 2));
+
+        // 进程内还持有库存的商品放回进程内, 其它商品归还商品表
+        Map<Long, Integer> released = new LinkedHashMap<>();
+        released.put(GOODS_ID, 2);
+        released.put(2L, 3);
+        reservation.release(released);
+
+        verify(goodsRepository).returnInventory(2L, 3);
+        verify(goodsRepository, never()).returnInventory(eq(GOODS_ID), anyLong());
+        reservation.shutdown();
+        assertEquals(10, table.get());
+    }
+
+    @Test
+    void concurrentReturnToTableLosesNothing() throws Exception {
+        int initial = 5000;
+        int threads = 8;
+        int attempts = 300;
+        stubTable(initial);
+        // 所有商品都视为空闲, 每次检查都归还商品表
+        reservation = create(-60000);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread returner = new Thread(() -> {
+            while (running.get()) {
+                reservation.returnIdle();
+            }
+        });
+        returner.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                int count = i % 3 + 1;
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    int taken = 0;
+                    for (int j = 0; j < attempts; j++) {
+                        reservation.reserve(Collections.singletonMap(GOODS_ID, count));
+                        taken += count;
+                    }
+                    return taken;
+                }));
+            }
+            startGate.countDown();
+            long sold = 0;
+            for (Future<Integer> future : futures) {
+                sold += future.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            returner.join();
+
+            // 停机时剩余的库存全部归还, 商品表 + 卖出的数量应该等于初始库存
+            reservation.shutdown();
+            assertEquals(initial, table.get() + sold);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    private LocalInventoryReservation create(long idleReturnMillis) {
+        return new LocalInventoryReservation(goodsRepository, mock(PlatformTransactionManager.class),
+                meterRegistry, 4, 7, 3000, idleReturnMillis);
+    }
+
+    private void stubTable(long inventory) {
+        table.set(inventory);
+        when(goodsRepository.leaseInventory(eq(GOODS_ID), anyLong())).thenAnswer(invocation -> {
+            long max = invocation.getArgument(1);
+            while (true) {
+                long current = table.get();
+                long leased = Math.min(current, max);
+                if (table.compareAndSet(current, current - leased)) {
+                    return leased;
+                }
+            }
+        });
+        doAnswer(invocation -> table.addAndGet(invocation.getArgument(1)))
+                .when(goodsRepository).returnInventory(eq(GOODS_ID), anyLong());
+    }
+}
@@ -0,0 +1,254 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.goodsservice.constant.GoodsConstant;
+import com.flipped.learn.goodsservice.entity.EcommerceGoods;
+import com.flipped.learn.goodsservice.entity.EcommerceGoodsInventoryReservation;
+import com.flipped.learn.goodsservice.enums.InventoryReservationStatus;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsInventoryReservationRepository;
+import com.flipped.learn.goodsservice.repository.EcommerceGoodsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>Redis 库存预扣的并发测试: 在嵌入式 Redis 上执行真实的 Lua 脚本</h1>
+ * 并发预扣、事务回滚归还和后台同步同时进行, 商品表和预扣记录表用内存实现
+ */
+class RedisInventoryServiceConcurrencyTest {
+
+    private static final List<Long> GOODS_IDS = Arrays.asList(1L, 2L);
+
+    private static final long INVENTORY = 200;
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private final StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+    private final EcommerceGoodsRepository goodsRepository = mock(EcommerceGoodsRepository.class);
+
+    private final EcommerceGoodsInventoryReservationRepository reservationRepository =
+            mock(EcommerceGoodsInventoryReservationRepository.class);
+
+    private final RedisInventoryService redisInventoryService = new RedisInventoryService();
+
+    /**
+     * 商品表中的库存
+     */
+    private final Map<Long, AtomicLong> tableInventory = new ConcurrentHashMap<>();
+
+    /**
+     * 已经提交的预扣记录
+     */
+    private final Map<String, EcommerceGoodsInventoryReservation> committed = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程的事务中写入、还没有提交的预扣记录
+     */
+    private final ThreadLocal<List<EcommerceGoodsInventoryReservation>> uncommitted =
+            ThreadLocal.withInitial(ArrayList::new);
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushDb();
+            return null;
+        });
+        ReflectionTestUtils.setField(redisInventoryService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(redisInventoryService, "goodsRepository", goodsRepository);
+        ReflectionTestUtils.setField(redisInventoryService, "reservationRepository", reservationRepository);
+
+        for (Long goodsId : GOODS_IDS) {
+            tableInventory.put(goodsId, new AtomicLong(INVENTORY));
+            EcommerceGoods goods = new EcommerceGoods();
+            goods.setId(goodsId);
+            goods.setInventory(INVENTORY);
+            when(goodsRepository.findById(goodsId)).thenReturn(Optional.of(goods));
+        }
+        when(goodsRepository.deductInventory(anyMap())).thenAnswer(invocation -> {
+            Map<Long, Integer> goodsId2Count = invocation.getArgument(0);
+            List<Long> failedIds = new ArrayList<>();
+            goodsId2Count.forEach((id, count) -> {
+                AtomicLong inventory = tableInventory.get(id);
+                if (inventory.get() >= count) {
+                    inventory.addAndGet(-count);
+                } else {
+                    failedIds.add(id);
+                }
+            });
+            return failedIds;
+        });
+        when(reservationRepository.save(any(EcommerceGoodsInventoryReservation.class))).thenAnswer(invocation -> {
+            uncommitted.get().add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(reservationRepository.findByStatusAndCreateTimeBeforeOrderById(
+                eq(InventoryReservationStatus.RESERVED), any(), any())).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(2);
+            return committed.values().stream()
+                    .filter(r -> InventoryReservationStatus.RESERVED == r.getStatus())
+                    .limit(pageable.getPageSize())
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void concurrentReserveReleaseAndFlushNeverOversell() throws Exception {
+        GOODS_IDS.forEach(id -> assertEquals(INVENTORY, redisInventoryService.enable(id)));
+        InventoryWriteBehindFlusher flusher = new InventoryWriteBehindFlusher(redisInventoryService,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(flusher, "enabled", true);
+        ReflectionTestUtils.setField(flusher, "flushBatchSize", 20);
+        ReflectionTestUtils.setField(flusher, "flushAfterMillis", 0L);
+
+        int threads = 8;
+        int ordersPerThread = 100;
+        Map<Long, AtomicLong> sold = new ConcurrentHashMap<>();
+        GOODS_IDS.forEach(id -> sold.put(id, new AtomicLong()));
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicBoolean ordering = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+
+        List<Future<?>> orders = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            orders.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    // 一个订单包含一个或两个商品, 三分之一的订单在预扣之后回滚
+                    Map<Long, Integer> goodsId2Count = new HashMap<>();
+                    int pick = random.nextInt(3);
+                    if (pick != 1) {
+                        goodsId2Count.put(1L, 1 + random.nextInt(3));
+                    }
+                    if (pick != 0) {
+                        goodsId2Count.put(2L, 1 + random.nextInt(3));
+                    }
+                    boolean commit = random.nextInt(3) != 0;
+                    if (!order(goodsId2Count, commit)) {
+                        rejected.incrementAndGet();
+                    } else if (commit) {
+                        goodsId2Count.forEach((id, count) -> sold.get(id).addAndGet(count));
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> flushing = pool.submit(() -> {
+            start.await();
+            while (ordering.get()) {
+                flusher.flush();
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> order : orders) {
+            order.get(60, TimeUnit.SECONDS);
+        }
+        ordering.set(false);
+        flushing.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        // 没有进行中的订单之后再同步一次, 所有提交的预扣都应该已经同步
+        flusher.flush();
+
+        // 需求远大于库存, 一定有订单因为库存不足被拒绝
+        assertTrue(rejected.get() > 0);
+        for (Long goodsId : GOODS_IDS) {
+            long stock = Long.parseLong(stringRedisTemplate.opsForValue()
+                    .get(GoodsConstant.ECOMMERCE_GOODS_INVENTORY_STOCK_KEY_PREFIX + goodsId));
+            assertTrue(sold.get(goodsId).get() <= INVENTORY);
+            assertEquals(INVENTORY - sold.get(goodsId).get(), stock);
+            assertEquals(INVENTORY - sold.get(goodsId).get(), tableInventory.get(goodsId).get());
+        }
+        assertEquals(0L, stringRedisTemplate.opsForHash().size(GoodsConstant.ECOMMERCE_GOODS_INVENTORY_PENDING_KEY));
+        assertTrue(committed.values().stream().allMatch(r -> InventoryReservationStatus.FLUSHED == r.getStatus()));
+    }
+
+    /**
+     * <h2>在模拟的本地事务中预扣, 提交时预扣记录才对同步任务可见</h2>
+     * @return 库存不足被拒绝时返回 false
+     */
+    private boolean order(Map<Long, Integer> goodsId2Count, boolean commit) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            redisInventoryService.reserve(goodsId2Count);
+            if (commit) {
+                uncommitted.get().forEach(r -> committed.put(r.getReservationId(), r));
+            }
+            complete(commit ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+            return true;
+        } catch (BusinessException ex) {
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+            return false;
+        } finally {
+            uncommitted.remove();
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(status));
+    }
+}
@@ -0,0 +1,128 @@
+package com.flipped.learn.goodsservice.service.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>分段库存计数器测试</h1>
+ */
+class StripedInventoryCounterTest {
+
+    @Test
+    void takeAcrossStripes() {
+        StripedInventoryCounter counter = new StripedInventoryCounter(4);
+        counter.add(10);
+
+        // 每个段只有 2 到 3 个, 一次扣减 7 个需要跨段
+        assertTrue(counter.tryTake(7));
+        assertEquals(3, counter.sum());
+        assertTrue(counter.tryTake(3));
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void failedTakeLeavesInventoryUnchanged() {
+        StripedInventoryCounter counter = new StripedInventoryCounter(4);
+        counter.add(5);
+
+        assertFalse(counter.tryTake(6));
+        assertEquals(5, counter.sum());
+        assertEquals(5, counter.drain());
+        assertEquals(0, counter.sum());
+        assertFalse(counter.tryTake(1));
+    }
+
+    @Test
+    void addIgnoresNonPositiveCount() {
+        StripedInventoryCounter counter = new StripedInventoryCounter(3);
+        counter.add(0);
+        counter.add(-5);
+
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void concurrentTakesNeverOversell() throws Exception {
+        int threads = 16;
+        int inventory = 10000;
+        StripedInventoryCounter counter = new StripedInventoryCounter(8);
+        counter.add(inventory);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                int size = i % 3 + 1;
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    int taken = 0;
+                    // 扣减失败时其他线程可能正在放回部分扣减的库存, 看到库存为 0 才结束
+                    while (true) {
+                        if (counter.tryTake(size)) {
+                            taken += size;
+                        } else if (counter.tryTake(1)) {
+                            taken += 1;
+                        } else if (0 == counter.sum()) {
+                            return taken;
+                        }
+                    }
+                }));
+            }
+            startGate.countDown();
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(inventory, total);
+            assertEquals(0, counter.sum());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentCrossStripeTakesDoNotBothFail() throws Exception {
+        int rounds = 20000;
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                // 3 个库存分散在 3 个段中, 每次扣减 2 个都需要跨段; 总库存够其中一个
+                StripedInventoryCounter counter = new StripedInventoryCounter(4);
+                counter.add(3);
+                AtomicInteger succeeded = new AtomicInteger();
+                List<Future<?>> futures = new ArrayList<>(2);
+                for (int i = 0; i < 2; i++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await(5, TimeUnit.SECONDS);
+                        if (counter.tryTake(2)) {
+                            succeeded.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+                assertEquals(1, succeeded.get(), "round " + round);
+                assertEquals(1, counter.sum(), "round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.flipped.learn.logisticsservice;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+@EnableJpaAuditing
+@SpringBootApplication(scanBasePackages = {"com.flipped.learn"})
+public class LogisticsServiceApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(LogisticsServiceApplication.class, args);
+    }
+}
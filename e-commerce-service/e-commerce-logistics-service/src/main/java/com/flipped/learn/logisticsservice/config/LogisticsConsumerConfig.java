@@ -0,0 +1,28 @@
+package com.flipped.learn.logisticsservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.BatchErrorHandler;
+import org.springframework.kafka.listener.SeekToCurrentBatchErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * <h1>物流消息消费者配置</h1>
+ * 监听容器由 spring.kafka.listener 配置, 这里只提供批量消费的错误处理
+ */
+@Configuration
+public class LogisticsConsumerConfig {
+
+    /**
+     * <h2>整批消息处理失败 (比如数据库不可用) 时, 回退 offset 重新消费这一批</h2>
+     * 写入是幂等的, 重新消费不会产生重复的物流记录; 一直重试, 不丢弃消息
+     */
+    @Bean
+    public BatchErrorHandler logisticsBatchErrorHandler(
+            @Value("${ecommerce.logistics.consumer.retry-interval-millis:1000}") long retryIntervalMillis) {
+        SeekToCurrentBatchErrorHandler errorHandler = new SeekToCurrentBatchErrorHandler();
+        errorHandler.setBackOff(new FixedBackOff(retryIntervalMillis, FixedBackOff.UNLIMITED_ATTEMPTS));
+        return errorHandler;
+    }
+}
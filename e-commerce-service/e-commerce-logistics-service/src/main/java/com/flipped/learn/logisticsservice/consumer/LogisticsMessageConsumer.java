@@ -0,0 +1,103 @@
+package com.flipped.learn.logisticsservice.consumer;
+
+import com.flipped.learn.logisticsservice.entity.EcommerceLogistics;
+import com.flipped.learn.logisticsservice.repository.EcommerceLogisticsRepository;
+import com.flipped.learn.servicesdk.order.LogisticsMessage;
+import com.flipped.learn.servicesdk.order.LogisticsMessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>批量消费订单服务发送的物流消息</h1>
+ * 一次拉取的消息按照 orderId 去重后批量写入物流记录表; 消费者自身的 lag 由 kafka 客户端指标
+ * kafka.consumer.fetch.manager.records.lag 提供
+ */
+@Slf4j
+@Component
+public class LogisticsMessageConsumer {
+
+    private final EcommerceLogisticsRepository logisticsRepository;
+
+    private final Counter receivedCounter;
+
+    private final Counter duplicateCounter;
+
+    private final Counter insertedCounter;
+
+    private final Counter invalidCounter;
+
+    private final Timer batchTimer;
+
+    private final Timer delayTimer;
+
+    public LogisticsMessageConsumer(EcommerceLogisticsRepository logisticsRepository, MeterRegistry registry) {
+        this.logisticsRepository = logisticsRepository;
+        this.receivedCounter = Counter.builder("ecommerce.logistics.consumer.received")
+                .description("logistics messages received").register(registry);
+        this.duplicateCounter = Counter.builder("ecommerce.logistics.consumer.duplicates")
+                .description("logistics messages whose order already has a record").register(registry);
+        this.insertedCounter = Counter.builder("ecommerce.logistics.consumer.inserted")
+                .description("logistics records inserted").register(registry);
+        this.invalidCounter = Counter.builder("ecommerce.logistics.consumer.invalid")
+                .description("logistics messages that can not be decoded").register(registry);
+        this.batchTimer = Timer.builder("ecommerce.logistics.consumer.batch")
+                .description("time to write one batch of logistics records")
+                .publishPercentiles(0.5, 0.99).register(registry);
+        this.delayTimer = Timer.builder("ecommerce.logistics.consumer.delay")
+                .description("time from message produced to message consumed")
+                .publishPercentiles(0.5, 0.99).register(registry);
+    }
+
+    /**
+     * <h2>消费一批物流消息</h2>
+     * 抛出异常时整批重新消费, 见 LogisticsConsumerConfig
+     */
+    @KafkaListener(topics = "${ecommerce.logistics.consumer.topic:e-commerce-topic}")
+    public void consume(List<ConsumerRecord<Long, byte[]>> records) {
+
+        long now = System.currentTimeMillis();
+        receivedCounter.increment(records.size());
+
+        // orderId -> 物流记录, 同一批中重复的消息只写入一次
+        Map<Long, EcommerceLogistics> orderId2Logistics = new LinkedHashMap<>(records.size());
+        int invalid = 0;
+        for (ConsumerRecord<Long, byte[]> record : records) {
+            delayTimer.record(Math.max(0, now - record.timestamp()), TimeUnit.MILLISECONDS);
+            LogisticsMessage message;
+            try {
+                message = LogisticsMessageCodec.decode(record.value());
+            } catch (IllegalArgumentException ex) {
+                // 无法解码的消息重试也不会成功, 记录后跳过
+                invalid++;
+                log.error("skip invalid logistics message: [{}-{}@{}], [{}]",
+                        record.topic(), record.partition(), record.offset(), ex.getMessage());
+                continue;
+            }
+            orderId2Logistics.putIfAbsent(message.getOrderId(), new EcommerceLogistics(message));
+        }
+        invalidCounter.increment(invalid);
+        if (orderId2Logistics.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int inserted = logisticsRepository.batchInsertIgnore(new ArrayList<>(orderId2Logistics.values()));
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        // inserted 是实际插入的行数, 剩下的是同一批中的重复消息, 以及数据表中已经有记录的订单
+        insertedCounter.increment(inserted);
+        duplicateCounter.increment(records.size() - invalid - inserted);
+        log.debug("consume logistics messages: [{}], inserted: [{}]", records.size(), inserted);
+    }
+}
@@ -0,0 +1,78 @@
+package com.flipped.learn.logisticsservice.entity;
+
+import com.flipped.learn.servicesdk.order.LogisticsMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * <h1>物流记录表实体类定义</h1>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_logistics")
+public class EcommerceLogistics {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * 用户 id
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * 订单 id
+     */
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    /**
+     * 用户地址 id
+     */
+    @Column(name = "address_id", nullable = false)
+    private Long addressId;
+
+    /**
+     * 备注信息(json 存储)
+     */
+    @Column(name = "extra_info", nullable = false)
+    private String extraInfo;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    public EcommerceLogistics(LogisticsMessage message) {
+
+        this.userId = message.getUserId();
+        this.orderId = message.getOrderId();
+        this.addressId = message.getAddressId();
+        this.extraInfo = null == message.getExtraInfo() ? "" : message.getExtraInfo();
+    }
+}
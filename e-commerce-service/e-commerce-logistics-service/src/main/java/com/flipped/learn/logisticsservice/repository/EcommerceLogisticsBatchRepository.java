@@ -0,0 +1,19 @@
+package com.flipped.learn.logisticsservice.repository;
+
+import com.flipped.learn.logisticsservice.entity.EcommerceLogistics;
+
+import java.util.List;
+
+/**
+ * <h1>物流记录批量写入, 作为 {@link EcommerceLogisticsRepository} 的扩展</h1>
+ */
+public interface EcommerceLogisticsBatchRepository {
+
+    /**
+     * <h2>以多值 INSERT 的方式插入物流记录, 已经存在的订单 (唯一索引冲突) 会被忽略</h2>
+     * 重复消费同一条消息不会报错
+     *
+     * @return 实际插入的记录数, 不包含被忽略的记录
+     */
+    int batchInsertIgnore(List<EcommerceLogistics> logistics);
+}
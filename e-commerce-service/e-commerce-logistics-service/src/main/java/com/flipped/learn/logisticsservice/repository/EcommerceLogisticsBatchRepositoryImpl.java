@@ -0,0 +1,60 @@
+package com.flipped.learn.logisticsservice.repository;
+
+import com.flipped.learn.logisticsservice.entity.EcommerceLogistics;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Resource;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <h1>物流记录批量写入实现</h1>
+ * 自己拼成多值 INSERT ... ON DUPLICATE KEY UPDATE id = id, 语句的影响行数就是实际插入的行数:
+ * 插入的行计 1, 已经存在的行没有变化计 0 (连接参数需要开启 useAffectedRows);
+ * JDBC batch 合并之后驱动对每一行只返回 SUCCESS_NO_INFO, 无法区分插入和忽略
+ */
+public class EcommerceLogisticsBatchRepositoryImpl implements EcommerceLogisticsBatchRepository {
+
+    /**
+     * 只忽略唯一索引冲突; INSERT IGNORE 还会把数据截断、类型错误等降级成警告, 写入错误的数据
+     */
+    private static final String INSERT_SQL = "INSERT INTO t_ecommerce_logistics "
+            + "(user_id, order_id, address_id, extra_info, create_time, update_time) VALUES ";
+
+    private static final String ON_DUPLICATE_KEY_SQL = " ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String VALUES_PLACEHOLDER = "(?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 一条 INSERT 最多包含的行数, 和消费者一次拉取的最大消息数一致
+     */
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int batchInsertIgnore(List<EcommerceLogistics> logistics) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int inserted = 0;
+        for (int from = 0; from < logistics.size(); from += ROWS_PER_STATEMENT) {
+            List<EcommerceLogistics> rows = logistics.subList(from,
+                    Math.min(from + ROWS_PER_STATEMENT, logistics.size()));
+            String sql = INSERT_SQL + String.join(", ", Collections.nCopies(rows.size(), VALUES_PLACEHOLDER))
+                    + ON_DUPLICATE_KEY_SQL;
+            inserted += jdbcTemplate.update(sql, ps -> {
+                int index = 1;
+                for (EcommerceLogistics item : rows) {
+                    ps.setLong(index++, item.getUserId());
+                    ps.setLong(index++, item.getOrderId());
+                    ps.setLong(index++, item.getAddressId());
+                    ps.setString(index++, item.getExtraInfo());
+                    ps.setTimestamp(index++, now);
+                    ps.setTimestamp(index++, now);
+                }
+            });
+        }
+        return inserted;
+    }
+}
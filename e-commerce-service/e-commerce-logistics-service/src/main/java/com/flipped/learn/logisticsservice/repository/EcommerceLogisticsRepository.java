@@ -0,0 +1,11 @@
+package com.flipped.learn.logisticsservice.repository;
+
+import com.flipped.learn.logisticsservice.entity.EcommerceLogistics;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+/**
+ * <h1>EcommerceLogistics Dao 接口定义</h1>
+ */
+public interface EcommerceLogisticsRepository extends PagingAndSortingRepository<EcommerceLogistics, Long>,
+        EcommerceLogisticsBatchRepository {
+}
@@ -0,0 +1,49 @@
+package com.flipped.learn.logisticsservice.consumer;
+
+import com.flipped.learn.logisticsservice.repository.EcommerceLogisticsRepository;
+import com.flipped.learn.servicesdk.order.LogisticsMessage;
+import com.flipped.learn.servicesdk.order.LogisticsMessageCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>物流消息消费的计数测试</h1>
+ */
+class LogisticsMessageConsumerTest {
+
+    private final EcommerceLogisticsRepository logisticsRepository = mock(EcommerceLogisticsRepository.class);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void duplicatesCountBatchAndTableDuplicates() {
+        // 订单 2 在同一批中重复, 订单 3 在数据表中已经有记录, 只插入了订单 1 和 2
+        when(logisticsRepository.batchInsertIgnore(anyList())).thenReturn(2);
+        LogisticsMessageConsumer consumer = new LogisticsMessageConsumer(logisticsRepository, registry);
+
+        consumer.consume(Arrays.asList(record(0, 1L), record(1, 2L), record(2, 2L), record(3, 3L),
+                new ConsumerRecord<>("topic", 0, 4, 4L, new byte[]{1, 2})));
+
+        assertEquals(5.0, count("ecommerce.logistics.consumer.received"));
+        assertEquals(1.0, count("ecommerce.logistics.consumer.invalid"));
+        assertEquals(2.0, count("ecommerce.logistics.consumer.inserted"));
+        assertEquals(2.0, count("ecommerce.logistics.consumer.duplicates"));
+    }
+
+    private double count(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    private static ConsumerRecord<Long, byte[]> record(long offset, long orderId) {
+        return new ConsumerRecord<>("topic", 0, offset, orderId,
+                LogisticsMessageCodec.encode(new LogisticsMessage(1L, orderId, 1L, null)));
+    }
+}
@@ -0,0 +1,62 @@
+package com.flipped.learn.logisticsservice.repository;
+
+import com.flipped.learn.logisticsservice.entity.EcommerceLogistics;
+import com.flipped.learn.servicesdk.order.LogisticsMessage;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>物流记录批量写入测试, 插入行数来自语句的影响行数</h1>
+ */
+class EcommerceLogisticsBatchRepositoryImplTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final EcommerceLogisticsBatchRepositoryImpl repository = new EcommerceLogisticsBatchRepositoryImpl();
+
+    @Test
+    void insertedCountIsAffectedRowsOfEachStatement() {
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        // 第一条语句 500 行中有 20 行被忽略, 第二条语句 100 行全部被忽略
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenReturn(480, 0);
+
+        assertEquals(480, repository.batchInsertIgnore(logistics(600)));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, times(2)).update(sql.capture(), any(PreparedStatementSetter.class));
+        assertEquals(500, placeholders(sql.getAllValues().get(0)));
+        assertEquals(100, placeholders(sql.getAllValues().get(1)));
+        // 只忽略唯一索引冲突, 不使用 INSERT IGNORE
+        sql.getAllValues().forEach(statement -> {
+            assertFalse(statement.contains("IGNORE"));
+            assertTrue(statement.endsWith("ON DUPLICATE KEY UPDATE id = id"));
+        });
+    }
+
+    private static int placeholders(String sql) {
+        return sql.split("\\(\\?", -1).length - 1;
+    }
+
+    private static List<EcommerceLogistics> logistics(int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(orderId -> new EcommerceLogistics(new LogisticsMessage(1L, orderId, 1L, "{}")))
+                .collect(Collectors.toList());
+    }
+}
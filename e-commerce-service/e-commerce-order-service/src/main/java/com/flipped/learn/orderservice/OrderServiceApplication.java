@@ -6,11 +6,13 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableJpaAuditing
+@EnableScheduling
 @EnableFeignClients
 @Import(DataSourceProxyAutoConfiguration.class)
-@SpringBootApplication(scanBasePackages = {"com.flipped.lean"})
+@SpringBootApplication(scanBasePackages = {"com.flipped.learn"})
 public class OrderServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,137 @@
+package com.flipped.learn.orderservice.config;
+
+import com.flipped.learn.common.vo.LoginUserInfo;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * <h1>并行调用下游服务使用的线程池</h1>
+ * 任务中可以拿到提交任务的请求上下文和登录用户信息, FeignConfig 依赖请求上下文传递 Header
+ */
+@Configuration
+public class FanOutExecutorConfig {
+
+    public static final String FAN_OUT_EXECUTOR = "orderFanOutExecutor";
+
+    @Bean(FAN_OUT_EXECUTOR)
+    public Executor orderFanOutExecutor(@Value("${ecommerce.order.fan-out.core-pool-size:8}") int corePoolSize,
+                                        @Value("${ecommerce.order.fan-out.max-pool-size:32}") int maxPoolSize,
+                                        @Value("${ecommerce.order.fan-out.queue-capacity:200}") int queueCapacity) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("Order-Service-FanOut-");
+        executor.setTaskDecorator(new ContextCopyingDecorator());
+        // 线程池满时在请求线程中执行, 退化为串行调用
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+
+        return executor;
+    }
+
+    /**
+     * <h2>把提交任务线程的请求上下文和登录用户信息复制到执行任务的线程</h2>
+     * 执行完恢复执行线程原来的上下文, 任务在请求线程中执行 (CallerRuns) 时不会清掉请求线程的上下文;
+     * 请求头在提交时复制一份, 请求线程超时返回后, 还在执行的任务不会读到已经被容器回收的请求
+     */
+    static class ContextCopyingDecorator implements TaskDecorator {
+
+        @Override
+        public Runnable decorate(Runnable runnable) {
+            RequestAttributes attributes = snapshot(RequestContextHolder.getRequestAttributes());
+            LoginUserInfo loginUserInfo = UserContextHolder.getLoginUserInfo();
+
+            return () -> {
+                RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+                LoginUserInfo previousLoginUserInfo = UserContextHolder.getLoginUserInfo();
+                RequestContextHolder.setRequestAttributes(attributes);
+                UserContextHolder.setLoginUserInfo(loginUserInfo);
+                try {
+                    runnable.run();
+                } finally {
+                    RequestContextHolder.setRequestAttributes(previousAttributes);
+                    if (null == previousLoginUserInfo) {
+                        UserContextHolder.clearLoginUserInfo();
+                    } else {
+                        UserContextHolder.setLoginUserInfo(previousLoginUserInfo);
+                    }
+                }
+            };
+        }
+
+        private static RequestAttributes snapshot(RequestAttributes attributes) {
+            if (!(attributes instanceof ServletRequestAttributes)) {
+                return attributes;
+            }
+            return new ServletRequestAttributes(
+                    new HeaderSnapshotRequest(((ServletRequestAttributes) attributes).getRequest()));
+        }
+    }
+
+    /**
+     * <h2>请求头的快照, FeignConfig 只从请求中读取 Header</h2>
+     */
+    static class HeaderSnapshotRequest extends HttpServletRequestWrapper {
+
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+
+        HeaderSnapshotRequest(HttpServletRequest request) {
+            super(request);
+            Enumeration<String> names = request.getHeaderNames();
+            while (null != names && names.hasMoreElements()) {
+                String name = names.nextElement();
+                headers.put(name, Collections.list(request.getHeaders(name)));
+            }
+        }
+
+        @Override
+        public String getHeader(String name) {
+            List<String> values = find(name);
+            return values.isEmpty() ? null : values.get(0);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return Collections.enumeration(find(name));
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(headers.keySet());
+        }
+
+        /**
+         * <h2>Header 名称不区分大小写</h2>
+         */
+        private List<String> find(String name) {
+            return headers.entrySet().stream()
+                    .filter(e -> e.getKey().equalsIgnoreCase(name))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(Collections.emptyList());
+        }
+    }
+}
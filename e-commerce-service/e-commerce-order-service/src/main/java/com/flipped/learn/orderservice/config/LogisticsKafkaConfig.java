@@ -0,0 +1,21 @@
+package com.flipped.learn.orderservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+/**
+ * <h1>物流消息 topic 配置</h1>
+ * 启动时由 KafkaAdmin 创建 topic, 已经存在时不会修改
+ */
+@Configuration
+public class LogisticsKafkaConfig {
+
+    @Bean
+    public NewTopic logisticsTopic(@Value("${ecommerce.order.outbox.topic:e-commerce-topic}") String topic,
+                                   @Value("${ecommerce.order.outbox.topic-partitions:3}") int partitions) {
+        return TopicBuilder.name(topic).partitions(partitions).build();
+    }
+}
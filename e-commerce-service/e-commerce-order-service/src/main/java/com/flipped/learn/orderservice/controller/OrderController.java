@@ -0,0 +1,49 @@
+package com.flipped.learn.orderservice.controller;
+
+import com.flipped.learn.orderservice.service.IOrderService;
+import com.flipped.learn.orderservice.vo.PageSimpleOrderDetail;
+import com.flipped.learn.servicesdk.common.TableId;
+import com.flipped.learn.servicesdk.order.OrderInfo;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * <h1>订单服务对外提供的 API</h1>
+ */
+@Api(tags = "订单服务")
+@Slf4j
+@RestController
+@RequestMapping("/order")
+public class OrderController {
+
+    private final IOrderService orderService;
+
+    public OrderController(IOrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    @ApiOperation(value = "下单", notes = "购买(分布式事务): 创建订单 -> 扣减库存 -> 扣减余额 -> 创建物流信息",
+            httpMethod = "POST")
+    @PostMapping("/create-order")
+    public TableId createOrder(@RequestBody OrderInfo orderInfo) {
+        return orderService.createOrder(orderInfo);
+    }
+
+    @ApiOperation(value = "我的订单", notes = "获取当前用户的订单信息: 带有分页", httpMethod = "GET")
+    @GetMapping("/order-detail")
+    public PageSimpleOrderDetail getSimpleOrderDetailByPage(
+            @RequestParam(required = false, defaultValue = "1") int page) {
+        return orderService.getSimpleOrderDetailByPage(page);
+    }
+
+    @ApiOperation(value = "我的订单", notes = "游标分页获取当前用户的订单信息, lastId 是上一页返回的 lastId",
+            httpMethod = "GET")
+    @GetMapping("/cursor-order-detail")
+    public PageSimpleOrderDetail getSimpleOrderDetailByCursor(
+            @RequestParam(required = false) Long lastId,
+            @RequestParam(required = false, defaultValue = "10") int limit) {
+        return orderService.getSimpleOrderDetailByCursor(lastId, limit);
+    }
+}
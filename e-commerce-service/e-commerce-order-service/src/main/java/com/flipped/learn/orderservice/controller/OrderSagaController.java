@@ -0,0 +1,35 @@
+package com.flipped.learn.orderservice.controller;
+
+import com.flipped.learn.orderservice.service.creator.SagaOrderCreator;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * <h1>saga 下单的内部接口, 只允许其他微服务调用</h1>
+ */
+@Api(tags = "saga 下单内部接口")
+@Slf4j
+@RestController
+@RequestMapping("/internal/order/saga")
+@ConditionalOnProperty(name = "ecommerce.order.transaction-mode", havingValue = "saga")
+public class OrderSagaController {
+
+    private final SagaOrderCreator sagaOrderCreator;
+
+    public OrderSagaController(SagaOrderCreator sagaOrderCreator) {
+        this.sagaOrderCreator = sagaOrderCreator;
+    }
+
+    @ApiOperation(value = "是否补偿中", notes = "商品、账户服务执行 saga 补偿之前确认订单已经标记为 COMPENSATING",
+            httpMethod = "GET")
+    @GetMapping("/compensating")
+    public Boolean isCompensating(@RequestParam String txId) {
+        return sagaOrderCreator.isCompensating(txId);
+    }
+}
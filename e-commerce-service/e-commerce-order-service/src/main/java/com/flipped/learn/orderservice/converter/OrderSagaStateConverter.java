@@ -0,0 +1,27 @@
+package com.flipped.learn.orderservice.converter;
+
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * <h1>saga 下单状态枚举属性转换器</h1>
+ */
+public class OrderSagaStateConverter implements AttributeConverter<OrderSagaState, Integer> {
+
+    /**
+     * <h2>转换成可以存入数据表的基本类型</h2>
+     */
+    @Override
+    public Integer convertToDatabaseColumn(OrderSagaState state) {
+        return state.getState();
+    }
+
+    /**
+     * <h2>还原数据表中的字段值到 Java 数据类型</h2>
+     */
+    @Override
+    public OrderSagaState convertToEntityAttribute(Integer state) {
+        return OrderSagaState.of(state);
+    }
+}
@@ -0,0 +1,27 @@
+package com.flipped.learn.orderservice.converter;
+
+import com.flipped.learn.orderservice.enums.OutboxStatus;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * <h1>发件箱消息状态枚举属性转换器</h1>
+ */
+public class OutboxStatusConverter implements AttributeConverter<OutboxStatus, Integer> {
+
+    /**
+     * <h2>转换成可以存入数据表的基本类型</h2>
+     */
+    @Override
+    public Integer convertToDatabaseColumn(OutboxStatus status) {
+        return status.getStatus();
+    }
+
+    /**
+     * <h2>还原数据表中的字段值到 Java 数据类型</h2>
+     */
+    @Override
+    public OutboxStatus convertToEntityAttribute(Integer status) {
+        return OutboxStatus.of(status);
+    }
+}
@@ -0,0 +1,75 @@
+package com.flipped.learn.orderservice.entity;
+
+import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * <h1>订单商品明细表实体类定义</h1>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_order_item")
+public class EcommerceOrderItem {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * 订单 id
+     */
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    /**
+     * 商品 id
+     */
+    @Column(name = "goods_id", nullable = false)
+    private Long goodsId;
+
+    /**
+     * 购买商品个数
+     */
+    @Column(name = "count", nullable = false)
+    private Integer count;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    public EcommerceOrderItem(Long orderId, Long goodsId, Integer count) {
+
+        this.orderId = orderId;
+        this.goodsId = goodsId;
+        this.count = count;
+    }
+
+    public DeductGoodsInventory toDeductGoodsInventory() {
+        return new DeductGoodsInventory(this.goodsId, this.count);
+    }
+}
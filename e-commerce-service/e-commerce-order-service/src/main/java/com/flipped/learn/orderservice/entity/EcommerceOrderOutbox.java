@@ -0,0 +1,73 @@
+package com.flipped.learn.orderservice.entity;
+
+import com.flipped.learn.orderservice.converter.OutboxStatusConverter;
+import com.flipped.learn.orderservice.enums.OutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * <h1>订单消息发件箱表实体类定义</h1>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_order_outbox")
+public class EcommerceOrderOutbox {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * 订单 id
+     */
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    /**
+     * 消息内容
+     */
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    /**
+     * 状态
+     */
+    @Column(name = "status", nullable = false)
+    @Convert(converter = OutboxStatusConverter.class)
+    private OutboxStatus status;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    public EcommerceOrderOutbox(Long orderId, String payload) {
+
+        this.orderId = orderId;
+        this.payload = payload;
+        this.status = OutboxStatus.PENDING;
+    }
+}
@@ -0,0 +1,125 @@
+package com.flipped.learn.orderservice.entity;
+
+import com.flipped.learn.orderservice.converter.OrderSagaStateConverter;
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * <h1>saga 下单状态表实体类定义</h1>
+ * 状态变化使用乐观锁, 请求线程和后台恢复任务不会同时推进同一个 saga
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "t_ecommerce_order_saga")
+public class EcommerceOrderSaga {
+
+    /**
+     * saga 事务 id 的前缀
+     */
+    private static final String TX_ID_PREFIX = "order-";
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    /**
+     * 订单 id
+     */
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    /**
+     * 用户 id
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * 状态
+     */
+    @Column(name = "state", nullable = false)
+    @Convert(converter = OrderSagaStateConverter.class)
+    private OrderSagaState state;
+
+    /**
+     * 订单总价格
+     */
+    @Column(name = "total_price", nullable = false)
+    private Long totalPrice;
+
+    /**
+     * 后台恢复次数
+     */
+    @Column(name = "retry_count", nullable = false)
+    private Integer retryCount;
+
+    /**
+     * 乐观锁版本号
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /**
+     * 创建时间
+     */
+    @CreatedDate
+    @Column(name = "create_time", nullable = false)
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @LastModifiedDate
+    @Column(name = "update_time", nullable = false)
+    private Date updateTime;
+
+    /**
+     * <h2>创建一个新的 saga</h2>
+     */
+    public static EcommerceOrderSaga started(Long orderId, Long userId) {
+        EcommerceOrderSaga saga = new EcommerceOrderSaga();
+        saga.setOrderId(orderId);
+        saga.setUserId(userId);
+        saga.setState(OrderSagaState.STARTED);
+        saga.setTotalPrice(0L);
+        saga.setRetryCount(0);
+        return saga;
+    }
+
+    /**
+     * <h2>saga 事务 id, 下游服务用它保证扣减和补偿的幂等</h2>
+     */
+    public String txId() {
+        return TX_ID_PREFIX + orderId;
+    }
+
+    /**
+     * <h2>从 saga 事务 id 中解析订单 id, 格式不对时返回 null</h2>
+     */
+    public static Long orderIdOf(String txId) {
+        if (null == txId || !txId.startsWith(TX_ID_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(txId.substring(TX_ID_PREFIX.length()));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.flipped.learn.orderservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * <h1>saga 下单状态枚举类</h1>
+ * STARTED -> INVENTORY_DEDUCTED -> BALANCE_DEDUCTED -> COMPLETED
+ * 任意一步失败: -> COMPENSATING -> COMPENSATED
+ */
+@Getter
+@AllArgsConstructor
+public enum OrderSagaState {
+
+    STARTED(0, "订单已经创建"),
+    INVENTORY_DEDUCTED(1, "已经扣减库存"),
+    BALANCE_DEDUCTED(2, "已经扣减余额"),
+    COMPLETED(3, "下单完成"),
+    COMPENSATING(4, "正在补偿"),
+    COMPENSATED(5, "已经补偿, 订单取消"),
+    ;
+
+    /**
+     * 状态码
+     */
+    private final Integer state;
+
+    /**
+     * 状态描述
+     */
+    private final String description;
+
+    /**
+     * <h2>根据 code 获取到 OrderSagaState</h2>
+     */
+    public static OrderSagaState of(Integer state) {
+        Objects.requireNonNull(state);
+        return Stream.of(values())
+                .filter(bean -> bean.state.equals(state))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(state + " not exists"));
+    }
+}
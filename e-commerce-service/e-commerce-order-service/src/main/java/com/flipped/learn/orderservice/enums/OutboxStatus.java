@@ -0,0 +1,40 @@
+package com.flipped.learn.orderservice.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * <h1>发件箱消息状态枚举类</h1>
+ */
+@Getter
+@AllArgsConstructor
+public enum OutboxStatus {
+
+    PENDING(0, "待发送"),
+    SENT(1, "已发送"),
+    ;
+
+    /**
+     * 状态码
+     */
+    private final Integer status;
+
+    /**
+     * 状态描述
+     */
+    private final String description;
+
+    /**
+     * <h2>根据 code 获取到 OutboxStatus</h2>
+     */
+    public static OutboxStatus of(Integer status) {
+        Objects.requireNonNull(status);
+        return Stream.of(values())
+                .filter(bean -> bean.status.equals(status))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(status + " not exists"));
+    }
+}
@@ -35,7 +35,9 @@ public class FeignConfig {
                         String values = request.getHeader(name);
                         // 不能把当前请求的 content-length 传递到下游的服务提供方, 这明显是不对的
                         // 请求可能一直返回不了, 或者是请求响应数据被截断
-                        if (!name.equalsIgnoreCase("content-length")) {
+                        // Feign 接口上显式指定的 Header 优先, 不再重复传递
+                        if (!name.equalsIgnoreCase("content-length")
+                                && !template.headers().containsKey(name)) {
                             // 这里的 template 就是 RestTemplate
                             template.header(name, values);
                         }
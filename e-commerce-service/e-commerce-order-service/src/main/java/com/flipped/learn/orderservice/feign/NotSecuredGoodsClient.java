@@ -4,6 +4,7 @@ package com.flipped.learn.orderservice.feign;
 import com.flipped.learn.common.vo.CommonResponse;
 import com.flipped.learn.servicesdk.common.TableId;
 import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
 import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -27,6 +28,16 @@ public interface NotSecuredGoodsClient {
     )
     CommonResponse<Boolean> deductGoodsInventory(@RequestBody List<DeductGoodsInventory> deductGoodsInventories);
 
+    /**
+     * <h2>扣减商品库存, 并返回扣减时的商品价格</h2>
+     * */
+    @RequestMapping(
+            value = "/ecommerce-goods-service/goods/deduct-goods-inventory-with-price",
+            method = RequestMethod.PUT
+    )
+    CommonResponse<List<DeductedGoodsInfo>> deductGoodsInventoryWithPrice(
+            @RequestBody List<DeductGoodsInventory> deductGoodsInventories);
+
     /**
      * <h2>根据 ids 查询简单的商品信息</h2>
      * */
@@ -0,0 +1,40 @@
+package com.flipped.learn.orderservice.feign;
+
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.serviceconfig.config.InternalFeignConfig;
+import com.flipped.learn.servicesdk.account.BalanceInfo;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * <h1>用户账户服务 saga 内部接口 Feign 接口</h1>
+ * 以订单服务的身份签名调用, 用户由 saga 中保存的 userId 指定
+ */
+@FeignClient(contextId = "SagaBalanceClient", value = "e-commerce-account-service",
+        configuration = InternalFeignConfig.class)
+public interface SagaBalanceClient {
+
+    /**
+     * <h2>saga 扣减 balanceInfo.userId 的余额, 同一个 txId 只扣减一次</h2>
+     */
+    @RequestMapping(
+            value = "/ecommerce-account-service/internal/balance/saga/deduct-balance",
+            method = RequestMethod.PUT
+    )
+    CommonResponse<BalanceInfo> sagaDeductBalance(
+            @RequestParam("txId") String txId,
+            @RequestBody BalanceInfo balanceInfo);
+
+    /**
+     * <h2>saga 退回 txId 扣减的余额, 可以重复调用</h2>
+     */
+    @RequestMapping(
+            value = "/ecommerce-account-service/internal/balance/saga/compensate-balance",
+            method = RequestMethod.PUT
+    )
+    CommonResponse<Boolean> sagaCompensateBalance(@RequestParam("txId") String txId,
+                                                  @RequestParam("userId") Long userId);
+}
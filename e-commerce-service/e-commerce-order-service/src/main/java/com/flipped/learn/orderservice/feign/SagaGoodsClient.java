@@ -0,0 +1,42 @@
+package com.flipped.learn.orderservice.feign;
+
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.serviceconfig.config.InternalFeignConfig;
+import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+/**
+ * <h1>商品服务 saga 内部接口 Feign 接口</h1>
+ * 以订单服务的身份签名调用, 不依赖用户 token, 后台补偿时也可以调用
+ */
+@FeignClient(contextId = "SagaGoodsClient", value = "e-commerce-goods-service",
+        configuration = InternalFeignConfig.class)
+public interface SagaGoodsClient {
+
+    /**
+     * <h2>saga 扣减商品库存, 同一个 txId 只扣减一次</h2>
+     */
+    @RequestMapping(
+            value = "/ecommerce-goods-service/internal/goods/saga/deduct-goods-inventory",
+            method = RequestMethod.PUT
+    )
+    CommonResponse<List<DeductedGoodsInfo>> sagaDeductGoodsInventory(
+            @RequestParam("txId") String txId,
+            @RequestBody List<DeductGoodsInventory> deductGoodsInventories);
+
+    /**
+     * <h2>saga 归还 txId 扣减的商品库存, 可以重复调用</h2>
+     */
+    @RequestMapping(
+            value = "/ecommerce-goods-service/internal/goods/saga/compensate-goods-inventory",
+            method = RequestMethod.PUT
+    )
+    CommonResponse<Boolean> sagaCompensateGoodsInventory(@RequestParam("txId") String txId);
+}
@@ -0,0 +1,17 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+
+import java.util.List;
+
+/**
+ * <h1>旧订单商品明细迁移, 作为 {@link EcommerceOrderItemRepository} 的扩展</h1>
+ */
+public interface EcommerceOrderItemMigrateRepository {
+
+    /**
+     * <h2>以 JDBC batch 的方式插入订单商品明细, 已经存在的明细 (唯一索引冲突) 会被忽略</h2>
+     * 多个请求同时迁移同一个订单时不会报错
+     */
+    void batchInsertIgnore(List<EcommerceOrderItem> items);
+}
@@ -0,0 +1,45 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Resource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * <h1>旧订单商品明细迁移实现</h1>
+ * 只在全局事务之外调用, 不经过 Seata 的 SQL 解析
+ */
+public class EcommerceOrderItemMigrateRepositoryImpl implements EcommerceOrderItemMigrateRepository {
+
+    private static final String INSERT_IGNORE_SQL = "INSERT IGNORE INTO t_ecommerce_order_item "
+            + "(order_id, goods_id, count, create_time, update_time) VALUES (?, ?, ?, ?, ?)";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void batchInsertIgnore(List<EcommerceOrderItem> items) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_IGNORE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                EcommerceOrderItem item = items.get(i);
+                ps.setLong(1, item.getOrderId());
+                ps.setLong(2, item.getGoodsId());
+                ps.setInt(3, item.getCount());
+                ps.setTimestamp(4, now);
+                ps.setTimestamp(5, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return items.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <h1>EcommerceOrderItem Dao 接口定义</h1>
+ */
+public interface EcommerceOrderItemRepository extends PagingAndSortingRepository<EcommerceOrderItem, Long>,
+        EcommerceOrderItemMigrateRepository {
+
+    /**
+     * <h2>一次查询一页订单的商品明细</h2>
+     * select * from t_ecommerce_order_item where order_id in (?, ...) order by id;
+     */
+    List<EcommerceOrderItem> findAllByOrderIdInOrderById(Collection<Long> orderIds);
+
+    /**
+     * <h2>删除订单的商品明细, saga 补偿时和订单一起删除</h2>
+     * delete from t_ecommerce_order_item where order_id = ?;
+     */
+    void deleteByOrderId(Long orderId);
+}
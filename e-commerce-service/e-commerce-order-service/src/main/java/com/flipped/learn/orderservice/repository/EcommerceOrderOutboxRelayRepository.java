@@ -0,0 +1,33 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderOutbox;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <h1>发件箱消息的发送与清理, 作为 {@link EcommerceOrderOutboxRepository} 的扩展</h1>
+ */
+public interface EcommerceOrderOutboxRelayRepository {
+
+    /**
+     * <h2>按照写入顺序锁定一批待发送的消息</h2>
+     * 多个实例同时发送时, 同一批消息只会被一个实例拿到
+     */
+    List<EcommerceOrderOutbox> findPendingForUpdate(int limit);
+
+    /**
+     * <h2>最早一条待发送消息的创建时间, 没有待发送的消息时返回 null</h2>
+     */
+    Date findOldestPendingCreateTime();
+
+    /**
+     * <h2>把消息标记为已发送</h2>
+     */
+    int markSent(List<Long> ids);
+
+    /**
+     * <h2>删除一批在给定时间之前已经发送的消息</h2>
+     */
+    int deleteSentBefore(Date updateTime, int limit);
+}
@@ -0,0 +1,73 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderOutbox;
+import com.flipped.learn.orderservice.enums.OutboxStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Resource;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <h1>发件箱消息的发送与清理实现</h1>
+ */
+public class EcommerceOrderOutboxRelayRepositoryImpl implements EcommerceOrderOutboxRelayRepository {
+
+    private static final String SELECT_PENDING_FOR_UPDATE_SQL = "SELECT id, order_id, payload, create_time "
+            + "FROM t_ecommerce_order_outbox WHERE status = ? ORDER BY id LIMIT ? FOR UPDATE";
+
+    private static final String SELECT_OLDEST_PENDING_SQL = "SELECT create_time "
+            + "FROM t_ecommerce_order_outbox WHERE status = ? ORDER BY id LIMIT 1";
+
+    private static final String MARK_SENT_SQL = "UPDATE t_ecommerce_order_outbox "
+            + "SET status = ?, update_time = ? WHERE id IN (%s)";
+
+    private static final String DELETE_SENT_SQL = "DELETE FROM t_ecommerce_order_outbox "
+            + "WHERE status = ? AND update_time < ? ORDER BY id LIMIT ?";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<EcommerceOrderOutbox> findPendingForUpdate(int limit) {
+        return jdbcTemplate.query(SELECT_PENDING_FOR_UPDATE_SQL, (rs, rowNum) -> {
+            EcommerceOrderOutbox outbox = new EcommerceOrderOutbox();
+            outbox.setId(rs.getLong("id"));
+            outbox.setOrderId(rs.getLong("order_id"));
+            outbox.setPayload(rs.getString("payload"));
+            outbox.setStatus(OutboxStatus.PENDING);
+            outbox.setCreateTime(rs.getTimestamp("create_time"));
+            return outbox;
+        }, OutboxStatus.PENDING.getStatus(), limit);
+    }
+
+    @Override
+    public Date findOldestPendingCreateTime() {
+        List<Timestamp> times = jdbcTemplate.queryForList(SELECT_OLDEST_PENDING_SQL, Timestamp.class,
+                OutboxStatus.PENDING.getStatus());
+        return times.isEmpty() ? null : times.get(0);
+    }
+
+    @Override
+    public int markSent(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = String.format(MARK_SENT_SQL, String.join(",", Collections.nCopies(ids.size(), "?")));
+        Object[] args = new Object[ids.size() + 2];
+        args[0] = OutboxStatus.SENT.getStatus();
+        args[1] = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < ids.size(); i++) {
+            args[i + 2] = ids.get(i);
+        }
+        return jdbcTemplate.update(sql, args);
+    }
+
+    @Override
+    public int deleteSentBefore(Date updateTime, int limit) {
+        return jdbcTemplate.update(DELETE_SENT_SQL, OutboxStatus.SENT.getStatus(),
+                new Timestamp(updateTime.getTime()), limit);
+    }
+}
@@ -0,0 +1,11 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderOutbox;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+/**
+ * <h1>EcommerceOrderOutbox Dao 接口定义</h1>
+ */
+public interface EcommerceOrderOutboxRepository extends PagingAndSortingRepository<EcommerceOrderOutbox, Long>,
+        EcommerceOrderOutboxRelayRepository {
+}
@@ -5,6 +5,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import java.util.List;
+
 /**
  * <h1>EcommerceOrder Dao 接口定义</h1>
  */
@@ -16,4 +18,11 @@ public interface EcommerceOrderRepository extends PagingAndSortingRepository<Eco
      * order by ... desc/asc limit x offset y
      */
     Page<EcommerceOrder> findAllByUserId(Long userId, Pageable pageable);
+
+    /**
+     * <h2>游标分页: 查询用户 id 小于游标的订单, 不需要 count 查询</h2>
+     * select * from t_ecommerce_order where user_id = ? and id < ?
+     * order by id desc limit x
+     */
+    List<EcommerceOrder> findAllByUserIdAndIdLessThan(Long userId, Long id, Pageable pageable);
 }
@@ -0,0 +1,36 @@
+package com.flipped.learn.orderservice.repository;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderSaga;
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <h1>EcommerceOrderSaga Dao 接口定义</h1>
+ */
+public interface EcommerceOrderSagaRepository extends PagingAndSortingRepository<EcommerceOrderSaga, Long> {
+
+    /**
+     * <h2>查询一段时间没有推进、并且恢复次数没有达到上限的 saga</h2>
+     * select * from t_ecommerce_order_saga where state in (?, ...) and update_time < ? and retry_count < ?
+     * order by ... limit x
+     */
+    List<EcommerceOrderSaga> findAllByStateInAndUpdateTimeBeforeAndRetryCountLessThan(
+            Collection<OrderSagaState> states, Date updateTime, Integer retryCount, Pageable pageable);
+
+    /**
+     * <h2>统计一段时间没有推进的 saga 个数</h2>
+     * select count(*) from t_ecommerce_order_saga where state in (?, ...) and update_time < ?
+     */
+    long countByStateInAndUpdateTimeBefore(Collection<OrderSagaState> states, Date updateTime);
+
+    /**
+     * <h2>根据订单 id 查询 saga</h2>
+     */
+    Optional<EcommerceOrderSaga> findByOrderId(Long orderId);
+}
@@ -19,4 +19,9 @@ public interface IOrderService {
      * <h2>获取当前用户的订单信息: 带有分页</h2>
      */
     PageSimpleOrderDetail getSimpleOrderDetailByPage(int page);
+
+    /**
+     * <h2>获取当前用户的订单信息: 游标分页, 按照 id 倒序, lastId 为空时查询第一页</h2>
+     */
+    PageSimpleOrderDetail getSimpleOrderDetailByCursor(Long lastId, int limit);
 }
@@ -0,0 +1,91 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.feign.NotSecuredBalanceClient;
+import com.flipped.learn.orderservice.feign.NotSecuredGoodsClient;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.BalanceInfo;
+import com.flipped.learn.servicesdk.common.TableId;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import com.flipped.learn.servicesdk.order.OrderInfo;
+import io.seata.spring.annotation.GlobalTransactional;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>Seata AT 模式创建订单</h1>
+ * 所有步骤在一个全局事务中, 任意一步失败由 Seata 回滚各个服务的本地事务
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ecommerce.order.transaction-mode", havingValue = "at", matchIfMissing = true)
+public class AtOrderCreator implements OrderCreator {
+
+    @Resource
+    private OrderCreateSupport orderCreateSupport;
+
+    @Resource
+    private NotSecuredGoodsClient notSecuredGoodsClient;
+
+    @Resource
+    private NotSecuredBalanceClient notSecuredBalanceClient;
+
+    /**
+     * <h2>创建订单: 这里会涉及到分布式事务</h2>
+     * 创建订单会涉及到多个步骤和校验, 当不满足情况时直接抛出异常;
+     * 1. 校验请求对象是否合法
+     * 2. 创建订单
+     * 3. 扣减商品库存
+     * 4. 扣减用户余额
+     * 5. 写入订单物流消息, 由后台任务发送到 Kafka
+     */
+    @Override
+    @GlobalTransactional(rollbackFor = Exception.class)
+    public TableId createOrder(OrderInfo orderInfo) {
+
+        // 1. 校验请求对象是否合法
+        orderCreateSupport.checkAddress(orderInfo);
+
+        // 2. 创建订单
+        EcommerceOrder newOrder = orderCreateSupport.saveOrder(orderInfo);
+
+        // 3. 扣减商品库存, 同时拿到扣减时的商品价格, 一次调用商品服务
+        List<DeductedGoodsInfo> deductedGoods = notSecuredGoodsClient.deductGoodsInventoryWithPrice(
+                orderInfo.getOrderItems()
+                        .stream()
+                        .map(OrderInfo.OrderItem::toDeductGoodsInventory)
+                        .collect(Collectors.toList())
+        ).getData();
+        if (CollectionUtils.isEmpty(deductedGoods)) {
+            throw new RuntimeException("deduct goods inventory failure");
+        }
+
+        // 4. 扣减用户账户余额
+        // 4.1 计算总价格
+        long balance = deductedGoods.stream().mapToLong(DeductedGoodsInfo::totalPrice).sum();
+        assert balance > 0;
+
+        // 4.2 填写总价格, 扣减账户余额
+        BalanceInfo balanceInfo = notSecuredBalanceClient.deductBalance(
+                new BalanceInfo(UserContextHolder.getLoginUserInfo().getId(), balance)
+        ).getData();
+        if (null == balanceInfo) {
+            throw new RuntimeException("deduct user balance failure");
+        }
+        log.info("deduct user balance: [{}], [{}]", newOrder.getId(), JSON.toJSONString(balanceInfo));
+
+        // 5. 写入订单物流消息, 和全局事务一起提交或者回滚
+        orderCreateSupport.saveLogisticsMessage(newOrder);
+
+        // 返回订单 id
+        return new TableId(Collections.singletonList(new TableId.Id(newOrder.getId())));
+    }
+}
@@ -0,0 +1,132 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+import com.flipped.learn.orderservice.entity.EcommerceOrderOutbox;
+import com.flipped.learn.orderservice.feign.AddressClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderItemRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderOutboxRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
+import com.flipped.learn.orderservice.service.outbox.LogisticsOutboxRelay;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.AddressInfo;
+import com.flipped.learn.servicesdk.common.TableId;
+import com.flipped.learn.servicesdk.order.LogisticsMessage;
+import com.flipped.learn.servicesdk.order.OrderInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>AT 和 saga 下单共用的步骤</h1>
+ */
+@Slf4j
+@Component
+public class OrderCreateSupport {
+
+    @Resource
+    private EcommerceOrderRepository orderRepository;
+
+    @Resource
+    private EcommerceOrderItemRepository orderItemRepository;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private AddressClient addressClient;
+
+    @Resource
+    private EcommerceOrderOutboxRepository outboxRepository;
+
+    /**
+     * <h2>校验请求对象是否合法(商品信息不需要校验, 扣减库存会做校验)</h2>
+     */
+    public void checkAddress(OrderInfo orderInfo) {
+
+        AddressInfo addressInfo = addressClient.getAddressInfoByTablesId(
+                new TableId(Collections.singletonList(
+                        new TableId.Id(orderInfo.getUserAddress())))).getData();
+
+        if (null == addressInfo || CollectionUtils.isEmpty(addressInfo.getAddressItems())) {
+            throw new BusinessException(ServiceErrorCodeConstants.ADDRESS_EXITS);
+        }
+    }
+
+    /**
+     * <h2>创建订单</h2>
+     * 订单和商品明细在同一个本地事务中提交, 查询订单时不会看到没有明细的新订单;
+     * 外层已经有事务时加入外层事务
+     */
+    public EcommerceOrder saveOrder(OrderInfo orderInfo) {
+
+        Long userId = UserContextHolder.getLoginUserInfo().getId();
+        EcommerceOrder newOrder = transactionTemplate.execute(status -> {
+            EcommerceOrder order = orderRepository.save(
+                    new EcommerceOrder(userId,
+                            orderInfo.getUserAddress(),
+                            JSON.toJSONString(orderInfo.getOrderItems())
+                    )
+            );
+            orderItemRepository.saveAll(orderInfo.getOrderItems().stream()
+                    .map(i -> new EcommerceOrderItem(order.getId(), i.getGoodsId(), i.getCount()))
+                    .collect(Collectors.toList()));
+            return order;
+        });
+        assert null != newOrder;
+        log.info("create order success: [{}], [{}]", userId, newOrder.getId());
+
+        return newOrder;
+    }
+
+    /**
+     * <h2>删除订单和商品明细, saga 补偿时使用</h2>
+     */
+    public void deleteOrder(Long orderId) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            orderItemRepository.deleteByOrderId(orderId);
+            orderRepository.deleteById(orderId);
+        });
+        log.info("delete canceled order: [{}]", orderId);
+    }
+
+    /**
+     * <h2>写入订单物流消息, 由 {@link LogisticsOutboxRelay} 发送到 kafka</h2>
+     * 需要在订单所在的事务中调用, 订单回滚时消息一起回滚
+     */
+    public void saveLogisticsMessage(EcommerceOrder order) {
+
+        LogisticsMessage logisticsMessage = new LogisticsMessage(
+                order.getUserId(),
+                order.getId(),
+                order.getAddressId(),
+                null    // 没有备注信息
+        );
+        outboxRepository.save(new EcommerceOrderOutbox(order.getId(), JSON.toJSONString(logisticsMessage)));
+        log.info("save create order message to outbox: [{}]", JSON.toJSONString(logisticsMessage));
+    }
+
+    /**
+     * <h2>取出下游服务的响应数据, 下游返回业务错误时抛出异常</h2>
+     */
+    public static <T> T dataOf(CommonResponse<T> response) {
+
+        if (null == response || !GlobalErrorCodeConstants.SUCCESS.getCode().equals(response.getCode())) {
+            throw null == response
+                    ? new RuntimeException("empty response")
+                    : new BusinessException(response.getCode(), response.getMessage());
+        }
+        return response.getData();
+    }
+}
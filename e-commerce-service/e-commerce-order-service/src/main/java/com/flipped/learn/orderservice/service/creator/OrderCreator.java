@@ -0,0 +1,16 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.flipped.learn.servicesdk.common.TableId;
+import com.flipped.learn.servicesdk.order.OrderInfo;
+
+/**
+ * <h1>创建订单接口定义</h1>
+ * 根据 ecommerce.order.transaction-mode 选择 AT 或者 saga 实现
+ */
+public interface OrderCreator {
+
+    /**
+     * <h2>创建订单: 创建订单, 扣减库存, 扣减余额, 发送物流消息</h2>
+     */
+    TableId createOrder(OrderInfo orderInfo);
+}
@@ -0,0 +1,165 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderSaga;
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderSagaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>恢复一段时间没有推进的 saga</h1>
+ * 下单线程补偿失败、或者进程在中途退出时, saga 会停在中间状态:
+ * BALANCE_DEDUCTED 只差写入物流消息, 向前完成; 其余中间状态全部补偿
+ * 恢复次数达到上限的 saga 不再重试, 打印错误日志并计数, 等待人工处理;
+ * 超过 stuck-after-millis 没有结束的 saga 个数通过 ecommerce.order.saga.stuck 暴露, 用于告警
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ecommerce.order.transaction-mode", havingValue = "saga")
+public class OrderSagaRecoverer implements MeterBinder {
+
+    /**
+     * 需要恢复的中间状态
+     */
+    private static final List<OrderSagaState> UNFINISHED_STATES = Arrays.asList(
+            OrderSagaState.STARTED,
+            OrderSagaState.INVENTORY_DEDUCTED,
+            OrderSagaState.BALANCE_DEDUCTED,
+            OrderSagaState.COMPENSATING
+    );
+
+    @Resource
+    private SagaOrderCreator sagaOrderCreator;
+
+    @Resource
+    private EcommerceOrderSagaRepository orderSagaRepository;
+
+    @Resource
+    private EcommerceOrderRepository orderRepository;
+
+    /**
+     * 超过这个时间没有推进的 saga 才恢复, 需要大于一次下单的最长耗时
+     */
+    @Value("${ecommerce.order.saga.recover-after-millis:60000}")
+    private long recoverAfterMillis;
+
+    /**
+     * 每次最多恢复的 saga 个数
+     */
+    @Value("${ecommerce.order.saga.recover-batch-size:100}")
+    private int recoverBatchSize;
+
+    /**
+     * 每个 saga 最多恢复的次数
+     */
+    @Value("${ecommerce.order.saga.max-retries:20}")
+    private int maxRetries;
+
+    /**
+     * 超过这个时间还没有结束的 saga 计入 stuck
+     */
+    @Value("${ecommerce.order.saga.stuck-after-millis:600000}")
+    private long stuckAfterMillis;
+
+    /**
+     * 超过 stuckAfterMillis 还没有结束的 saga 个数, 每次恢复时更新
+     */
+    private final AtomicLong stuckCount = new AtomicLong();
+
+    private Counter exhaustedCounter;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ecommerce.order.saga.stuck", stuckCount, AtomicLong::get)
+                .description("unfinished order sagas older than stuck-after-millis").register(registry);
+        exhaustedCounter = Counter.builder("ecommerce.order.saga.exhausted")
+                .description("order sagas given up after max retries").register(registry);
+    }
+
+    /**
+     * <h2>定时恢复</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.order.saga.recover-interval-millis:30000}")
+    public void recover() {
+
+        long now = System.currentTimeMillis();
+        stuckCount.set(orderSagaRepository.countByStateInAndUpdateTimeBefore(
+                UNFINISHED_STATES, new Date(now - stuckAfterMillis)));
+        if (stuckCount.get() > 0) {
+            log.warn("order sagas stuck for more than [{}] ms: [{}]", stuckAfterMillis, stuckCount.get());
+        }
+
+        List<EcommerceOrderSaga> sagas = orderSagaRepository.findAllByStateInAndUpdateTimeBeforeAndRetryCountLessThan(
+                UNFINISHED_STATES,
+                new Date(now - recoverAfterMillis),
+                maxRetries,
+                PageRequest.of(0, recoverBatchSize, Sort.by("updateTime").ascending())
+        );
+        sagas.forEach(this::recover);
+    }
+
+    private void recover(EcommerceOrderSaga saga) {
+
+        // 先更新重试次数抢占 saga, 多个实例同时恢复时只有一个能更新成功
+        EcommerceOrderSaga claimed;
+        try {
+            saga.setRetryCount(saga.getRetryCount() + 1);
+            claimed = orderSagaRepository.save(saga);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            log.info("order saga is recovering by others: [{}]", saga.getOrderId());
+            return;
+        }
+        log.warn("recover order saga: [{}], [{}], [{}]",
+                claimed.getOrderId(), claimed.getState(), claimed.getRetryCount());
+
+        if (!resume(claimed) && claimed.getRetryCount() >= maxRetries) {
+            if (null != exhaustedCounter) {
+                exhaustedCounter.increment();
+            }
+            log.error("order saga recover retries exhausted, need manual handling: [{}], [{}], [{}]",
+                    claimed.getOrderId(), claimed.getState(), claimed.getRetryCount());
+        }
+    }
+
+    /**
+     * <h2>继续推进 saga</h2>
+     * @return 是否已经结束 (完成或者补偿完成)
+     */
+    private boolean resume(EcommerceOrderSaga claimed) {
+
+        if (OrderSagaState.BALANCE_DEDUCTED == claimed.getState()) {
+            Optional<EcommerceOrder> order = orderRepository.findById(claimed.getOrderId());
+            if (order.isPresent()) {
+                try {
+                    sagaOrderCreator.complete(claimed, order.get());
+                    log.info("complete order saga success: [{}]", claimed.getOrderId());
+                    return true;
+                } catch (RuntimeException ex) {
+                    log.error("complete order saga failure, retry later: [{}], [{}]",
+                            claimed.getOrderId(), ex.getMessage());
+                    return false;
+                }
+            }
+        }
+        return sagaOrderCreator.compensate(claimed);
+    }
+}
@@ -0,0 +1,181 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderSaga;
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+import com.flipped.learn.orderservice.feign.SagaBalanceClient;
+import com.flipped.learn.orderservice.feign.SagaGoodsClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderSagaRepository;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.BalanceInfo;
+import com.flipped.learn.servicesdk.common.TableId;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import com.flipped.learn.servicesdk.order.OrderInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>saga 模式创建订单</h1>
+ * 每一步都是各个服务的本地事务, 不持有 Seata 全局锁; 每一步完成后记录 saga 状态,
+ * 扣减余额之前任意一步失败时调用已经执行的步骤的补偿接口, 之后只会向前完成.
+ * 补偿或者完成失败、进程退出时, 由 {@link OrderSagaRecoverer} 继续处理
+ * 下游的 saga 接口都是内部接口, 以订单服务的身份调用, 用户由 saga 中保存的 userId 指定, 不保存用户 token
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ecommerce.order.transaction-mode", havingValue = "saga")
+public class SagaOrderCreator implements OrderCreator {
+
+    @Resource
+    private OrderCreateSupport orderCreateSupport;
+
+    @Resource
+    private EcommerceOrderSagaRepository orderSagaRepository;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private SagaGoodsClient sagaGoodsClient;
+
+    @Resource
+    private SagaBalanceClient sagaBalanceClient;
+
+    /**
+     * <h2>创建订单</h2>
+     * 1. 校验请求对象是否合法
+     * 2. 创建订单和 saga 状态 (本地事务)
+     * 3. 扣减商品库存 -> INVENTORY_DEDUCTED
+     * 4. 扣减用户余额 -> BALANCE_DEDUCTED
+     * 5. 写入订单物流消息 -> COMPLETED
+     */
+    @Override
+    public TableId createOrder(OrderInfo orderInfo) {
+
+        // 1. 校验请求对象是否合法
+        orderCreateSupport.checkAddress(orderInfo);
+
+        // 2. 订单、商品明细和 saga 状态在同一个本地事务中提交
+        Long userId = UserContextHolder.getLoginUserInfo().getId();
+        EcommerceOrder[] newOrder = new EcommerceOrder[1];
+        EcommerceOrderSaga saga = transactionTemplate.execute(status -> {
+            newOrder[0] = orderCreateSupport.saveOrder(orderInfo);
+            return orderSagaRepository.save(EcommerceOrderSaga.started(newOrder[0].getId(), userId));
+        });
+        assert null != saga;
+
+        try {
+            // 3. 扣减商品库存, 同时拿到扣减时的商品价格
+            List<DeductedGoodsInfo> deductedGoods = OrderCreateSupport.dataOf(
+                    sagaGoodsClient.sagaDeductGoodsInventory(saga.txId(),
+                            orderInfo.getOrderItems()
+                                    .stream()
+                                    .map(OrderInfo.OrderItem::toDeductGoodsInventory)
+                                    .collect(Collectors.toList()))
+            );
+            if (CollectionUtils.isEmpty(deductedGoods)) {
+                throw new RuntimeException("deduct goods inventory failure");
+            }
+            long balance = deductedGoods.stream().mapToLong(DeductedGoodsInfo::totalPrice).sum();
+            saga.setTotalPrice(balance);
+            saga = transit(saga, OrderSagaState.INVENTORY_DEDUCTED);
+
+            // 4. 扣减用户账户余额
+            BalanceInfo balanceInfo = OrderCreateSupport.dataOf(
+                    sagaBalanceClient.sagaDeductBalance(saga.txId(), new BalanceInfo(userId, balance))
+            );
+            if (null == balanceInfo) {
+                throw new RuntimeException("deduct user balance failure");
+            }
+            log.info("deduct user balance: [{}], [{}]", newOrder[0].getId(), JSON.toJSONString(balanceInfo));
+            saga = transit(saga, OrderSagaState.BALANCE_DEDUCTED);
+        } catch (RuntimeException ex) {
+            log.error("create order by saga failure, compensate: [{}], [{}]", saga.getOrderId(), ex.getMessage());
+            compensate(saga);
+            throw ex;
+        }
+
+        // 5. 写入订单物流消息; 库存和余额都已经扣减, 失败时不补偿, saga 停在 BALANCE_DEDUCTED 由后台任务向前完成
+        try {
+            complete(saga, newOrder[0]);
+        } catch (RuntimeException ex) {
+            log.error("complete order saga failure, recover later: [{}], [{}]", saga.getOrderId(), ex.getMessage());
+        }
+
+        // 返回订单 id
+        return new TableId(Collections.singletonList(new TableId.Id(newOrder[0].getId())));
+    }
+
+    /**
+     * <h2>向前完成: 写入物流消息, 标记 COMPLETED</h2>
+     * 库存和余额都已经扣减, 只差物流消息时不再回滚; 消息和状态在同一个本地事务中提交
+     */
+    void complete(EcommerceOrderSaga saga, EcommerceOrder order) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            orderCreateSupport.saveLogisticsMessage(order);
+            transit(saga, OrderSagaState.COMPLETED);
+        });
+    }
+
+    /**
+     * <h2>补偿: 退回余额, 归还库存, 删除订单</h2>
+     * 两个补偿接口都是幂等的, 并且补偿先于扣减到达时会拒绝之后的扣减, 所以不管执行到哪一步都全部调用;
+     * 下游只接受已经标记为 COMPENSATING 的 saga 的补偿 (回调 {@link #isCompensating(String)} 确认), 调用之前先提交状态;
+     * 任意一步失败时保留 COMPENSATING 状态, 由后台任务重试
+     */
+    boolean compensate(EcommerceOrderSaga saga) {
+
+        try {
+            if (OrderSagaState.COMPENSATING != saga.getState()) {
+                saga = transit(saga, OrderSagaState.COMPENSATING);
+            }
+            OrderCreateSupport.dataOf(sagaBalanceClient.sagaCompensateBalance(saga.txId(), saga.getUserId()));
+            OrderCreateSupport.dataOf(sagaGoodsClient.sagaCompensateGoodsInventory(saga.txId()));
+
+            EcommerceOrderSaga compensating = saga;
+            transactionTemplate.executeWithoutResult(status -> {
+                orderCreateSupport.deleteOrder(compensating.getOrderId());
+                transit(compensating, OrderSagaState.COMPENSATED);
+            });
+            log.info("compensate order saga success: [{}]", saga.getOrderId());
+            return true;
+        } catch (RuntimeException ex) {
+            log.error("compensate order saga failure, retry later: [{}], [{}]", saga.getOrderId(), ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * <h2>txId 对应的 saga 是否正在补偿, 下游服务执行补偿之前回调确认</h2>
+     */
+    public boolean isCompensating(String txId) {
+
+        Long orderId = EcommerceOrderSaga.orderIdOf(txId);
+        if (null == orderId) {
+            return false;
+        }
+        Optional<EcommerceOrderSaga> saga = orderSagaRepository.findByOrderId(orderId);
+        return saga.isPresent() && OrderSagaState.COMPENSATING == saga.get().getState();
+    }
+
+    /**
+     * <h2>推进 saga 状态</h2>
+     * 乐观锁冲突说明后台任务已经接手, 当前线程放弃推进
+     */
+    private EcommerceOrderSaga transit(EcommerceOrderSaga saga, OrderSagaState state) {
+
+        saga.setState(state);
+        return orderSagaRepository.save(saga);
+    }
+}
@@ -1,39 +1,39 @@
 package com.flipped.learn.orderservice.service.impl;
 
 import com.alibaba.fastjson.JSON;
-import com.flipped.learn.common.exception.BusinessException;
-import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.orderservice.config.FanOutExecutorConfig;
 import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
 import com.flipped.learn.orderservice.feign.AddressClient;
-import com.flipped.learn.orderservice.feign.NotSecuredBalanceClient;
-import com.flipped.learn.orderservice.feign.NotSecuredGoodsClient;
 import com.flipped.learn.orderservice.feign.SecuredGoodsClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderItemRepository;
 import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
 import com.flipped.learn.orderservice.service.IOrderService;
-import com.flipped.learn.orderservice.source.LogisticsSource;
+import com.flipped.learn.orderservice.service.creator.OrderCreator;
 import com.flipped.learn.orderservice.vo.PageSimpleOrderDetail;
 import com.flipped.learn.serviceconfig.context.UserContextHolder;
 import com.flipped.learn.servicesdk.account.AddressInfo;
-import com.flipped.learn.servicesdk.account.BalanceInfo;
 import com.flipped.learn.servicesdk.common.TableId;
 import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
 import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
-import com.flipped.learn.servicesdk.order.LogisticsMessage;
 import com.flipped.learn.servicesdk.order.OrderInfo;
-import io.seata.spring.annotation.GlobalTransactional;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
-import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -41,15 +41,22 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
-@EnableBinding(LogisticsSource.class)
 public class OrderServiceImpl implements IOrderService {
 
+    /**
+     * 游标分页每页最多的订单数量
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     /**
      * 表的 dao 接口
      */
     @Resource
     private EcommerceOrderRepository orderRepository;
 
+    @Resource
+    private EcommerceOrderItemRepository orderItemRepository;
+
     /**
      * Feign 客户端
      */
@@ -59,103 +66,37 @@ public class OrderServiceImpl implements IOrderService {
     @Resource
     private SecuredGoodsClient securedGoodsClient;
 
+    /**
+     * 创建订单, 根据 ecommerce.order.transaction-mode 选择实现
+     */
     @Resource
-    private NotSecuredGoodsClient notSecuredGoodsClient;
+    private OrderCreator orderCreator;
 
     @Resource
-    private NotSecuredBalanceClient notSecuredBalanceClient;
+    private TransactionTemplate transactionTemplate;
 
     /**
-     * SpringCloud Stream 的发射器
+     * 并行调用下游服务的线程池
      */
-    private LogisticsSource logisticsSource;
-
+    @Resource(name = FanOutExecutorConfig.FAN_OUT_EXECUTOR)
+    private Executor fanOutExecutor;
 
     /**
-     * <h2>创建订单: 这里会涉及到分布式事务</h2>
-     * 创建订单会涉及到多个步骤和校验, 当不满足情况时直接抛出异常;
-     * 1. 校验请求对象是否合法
-     * 2. 创建订单
-     * 3. 扣减商品库存
-     * 4. 扣减用户余额
-     * 5. 发送订单物流消息 SpringCloud Stream + Kafka
+     * 订单列表查询商品信息、地址信息的超时时间
      */
-    @Override
-    @GlobalTransactional(rollbackFor = Exception.class)
-    public TableId createOrder(OrderInfo orderInfo) {
+    @Value("${ecommerce.order.fan-out.goods-timeout-millis:3000}")
+    private long goodsTimeoutMillis;
 
-        // 获取地址信息
-        AddressInfo addressInfo = addressClient.getAddressInfoByTablesId(
-                new TableId(Collections.singletonList(
-                        new TableId.Id(orderInfo.getUserAddress())))).getData();
+    @Value("${ecommerce.order.fan-out.address-timeout-millis:3000}")
+    private long addressTimeoutMillis;
 
-        // 1. 校验请求对象是否合法(商品信息不需要校验, 扣减库存会做校验)
-        if (CollectionUtils.isEmpty(addressInfo.getAddressItems())) {
-            throw new BusinessException(ServiceErrorCodeConstants.ADDRESS_EXITS);
-        }
-
-        // 2. 创建订单
-        EcommerceOrder newOrder = orderRepository.save(
-                new EcommerceOrder(UserContextHolder.getLoginUserInfo().getId(),
-                        orderInfo.getUserAddress(),
-                        JSON.toJSONString(orderInfo.getOrderItems())
-                )
-        );
-        log.info("create order success: [{}], [{}]", UserContextHolder.getLoginUserInfo().getId(), newOrder.getId());
-
-        // 3. 扣减商品库存
-        if (!notSecuredGoodsClient.deductGoodsInventory(
-                        orderInfo.getOrderItems()
-                                .stream()
-                                .map(OrderInfo.OrderItem::toDeductGoodsInventory)
-                                .collect(Collectors.toList())
-                ).getData()
-        ) {
-            throw new RuntimeException("deduct goods inventory failure");
-        }
-
-        // 4. 扣减用户账户余额
-        // 4.1 获取商品信息, 计算总价格
-        List<SimpleGoodsInfo> goodsInfos = notSecuredGoodsClient.getSimpleGoodsInfoByTableId(
-                new TableId(
-                        orderInfo.getOrderItems()
-                                .stream()
-                                .map(o -> new TableId.Id(o.getGoodsId()))
-                                .collect(Collectors.toList())
-                )
-        ).getData();
-        Map<Long, SimpleGoodsInfo> goodsId2GoodsInfo = goodsInfos.stream()
-                .collect(Collectors.toMap(SimpleGoodsInfo::getId, Function.identity()));
-        long balance = 0;
-        for (OrderInfo.OrderItem orderItem : orderInfo.getOrderItems()) {
-            balance += (long) goodsId2GoodsInfo.get(orderItem.getGoodsId()).getPrice()
-                    * orderItem.getCount();
-        }
-        assert balance > 0;
-
-        // 4.2 填写总价格, 扣减账户余额
-        BalanceInfo balanceInfo = notSecuredBalanceClient.deductBalance(
-                new BalanceInfo(UserContextHolder.getLoginUserInfo().getId(), balance)
-        ).getData();
-        if (null == balanceInfo) {
-            throw new RuntimeException("deduct user balance failure");
-        }
-        log.info("deduct user balance: [{}], [{}]", newOrder.getId(), JSON.toJSONString(balanceInfo));
-
-        // 5. 发送订单物流消息 SpringCloud Stream + Kafka
-        LogisticsMessage logisticsMessage = new LogisticsMessage(
-                UserContextHolder.getLoginUserInfo().getId(),
-                newOrder.getId(),
-                orderInfo.getUserAddress(),
-                null    // 没有备注信息
-        );
-        if (!logisticsSource.logisticsOutput().send(MessageBuilder.withPayload(JSON.toJSONString(logisticsMessage)).build())) {
-            throw new RuntimeException("send logistics message failure");
-        }
-        log.info("send create order message to kafka with stream: [{}]", JSON.toJSONString(logisticsMessage));
 
-        // 返回订单 id
-        return new TableId(Collections.singletonList(new TableId.Id(newOrder.getId())));
+    /**
+     * <h2>创建订单: 这里会涉及到分布式事务, 由配置的 AT 或者 saga 实现完成</h2>
+     */
+    @Override
+    public TableId createOrder(OrderInfo orderInfo) {
+        return orderCreator.createOrder(orderInfo);
     }
 
     @Override
@@ -176,48 +117,153 @@ public class OrderServiceImpl implements IOrderService {
             return new PageSimpleOrderDetail(Collections.emptyList(), false);
         }
 
-        // 获取当前订单中所有的 goodsId
+        // 是否还有更多页: 总页数是否大于当前给定的页
+        boolean hasMore = orderPage.getTotalPages() > page;
+
+        return new PageSimpleOrderDetail(buildSimpleOrderDetail(orders), hasMore);
+    }
+
+    @Override
+    public PageSimpleOrderDetail getSimpleOrderDetailByCursor(Long lastId, int limit) {
+
+        // 每页数量限制在 [1, 100]
+        limit = Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE));
+        // 多查一条判断是否还有更多页, 不需要 count 查询; 按照 (user_id, id) 定位, 和页码深度无关
+        List<EcommerceOrder> orders = orderRepository.findAllByUserIdAndIdLessThan(
+                UserContextHolder.getLoginUserInfo().getId(),
+                null == lastId ? Long.MAX_VALUE : lastId,
+                PageRequest.of(0, limit + 1, Sort.by("id").descending())
+        );
+
+        // 如果是空, 直接返回空数组
+        if (CollectionUtils.isEmpty(orders)) {
+            return new PageSimpleOrderDetail(Collections.emptyList(), false);
+        }
+
+        boolean hasMore = orders.size() > limit;
+        if (hasMore) {
+            orders = orders.subList(0, limit);
+        }
+
+        return new PageSimpleOrderDetail(
+                buildSimpleOrderDetail(orders),
+                hasMore,
+                orders.get(orders.size() - 1).getId()
+        );
+    }
+
+    /**
+     * <h2>查询订单中的商品和地址信息, 组装成订单详情</h2>
+     */
+    private List<PageSimpleOrderDetail.SingleOrderItem> buildSimpleOrderDetail(List<EcommerceOrder> orders) {
+
+        // 一次查询这一页订单的商品明细, 获取当前订单中所有的 goodsId
+        Map<Long, List<DeductGoodsInventory>> orderId2Items = loadOrderItems(orders);
         Set<Long> goodsIdsInOrders = new HashSet<>();
-        orders.forEach(o -> {
+        orderId2Items.values().forEach(items -> items.forEach(i -> goodsIdsInOrders.add(i.getGoodsId())));
+
+        assert CollectionUtils.isNotEmpty(goodsIdsInOrders);
+
+        // 商品信息和地址信息互不依赖, 并行查询; 超时或者失败时使用占位信息, 不影响订单列表返回
+        // 两个调用的超时都从提交时开始计算, 总的等待时间是较长的那个超时, 而不是两者之和
+        CompletableFuture<List<SimpleGoodsInfo>> goodsFuture = callOrDefault(
+                () -> securedGoodsClient.getSimpleGoodsInfoByTableId(
+                        new TableId(goodsIdsInOrders.stream()
+                                .map(TableId.Id::new).collect(Collectors.toList()))
+                ).getData(), goodsTimeoutMillis, Collections.emptyList(), "goods"
+        );
+        CompletableFuture<AddressInfo> addressFuture = callOrDefault(
+                () -> addressClient.getAddressInfoByTablesId(
+                        new TableId(orders.stream()
+                                .map(o -> new TableId.Id(o.getAddressId()))
+                                .distinct().collect(Collectors.toList()))
+                ).getData(), addressTimeoutMillis,
+                new AddressInfo(UserContextHolder.getLoginUserInfo().getId(), Collections.emptyList()), "address"
+        );
+
+        List<SimpleGoodsInfo> goodsInfos = goodsFuture.join();
+        AddressInfo addressInfo = addressFuture.join();
+
+        // 组装订单中的商品, 地址信息 -> 订单信息
+        return assembleSimpleOrderDetail(orders, orderId2Items, goodsInfos, addressInfo);
+    }
+
+    /**
+     * <h2>一次查询一页订单的商品明细: orderId -> 商品和个数</h2>
+     * 明细表中没有记录的旧订单解析 order_detail 中的 json, 并写入明细表, 下次查询不再解析;
+     * 写入明细在一个本地事务中完成, 不会出现只迁移了一部分明细、之后被当作已经迁移的订单
+     */
+    private Map<Long, List<DeductGoodsInventory>> loadOrderItems(List<EcommerceOrder> orders) {
+
+        Map<Long, List<DeductGoodsInventory>> orderId2Items = new HashMap<>(orders.size());
+        orderItemRepository.findAllByOrderIdInOrderById(
+                orders.stream().map(EcommerceOrder::getId).collect(Collectors.toList())
+        ).forEach(i -> orderId2Items.computeIfAbsent(i.getOrderId(), k -> new ArrayList<>())
+                .add(i.toDeductGoodsInventory()));
+
+        List<EcommerceOrderItem> migrateItems = new ArrayList<>();
+        orders.stream().filter(o -> !orderId2Items.containsKey(o.getId())).forEach(o -> {
             List<DeductGoodsInventory> goodsAndCount = JSON.parseArray(
                     o.getOrderDetail(), DeductGoodsInventory.class
             );
-            goodsIdsInOrders.addAll(goodsAndCount.stream()
-                    .map(DeductGoodsInventory::getGoodsId)
-                    .collect(Collectors.toSet()));
+            orderId2Items.put(o.getId(), goodsAndCount);
+            goodsAndCount.forEach(gc -> migrateItems.add(
+                    new EcommerceOrderItem(o.getId(), gc.getGoodsId(), gc.getCount())));
         });
 
-        assert CollectionUtils.isNotEmpty(goodsIdsInOrders);
-
-        // 是否还有更多页: 总页数是否大于当前给定的页
-        boolean hasMore = orderPage.getTotalPages() > page;
+        if (!migrateItems.isEmpty()) {
+            // 迁移失败不影响本次查询, 下次查询时再迁移
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> orderItemRepository.batchInsertIgnore(migrateItems));
+                log.info("migrate order items: [{}]", migrateItems.size());
+            } catch (DataAccessException | TransactionException ex) {
+                log.warn("migrate order items failure: [{}]", ex.getMessage());
+            }
+        }
 
-        // 获取商品信息
-        List<SimpleGoodsInfo> goodsInfos = securedGoodsClient.getSimpleGoodsInfoByTableId(
-                new TableId(goodsIdsInOrders.stream()
-                        .map(TableId.Id::new).collect(Collectors.toList()))
-        ).getData();
+        return orderId2Items;
+    }
 
-        // 获取地址信息
-        AddressInfo addressInfo = addressClient.getAddressInfoByTablesId(
-                new TableId(orders.stream()
-                        .map(o -> new TableId.Id(o.getAddressId()))
-                        .distinct().collect(Collectors.toList()))
-        ).getData();
+    /**
+     * <h2>在线程池中调用下游服务, 超时、失败或者返回空时使用占位信息, 返回的 future 总是正常完成</h2>
+     * 超时从提交时开始计算; 在队列中等待时已经超时的任务不再调用下游.
+     * 已经开始的调用不会被中断, 它使用的是提交时复制的请求头, 见 FanOutExecutorConfig
+     */
+    private <T> CompletableFuture<T> callOrDefault(Supplier<T> call, long timeoutMillis, T placeholder, String name) {
+
+        CompletableFuture<T> future = new CompletableFuture<T>().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        fanOutExecutor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(call.get());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
 
-        // 组装订单中的商品, 地址信息 -> 订单信息
-        return new PageSimpleOrderDetail(
-                assembleSimpleOrderDetail(orders, goodsInfos, addressInfo),
-                hasMore
-        );
+        return future.handle((result, ex) -> {
+            if (null == ex) {
+                return null == result ? placeholder : result;
+            }
+            Throwable cause = ex instanceof CompletionException && null != ex.getCause() ? ex.getCause() : ex;
+            if (cause instanceof TimeoutException) {
+                log.warn("get {} info timeout: [{}ms], use placeholder", name, timeoutMillis);
+            } else {
+                log.warn("get {} info failure, use placeholder: [{}]", name, cause.getMessage());
+            }
+            return placeholder;
+        });
     }
 
     /**
      * <h2>组装订单详情</h2>
      */
     private List<PageSimpleOrderDetail.SingleOrderItem> assembleSimpleOrderDetail(
-            List<EcommerceOrder> orders, List<SimpleGoodsInfo> goodsInfos,
-            AddressInfo addressInfo
+            List<EcommerceOrder> orders, Map<Long, List<DeductGoodsInventory>> orderId2Items,
+            List<SimpleGoodsInfo> goodsInfos, AddressInfo addressInfo
     ) {
         // goodsId -> SimpleGoodsInfo
         Map<Long, SimpleGoodsInfo> id2GoodsInfo = goodsInfos.stream()
@@ -235,7 +281,7 @@ public class OrderServiceImpl implements IOrderService {
             orderItem.setId(o.getId());
             orderItem.setUserAddress(id2AddressItem.getOrDefault(o.getAddressId(),
                     new AddressInfo.AddressItem(-1L)).toUserAddress());
-            orderItem.setGoodsItems(buildOrderGoodsItem(o, id2GoodsInfo));
+            orderItem.setGoodsItems(buildOrderGoodsItem(orderId2Items.get(o.getId()), id2GoodsInfo));
 
             result.add(orderItem);
         });
@@ -247,13 +293,10 @@ public class OrderServiceImpl implements IOrderService {
      * <h2>构造订单中的商品信息</h2>
      */
     private List<PageSimpleOrderDetail.SingleOrderGoodsItem> buildOrderGoodsItem(
-            EcommerceOrder order, Map<Long, SimpleGoodsInfo> id2GoodsInfo
+            List<DeductGoodsInventory> goodsAndCount, Map<Long, SimpleGoodsInfo> id2GoodsInfo
     ) {
 
-        List<PageSimpleOrderDetail.SingleOrderGoodsItem> goodsItems = new ArrayList<>();
-        List<DeductGoodsInventory> goodsAndCount = JSON.parseArray(
-                order.getOrderDetail(), DeductGoodsInventory.class
-        );
+        List<PageSimpleOrderDetail.SingleOrderGoodsItem> goodsItems = new ArrayList<>(goodsAndCount.size());
 
         goodsAndCount.forEach(gc -> {
 
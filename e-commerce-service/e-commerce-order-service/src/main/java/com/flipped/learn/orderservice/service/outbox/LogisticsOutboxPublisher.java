@@ -0,0 +1,87 @@
+package com.flipped.learn.orderservice.service.outbox;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.orderservice.entity.EcommerceOrderOutbox;
+import com.flipped.learn.orderservice.repository.EcommerceOrderOutboxRepository;
+import com.flipped.learn.servicesdk.order.LogisticsMessage;
+import com.flipped.learn.servicesdk.order.LogisticsMessageCodec;
+import io.seata.spring.annotation.GlobalLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * <h1>把一批发件箱消息发送到 kafka</h1>
+ */
+@Slf4j
+@Component
+public class LogisticsOutboxPublisher {
+
+    @Resource
+    private EcommerceOrderOutboxRepository outboxRepository;
+
+    /**
+     * 物流消息生产者, 配置见 spring.kafka.producer
+     */
+    @Resource
+    private KafkaTemplate<Long, byte[]> kafkaTemplate;
+
+    @Value("${ecommerce.order.outbox.topic:e-commerce-topic}")
+    private String topic;
+
+    @Value("${ecommerce.order.outbox.send-timeout-millis:10000}")
+    private long sendTimeoutMillis;
+
+    /**
+     * <h2>锁定一批待发送的消息, 发送后标记为已发送</h2>
+     * AT 模式下消息在全局事务中写入, 全局事务结束前分支已经提交;
+     * 需要检查 Seata 全局锁, 不能发送之后可能被全局回滚的消息.
+     * 一批消息异步发送, 由生产者合并成批次压缩发送, 全部得到 broker 确认后才标记为已发送;
+     * 发送失败时整批回滚, 下次重新发送, 所以消息至少发送一次
+     */
+    @GlobalLock
+    @Transactional(rollbackFor = Exception.class)
+    public int publishBatch(int batchSize) {
+
+        List<EcommerceOrderOutbox> outboxes = outboxRepository.findPendingForUpdate(batchSize);
+        if (outboxes.isEmpty()) {
+            return 0;
+        }
+
+        List<ListenableFuture<SendResult<Long, byte[]>>> futures = new ArrayList<>(outboxes.size());
+        outboxes.forEach(outbox -> {
+            LogisticsMessage message = JSON.parseObject(outbox.getPayload(), LogisticsMessage.class);
+            futures.add(kafkaTemplate.send(topic, message.getUserId(), LogisticsMessageCodec.encode(message)));
+        });
+        // 这一批已经全部进入生产者缓冲区, 不需要再等待 linger.ms
+        kafkaTemplate.flush();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        for (ListenableFuture<SendResult<Long, byte[]>> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("send logistics message interrupted", ex);
+            } catch (ExecutionException | TimeoutException ex) {
+                throw new RuntimeException("send logistics message failure", ex);
+            }
+        }
+        outboxRepository.markSent(outboxes.stream().map(EcommerceOrderOutbox::getId).collect(Collectors.toList()));
+        log.debug("publish logistics messages: [{}]", outboxes.size());
+
+        return outboxes.size();
+    }
+}
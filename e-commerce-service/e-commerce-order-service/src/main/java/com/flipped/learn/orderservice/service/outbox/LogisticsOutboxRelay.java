@@ -0,0 +1,118 @@
+package com.flipped.learn.orderservice.service.outbox;
+
+import com.flipped.learn.orderservice.repository.EcommerceOrderOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>发件箱消息的后台中继</h1>
+ * 每隔 linger-millis 把待发送的消息按批次发送到 kafka, 一次调度中发送到不满一批为止
+ */
+@Slf4j
+@Component
+public class LogisticsOutboxRelay implements MeterBinder {
+
+    @Resource
+    private LogisticsOutboxPublisher outboxPublisher;
+
+    @Resource
+    private EcommerceOrderOutboxRepository outboxRepository;
+
+    /**
+     * 每批发送的消息个数
+     */
+    @Value("${ecommerce.order.outbox.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 已发送的消息保留时间
+     */
+    @Value("${ecommerce.order.outbox.retention-millis:604800000}")
+    private long retentionMillis;
+
+    /**
+     * 最早一条待发送消息已经等待的时间
+     */
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private Counter sentCounter;
+
+    private Counter failureCounter;
+
+    private Timer batchTimer;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ecommerce.order.outbox.lag", lagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("age of the oldest pending outbox message").register(registry);
+        sentCounter = Counter.builder("ecommerce.order.outbox.sent")
+                .description("outbox messages sent to kafka").register(registry);
+        failureCounter = Counter.builder("ecommerce.order.outbox.failures")
+                .description("outbox batches failed to send").register(registry);
+        batchTimer = Timer.builder("ecommerce.order.outbox.batch")
+                .description("time to send one outbox batch and wait for broker acks")
+                .publishPercentiles(0.5, 0.99).register(registry);
+    }
+
+    /**
+     * <h2>发送待发送的消息</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.order.outbox.linger-millis:200}")
+    public void relay() {
+
+        Date oldest = outboxRepository.findOldestPendingCreateTime();
+        lagMillis.set(null == oldest ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getTime()));
+        if (null == oldest) {
+            return;
+        }
+
+        int sent;
+        do {
+            long start = System.nanoTime();
+            try {
+                sent = outboxPublisher.publishBatch(batchSize);
+            } catch (RuntimeException ex) {
+                if (null != failureCounter) {
+                    failureCounter.increment();
+                }
+                log.warn("relay outbox messages failure, retry later: [{}]", ex.getMessage());
+                return;
+            }
+            if (null != batchTimer) {
+                batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                sentCounter.increment(sent);
+            }
+        } while (sent == batchSize);
+    }
+
+    /**
+     * <h2>分批删除超过保留时间的已发送消息</h2>
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.order.outbox.cleanup-interval-millis:3600000}")
+    public void cleanup() {
+
+        Date before = new Date(System.currentTimeMillis() - retentionMillis);
+        int deleted;
+        int total = 0;
+        do {
+            deleted = outboxRepository.deleteSentBefore(before, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        if (total > 0) {
+            log.info("cleanup sent outbox messages: [{}]", total);
+        }
+    }
+}
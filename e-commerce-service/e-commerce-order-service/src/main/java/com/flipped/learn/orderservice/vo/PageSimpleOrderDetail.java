@@ -26,6 +26,14 @@ public class PageSimpleOrderDetail {
     @ApiModelProperty(value = "是否有更多的订单(分页)")
     private Boolean hasMore;
 
+    @ApiModelProperty(value = "当前页最后一个订单的 id, 游标分页时作为下一页的 lastId")
+    private Long lastId;
+
+    public PageSimpleOrderDetail(List<SingleOrderItem> orderItems, Boolean hasMore) {
+        this.orderItems = orderItems;
+        this.hasMore = hasMore;
+    }
+
     /**
      * <h2>单个订单信息</h2>
      */
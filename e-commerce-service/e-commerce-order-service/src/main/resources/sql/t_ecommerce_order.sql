@@ -6,5 +6,9 @@ CREATE TABLE IF NOT EXISTS `e_commerce_order`.`t_ecommerce_order` (
   `order_detail` text NOT NULL COMMENT '订单详情(json 存储, goodsId, count)',
   `create_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '创建时间',
   `update_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '更新时间',
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_user_id_id` (`user_id`, `id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=10 DEFAULT CHARSET=utf8 COMMENT='用户订单表';
+
+-- 已经存在的数据表: 按照用户查询订单, 游标分页按照 (user_id, id) 定位
+-- ALTER TABLE `e_commerce_order`.`t_ecommerce_order` ADD KEY `idx_user_id_id` (`user_id`, `id`);
@@ -0,0 +1,11 @@
+-- 创建 t_ecommerce_order_item 数据表, 订单中的商品明细, 替代 t_ecommerce_order.order_detail 中的 json
+CREATE TABLE IF NOT EXISTS `e_commerce_order`.`t_ecommerce_order_item` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `order_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '订单 id',
+  `goods_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '商品 id',
+  `count` int(11) NOT NULL DEFAULT 0 COMMENT '购买商品个数',
+  `create_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `order_id_goods_id` (`order_id`, `goods_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='订单商品明细表';
@@ -0,0 +1,11 @@
+-- 创建 t_ecommerce_order_outbox 数据表, 和订单在同一个事务中写入的物流消息, 由后台任务发送到 kafka
+CREATE TABLE IF NOT EXISTS `e_commerce_order`.`t_ecommerce_order_outbox` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `order_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '订单 id',
+  `payload` varchar(1024) NOT NULL DEFAULT '' COMMENT '消息内容',
+  `status` int(11) NOT NULL DEFAULT 0 COMMENT '状态: 0 待发送, 1 已发送',
+  `create_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  KEY `status_id` (`status`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='订单消息发件箱';
@@ -0,0 +1,15 @@
+-- 创建 t_ecommerce_order_saga 数据表, saga 模式下单的状态机
+CREATE TABLE IF NOT EXISTS `e_commerce_order`.`t_ecommerce_order_saga` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `order_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '订单 id',
+  `user_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '用户 id',
+  `state` int(11) NOT NULL DEFAULT 0 COMMENT '状态',
+  `total_price` bigint(20) NOT NULL DEFAULT 0 COMMENT '订单总价格',
+  `retry_count` int(11) NOT NULL DEFAULT 0 COMMENT '后台恢复次数',
+  `version` bigint(20) NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
+  `create_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT '0000-01-01 00:00:00' COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `order_id` (`order_id`),
+  KEY `state_update_time` (`state`, `update_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='saga 下单状态表';
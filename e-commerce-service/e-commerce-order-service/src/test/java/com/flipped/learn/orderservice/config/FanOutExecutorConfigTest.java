@@ -0,0 +1,61 @@
+package com.flipped.learn.orderservice.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * <h1>并行调用线程池的上下文复制测试</h1>
+ */
+class FanOutExecutorConfigTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void headersAreCopiedWhenTaskIsSubmitted() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("e-commerce-user", "token-1");
+        ServletRequestAttributes requestAttributes = new ServletRequestAttributes(request);
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+
+        AtomicReference<String> header = new AtomicReference<>();
+        AtomicReference<Object> names = new AtomicReference<>();
+        Runnable task = new FanOutExecutorConfig.ContextCopyingDecorator().decorate(() -> {
+            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+            header.set(attributes.getRequest().getHeader("E-Commerce-User"));
+            names.set(Collections.list(attributes.getRequest().getHeaderNames()));
+        });
+
+        // 请求线程超时返回, 容器回收请求之后任务才开始执行
+        request.removeHeader("e-commerce-user");
+        request.addHeader("e-commerce-user", "token-2");
+        task.run();
+
+        assertEquals("token-1", header.get());
+        assertEquals(Collections.singletonList("e-commerce-user"), names.get());
+        // 在请求线程中执行时 (CallerRuns), 执行完恢复原来的上下文
+        assertSame(requestAttributes, RequestContextHolder.getRequestAttributes());
+    }
+
+    @Test
+    void noRequestContext() {
+        AtomicReference<Object> attributes = new AtomicReference<>(new Object());
+        new FanOutExecutorConfig.ContextCopyingDecorator()
+                .decorate(() -> attributes.set(RequestContextHolder.getRequestAttributes()))
+                .run();
+
+        assertNull(attributes.get());
+    }
+}
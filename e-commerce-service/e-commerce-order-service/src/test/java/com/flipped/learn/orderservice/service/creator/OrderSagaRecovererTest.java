@@ -0,0 +1,95 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.flipped.learn.orderservice.entity.EcommerceOrderSaga;
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderSagaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>saga 恢复次数上限和告警指标测试</h1>
+ */
+class OrderSagaRecovererTest {
+
+    private static final int MAX_RETRIES = 3;
+
+    private final SagaOrderCreator sagaOrderCreator = mock(SagaOrderCreator.class);
+
+    private final EcommerceOrderSagaRepository orderSagaRepository = mock(EcommerceOrderSagaRepository.class);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final OrderSagaRecoverer recoverer = new OrderSagaRecoverer();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(recoverer, "sagaOrderCreator", sagaOrderCreator);
+        ReflectionTestUtils.setField(recoverer, "orderSagaRepository", orderSagaRepository);
+        ReflectionTestUtils.setField(recoverer, "orderRepository", mock(EcommerceOrderRepository.class));
+        ReflectionTestUtils.setField(recoverer, "recoverAfterMillis", 60000L);
+        ReflectionTestUtils.setField(recoverer, "recoverBatchSize", 100);
+        ReflectionTestUtils.setField(recoverer, "maxRetries", MAX_RETRIES);
+        ReflectionTestUtils.setField(recoverer, "stuckAfterMillis", 600000L);
+        recoverer.bindTo(registry);
+        when(orderSagaRepository.save(any(EcommerceOrderSaga.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void lastFailedRetryIsReportedAsExhausted() {
+        stubUnfinished(saga(MAX_RETRIES - 1));
+        when(sagaOrderCreator.compensate(any())).thenReturn(false);
+
+        recoverer.recover();
+
+        assertEquals(1.0, registry.get("ecommerce.order.saga.exhausted").counter().count());
+    }
+
+    @Test
+    void failedRetryBelowCapIsRetriedLater() {
+        stubUnfinished(saga(0));
+        when(sagaOrderCreator.compensate(any())).thenReturn(false);
+
+        recoverer.recover();
+
+        assertEquals(0.0, registry.get("ecommerce.order.saga.exhausted").counter().count());
+    }
+
+    @Test
+    void querySkipsSagasAtCapAndGaugeCountsStuckSagas() {
+        stubUnfinished();
+        when(orderSagaRepository.countByStateInAndUpdateTimeBefore(anyCollection(), any())).thenReturn(7L);
+
+        recoverer.recover();
+
+        verify(orderSagaRepository).findAllByStateInAndUpdateTimeBeforeAndRetryCountLessThan(
+                anyCollection(), any(), eq(MAX_RETRIES), any(Pageable.class));
+        assertEquals(7.0, registry.get("ecommerce.order.saga.stuck").gauge().value());
+    }
+
+    private void stubUnfinished(EcommerceOrderSaga... sagas) {
+        when(orderSagaRepository.findAllByStateInAndUpdateTimeBeforeAndRetryCountLessThan(
+                anyCollection(), any(), eq(MAX_RETRIES), any(Pageable.class)))
+                .thenReturn(Arrays.asList(sagas));
+    }
+
+    private static EcommerceOrderSaga saga(int retryCount) {
+        EcommerceOrderSaga saga = EcommerceOrderSaga.started(1L, 10L);
+        saga.setState(OrderSagaState.COMPENSATING);
+        saga.setRetryCount(retryCount);
+        return saga;
+    }
+}
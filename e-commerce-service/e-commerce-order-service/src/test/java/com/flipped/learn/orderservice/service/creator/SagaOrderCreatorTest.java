@@ -0,0 +1,172 @@
+package com.flipped.learn.orderservice.service.creator;
+
+import com.flipped.learn.common.exception.enums.ServiceErrorCodeConstants;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.common.vo.LoginUserInfo;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderSaga;
+import com.flipped.learn.orderservice.enums.OrderSagaState;
+import com.flipped.learn.orderservice.feign.SagaBalanceClient;
+import com.flipped.learn.orderservice.feign.SagaGoodsClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderSagaRepository;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.BalanceInfo;
+import com.flipped.learn.servicesdk.goods.DeductedGoodsInfo;
+import com.flipped.learn.servicesdk.order.OrderInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>saga 补偿调用下游和补偿状态确认测试</h1>
+ */
+class SagaOrderCreatorTest {
+
+    private final EcommerceOrderSagaRepository orderSagaRepository = mock(EcommerceOrderSagaRepository.class);
+
+    private final SagaGoodsClient sagaGoodsClient = mock(SagaGoodsClient.class);
+
+    private final SagaBalanceClient sagaBalanceClient = mock(SagaBalanceClient.class);
+
+    private final OrderCreateSupport orderCreateSupport = mock(OrderCreateSupport.class);
+
+    /**
+     * 每次保存时的 saga 状态
+     */
+    private final List<OrderSagaState> savedStates = new ArrayList<>();
+
+    private final SagaOrderCreator sagaOrderCreator = new SagaOrderCreator();
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        ReflectionTestUtils.setField(sagaOrderCreator, "orderCreateSupport", orderCreateSupport);
+        ReflectionTestUtils.setField(sagaOrderCreator, "orderSagaRepository", orderSagaRepository);
+        ReflectionTestUtils.setField(sagaOrderCreator, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(sagaOrderCreator, "sagaGoodsClient", sagaGoodsClient);
+        ReflectionTestUtils.setField(sagaOrderCreator, "sagaBalanceClient", sagaBalanceClient);
+        when(orderSagaRepository.save(any(EcommerceOrderSaga.class))).thenAnswer(invocation -> {
+            savedStates.add(invocation.<EcommerceOrderSaga>getArgument(0).getState());
+            return invocation.getArgument(0);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContextHolder.clearLoginUserInfo();
+    }
+
+    @Test
+    void completeFailureLeavesSagaForRecoverer() {
+        givenOrderUntilBalanceDeducted();
+        doThrow(new RuntimeException("write logistics message failure"))
+                .when(orderCreateSupport).saveLogisticsMessage(any(EcommerceOrder.class));
+
+        assertEquals(1L, sagaOrderCreator.createOrder(orderInfo()).getIds().get(0).getId());
+
+        // 库存和余额都已经扣减, 停在 BALANCE_DEDUCTED 等待后台任务向前完成
+        assertEquals(Arrays.asList(OrderSagaState.STARTED, OrderSagaState.INVENTORY_DEDUCTED,
+                OrderSagaState.BALANCE_DEDUCTED), savedStates);
+        verify(sagaBalanceClient, never()).sagaCompensateBalance(anyString(), anyLong());
+        verify(sagaGoodsClient, never()).sagaCompensateGoodsInventory(anyString());
+        verify(orderCreateSupport, never()).deleteOrder(anyLong());
+    }
+
+    @Test
+    void balanceFailureCompensates() {
+        givenOrderUntilBalanceDeducted();
+        when(sagaBalanceClient.sagaDeductBalance(eq("order-1"), any(BalanceInfo.class))).thenReturn(
+                new CommonResponse<>(ServiceErrorCodeConstants.BALANCE_NOT_ENOUGH.getCode(), "余额不足"));
+        when(sagaBalanceClient.sagaCompensateBalance("order-1", 10L)).thenReturn(CommonResponse.success(true));
+        when(sagaGoodsClient.sagaCompensateGoodsInventory("order-1")).thenReturn(CommonResponse.success(true));
+
+        assertThrows(RuntimeException.class, () -> sagaOrderCreator.createOrder(orderInfo()));
+
+        assertEquals(Arrays.asList(OrderSagaState.STARTED, OrderSagaState.INVENTORY_DEDUCTED,
+                OrderSagaState.COMPENSATING, OrderSagaState.COMPENSATED), savedStates);
+        verify(orderCreateSupport).deleteOrder(1L);
+    }
+
+    @Test
+    void compensateMarksCompensatingBeforeCallingParticipantsWithStoredUserId() {
+        EcommerceOrderSaga saga = EcommerceOrderSaga.started(1L, 10L);
+        saga.setState(OrderSagaState.INVENTORY_DEDUCTED);
+        when(sagaBalanceClient.sagaCompensateBalance("order-1", 10L)).thenReturn(CommonResponse.success(true));
+        when(sagaGoodsClient.sagaCompensateGoodsInventory("order-1")).thenReturn(CommonResponse.success(true));
+
+        assertTrue(sagaOrderCreator.compensate(saga));
+
+        InOrder order = inOrder(orderSagaRepository, sagaBalanceClient, sagaGoodsClient);
+        order.verify(orderSagaRepository).save(any(EcommerceOrderSaga.class));
+        order.verify(sagaBalanceClient).sagaCompensateBalance("order-1", 10L);
+        order.verify(sagaGoodsClient).sagaCompensateGoodsInventory("order-1");
+        assertEquals(OrderSagaState.COMPENSATED, saga.getState());
+    }
+
+    @Test
+    void onlyCompensatingSagaIsConfirmed() {
+        when(orderSagaRepository.findByOrderId(1L)).thenReturn(Optional.of(saga(1L, OrderSagaState.COMPENSATING)));
+        when(orderSagaRepository.findByOrderId(2L)).thenReturn(Optional.of(saga(2L, OrderSagaState.STARTED)));
+        when(orderSagaRepository.findByOrderId(3L)).thenReturn(Optional.empty());
+
+        assertTrue(sagaOrderCreator.isCompensating("order-1"));
+        assertFalse(sagaOrderCreator.isCompensating("order-2"));
+        // 还没有创建的订单不能被提前补偿
+        assertFalse(sagaOrderCreator.isCompensating("order-3"));
+        assertFalse(sagaOrderCreator.isCompensating("order-x"));
+        assertFalse(sagaOrderCreator.isCompensating("1"));
+        assertFalse(sagaOrderCreator.isCompensating(null));
+    }
+
+    /**
+     * <h2>用户 10 下单, 订单 id 为 1, 库存和余额扣减都成功</h2>
+     */
+    private void givenOrderUntilBalanceDeducted() {
+        UserContextHolder.setLoginUserInfo(new LoginUserInfo(10L, "user"));
+        EcommerceOrder order = new EcommerceOrder();
+        order.setId(1L);
+        when(orderCreateSupport.saveOrder(any(OrderInfo.class))).thenReturn(order);
+        when(sagaGoodsClient.sagaDeductGoodsInventory(eq("order-1"), anyList())).thenReturn(
+                CommonResponse.success(Collections.singletonList(new DeductedGoodsInfo(1L, 2, 100))));
+        when(sagaBalanceClient.sagaDeductBalance(eq("order-1"), any(BalanceInfo.class)))
+                .thenReturn(CommonResponse.success(new BalanceInfo(10L, 800L)));
+    }
+
+    private static OrderInfo orderInfo() {
+        return new OrderInfo(1L, Collections.singletonList(new OrderInfo.OrderItem(1L, 2)));
+    }
+
+    private static EcommerceOrderSaga saga(long orderId, OrderSagaState state) {
+        EcommerceOrderSaga saga = EcommerceOrderSaga.started(orderId, 10L);
+        saga.setState(state);
+        return saga;
+    }
+}
@@ -0,0 +1,169 @@
+package com.flipped.learn.orderservice.service.impl;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.common.vo.LoginUserInfo;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+import com.flipped.learn.orderservice.feign.AddressClient;
+import com.flipped.learn.orderservice.feign.SecuredGoodsClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderItemRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.AddressInfo;
+import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>订单列表组装的 CPU 时间和内存分配: 从明细表读取 vs 解析 order_detail 中的 json</h1>
+ * 每页 10 到 100 个订单, 每个订单 20 个商品; 数据表和下游服务都用返回固定结果的动态代理代替 (mock 每次调用
+ * 都会记录调用位置, 开销比组装本身还大), 只统计请求线程上的组装开销, 不包含 JPA 把明细行转换成实体的开销.
+ * 结果输出到日志, 只断言明细表路径的分配更少
+ */
+@Slf4j
+class OrderPageAssemblyBenchmarkTest {
+
+    private static final long USER_ID = 10L;
+
+    private static final int ITEMS_PER_ORDER = 20;
+
+    private static final int WARMUP_ROUNDS = 200;
+
+    private static final int MEASURE_ROUNDS = 500;
+
+    private final Map<String, Object> results = new HashMap<>();
+
+    /**
+     * 旧订单每次迁移都会打印日志, 测量时关掉
+     */
+    private final Logger serviceLogger = (Logger) LoggerFactory.getLogger(OrderServiceImpl.class);
+
+    private final OrderServiceImpl orderService = new OrderServiceImpl();
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(threadMXBean.isCurrentThreadCpuTimeSupported()
+                && threadMXBean.isThreadAllocatedMemorySupported());
+        UserContextHolder.setLoginUserInfo(new LoginUserInfo(USER_ID, "user"));
+        serviceLogger.setLevel(Level.WARN);
+
+        results.put("getSimpleGoodsInfoByTableId", CommonResponse.success(
+                LongStream.rangeClosed(1, ITEMS_PER_ORDER).mapToObj(SimpleGoodsInfo::new).collect(Collectors.toList())));
+        results.put("getAddressInfoByTablesId", CommonResponse.success(
+                new AddressInfo(USER_ID, Collections.singletonList(new AddressInfo.AddressItem(1L)))));
+
+        ReflectionTestUtils.setField(orderService, "orderRepository", stub(EcommerceOrderRepository.class));
+        ReflectionTestUtils.setField(orderService, "orderItemRepository", stub(EcommerceOrderItemRepository.class));
+        ReflectionTestUtils.setField(orderService, "securedGoodsClient", stub(SecuredGoodsClient.class));
+        ReflectionTestUtils.setField(orderService, "addressClient", stub(AddressClient.class));
+        ReflectionTestUtils.setField(orderService, "transactionTemplate",
+                new TransactionTemplate(stub(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(orderService, "fanOutExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(orderService, "goodsTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(orderService, "addressTimeoutMillis", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContextHolder.clearLoginUserInfo();
+        serviceLogger.setLevel(null);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 50, 100})
+    void itemRowsAllocateLessThanParsingJson(int ordersPerPage) {
+        List<EcommerceOrder> orders = new ArrayList<>(ordersPerPage);
+        List<EcommerceOrderItem> items = new ArrayList<>(ordersPerPage * ITEMS_PER_ORDER);
+        for (long orderId = ordersPerPage; orderId >= 1; orderId--) {
+            List<DeductGoodsInventory> goodsAndCount = new ArrayList<>(ITEMS_PER_ORDER);
+            for (long goodsId = 1; goodsId <= ITEMS_PER_ORDER; goodsId++) {
+                goodsAndCount.add(new DeductGoodsInventory(goodsId, 1));
+                items.add(new EcommerceOrderItem(orderId, goodsId, 1));
+            }
+            EcommerceOrder order = new EcommerceOrder(USER_ID, 1L, JSON.toJSONString(goodsAndCount));
+            order.setId(orderId);
+            orders.add(order);
+        }
+        results.put("findAllByUserIdAndIdLessThan", orders);
+
+        results.put("findAllByOrderIdInOrderById", items);
+        Measurement fromItems = measure(ordersPerPage);
+        // 明细表中没有记录, 每次都解析 json 并迁移 (迁移写入由替身代替)
+        results.put("findAllByOrderIdInOrderById", Collections.emptyList());
+        Measurement fromJson = measure(ordersPerPage);
+
+        log.info("order page assembly, {} orders x {} items: item rows [{} us, {} KB], json [{} us, {} KB] per page",
+                ordersPerPage, ITEMS_PER_ORDER,
+                fromItems.cpuMicros, fromItems.allocatedKb, fromJson.cpuMicros, fromJson.allocatedKb);
+        assertTrue(fromItems.allocatedKb < fromJson.allocatedKb,
+                "item rows " + fromItems.allocatedKb + " KB, json " + fromJson.allocatedKb + " KB");
+    }
+
+    private Measurement measure(int ordersPerPage) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            assemblePage(ordersPerPage);
+        }
+        long threadId = Thread.currentThread().getId();
+        long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        long allocatedStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            assemblePage(ordersPerPage);
+        }
+        long cpuNanos = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedStart;
+        return new Measurement(cpuNanos / 1000 / MEASURE_ROUNDS, allocatedBytes / 1024 / MEASURE_ROUNDS);
+    }
+
+    private void assemblePage(int ordersPerPage) {
+        assertEquals(ordersPerPage, orderService.getSimpleOrderDetailByCursor(null, 100).getOrderItems().size());
+    }
+
+    /**
+     * <h2>按照方法名返回 results 中的结果, 没有设置的方法返回 null</h2>
+     */
+    private <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> results.get(method.getName())));
+    }
+
+    private static class Measurement {
+
+        private final long cpuMicros;
+
+        private final long allocatedKb;
+
+        Measurement(long cpuMicros, long allocatedKb) {
+            this.cpuMicros = cpuMicros;
+            this.allocatedKb = allocatedKb;
+        }
+    }
+}
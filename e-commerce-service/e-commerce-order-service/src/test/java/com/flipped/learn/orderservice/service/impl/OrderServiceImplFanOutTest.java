@@ -0,0 +1,156 @@
+package com.flipped.learn.orderservice.service.impl;
+
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.common.vo.LoginUserInfo;
+import com.flipped.learn.orderservice.config.FanOutExecutorConfig;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+import com.flipped.learn.orderservice.feign.AddressClient;
+import com.flipped.learn.orderservice.feign.SecuredGoodsClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderItemRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
+import com.flipped.learn.orderservice.vo.PageSimpleOrderDetail;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.AddressInfo;
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>订单列表并行查询商品信息和地址信息的超时测试</h1>
+ */
+class OrderServiceImplFanOutTest {
+
+    private static final long USER_ID = 10L;
+
+    private static final long TIMEOUT_MILLIS = 500;
+
+    private final EcommerceOrderRepository orderRepository = mock(EcommerceOrderRepository.class);
+
+    private final EcommerceOrderItemRepository orderItemRepository = mock(EcommerceOrderItemRepository.class);
+
+    private final SecuredGoodsClient goodsClient = mock(SecuredGoodsClient.class);
+
+    private final AddressClient addressClient = mock(AddressClient.class);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final OrderServiceImpl orderService = new OrderServiceImpl();
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        UserContextHolder.setLoginUserInfo(new LoginUserInfo(USER_ID, "user"));
+        ReflectionTestUtils.setField(orderService, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(orderService, "orderItemRepository", orderItemRepository);
+        ReflectionTestUtils.setField(orderService, "securedGoodsClient", goodsClient);
+        ReflectionTestUtils.setField(orderService, "addressClient", addressClient);
+        ReflectionTestUtils.setField(orderService, "goodsTimeoutMillis", TIMEOUT_MILLIS);
+        ReflectionTestUtils.setField(orderService, "addressTimeoutMillis", TIMEOUT_MILLIS);
+
+        EcommerceOrder order = new EcommerceOrder(USER_ID, 3L, "[]");
+        order.setId(1L);
+        when(orderRepository.findAllByUserIdAndIdLessThan(eq(USER_ID), anyLong(), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(order));
+        when(orderItemRepository.findAllByOrderIdInOrderById(anyCollection()))
+                .thenReturn(Collections.singletonList(new EcommerceOrderItem(1L, 2L, 1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        UserContextHolder.clearLoginUserInfo();
+        if (null != executor) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void timeoutsRunConcurrentlyAndFallBackToPlaceholders() {
+        useExecutor(4);
+        when(goodsClient.getSimpleGoodsInfoByTableId(any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return CommonResponse.success(Collections.singletonList(new SimpleGoodsInfo(2L)));
+        });
+        when(addressClient.getAddressInfoByTablesId(any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            AddressInfo.AddressItem addressItem = new AddressInfo.AddressItem(3L);
+            addressItem.setUsername("user");
+            return CommonResponse.success(new AddressInfo(USER_ID, Collections.singletonList(addressItem)));
+        });
+
+        long start = System.nanoTime();
+        PageSimpleOrderDetail detail = orderService.getSimpleOrderDetailByCursor(null, 10);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 两个超时同时计算, 等待时间接近一个超时, 而不是两个超时之和
+        assertTrue(elapsedMillis >= TIMEOUT_MILLIS, "elapsed " + elapsedMillis);
+        assertTrue(elapsedMillis < TIMEOUT_MILLIS * 2 - 100, "elapsed " + elapsedMillis);
+        PageSimpleOrderDetail.SingleOrderItem item = detail.getOrderItems().get(0);
+        assertEquals(-1L, item.getGoodsItems().get(0).getSimpleGoodsInfo().getId());
+        assertEquals(1, item.getGoodsItems().get(0).getCount());
+        assertNull(item.getUserAddress().getUsername());
+    }
+
+    @Test
+    void queuedCallsAreSkippedAfterTimeout() throws Exception {
+        useExecutor(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        PageSimpleOrderDetail detail = orderService.getSimpleOrderDetailByCursor(null, 10);
+        assertNull(detail.getOrderItems().get(0).getUserAddress().getUsername());
+
+        // 线程空闲之后, 已经超时的两个调用不会再请求下游
+        release.countDown();
+        executor.getThreadPoolExecutor().shutdown();
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+        verifyNoInteractions(goodsClient, addressClient);
+    }
+
+    @Test
+    void failuresAndEmptyResultsFallBackToPlaceholders() {
+        useExecutor(2);
+        when(goodsClient.getSimpleGoodsInfoByTableId(any())).thenThrow(new IllegalStateException("down"));
+        when(addressClient.getAddressInfoByTablesId(any())).thenReturn(CommonResponse.success(null));
+
+        PageSimpleOrderDetail detail = orderService.getSimpleOrderDetailByCursor(null, 10);
+
+        PageSimpleOrderDetail.SingleOrderItem item = detail.getOrderItems().get(0);
+        assertEquals(-1L, item.getGoodsItems().get(0).getSimpleGoodsInfo().getId());
+        assertNull(item.getUserAddress().getUsername());
+    }
+
+    private void useExecutor(int threads) {
+        executor = (ThreadPoolTaskExecutor) new FanOutExecutorConfig().orderFanOutExecutor(threads, threads, 10);
+        ReflectionTestUtils.setField(orderService, "fanOutExecutor", executor);
+    }
+}
@@ -0,0 +1,146 @@
+package com.flipped.learn.orderservice.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.common.vo.CommonResponse;
+import com.flipped.learn.common.vo.LoginUserInfo;
+import com.flipped.learn.orderservice.entity.EcommerceOrder;
+import com.flipped.learn.orderservice.entity.EcommerceOrderItem;
+import com.flipped.learn.orderservice.feign.AddressClient;
+import com.flipped.learn.orderservice.feign.SecuredGoodsClient;
+import com.flipped.learn.orderservice.repository.EcommerceOrderItemRepository;
+import com.flipped.learn.orderservice.repository.EcommerceOrderRepository;
+import com.flipped.learn.orderservice.vo.PageSimpleOrderDetail;
+import com.flipped.learn.serviceconfig.context.UserContextHolder;
+import com.flipped.learn.servicesdk.account.AddressInfo;
+import com.flipped.learn.servicesdk.goods.DeductGoodsInventory;
+import com.flipped.learn.servicesdk.goods.SimpleGoodsInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>订单商品明细的读取和旧订单迁移测试</h1>
+ */
+class OrderServiceImplItemsTest {
+
+    private static final long USER_ID = 10L;
+
+    private final EcommerceOrderRepository orderRepository = mock(EcommerceOrderRepository.class);
+
+    private final EcommerceOrderItemRepository orderItemRepository = mock(EcommerceOrderItemRepository.class);
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final TransactionStatus transactionStatus = mock(TransactionStatus.class);
+
+    private final OrderServiceImpl orderService = new OrderServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        UserContextHolder.setLoginUserInfo(new LoginUserInfo(USER_ID, "user"));
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+
+        SecuredGoodsClient goodsClient = mock(SecuredGoodsClient.class);
+        when(goodsClient.getSimpleGoodsInfoByTableId(any())).thenReturn(CommonResponse.success(
+                Arrays.asList(new SimpleGoodsInfo(1L), new SimpleGoodsInfo(2L), new SimpleGoodsInfo(3L))));
+        AddressClient addressClient = mock(AddressClient.class);
+        when(addressClient.getAddressInfoByTablesId(any()))
+                .thenReturn(CommonResponse.success(new AddressInfo(USER_ID, Collections.emptyList())));
+
+        ReflectionTestUtils.setField(orderService, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(orderService, "orderItemRepository", orderItemRepository);
+        ReflectionTestUtils.setField(orderService, "securedGoodsClient", goodsClient);
+        ReflectionTestUtils.setField(orderService, "addressClient", addressClient);
+        ReflectionTestUtils.setField(orderService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(orderService, "fanOutExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(orderService, "goodsTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(orderService, "addressTimeoutMillis", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContextHolder.clearLoginUserInfo();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void legacyOrdersAreMigratedInOneTransaction() {
+        // 订单 1 已经有明细, 订单 2 是只有 json 的旧订单
+        stubOrders(order(2L, new DeductGoodsInventory(2L, 4), new DeductGoodsInventory(3L, 5)),
+                order(1L, new DeductGoodsInventory(1L, 1)));
+        when(orderItemRepository.findAllByOrderIdInOrderById(anyCollection()))
+                .thenReturn(Collections.singletonList(new EcommerceOrderItem(1L, 1L, 1)));
+
+        PageSimpleOrderDetail detail = orderService.getSimpleOrderDetailByCursor(null, 10);
+
+        assertEquals(Arrays.asList(4, 5), counts(detail.getOrderItems().get(0)));
+        assertEquals(Collections.singletonList(1), counts(detail.getOrderItems().get(1)));
+
+        ArgumentCaptor<List<EcommerceOrderItem>> migrated = ArgumentCaptor.forClass(List.class);
+        InOrder order = inOrder(transactionManager, orderItemRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(orderItemRepository).batchInsertIgnore(migrated.capture());
+        order.verify(transactionManager).commit(transactionStatus);
+        assertEquals(Arrays.asList(2L, 3L), migrated.getValue().stream()
+                .map(EcommerceOrderItem::getGoodsId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void failedMigrationRollsBackAndStillReturnsThePage() {
+        stubOrders(order(2L, new DeductGoodsInventory(2L, 4), new DeductGoodsInventory(3L, 5)));
+        when(orderItemRepository.findAllByOrderIdInOrderById(anyCollection())).thenReturn(Collections.emptyList());
+        doThrow(new DataIntegrityViolationException("batch failed"))
+                .when(orderItemRepository).batchInsertIgnore(anyList());
+
+        PageSimpleOrderDetail detail = orderService.getSimpleOrderDetailByCursor(null, 10);
+
+        // 已经写入的部分明细一起回滚, 下次查询时整个订单重新迁移
+        assertEquals(Arrays.asList(4, 5), counts(detail.getOrderItems().get(0)));
+        verify(transactionManager).rollback(transactionStatus);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    private void stubOrders(EcommerceOrder... orders) {
+        when(orderRepository.findAllByUserIdAndIdLessThan(eq(USER_ID), anyLong(), any(Pageable.class)))
+                .thenReturn(Arrays.asList(orders));
+    }
+
+    private static EcommerceOrder order(long id, DeductGoodsInventory... items) {
+        EcommerceOrder order = new EcommerceOrder(USER_ID, 1L, JSON.toJSONString(Arrays.asList(items)));
+        order.setId(id);
+        return order;
+    }
+
+    private static List<Integer> counts(PageSimpleOrderDetail.SingleOrderItem orderItem) {
+        return orderItem.getGoodsItems().stream()
+                .map(PageSimpleOrderDetail.SingleOrderGoodsItem::getCount)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,26 +1,47 @@
 package com.flipped.learn.serviceconfig.config;
 
 import com.alibaba.cloud.seata.web.SeataHandlerInterceptor;
+import com.flipped.learn.common.config.TokenVerifierConfig;
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.util.ServiceSignature;
+import com.flipped.learn.common.util.TokenVerifier;
+import com.flipped.learn.serviceconfig.filter.InternalServiceInterceptor;
 import com.flipped.learn.serviceconfig.filter.LoginUserInfoInterceptor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 
+import javax.annotation.Resource;
+
 /**
  * <h1>Web Mvc 配置</h1>
  */
 @Configuration
+@Import({TokenVerifierConfig.class, InternalServiceConfig.class})
 public class ECommerceWebMvcConfig extends WebMvcConfigurationSupport {
 
+    @Resource
+    private TokenVerifier tokenVerifier;
+
+    @Resource
+    private ServiceSignature serviceSignature;
+
     /**
      * <h2>添加拦截器配置</h2>
      */
     @Override
     protected void addInterceptors(InterceptorRegistry registry) {
-        // 添加用户身份统一登录拦截的拦截器
-        registry.addInterceptor(new LoginUserInfoInterceptor())
+        String internalPattern = CommonConstant.INTERNAL_URI_PREFIX + "**";
+        // 添加用户身份统一登录拦截的拦截器, 内部接口没有用户身份
+        registry.addInterceptor(new LoginUserInfoInterceptor(tokenVerifier))
                 .addPathPatterns("/**")
+                .excludePathPatterns(internalPattern)
+                .order(0);
+        // 内部接口只接受其他微服务签名的请求
+        registry.addInterceptor(new InternalServiceInterceptor(serviceSignature))
+                .addPathPatterns(internalPattern)
                 .order(0);
         // Seata 传递 xid 事务 id 给其他的微服务 只有这样, 其他的服务才会写 undo_log, 才能够实现回滚
         registry.addInterceptor(new SeataHandlerInterceptor()).addPathPatterns("/**");
@@ -0,0 +1,34 @@
+package com.flipped.learn.serviceconfig.config;
+
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.util.ServiceSignature;
+import feign.RequestInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * <h1>调用其他服务内部接口的 Feign 配置, 给请求加上当前服务的签名</h1>
+ * 通过 @FeignClient(configuration = InternalFeignConfig.class) 指定;
+ * 不加 @Configuration, 避免被扫描成全局配置, 给所有 Feign 请求都带上签名
+ */
+public class InternalFeignConfig {
+
+    @Bean
+    public RequestInterceptor internalServiceInterceptor(ServiceSignature serviceSignature,
+                                                         @Value("${spring.application.name}") String serviceName) {
+        return template -> {
+            // 拦截器在确定服务实例之前执行, path 就是接口上声明的路径 (包含服务提供方的 context-path);
+            // 此时查询参数和请求体都已经编码, 和实际发送的内容一致
+            // 全局拦截器可能已经复制了当前请求中的同名 Header, 先移除, 只保留当前服务的签名
+            long timestamp = System.currentTimeMillis();
+            template.removeHeader(CommonConstant.SERVICE_NAME_KEY);
+            template.removeHeader(CommonConstant.SERVICE_TIMESTAMP_KEY);
+            template.removeHeader(CommonConstant.SERVICE_SIGNATURE_KEY);
+            template.header(CommonConstant.SERVICE_NAME_KEY, serviceName);
+            template.header(CommonConstant.SERVICE_TIMESTAMP_KEY, String.valueOf(timestamp));
+            template.header(CommonConstant.SERVICE_SIGNATURE_KEY,
+                    serviceSignature.sign(serviceName, timestamp, template.method(), template.path(),
+                            template.queryLine(), template.body()));
+        };
+    }
+}
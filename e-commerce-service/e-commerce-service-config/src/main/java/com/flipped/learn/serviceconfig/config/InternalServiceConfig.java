@@ -0,0 +1,34 @@
+package com.flipped.learn.serviceconfig.config;
+
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.util.ServiceSignature;
+import com.flipped.learn.serviceconfig.filter.InternalRequestBodyFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * <h1>微服务之间调用的签名配置</h1>
+ * 由 {@link ECommerceWebMvcConfig} 引入; 所有服务配置同一个密钥 ecommerce.internal.secret, 没有配置时内部接口全部拒绝
+ */
+public class InternalServiceConfig {
+
+    @Bean
+    public ServiceSignature serviceSignature(
+            @Value("${ecommerce.internal.secret:}") String secret,
+            @Value("${ecommerce.internal.max-skew-millis:" + ServiceSignature.DEFAULT_MAX_SKEW_MILLIS + "}")
+                    long maxSkewMillis) {
+        return new ServiceSignature(secret, maxSkewMillis);
+    }
+
+    /**
+     * <h2>缓存内部接口的请求体, 用于校验签名中的请求体摘要</h2>
+     */
+    @Bean
+    public FilterRegistrationBean<InternalRequestBodyFilter> internalRequestBodyFilter() {
+        FilterRegistrationBean<InternalRequestBodyFilter> registration =
+                new FilterRegistrationBean<>(new InternalRequestBodyFilter());
+        registration.addUrlPatterns(CommonConstant.INTERNAL_URI_PREFIX + "*");
+        return registration;
+    }
+}
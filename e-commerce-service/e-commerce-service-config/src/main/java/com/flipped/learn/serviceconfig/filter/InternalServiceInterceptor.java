@@ -0,0 +1,45 @@
+package com.flipped.learn.serviceconfig.filter;
+
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
+import com.flipped.learn.common.util.ServiceSignature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <h1>内部接口的服务身份校验</h1>
+ * 内部接口不带用户 token, 只接受其他微服务用共享密钥签名的请求;
+ * 签名包含查询参数和请求体摘要, 请求体由 {@link InternalRequestBodyFilter} 缓存, 没有缓存时按没有请求体校验
+ */
+@Slf4j
+public class InternalServiceInterceptor implements HandlerInterceptor {
+
+    private final ServiceSignature serviceSignature;
+
+    public InternalServiceInterceptor(ServiceSignature serviceSignature) {
+        this.serviceSignature = serviceSignature;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+
+        String serviceName = request.getHeader(CommonConstant.SERVICE_NAME_KEY);
+        if (!serviceSignature.verify(serviceName,
+                request.getHeader(CommonConstant.SERVICE_TIMESTAMP_KEY),
+                request.getMethod(),
+                request.getRequestURI(),
+                request.getQueryString(),
+                InternalRequestBodyFilter.bodyOf(request),
+                request.getHeader(CommonConstant.SERVICE_SIGNATURE_KEY))) {
+            log.warn("reject internal request: [{}], [{}], [{}], secret configured: [{}]",
+                    request.getMethod(), request.getRequestURI(), serviceName, serviceSignature.isConfigured());
+            throw new BusinessException(GlobalErrorCodeConstants.FORBIDDEN);
+        }
+        log.debug("internal request from: [{}], [{}]", serviceName, request.getRequestURI());
+        return true;
+    }
+}
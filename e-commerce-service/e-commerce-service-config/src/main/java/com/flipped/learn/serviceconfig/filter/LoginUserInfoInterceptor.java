@@ -4,7 +4,7 @@ package com.flipped.learn.serviceconfig.filter;
 import com.flipped.learn.common.constant.CommonConstant;
 import com.flipped.learn.common.exception.BusinessException;
 import com.flipped.learn.common.exception.enums.GlobalErrorCodeConstants;
-import com.flipped.learn.common.util.TokenParseUtil;
+import com.flipped.learn.common.util.TokenVerifier;
 import com.flipped.learn.common.vo.LoginUserInfo;
 import com.flipped.learn.serviceconfig.context.UserContextHolder;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +24,12 @@ import javax.servlet.http.HttpServletResponse;
 @Component
 public class LoginUserInfoInterceptor implements HandlerInterceptor {
 
+    private final TokenVerifier tokenVerifier;
+
+    public LoginUserInfoInterceptor(TokenVerifier tokenVerifier) {
+        this.tokenVerifier = tokenVerifier;
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         // 部分请求不需要带有身份信息, 即白名单
@@ -35,7 +41,7 @@ public class LoginUserInfoInterceptor implements HandlerInterceptor {
         String token = request.getHeader(CommonConstant.JWT_USER_INFO_KEY);
         LoginUserInfo loginUserInfo = null;
         try {
-            loginUserInfo = TokenParseUtil.parseUserInfoFromToken(token);
+            loginUserInfo = tokenVerifier.verify(token);
         } catch (Exception ex) {
             log.error("parse login user info error: [{}]", ex.getMessage(), ex);
         }
@@ -0,0 +1,49 @@
+package com.flipped.learn.serviceconfig.config;
+
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.util.ServiceSignature;
+import feign.Request;
+import feign.RequestTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>内部接口 Feign 签名测试</h1>
+ */
+class InternalFeignConfigTest {
+
+    private static final String PATH = "/ecommerce-goods-service/internal/goods/saga/deduct-goods-inventory";
+
+    private static final byte[] BODY = "[{\"goodsId\":1,\"count\":2}]".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void signsPathQueryAndBody() {
+        ServiceSignature serviceSignature = new ServiceSignature("secret", 60000L);
+        RequestTemplate template = new RequestTemplate()
+                .method(Request.HttpMethod.PUT)
+                .uri(PATH + "?txId=order-1")
+                .body(BODY, StandardCharsets.UTF_8)
+                // 全局拦截器从当前请求中复制过来的 Header
+                .header(CommonConstant.SERVICE_SIGNATURE_KEY, "forged");
+
+        new InternalFeignConfig().internalServiceInterceptor(serviceSignature, "order-service").apply(template);
+
+        assertEquals("order-service", header(template, CommonConstant.SERVICE_NAME_KEY));
+        assertEquals(1, template.headers().get(CommonConstant.SERVICE_SIGNATURE_KEY).size());
+        // 服务提供方用 getRequestURI、getQueryString 和缓存的请求体校验
+        String timestamp = header(template, CommonConstant.SERVICE_TIMESTAMP_KEY);
+        String signature = header(template, CommonConstant.SERVICE_SIGNATURE_KEY);
+        assertTrue(serviceSignature.verify("order-service", timestamp, "PUT", PATH, "txId=order-1", BODY, signature));
+        assertFalse(serviceSignature.verify("order-service", timestamp, "PUT", PATH, "txId=order-2", BODY, signature));
+        assertFalse(serviceSignature.verify("order-service", timestamp, "PUT", PATH, "txId=order-1", null, signature));
+    }
+
+    private static String header(RequestTemplate template, String name) {
+        return template.headers().get(name).iterator().next();
+    }
+}
@@ -0,0 +1,128 @@
+package com.flipped.learn.serviceconfig.filter;
+
+import com.flipped.learn.common.constant.CommonConstant;
+import com.flipped.learn.common.exception.BusinessException;
+import com.flipped.learn.common.util.ServiceSignature;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>内部接口服务签名校验测试</h1>
+ */
+class InternalServiceInterceptorTest {
+
+    private static final String PATH = "/ecommerce-goods-service/internal/goods/saga/compensate-goods-inventory";
+
+    private static final String QUERY = "txId=order-1&retry=1";
+
+    private static final byte[] BODY = "[{\"goodsId\":1,\"count\":2}]".getBytes(StandardCharsets.UTF_8);
+
+    private final ServiceSignature serviceSignature = new ServiceSignature("secret", 60000L);
+
+    private final InternalServiceInterceptor interceptor = new InternalServiceInterceptor(serviceSignature);
+
+    @Test
+    void signedRequestIsAccepted() throws Exception {
+        MockHttpServletRequest request = signedRequest(serviceSignature, System.currentTimeMillis());
+
+        assertTrue(preHandle(request));
+    }
+
+    @Test
+    void bodyIsStillReadableAfterVerification() throws Exception {
+        MockHttpServletRequest request = signedRequest(serviceSignature, System.currentTimeMillis());
+
+        new InternalRequestBodyFilter().doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            assertTrue(interceptor.preHandle((HttpServletRequest) req, new MockHttpServletResponse(), null));
+            assertEquals(new String(BODY, StandardCharsets.UTF_8),
+                    StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8));
+        });
+    }
+
+    @Test
+    void requestWithoutSignatureIsRejected() {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", PATH);
+        request.addHeader(CommonConstant.JWT_USER_INFO_KEY, "user-token");
+
+        assertThrows(BusinessException.class, () -> preHandle(request));
+    }
+
+    @Test
+    void signatureForAnotherPathIsRejected() {
+        MockHttpServletRequest request = signedRequest(serviceSignature, System.currentTimeMillis());
+        request.setRequestURI("/ecommerce-account-service/internal/balance/saga/compensate-balance");
+
+        assertThrows(BusinessException.class, () -> preHandle(request));
+    }
+
+    @Test
+    void tamperedQueryOrBodyIsRejected() {
+        MockHttpServletRequest query = signedRequest(serviceSignature, System.currentTimeMillis());
+        query.setQueryString("txId=order-2&retry=1");
+        MockHttpServletRequest body = signedRequest(serviceSignature, System.currentTimeMillis());
+        body.setContent("[{\"goodsId\":1,\"count\":200}]".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(BusinessException.class, () -> preHandle(query));
+        assertThrows(BusinessException.class, () -> preHandle(body));
+    }
+
+    @Test
+    void queryParameterOrderDoesNotMatter() throws Exception {
+        MockHttpServletRequest request = signedRequest(serviceSignature, System.currentTimeMillis());
+        request.setQueryString("retry=1&txId=order-1");
+
+        assertTrue(preHandle(request));
+    }
+
+    @Test
+    void expiredOrForeignSignatureIsRejected() {
+        MockHttpServletRequest expired = signedRequest(serviceSignature, System.currentTimeMillis() - 120000L);
+        MockHttpServletRequest foreign = signedRequest(
+                new ServiceSignature("another-secret", 60000L), System.currentTimeMillis());
+
+        assertThrows(BusinessException.class, () -> preHandle(expired));
+        assertThrows(BusinessException.class, () -> preHandle(foreign));
+    }
+
+    @Test
+    void missingSecretRejectsEverything() {
+        ServiceSignature unconfigured = new ServiceSignature("", 60000L);
+        InternalServiceInterceptor failClosed = new InternalServiceInterceptor(unconfigured);
+        MockHttpServletRequest request = signedRequest(serviceSignature, System.currentTimeMillis());
+
+        assertThrows(BusinessException.class,
+                () -> failClosed.preHandle(request, new MockHttpServletResponse(), null));
+        assertThrows(IllegalStateException.class,
+                () -> unconfigured.sign("order-service", System.currentTimeMillis(), "PUT", PATH, QUERY, BODY));
+    }
+
+    /**
+     * <h2>和服务中一样, 请求先经过缓存请求体的过滤器再由拦截器校验</h2>
+     */
+    private boolean preHandle(MockHttpServletRequest request) throws Exception {
+        boolean[] passed = new boolean[1];
+        new InternalRequestBodyFilter().doFilter(request, new MockHttpServletResponse(), (req, res) ->
+                passed[0] = interceptor.preHandle((HttpServletRequest) req, new MockHttpServletResponse(), null));
+        return passed[0];
+    }
+
+    private static MockHttpServletRequest signedRequest(ServiceSignature signature, long timestamp) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", PATH);
+        request.setQueryString(QUERY);
+        request.setContent(BODY);
+        request.addHeader(CommonConstant.SERVICE_NAME_KEY, "order-service");
+        request.addHeader(CommonConstant.SERVICE_TIMESTAMP_KEY, String.valueOf(timestamp));
+        request.addHeader(CommonConstant.SERVICE_SIGNATURE_KEY,
+                signature.sign("order-service", timestamp, "PUT", PATH, QUERY, BODY));
+        return request;
+    }
+}
@@ -0,0 +1,33 @@
+package com.flipped.learn.servicesdk.goods;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <h1>已经扣减库存的商品, 带有扣减时的商品价格</h1>
+ * */
+@ApiModel(description = "已经扣减库存的商品对象")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeductedGoodsInfo {
+
+    @ApiModelProperty(value = "商品主键 id")
+    private Long goodsId;
+
+    @ApiModelProperty(value = "扣减个数")
+    private Integer count;
+
+    @ApiModelProperty(value = "商品价格, 单位: 分")
+    private Integer price;
+
+    /**
+     * <h2>这件商品的总价格</h2>
+     */
+    public long totalPrice() {
+        return (long) price * count;
+    }
+}
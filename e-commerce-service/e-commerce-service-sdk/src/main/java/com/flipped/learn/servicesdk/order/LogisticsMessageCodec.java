@@ -0,0 +1,75 @@
+package com.flipped.learn.servicesdk.order;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <h1>物流消息的二进制编解码</h1>
+ * 格式: version(1) + userId(8) + orderId(8) + addressId(8) + extraInfo 长度(4, -1 表示 null) + extraInfo(UTF-8);
+ * 没有备注信息时一条消息 29 字节, json 字符串大约 80 字节
+ */
+public final class LogisticsMessageCodec {
+
+    /**
+     * 当前编码版本, 修改格式时递增
+     */
+    private static final byte VERSION = 1;
+
+    private static final int FIXED_LENGTH = 1 + 8 + 8 + 8 + 4;
+
+    private LogisticsMessageCodec() {
+    }
+
+    /**
+     * <h2>编码物流消息</h2>
+     */
+    public static byte[] encode(LogisticsMessage message) {
+
+        byte[] extraInfo = null == message.getExtraInfo()
+                ? null : message.getExtraInfo().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + (null == extraInfo ? 0 : extraInfo.length));
+        buffer.put(VERSION);
+        buffer.putLong(message.getUserId());
+        buffer.putLong(message.getOrderId());
+        buffer.putLong(message.getAddressId());
+        if (null == extraInfo) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(extraInfo.length);
+            buffer.put(extraInfo);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * <h2>解码物流消息, 长度不合法 (截断或者被篡改) 的消息抛出 IllegalArgumentException</h2>
+     */
+    public static LogisticsMessage decode(byte[] bytes) {
+
+        if (null == bytes || bytes.length < FIXED_LENGTH) {
+            throw new IllegalArgumentException("logistics message too short: "
+                    + (null == bytes ? null : bytes.length));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (VERSION != version) {
+            throw new IllegalArgumentException("unsupported logistics message version: " + version);
+        }
+        LogisticsMessage message = new LogisticsMessage();
+        message.setUserId(buffer.getLong());
+        message.setOrderId(buffer.getLong());
+        message.setAddressId(buffer.getLong());
+        int length = buffer.getInt();
+        // 不能按照消息中的长度直接分配数组, 超出剩余字节数的长度说明消息不完整
+        if (length < -1 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("invalid logistics message extra info length: " + length
+                    + ", remaining: " + buffer.remaining());
+        }
+        if (length >= 0) {
+            byte[] extraInfo = new byte[length];
+            buffer.get(extraInfo);
+            message.setExtraInfo(new String(extraInfo, StandardCharsets.UTF_8));
+        }
+        return message;
+    }
+}
@@ -0,0 +1,61 @@
+package com.flipped.learn.servicesdk.order;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * <h1>物流消息二进制编解码测试</h1>
+ */
+class LogisticsMessageCodecTest {
+
+    @Test
+    void roundTrip() {
+        LogisticsMessage message = new LogisticsMessage(1L, 2L, 3L, "{\"备注\":\"尽快发货\"}");
+
+        assertEquals(message, LogisticsMessageCodec.decode(LogisticsMessageCodec.encode(message)));
+    }
+
+    @Test
+    void nullExtraInfoRoundTrip() {
+        byte[] bytes = LogisticsMessageCodec.encode(new LogisticsMessage(1L, 2L, 3L, null));
+
+        assertEquals(29, bytes.length);
+        assertNull(LogisticsMessageCodec.decode(bytes).getExtraInfo());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-2, Integer.MIN_VALUE, 3, Integer.MAX_VALUE})
+    void invalidExtraInfoLengthIsRejected(int length) {
+        byte[] bytes = LogisticsMessageCodec.encode(new LogisticsMessage(1L, 2L, 3L, "ab"));
+        // extraInfo 长度在固定部分的最后 4 个字节
+        ByteBuffer.wrap(bytes).putInt(25, length);
+
+        assertThrows(IllegalArgumentException.class, () -> LogisticsMessageCodec.decode(bytes));
+    }
+
+    @Test
+    void truncatedMessageIsRejected() {
+        byte[] bytes = LogisticsMessageCodec.encode(new LogisticsMessage(1L, 2L, 3L, "extra"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> LogisticsMessageCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> LogisticsMessageCodec.decode(Arrays.copyOf(bytes, 20)));
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] bytes = LogisticsMessageCodec.encode(new LogisticsMessage(1L, 2L, 3L, null));
+        bytes[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> LogisticsMessageCodec.decode(bytes));
+    }
+}
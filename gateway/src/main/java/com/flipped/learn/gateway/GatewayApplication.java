@@ -1,11 +1,14 @@
 package com.flipped.learn.gateway;
 
+import com.flipped.learn.common.config.TokenVerifierConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.reactive.function.client.WebClient;
 
+@Import(TokenVerifierConfig.class)
 @SpringBootApplication
 public class GatewayApplication {
 
@@ -1,21 +1,27 @@
 package com.flipped.learn.gateway.config;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.route.RouteDefinition;
-import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
+import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * 事件推送 Aware: 动态更新路由网关 Service
+ * 维护一份当前已下发的路由快照, 每次更新只对新增、变更、删除的路由做写操作, 并且只发布一次刷新事件
  */
 @Slf4j
 @Service
@@ -25,17 +31,23 @@ public class DynamicRouteService implements ApplicationEventPublisherAware {
      */
     @Resource
     private RouteDefinitionWriter routeDefinitionWriter;
+
     /**
-     * 获取路由定义
+     * 路由本地快照
      */
     @Resource
-    private RouteDefinitionLocator routeDefinitionLocator;
+    private RouteSnapshotStore routeSnapshotStore;
 
     /**
      * 事件发布
      */
     private ApplicationEventPublisher publisher;
 
+    /**
+     * 当前已经下发的路由定义: routeId -> RouteDefinition
+     */
+    private Map<String, RouteDefinition> appliedRoutes = Collections.emptyMap();
+
     @Override
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
         // 完成事件推送句柄的初始化
@@ -45,67 +57,97 @@ public class DynamicRouteService implements ApplicationEventPublisherAware {
     /**
      * <h2>增加路由定义</h2>
      * */
-    public String addRouteDefinition(RouteDefinition definition) {
+    public synchronized String addRouteDefinition(RouteDefinition definition) {
         log.info("gateway add route: [{}]", definition);
-        // 保存路由配置并发布
-        routeDefinitionWriter.save(Mono.just(definition)).subscribe();
-        // 发布事件通知给 Gateway, 同步新增的路由定义
-        this.publisher.publishEvent(new RefreshRoutesEvent(this));
-        return "success";
+        Map<String, RouteDefinition> target = new LinkedHashMap<>(appliedRoutes);
+        target.put(definition.getId(), definition);
+        return applyDiff(target);
     }
 
     /**
      * <h2>更新路由</h2>
+     * 与当前快照按 id 和内容做差异比较, 只写入变化的部分
      * */
-    public String updateList(List<RouteDefinition> definitions) {
+    public synchronized String updateList(List<RouteDefinition> definitions) {
         log.info("gateway update route: [{}]", definitions);
-        // 先拿到当前 Gateway 中存储的路由定义
-        List<RouteDefinition> routeDefinitionsExits = routeDefinitionLocator.getRouteDefinitions().buffer().blockFirst();
-        if (!CollectionUtils.isEmpty(routeDefinitionsExits)) {
-            // 清除掉之前所有的 "旧的" 路由定义
-            routeDefinitionsExits.forEach(rd -> {
-                log.info("delete route definition: [{}]", rd);
-                deleteById(rd.getId());
-            });
-        }
-        // 把更新的路由定义同步到 gateway 中
-        definitions.forEach(this::updateByRouteDefinition);
-        return "success";
+        Map<String, RouteDefinition> target = new LinkedHashMap<>(definitions.size());
+        definitions.forEach(d -> target.put(d.getId(), d));
+        return applyDiff(target);
     }
 
     /**
-     * <h2>根据路由 id 删除路由配置</h2>
+     * <h2>获取当前已经下发的路由定义</h2>
      * */
-    private String deleteById(String id) {
-        try {
-            log.info("gateway delete route id: [{}]", id);
-            this.routeDefinitionWriter.delete(Mono.just(id)).subscribe();
-            // 发布事件通知给 gateway 更新路由定义
-            this.publisher.publishEvent(new RefreshRoutesEvent(this));
-            return "delete success";
-        } catch (Exception ex) {
-            log.error("gateway delete route fail: [{}]", ex.getMessage(), ex);
-            return "delete fail";
-        }
+    public synchronized List<RouteDefinition> getAppliedRoutes() {
+        return new ArrayList<>(appliedRoutes.values());
     }
 
     /**
-     * <h2>更新路由</h2>
-     * 更新的实现策略比较简单: 删除 + 新增 = 更新
+     * <h2>计算差异并下发</h2>
+     * 写操作全部完成之后才发布一次 RefreshRoutesEvent, CachingRouteLocator 会一次性切换到新的路由表,
+     * 不会出现路由被删除后还没来得及重新加上的窗口期; 调用方已经持有 this 锁
      * */
-    private String updateByRouteDefinition(RouteDefinition definition) {
-        try {
-            log.info("gateway update route: [{}]", definition);
-            this.routeDefinitionWriter.delete(Mono.just(definition.getId()));
-        } catch (Exception ex) {
-            return "update fail, not find route routeId: " + definition.getId();
+    private String applyDiff(Map<String, RouteDefinition> target) {
+        List<String> removed = new ArrayList<>();
+        List<RouteDefinition> saved = new ArrayList<>();
+
+        appliedRoutes.keySet().forEach(id -> {
+            if (!target.containsKey(id)) {
+                removed.add(id);
+            }
+        });
+        // 新增的和内容有变化的路由, save 会按 id 覆盖, 所以变更不需要先删除
+        target.forEach((id, definition) -> {
+            if (!Objects.equals(appliedRoutes.get(id), definition)) {
+                saved.add(definition);
+            }
+        });
+
+        if (removed.isEmpty() && saved.isEmpty()) {
+            log.info("gateway route not changed, skip refresh");
+            return "success";
         }
+        log.info("gateway route diff: removed [{}], added or changed [{}]", removed,
+                saved.stream().map(RouteDefinition::getId).toArray());
+        List<RouteDefinition> snapshot = new ArrayList<>(target.values());
+
+        // 调用方是路由更新线程和启动线程, 不在 reactor 线程中, 这里等待写操作完成;
+        // 写入成功之后才更新 appliedRoutes, 失败时保留旧的快照, 下一次同样的推送会重新下发
         try {
-            this.routeDefinitionWriter.save(Mono.just(definition)).subscribe();
-            this.publisher.publishEvent(new RefreshRoutesEvent(this));
-            return "success";
-        } catch (Exception ex) {
-            return "update route fail";
+            Flux.fromIterable(removed)
+                    .concatMap(this::deleteById)
+                    .thenMany(Flux.fromIterable(saved).concatMap(this::save))
+                    // 发布事件通知给 Gateway, 同步路由定义
+                    .then(Mono.fromRunnable(() -> this.publisher.publishEvent(new RefreshRoutesEvent(this))))
+                    .block();
+        } catch (RuntimeException ex) {
+            log.error("gateway apply route diff fail: [{}]", ex.getMessage(), ex);
+            return "fail";
         }
+        appliedRoutes = Collections.unmodifiableMap(target);
+
+        // 下发成功之后再更新本地快照
+        routeSnapshotStore.save(snapshot);
+        return "success";
+    }
+
+    /**
+     * <h2>根据路由 id 删除路由配置</h2>
+     * */
+    private Mono<Void> deleteById(String id) {
+        log.info("gateway delete route id: [{}]", id);
+        return this.routeDefinitionWriter.delete(Mono.just(id))
+                .onErrorResume(NotFoundException.class, ex -> {
+                    log.warn("gateway delete route not found: [{}]", id);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * <h2>保存路由</h2>
+     * */
+    private Mono<Void> save(RouteDefinition definition) {
+        log.info("gateway save route: [{}]", definition);
+        return this.routeDefinitionWriter.save(Mono.just(definition));
     }
 }
@@ -0,0 +1,83 @@
+package com.flipped.learn.gateway.config;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <h1>路由定义本地快照</h1>
+ * 保存最近一次下发成功的路由, 网关启动时先从快照恢复路由, 不需要等待 Nacos
+ */
+@Slf4j
+@Component
+public class RouteSnapshotStore {
+
+    /**
+     * 快照文件路径
+     */
+    private final Path snapshotFile;
+
+    public RouteSnapshotStore(
+            @Value("${nacos.gateway.route.snapshot-file:${user.home}/.e-commerce/gateway-routes.json}")
+                    String snapshotFile) {
+        this.snapshotFile = Paths.get(snapshotFile);
+    }
+
+    /**
+     * <h2>读取快照中的路由定义, 快照不存在或者损坏时返回空列表</h2>
+     */
+    public List<RouteDefinition> load() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            log.info("gateway route snapshot not exists: [{}]", snapshotFile);
+            return Collections.emptyList();
+        }
+        try {
+            String content = new String(Files.readAllBytes(snapshotFile), StandardCharsets.UTF_8);
+            List<RouteDefinition> definitions = JSON.parseArray(content, RouteDefinition.class);
+            return null == definitions ? Collections.emptyList() : definitions;
+        } catch (Exception ex) {
+            log.error("load gateway route snapshot error: [{}]", ex.getMessage(), ex);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * <h2>保存路由快照</h2>
+     * 先写临时文件再原子替换, 进程在写入过程中退出也不会留下半个文件
+     */
+    public void save(List<RouteDefinition> definitions) {
+        try {
+            Path dir = snapshotFile.toAbsolutePath().getParent();
+            if (null != dir) {
+                Files.createDirectories(dir);
+            }
+            Path tmpFile = Files.createTempFile(dir, "gateway-routes", ".tmp");
+            try {
+                Files.write(tmpFile, JSON.toJSONString(definitions).getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmpFile, snapshotFile,
+                            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+            log.info("save gateway route snapshot: [{}], [{}]", snapshotFile, definitions.size());
+        } catch (IOException ex) {
+            log.error("save gateway route snapshot error: [{}]", ex.getMessage(), ex);
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.flipped.learn.gateway.filter;
 
 import com.flipped.learn.gateway.constant.GatewayConstant;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import org.springframework.stereotype.Component;
@@ -14,15 +17,26 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
+
 /**
  * <h1>缓存请求 body 的全局过滤器</h1>
  * Spring WebFlux
+ * 1. 请求体大小有上限, 超过上限直接返回 413; 登录、注册的请求体为空时返回 400
+ * 2. 缓存的 DataBuffer 在过滤链完成、出错、取消时都会被释放
+ * 3. 每次 getBody 拿到的都是 retain 过的切片, 由消费方 (例如转发到下游的 WebClient) 负责释放, 不需要拷贝数据
  */
 @Slf4j
 @Component
 @SuppressWarnings("all")
 public class GlobalCacheRequestBodyFilter implements GlobalFilter, Ordered {
 
+    /**
+     * 允许缓存的最大请求体字节数
+     */
+    @Value("${ecommerce.gateway.request-body.max-bytes:65536}")
+    private int maxBodyBytes;
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 
@@ -35,25 +49,40 @@ public class GlobalCacheRequestBodyFilter implements GlobalFilter, Ordered {
             return chain.filter(exchange);
         }
 
-        // DataBufferUtils.join 拿到请求中的数据 --> DataBuffer
-        return DataBufferUtils.join(exchange.getRequest().getBody()).flatMap(dataBuffer -> {
-
-            // 确保数据缓冲区不被释放, 必须要 DataBufferUtils.retain
-            DataBufferUtils.retain(dataBuffer);
-            // defer、just 都是去创建数据源, 得到当前数据的副本
-            Flux<DataBuffer> cachedFlux = Flux.defer(() ->
-                    Flux.just(dataBuffer.slice(0, dataBuffer.readableByteCount())));
-            // 重新包装 ServerHttpRequest, 重写 getBody 方法, 能够返回请求数据
-            ServerHttpRequest mutatedRequest =
-                    new ServerHttpRequestDecorator(exchange.getRequest()) {
-                        @Override
-                        public Flux<DataBuffer> getBody() {
-                            return cachedFlux;
-                        }
-                    };
-            // 将包装之后的 ServerHttpRequest 向下继续传递
-            return chain.filter(exchange.mutate().request(mutatedRequest).build());
-        });
+        // DataBufferUtils.join 拿到请求中的数据 --> DataBuffer, 超过上限会抛出 DataBufferLimitException
+        return DataBufferUtils.join(exchange.getRequest().getBody(), maxBodyBytes)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(optionalBuffer -> {
+                    // 登录、注册没有请求体, 直接返回 400, 不再转发到授权中心
+                    if (optionalBuffer.isEmpty() || 0 == optionalBuffer.get().readableByteCount()) {
+                        optionalBuffer.ifPresent(DataBufferUtils::release);
+                        log.warn("empty login or register request body: [{}]",
+                                exchange.getRequest().getURI().getPath());
+                        exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
+                        return exchange.getResponse().setComplete();
+                    }
+                    DataBuffer dataBuffer = optionalBuffer.get();
+                    // 重新包装 ServerHttpRequest, 重写 getBody 方法, 能够返回请求数据
+                    ServerHttpRequest mutatedRequest =
+                            new ServerHttpRequestDecorator(exchange.getRequest()) {
+                                @Override
+                                public Flux<DataBuffer> getBody() {
+                                    // defer 保证只有真正订阅时才 retain, 切片与缓存共享同一块内存
+                                    return Flux.defer(() -> Flux.just(
+                                            dataBuffer.retainedSlice(0, dataBuffer.readableByteCount())));
+                                }
+                            };
+                    // 将包装之后的 ServerHttpRequest 向下继续传递, 无论以何种方式结束都释放缓存
+                    return chain.filter(exchange.mutate().request(mutatedRequest).build())
+                            .doFinally(signal -> DataBufferUtils.release(dataBuffer));
+                })
+                .onErrorResume(DataBufferLimitException.class, ex -> {
+                    log.warn("request body is too large: [{}], [{}]",
+                            exchange.getRequest().getURI().getPath(), ex.getMessage());
+                    exchange.getResponse().setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+                    return exchange.getResponse().setComplete();
+                });
     }
 
     @Override
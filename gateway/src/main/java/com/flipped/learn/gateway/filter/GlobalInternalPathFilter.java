@@ -0,0 +1,38 @@
+package com.flipped.learn.gateway.filter;
+
+import com.flipped.learn.common.constant.CommonConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * <h1>拒绝外部访问微服务内部接口的全局过滤器</h1>
+ * 内部接口只允许微服务之间调用 (服务签名校验), 网关直接返回 404, 不转发到下游
+ */
+@Slf4j
+@Component
+public class GlobalInternalPathFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        // 下游 MVC 匹配路径时会去掉 ;xxx 形式的路径参数, 这里同样去掉之后再判断
+        String path = exchange.getRequest().getURI().getPath().replaceAll(";[^/]*", "");
+        if (path.contains(CommonConstant.INTERNAL_URI_PREFIX)) {
+            log.warn("reject external request to internal uri: [{}]", exchange.getRequest().getURI().getPath());
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        }
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return HIGHEST_PRECEDENCE;
+    }
+}
@@ -1,18 +1,17 @@
 package com.flipped.learn.gateway.filter;
 
 import com.flipped.learn.common.constant.CommonConstant;
-import com.flipped.learn.common.util.TokenParseUtil;
+import com.flipped.learn.common.util.TokenVerifier;
 import com.flipped.learn.common.vo.CommonResponse;
 import com.flipped.learn.common.vo.JwtToken;
 import com.flipped.learn.common.vo.LoginUserInfo;
 import com.flipped.learn.gateway.constant.GatewayConstant;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -20,17 +19,17 @@ import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.lang.reflect.Type;
-import java.nio.CharBuffer;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicReference;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
 
 /**
  * <h1>全局登录鉴权过滤器</h1>
@@ -39,9 +38,35 @@ import java.util.concurrent.atomic.AtomicReference;
 @Component
 public class GlobalLoginOrRegisterFilter implements GlobalFilter, Ordered {
 
+    /**
+     * 授权中心返回的 Token 类型
+     */
+    private static final ParameterizedTypeReference<CommonResponse<JwtToken>> JWT_TOKEN_RESPONSE_TYPE =
+            new ParameterizedTypeReference<CommonResponse<JwtToken>>() {
+            };
+
     @Resource
     private WebClient.Builder webClientBuilder;
 
+    @Resource
+    private TokenVerifier tokenVerifier;
+
+    /**
+     * 请求授权中心的超时时间
+     */
+    @Value("${ecommerce.gateway.authority-center.timeout-millis:3000}")
+    private long authorityCenterTimeoutMillis;
+
+    /**
+     * 负载均衡的 WebClient, 只构建一次
+     */
+    private WebClient webClient;
+
+    @PostConstruct
+    public void init() {
+        this.webClient = webClientBuilder.build();
+    }
+
     /**
      * <h2>登录、注册、鉴权</h2>
      * 1. 如果是登录或注册, 则去授权中心拿到 Token 并返回给客户端
@@ -56,20 +81,13 @@ public class GlobalLoginOrRegisterFilter implements GlobalFilter, Ordered {
         // 1. 如果是登录
         if (request.getURI().getPath().contains(GatewayConstant.LOGIN_URI)) {
             // 去授权中心拿 token
-            String token = getTokenFromAuthorityCenter(request, GatewayConstant.AUTHORITY_CENTER_TOKEN_URL_FORMAT);
-            // header 中不能设置 null
-            response.getHeaders().add(CommonConstant.JWT_USER_INFO_KEY, null == token ? "null" : token);
-            response.setStatusCode(HttpStatus.OK);
-            return response.setComplete();
+            return writeTokenFromAuthorityCenter(exchange, GatewayConstant.AUTHORITY_CENTER_TOKEN_URL_FORMAT);
         }
 
         // 2. 如果是注册
         if (request.getURI().getPath().contains(GatewayConstant.REGISTER_URI)) {
             // 去授权中心拿 token: 先创建用户, 再返回 Token
-            String token = getTokenFromAuthorityCenter(request, GatewayConstant.AUTHORITY_CENTER_REGISTER_URL_FORMAT);
-            response.getHeaders().add(CommonConstant.JWT_USER_INFO_KEY, null == token ? "null" : token);
-            response.setStatusCode(HttpStatus.OK);
-            return response.setComplete();
+            return writeTokenFromAuthorityCenter(exchange, GatewayConstant.AUTHORITY_CENTER_REGISTER_URL_FORMAT);
         }
 
         // 3. 访问其他的服务, 则鉴权, 校验是否能够从 Token 中解析出用户信息
@@ -78,7 +96,7 @@ public class GlobalLoginOrRegisterFilter implements GlobalFilter, Ordered {
         LoginUserInfo loginUserInfo = null;
 
         try {
-            loginUserInfo = TokenParseUtil.parseUserInfoFromToken(token);
+            loginUserInfo = tokenVerifier.verify(token);
         } catch (Exception ex) {
             log.error("parse user info from token error: [{}]", ex.getMessage(), ex);
         }
@@ -98,52 +116,63 @@ public class GlobalLoginOrRegisterFilter implements GlobalFilter, Ordered {
         return HIGHEST_PRECEDENCE + 2;
     }
 
+    /**
+     * <h2>从授权中心获取 Token 并写入响应头</h2>
+     * 整个过程都是非阻塞的, 授权中心异常时映射成对应的 HTTP 状态码
+     */
+    private Mono<Void> writeTokenFromAuthorityCenter(ServerWebExchange exchange, String uri) {
+        ServerHttpResponse response = exchange.getResponse();
+        return getTokenFromAuthorityCenter(exchange.getRequest(), uri)
+                // header 中不能设置 null
+                .defaultIfEmpty("null")
+                .flatMap(token -> {
+                    response.getHeaders().add(CommonConstant.JWT_USER_INFO_KEY, token);
+                    response.setStatusCode(HttpStatus.OK);
+                    return response.setComplete();
+                })
+                .onErrorResume(ex -> {
+                    HttpStatus status = resolveErrorStatus(ex);
+                    log.error("get token from authority center error: [{}], [{}], [{}]",
+                            uri, status, ex.getMessage());
+                    response.setStatusCode(status);
+                    return response.setComplete();
+                });
+    }
+
     /**
      * <h2>从授权中心获取 Token</h2>
+     * 请求体是 GlobalCacheRequestBodyFilter 缓存的字节, 直接转发给授权中心, 不做解码再编码
      */
-    private String getTokenFromAuthorityCenter(ServerHttpRequest request, String uri) {
-        String requestBody = parseBodyFromRequest(request);
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicReference<String> tokenReference = new AtomicReference<>();
-        webClientBuilder.build()
+    private Mono<String> getTokenFromAuthorityCenter(ServerHttpRequest request, String uri) {
+        return webClient
                 .method(HttpMethod.POST)
                 .uri(uri)
                 .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(requestBody)
+                .body(BodyInserters.fromDataBuffers(request.getBody()))
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<CommonResponse<JwtToken>>() {
-                    @Override
-                    public Type getType() {
-                        return super.getType();
-                    }
-                })
-                .subscribe(jwtTokenCommonResponse -> {
+                .bodyToMono(JWT_TOKEN_RESPONSE_TYPE)
+                .timeout(Duration.ofMillis(authorityCenterTimeoutMillis))
+                .flatMap(jwtTokenCommonResponse -> {
                     JwtToken data = jwtTokenCommonResponse.getData();
-                    tokenReference.set(data.getToken());
-                    latch.countDown();
+                    return null == data ? Mono.empty() : Mono.justOrEmpty(data.getToken());
                 });
-        try {
-            latch.await();
-        } catch (InterruptedException ignored) {
-        }
-        return tokenReference.get();
     }
 
     /**
-     * <h2>从 Post 请求中获取到请求数据</h2>
+     * <h2>将请求授权中心的异常映射成返回给客户端的状态码</h2>
      */
-    private String parseBodyFromRequest(ServerHttpRequest request) {
-        // 获取请求体
-        Flux<DataBuffer> body = request.getBody();
-        AtomicReference<String> bodyRef = new AtomicReference<>();
-        // 订阅缓冲区去消费请求体中的数据
-        body.subscribe(buffer -> {
-            CharBuffer charBuffer = StandardCharsets.UTF_8.decode(buffer.asByteBuffer());
-            // 一定要使用 DataBufferUtils.release 释放掉, 否则, 会出现内存泄露
-            DataBufferUtils.release(buffer);
-            bodyRef.set(charBuffer.toString());
-        });
-        // 获取 request body
-        return bodyRef.get();
+    private HttpStatus resolveErrorStatus(Throwable ex) {
+        if (ex instanceof TimeoutException) {
+            return HttpStatus.GATEWAY_TIMEOUT;
+        }
+        if (ex instanceof WebClientResponseException) {
+            HttpStatus status = HttpStatus.resolve(((WebClientResponseException) ex).getRawStatusCode());
+            // 授权中心的客户端错误原样返回, 服务端错误统一返回 502
+            return null != status && status.is4xxClientError() ? status : HttpStatus.BAD_GATEWAY;
+        }
+        if (ex instanceof WebClientRequestException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
     }
 }
@@ -0,0 +1,130 @@
+package com.flipped.learn.gateway.listener;
+
+import com.alibaba.fastjson.JSON;
+import com.flipped.learn.gateway.config.DynamicRouteService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <h1>路由配置更新器: 单线程写入, 合并连续的配置推送</h1>
+ * Nacos 通知线程只负责记录最新的配置并投递任务, 解析和下发路由都在专用线程中执行;
+ * 短时间内连续推送多次配置时, 只有最新的那一份会被下发
+ */
+@Slf4j
+@Component
+public class CoalescingRouteUpdater {
+
+    /**
+     * 最新收到、还没有下发的配置
+     */
+    private final AtomicReference<PendingConfig> latestConfig = new AtomicReference<>();
+
+    /**
+     * 单线程执行器, 队列中最多只有一个等待的任务, 多余的任务直接丢弃 (等待的任务会取到最新的配置)
+     */
+    private final ThreadPoolExecutor executor;
+
+    private final DynamicRouteService dynamicRouteService;
+
+    /**
+     * 配置从收到推送到下发完成的耗时
+     */
+    private final Timer updateLagTimer;
+
+    /**
+     * 被合并掉 (没有单独下发) 的推送次数
+     */
+    private final Counter coalescedCounter;
+
+    public CoalescingRouteUpdater(DynamicRouteService dynamicRouteService, MeterRegistry meterRegistry) {
+        this.dynamicRouteService = dynamicRouteService;
+        this.updateLagTimer = Timer.builder("ecommerce.gateway.route.update.lag")
+                .description("time from nacos push to routes applied")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("ecommerce.gateway.route.update.coalesced")
+                .description("nacos route pushes superseded by a newer push")
+                .register(meterRegistry);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                r -> {
+                    Thread thread = new Thread(r, "Gateway-Route-Updater-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * <h2>提交最新的路由配置, 不会阻塞调用线程</h2>
+     */
+    public void submit(String configInfo) {
+        PendingConfig previous = latestConfig.getAndSet(new PendingConfig(configInfo, System.nanoTime()));
+        if (null != previous) {
+            coalescedCounter.increment();
+            log.info("coalesce gateway route config push");
+        }
+        executor.execute(this::applyLatest);
+    }
+
+    /**
+     * <h2>取出最新的配置解析并下发</h2>
+     */
+    private void applyLatest() {
+        PendingConfig pending = latestConfig.getAndSet(null);
+        if (null == pending) {
+            return;
+        }
+        try {
+            List<RouteDefinition> definitionList = JSON.parseArray(pending.getConfigInfo(), RouteDefinition.class);
+            // 配置被删除或者为空时保留当前路由, 避免误删全部路由
+            if (null == definitionList) {
+                log.warn("gateway route config is empty, keep current routes");
+                return;
+            }
+            dynamicRouteService.updateList(definitionList);
+        } catch (Exception ex) {
+            log.error("apply gateway route config error: [{}]", ex.getMessage(), ex);
+        } finally {
+            updateLagTimer.record(System.nanoTime() - pending.getReceivedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * <h2>等待下发的配置</h2>
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class PendingConfig {
+
+        /**
+         * Nacos 中的配置内容
+         */
+        private final String configInfo;
+
+        /**
+         * 收到推送的时间
+         */
+        private final long receivedNanos;
+    }
+}
@@ -1,12 +1,12 @@
 package com.flipped.learn.gateway.listener;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.nacos.api.NacosFactory;
 import com.alibaba.nacos.api.config.ConfigService;
 import com.alibaba.nacos.api.config.listener.Listener;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.flipped.learn.gateway.config.DynamicRouteService;
 import com.flipped.learn.gateway.config.GatewayConfig;
+import com.flipped.learn.gateway.config.RouteSnapshotStore;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.cloud.gateway.route.RouteDefinition;
@@ -35,19 +35,45 @@ public class NacosDynamicRouteListener {
     @Resource
     private DynamicRouteService dynamicRouteService;
 
+    @Resource
+    private CoalescingRouteUpdater routeUpdater;
+
+    @Resource
+    private RouteSnapshotStore routeSnapshotStore;
+
     /**
      * <h2>Bean 在容器中构造完成之后会执行 init 方法</h2>
+     * 先从本地快照恢复路由, 再在后台线程中连接 Nacos 拉取最新配置, 启动过程不依赖 Nacos 的响应
      */
     @PostConstruct
     public void init() {
         log.info("gateway route init....");
-        try {
+        List<RouteDefinition> snapshot = routeSnapshotStore.load();
+        if (CollectionUtils.isNotEmpty(snapshot)) {
+            log.info("init gateway route from snapshot: [{}]", snapshot.size());
+            dynamicRouteService.updateList(snapshot);
+        }
+
+        Thread reconciler = new Thread(() -> {
             // 初始化 Nacos 配置客户端
-            configService = initConfigService();
-            if (null == configService) {
+            ConfigService nacosConfigService = initConfigService();
+            if (null == nacosConfigService) {
                 log.error("init config service fail");
                 return;
             }
+            start(nacosConfigService);
+        }, "Gateway-Route-Reconciler");
+        reconciler.setDaemon(true);
+        reconciler.start();
+    }
+
+    /**
+     * <h2>加载当前路由配置并设置监听器</h2>
+     * 与 Nacos 客户端的创建分开, 便于使用内存中的 ConfigService 实现做测试
+     */
+    void start(ConfigService configService) {
+        this.configService = configService;
+        try {
             // 通过 Nacos Config 并指定路由配置路径去获取路由配置
             String configInfo = configService.getConfig(
                     GatewayConfig.NACOS_ROUTE_DATA_ID,
@@ -56,14 +82,10 @@ public class NacosDynamicRouteListener {
             );
 
             log.info("get current gateway config: [{}]", configInfo);
-            List<RouteDefinition> definitionList = JSON.parseArray(configInfo, RouteDefinition.class);
-            if (CollectionUtils.isNotEmpty(definitionList)) {
-                for (RouteDefinition definition : definitionList) {
-                    log.info("init gateway config: [{}]", definition.toString());
-                    dynamicRouteService.addRouteDefinition(definition);
-                }
+            // 与快照中的路由做差异对比后下发, 和后续的配置推送走同一个写线程
+            if (null != configInfo) {
+                routeUpdater.submit(configInfo);
             }
-
         } catch (Exception ex) {
             log.error("gateway route init has some error: [{}]", ex.getMessage(), ex);
         }
@@ -81,7 +103,7 @@ public class NacosDynamicRouteListener {
             Properties properties = new Properties();
             properties.setProperty("serverAddr", GatewayConfig.NACOS_SERVER_ADDR);
             properties.setProperty("namespace", GatewayConfig.NACOS_NAMESPACE);
-            return configService = NacosFactory.createConfigService(properties);
+            return NacosFactory.createConfigService(properties);
         } catch (Exception ex) {
             log.error("init gateway nacos config error: [{}]", ex.getMessage(), ex);
             return null;
@@ -96,7 +118,7 @@ public class NacosDynamicRouteListener {
             // 给 Nacos Config 客户端增加一个监听器
             configService.addListener(dataId, group, new Listener() {
                 /**
-                 * <h2>自己提供线程池执行操作</h2>
+                 * <h2>在 Nacos 通知线程中执行即可, 这里只做投递</h2>
                  * */
                 @Override
                 public Executor getExecutor() {
@@ -105,14 +127,13 @@ public class NacosDynamicRouteListener {
 
                 /**
                  * <h2>监听器收到配置更新</h2>
+                 * 解析和下发交给 CoalescingRouteUpdater 的专用线程, 连续的推送只会下发最新的一份
                  * @param configInfo Nacos 中最新的配置定义
                  * */
                 @Override
                 public void receiveConfigInfo(String configInfo) {
-                    log.info("start to update config: [{}]", configInfo);
-                    List<RouteDefinition> definitionList = JSON.parseArray(configInfo, RouteDefinition.class);
-                    log.info("update route: [{}]", definitionList.toString());
-                    dynamicRouteService.updateList(definitionList);
+                    log.info("receive gateway route config: [{}]", configInfo);
+                    routeUpdater.submit(configInfo);
                 }
             });
         } catch (NacosException ex) {
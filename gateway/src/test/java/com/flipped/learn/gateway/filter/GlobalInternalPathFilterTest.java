@@ -0,0 +1,62 @@
+package com.flipped.learn.gateway.filter;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h1>内部接口拦截测试</h1>
+ */
+class GlobalInternalPathFilterTest {
+
+    private final GlobalInternalPathFilter filter = new GlobalInternalPathFilter();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/imooc/ecommerce-goods-service/internal/goods/saga/compensate-goods-inventory",
+            "/imooc/ecommerce-account-service/%69nternal/balance/saga/compensate-balance",
+            "/imooc/ecommerce-order-service/internal;v=1/order/saga/compensating",
+    })
+    void internalPathIsNotForwarded(String path) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.method(HttpMethod.PUT, URI.create(path)));
+        AtomicBoolean forwarded = new AtomicBoolean();
+
+        filter.filter(exchange, chain(forwarded)).block();
+
+        assertFalse(forwarded.get());
+        assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/imooc/ecommerce-goods-service/goods/simple-goods-info",
+            "/imooc/ecommerce-order-service/order/internal-note",
+    })
+    void otherPathIsForwarded(String path) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(path));
+        AtomicBoolean forwarded = new AtomicBoolean();
+
+        filter.filter(exchange, chain(forwarded)).block();
+
+        assertTrue(forwarded.get());
+    }
+
+    private static GatewayFilterChain chain(AtomicBoolean forwarded) {
+        return exchange -> {
+            forwarded.set(true);
+            return Mono.empty();
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.flipped.learn.gateway.listener;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.Listener;
+import com.flipped.learn.gateway.config.DynamicRouteService;
+import com.flipped.learn.gateway.config.GatewayConfig;
+import com.flipped.learn.gateway.config.RouteSnapshotStore;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h1>路由配置推送合并测试</h1>
+ * 使用内存中的 ConfigService 替身驱动 NacosDynamicRouteListener, 不需要 Nacos 服务端
+ */
+class CoalescingRouteUpdaterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DynamicRouteService dynamicRouteService = mock(DynamicRouteService.class);
+
+    /**
+     * 每次 updateList 收到的路由 id 列表
+     */
+    private final List<List<String>> appliedRouteIds = new CopyOnWriteArrayList<>();
+
+    /**
+     * 第一次下发开始后放行, 之后的推送都会在第一次下发期间到达
+     */
+    private final CountDownLatch firstApplyStarted = new CountDownLatch(1);
+
+    private final CountDownLatch releaseFirstApply = new CountDownLatch(1);
+
+    private CoalescingRouteUpdater routeUpdater;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            List<RouteDefinition> definitions = invocation.getArgument(0);
+            appliedRouteIds.add(definitions.stream().map(RouteDefinition::getId).collect(Collectors.toList()));
+            if (appliedRouteIds.size() == 1) {
+                firstApplyStarted.countDown();
+                assertTrue(releaseFirstApply.await(5, TimeUnit.SECONDS));
+            }
+            return "success";
+        }).when(dynamicRouteService).updateList(any());
+        routeUpdater = new CoalescingRouteUpdater(dynamicRouteService, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        routeUpdater.shutdown();
+    }
+
+    @Test
+    void burstOfPushesAppliesOnlyTheLatestConfig() throws Exception {
+        AtomicReference<Listener> listener = new AtomicReference<>();
+        ConfigService configService = mock(ConfigService.class);
+        when(configService.getConfig(eq(GatewayConfig.NACOS_ROUTE_DATA_ID),
+                eq(GatewayConfig.NACOS_ROUTE_GROUP), anyLong())).thenReturn(routes("r0"));
+        doAnswer(invocation -> {
+            listener.set(invocation.getArgument(2));
+            return null;
+        }).when(configService).addListener(eq(GatewayConfig.NACOS_ROUTE_DATA_ID),
+                eq(GatewayConfig.NACOS_ROUTE_GROUP), any());
+
+        NacosDynamicRouteListener routeListener = new NacosDynamicRouteListener();
+        ReflectionTestUtils.setField(routeListener, "dynamicRouteService", dynamicRouteService);
+        ReflectionTestUtils.setField(routeListener, "routeUpdater", routeUpdater);
+        ReflectionTestUtils.setField(routeListener, "routeSnapshotStore", mock(RouteSnapshotStore.class));
+        routeListener.start(configService);
+
+        assertNotNull(listener.get());
+        assertTrue(firstApplyStarted.await(5, TimeUnit.SECONDS));
+
+        // 第一次下发还没结束时连续推送 50 次
+        for (int i = 1; i <= 50; i++) {
+            listener.get().receiveConfigInfo(routes("r" + i));
+        }
+        releaseFirstApply.countDown();
+
+        awaitApplied(2);
+        // 再等一会, 确认没有多余的下发
+        Thread.sleep(200);
+
+        assertEquals(2, appliedRouteIds.size());
+        assertEquals(List.of("r0"), appliedRouteIds.get(0));
+        assertEquals(List.of("r50"), appliedRouteIds.get(1));
+        assertEquals(49.0, meterRegistry.counter("ecommerce.gateway.route.update.coalesced").count());
+    }
+
+    @Test
+    void emptyConfigKeepsCurrentRoutes() throws Exception {
+        releaseFirstApply.countDown();
+        // 单独下发空配置, 处理完成 (记录了耗时) 之后再推送新的路由, 不会和后面的推送合并
+        routeUpdater.submit("null");
+        Timer updateLag = meterRegistry.get("ecommerce.gateway.route.update.lag").timer();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (updateLag.count() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, updateLag.count());
+        verify(dynamicRouteService, never()).updateList(any());
+
+        routeUpdater.submit(routes("r1"));
+        awaitApplied(1);
+        Thread.sleep(100);
+        assertEquals(List.of(List.of("r1")), appliedRouteIds);
+    }
+
+    private void awaitApplied(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (appliedRouteIds.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static String routes(String id) {
+        return "[{\"id\":\"" + id + "\",\"uri\":\"lb://" + id + "\",\"order\":0}]";
+    }
+}